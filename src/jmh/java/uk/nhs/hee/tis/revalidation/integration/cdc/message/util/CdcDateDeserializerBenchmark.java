@@ -0,0 +1,186 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright 2026 Crown Copyright (NHS England)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package uk.nhs.hee.tis.revalidation.integration.cdc.message.util;
+
+import static java.time.format.DateTimeFormatter.ISO_DATE_TIME;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.datatype.jsr310.deser.LocalDateDeserializer;
+import com.fasterxml.jackson.datatype.jsr310.deser.LocalDateTimeDeserializer;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import uk.nhs.hee.tis.revalidation.integration.RevalidationIntegrationApplication;
+
+/**
+ * Compares the cdc date deserializers against the formatter based deserializers they replaced,
+ * for every date layout received in cdc messages.
+ *
+ * <p>Run with {@code ./gradlew jmh}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CdcDateDeserializerBenchmark {
+
+  @Param({"dateFromDateTimeString", "dateFromDateString", "dateFromObject",
+      "dateTimeFromMillisString", "dateTimeFromObject"})
+  private String format;
+
+  private ObjectReader reader;
+  private ObjectReader legacyReader;
+  private byte[] message;
+
+  /**
+   * Build the readers for the deserializers of the benchmarked format.
+   */
+  @Setup
+  public void setup() {
+    ObjectMapper mapper = new RevalidationIntegrationApplication().mapper();
+    String value = switch (format) {
+      case "dateFromDateTimeString" -> "\"2017-10-19 00:00:00\"";
+      case "dateFromDateString" -> "\"2015-10-07\"";
+      case "dateFromObject" -> "{\"$date\": \"2024-08-05T00:00:00Z\"}";
+      case "dateTimeFromMillisString" -> "\"2025-10-10T00:00:00.000\"";
+      case "dateTimeFromObject" -> "{\"$date\": \"2025-04-29T00:00:54.956Z\"}";
+      default -> throw new IllegalArgumentException("Unknown format " + format);
+    };
+    if (format.startsWith("dateFrom")) {
+      reader = mapper.readerFor(DateHolder.class);
+      legacyReader = mapper.readerFor(LegacyDateHolder.class);
+    } else {
+      reader = mapper.readerFor(DateTimeHolder.class);
+      legacyReader = mapper.readerFor(LegacyDateTimeHolder.class);
+    }
+    message = ("{\"value\": " + value + "}").getBytes(StandardCharsets.UTF_8);
+  }
+
+  @Benchmark
+  public Object formatterDeserializer() throws IOException {
+    return legacyReader.readValue(message);
+  }
+
+  @Benchmark
+  public Object cdcDeserializer() throws IOException {
+    return reader.readValue(message);
+  }
+
+  static class DateHolder {
+
+    @JsonDeserialize(using = CdcDateDeserializer.class)
+    public LocalDate value;
+  }
+
+  static class DateTimeHolder {
+
+    @JsonDeserialize(using = CdcLocalDateTimeDeserializer.class)
+    public LocalDateTime value;
+  }
+
+  static class LegacyDateHolder {
+
+    @JsonDeserialize(using = LegacyDateDeserializer.class)
+    public LocalDate value;
+  }
+
+  static class LegacyDateTimeHolder {
+
+    @JsonDeserialize(using = LegacyDateTimeDeserializer.class)
+    public LocalDateTime value;
+  }
+
+  /**
+   * The date deserializer as it was before the layouts were detected up front.
+   */
+  static class LegacyDateDeserializer extends JsonDeserializer<LocalDate> {
+
+    private static final DateTimeFormatter CDC_DATE_FORMAT =
+        DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private final LocalDateDeserializer localDateDeserializer =
+        new LocalDateDeserializer(DateTimeFormatter.ISO_DATE);
+
+    @Override
+    public LocalDate deserialize(JsonParser p, DeserializationContext ctx) throws IOException {
+      try {
+        if (p.getCurrentToken() == JsonToken.START_OBJECT) {
+          JsonNode node = p.readValueAsTree();
+          return LocalDate.parse(node.get("$date").asText(), ISO_DATE_TIME);
+        }
+        return LocalDate.parse(p.getText(), CDC_DATE_FORMAT);
+      } catch (DateTimeParseException e) {
+        return localDateDeserializer.deserialize(p, ctx);
+      }
+    }
+  }
+
+  /**
+   * The local date time deserializer as it was before the layouts were detected up front.
+   */
+  static class LegacyDateTimeDeserializer extends JsonDeserializer<LocalDateTime> {
+
+    private static final DateTimeFormatter CDC_DATE_FORMAT =
+        DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSS");
+
+    private final LocalDateTimeDeserializer localDateTimeDeserializer =
+        new LocalDateTimeDeserializer(DateTimeFormatter.ISO_DATE);
+
+    @Override
+    public LocalDateTime deserialize(JsonParser p, DeserializationContext ctx)
+        throws IOException {
+      try {
+        if (p.getCurrentToken() == JsonToken.START_OBJECT) {
+          JsonNode node = p.readValueAsTree();
+          return LocalDateTime.parse(node.get("$date").asText(), ISO_DATE_TIME);
+        }
+        return LocalDateTime.parse(p.getText(), CDC_DATE_FORMAT);
+      } catch (DateTimeParseException e) {
+        return localDateTimeDeserializer.deserialize(p, ctx);
+      }
+    }
+  }
+}
@@ -0,0 +1,204 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright 2026 Crown Copyright (NHS England)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package uk.nhs.hee.tis.revalidation.integration.cdc.message.util;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import uk.nhs.hee.tis.revalidation.integration.RevalidationIntegrationApplication;
+import uk.nhs.hee.tis.revalidation.integration.cdc.dto.CdcDocumentDto;
+import uk.nhs.hee.tis.revalidation.integration.cdc.dto.CdcHiddenDiscrepancyDto;
+import uk.nhs.hee.tis.revalidation.integration.entity.ConnectionLog;
+import uk.nhs.hee.tis.revalidation.integration.entity.DoctorsForDB;
+import uk.nhs.hee.tis.revalidation.integration.entity.Recommendation;
+
+/**
+ * Compares reading cdc messages with a new TypeReference per message, as the listeners used to,
+ * against reading them with a {@link CdcMessageReader} created once per collection.
+ *
+ * <p>Run with {@code ./gradlew jmh}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CdcMessageReaderBenchmark {
+
+  private static final String DOCTOR_JSON =
+      """
+          {
+            "_id": {"_data": "016819321a00000001010000000000020042"},
+            "clusterTime": {"$timestamp": {"t": 1746481690, "i": 1}},
+            "documentKey": {"_id": "1234567"},
+            "fullDocument": {
+                              "_id": "1234567", "doctorFirstName": "AAA", "doctorLastName": "BBB",
+                              "submissionDate": {"$date": "2024-08-05T00:00:00Z"},
+                              "dateAdded": {"$date": "2015-10-07T00:00:00Z"}, "underNotice": "NO",
+                              "sanction": "No", "doctorStatus": "DRAFT",
+                              "lastUpdatedDate": {"$date": "2025-04-29T00:00:00Z"},
+                              "gmcLastUpdatedDateTime": {"$date": "2025-04-29T00:00:54.956Z"},
+                              "designatedBodyCode": "1-1RSSQ05", "existsInGmc": false,
+                              "_class": "uk.nhs.hee.tis.revalidation.entity.DoctorsForDB"},
+            "ns": {"db": "revalidation", "coll": "doctorsForDB"},
+            "operationType": "update",
+            "updateDescription": {"removedFields": [], "truncatedArrays": [],
+                                  "updatedFields": {"underNotice": "YES"}}
+          }
+          """;
+
+  private static final String RECOMMENDATION_JSON =
+      """
+          {
+            "_id": {"_data": "0168220a440000000b01000000000002d1b5"},
+            "clusterTime": {"$timestamp": {"t": 1747061316, "i": 11}},
+            "documentKey": {"_id": {"$oid": "1234567"}},
+            "fullDocument": {
+                              "_id": {"$oid": "1234567"},
+                              "gmcNumber": "1234567", "recommendationType": "REVALIDATE",
+                              "recommendationStatus": "SUBMITTED_TO_GMC",
+                              "gmcSubmissionDate": {"$date": "2025-04-28T00:00:00Z"},
+                              "comments": ["test"], "admin": "aaa.bbb@ccc.com",
+                              "_class": "uk.nhs.hee.tis.revalidation.entity.Recommendation"},
+            "ns": {"db": "revalidation", "coll": "recommendation"},
+            "operationType": "update",
+            "updateDescription": {"removedFields": [], "truncatedArrays": [],
+                                  "updatedFields": {"recommendationStatus": "SUBMITTED_TO_GMC"}}}
+          """;
+
+  private static final String CONNECTION_LOG_JSON =
+      """
+          {
+            "_id": {"_data": "016819321a00000001010000000000020042"},
+            "clusterTime": {"$timestamp": {"t": 1746481690, "i": 1}},
+            "documentKey": {"_id": "1234567"},
+            "fullDocument": {
+                              "_id": "1234567",
+                              "gmcId": "1234567",
+                              "newDesignatedBodyCode": "1-1RSSQ05",
+                              "previousDesignatedBodyCode": "1-AIIDWI",
+                              "updatedBy": "admin",
+                              "requestTime": {"$date": "2025-04-29T00:00:00Z"},
+                              "responseCode": "0",
+                              "_class": "uk.nhs.hee.tis.revalidation.entity.ConnectionLog"},
+            "ns": {"db": "revalidation", "coll": "connectionLog"},
+            "operationType": "insert"
+          }
+          """;
+
+  private static final String HIDDEN_DISCREPANCY_JSON =
+      """
+          {
+            "_id": {"_data": "0169fdb35100000006010000000000053ab4"},
+            "clusterTime": {"$timestamp": {"t": 1778234193, "i": 6}},
+            "documentKey": {"_id": {"$oid": "1234567"}},
+            "fullDocument": {"_id": {"$oid": "1234567"},
+                             "gmcId": "1234567", "hiddenForDesignatedBodyCode": "1-1RSSQ05",
+                             "hiddenBy": "test", "reason": "test",
+                             "hiddenDateTime": {"$date": "2026-05-08T09:56:33.453Z"},
+                             "_class":
+                               "uk.nhs.hee.tis.revalidation.connection.entity.HiddenDiscrepancy"},
+            "ns": {"db": "revalidation", "coll": "hiddenDiscrepancy"},
+            "operationType": "insert"
+          }
+          """;
+
+  @Param({"doctor", "recommendation", "connectionLog", "hiddenDiscrepancy"})
+  private String payload;
+
+  private ObjectMapper mapper;
+  private CdcMessageReader<?> reader;
+  private String message;
+  private byte[] messageBytes;
+
+  /**
+   * Build the mapper and reader once, as the listeners do at startup.
+   */
+  @Setup
+  public void setup() {
+    mapper = new RevalidationIntegrationApplication().mapper();
+    switch (payload) {
+      case "doctor" -> {
+        reader = CdcMessageReader.of(mapper, DoctorsForDB.class);
+        message = DOCTOR_JSON;
+      }
+      case "recommendation" -> {
+        reader = CdcMessageReader.of(mapper, Recommendation.class);
+        message = RECOMMENDATION_JSON;
+      }
+      case "connectionLog" -> {
+        reader = CdcMessageReader.of(mapper, ConnectionLog.class);
+        message = CONNECTION_LOG_JSON;
+      }
+      case "hiddenDiscrepancy" -> {
+        reader = CdcMessageReader.of(mapper, CdcHiddenDiscrepancyDto.class);
+        message = HIDDEN_DISCREPANCY_JSON;
+      }
+      default -> throw new IllegalArgumentException("Unknown payload " + payload);
+    }
+    messageBytes = message.getBytes(StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Read a message the way the listeners used to, resolving a new TypeReference every time.
+   */
+  @Benchmark
+  public CdcDocumentDto<?> typeReferencePerMessage() throws IOException {
+    return switch (payload) {
+      case "doctor" -> mapper.readValue(message, new TypeReference<CdcDocumentDto<DoctorsForDB>>() {
+      });
+      case "recommendation" ->
+          mapper.readValue(message, new TypeReference<CdcDocumentDto<Recommendation>>() {
+          });
+      case "connectionLog" ->
+          mapper.readValue(message, new TypeReference<CdcDocumentDto<ConnectionLog>>() {
+          });
+      default -> mapper.readValue(message,
+          new TypeReference<CdcDocumentDto<CdcHiddenDiscrepancyDto>>() {
+          });
+    };
+  }
+
+  @Benchmark
+  public CdcDocumentDto<?> cachedReaderFromString() throws IOException {
+    return reader.read(message);
+  }
+
+  @Benchmark
+  public CdcDocumentDto<?> cachedReaderFromBytes() throws IOException {
+    return reader.read(messageBytes);
+  }
+}
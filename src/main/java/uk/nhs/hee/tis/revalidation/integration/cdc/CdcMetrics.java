@@ -0,0 +1,192 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright 2026 Crown Copyright (NHS England)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package uk.nhs.hee.tis.revalidation.integration.cdc;
+
+import com.mongodb.client.model.changestream.OperationType;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import org.springframework.stereotype.Component;
+import uk.nhs.hee.tis.revalidation.integration.cdc.message.util.CdcClusterTimeDeserializer;
+import uk.nhs.hee.tis.revalidation.integration.enums.CdcFieldGroup;
+import uk.nhs.hee.tis.revalidation.integration.enums.CdcSource;
+
+/**
+ * Publishes the outcome of applying CDC events to the masterdoctorindex to Micrometer.
+ *
+ * <p>For every queue, the lag from the cluster time of an event to the end of its handling and
+ * the time taken to handle it are published as percentile histograms tagged by operation, and the
+ * handling is split into time spent looking up and writing documents. Events which changed
+ * nothing, were discarded or failed are counted. The lag of the last event handled from each
+ * queue is published as a gauge. Cluster times have a resolution of one second, and an update
+ * buffered to be merged with later ones is counted as handled when it is buffered.
+ */
+@Component
+public class CdcMetrics {
+
+  private static final String METRIC_PREFIX = "cdc.";
+  private static final String GROUP_TAG = "group";
+  private static final String QUEUE_TAG = "queue";
+  private static final String OPERATION_TAG = "operation";
+  private static final List<OperationType> OPERATIONS = List.of(OperationType.INSERT,
+      OperationType.REPLACE, OperationType.UPDATE, OperationType.DELETE);
+
+  private final Map<CdcFieldGroup, Counter> staleCounters = new EnumMap<>(CdcFieldGroup.class);
+  private final Map<CdcSource, Map<OperationType, Timer>> lagTimers =
+      new EnumMap<>(CdcSource.class);
+  private final Map<CdcSource, Map<OperationType, Timer>> handlerTimers =
+      new EnumMap<>(CdcSource.class);
+  private final Map<CdcSource, Timer> lookupTimers = new EnumMap<>(CdcSource.class);
+  private final Map<CdcSource, Timer> writeTimers = new EnumMap<>(CdcSource.class);
+  private final Map<CdcSource, Counter> noopCounters = new EnumMap<>(CdcSource.class);
+  private final Map<CdcSource, Counter> discardedCounters = new EnumMap<>(CdcSource.class);
+  private final Map<CdcSource, Counter> failedCounters = new EnumMap<>(CdcSource.class);
+  private final Map<CdcSource, AtomicLong> currentLagMillis = new EnumMap<>(CdcSource.class);
+
+  /**
+   * Register the CDC meters.
+   *
+   * @param meterRegistry the registry the CDC meters are published to
+   */
+  public CdcMetrics(MeterRegistry meterRegistry) {
+    for (CdcFieldGroup group : CdcFieldGroup.values()) {
+      staleCounters.put(group, Counter.builder(METRIC_PREFIX + "events.stale")
+          .description("CDC updates skipped because the document held a newer version")
+          .tag(GROUP_TAG, group.name())
+          .register(meterRegistry));
+    }
+    for (CdcSource source : CdcSource.values()) {
+      String queue = source.name();
+      Map<OperationType, Timer> lagByOperation = new EnumMap<>(OperationType.class);
+      Map<OperationType, Timer> handlerByOperation = new EnumMap<>(OperationType.class);
+      for (OperationType operation : OPERATIONS) {
+        lagByOperation.put(operation, Timer.builder(METRIC_PREFIX + "lag")
+            .description("Time from the cluster time of a CDC event to the end of its handling")
+            .tags(QUEUE_TAG, queue, OPERATION_TAG, operation.name())
+            .publishPercentileHistogram()
+            .register(meterRegistry));
+        handlerByOperation.put(operation, Timer.builder(METRIC_PREFIX + "handler")
+            .description("Time taken to handle a CDC event")
+            .tags(QUEUE_TAG, queue, OPERATION_TAG, operation.name())
+            .publishPercentileHistogram()
+            .register(meterRegistry));
+      }
+      lagTimers.put(source, lagByOperation);
+      handlerTimers.put(source, handlerByOperation);
+      lookupTimers.put(source, stageTimer(meterRegistry, queue, "lookup"));
+      writeTimers.put(source, stageTimer(meterRegistry, queue, "write"));
+      noopCounters.put(source, eventCounter(meterRegistry, queue, "noop"));
+      discardedCounters.put(source, eventCounter(meterRegistry, queue, "discarded"));
+      failedCounters.put(source, eventCounter(meterRegistry, queue, "failed"));
+
+      AtomicLong lag = new AtomicLong();
+      currentLagMillis.put(source, lag);
+      Gauge.builder(METRIC_PREFIX + "lag.current", lag, l -> l.get() / 1000.0)
+          .description("Lag of the last CDC event handled from the queue")
+          .baseUnit("seconds")
+          .tag(QUEUE_TAG, queue)
+          .register(meterRegistry);
+    }
+  }
+
+  /**
+   * Count updates which were not written because the document held a newer version, counting
+   * them as events which changed nothing.
+   *
+   * @param group   the field group of the updates
+   * @param updates the number of updates
+   */
+  public void recordStale(CdcFieldGroup group, long updates) {
+    staleCounters.get(group).increment(updates);
+    noopCounters.get(group.getSource()).increment(updates);
+  }
+
+  /**
+   * Record the handling of an event.
+   *
+   * @param source        the queue the event was received from
+   * @param operation     the operation of the event
+   * @param durationNanos the time taken to handle the event
+   * @param clusterTime   the cluster time of the event, null if it is not known
+   */
+  public void recordHandled(CdcSource source, OperationType operation, long durationNanos,
+      Long clusterTime) {
+    Timer handlerTimer = handlerTimers.get(source).get(operation);
+    if (handlerTimer == null) {
+      return;
+    }
+    handlerTimer.record(durationNanos, TimeUnit.NANOSECONDS);
+    if (clusterTime != null) {
+      long lagMillis = Math.max(0, System.currentTimeMillis()
+          - TimeUnit.SECONDS.toMillis(CdcClusterTimeDeserializer.toEpochSecond(clusterTime)));
+      lagTimers.get(source).get(operation).record(lagMillis, TimeUnit.MILLISECONDS);
+      currentLagMillis.get(source).set(lagMillis);
+    }
+  }
+
+  public void recordNoop(CdcSource source, long events) {
+    noopCounters.get(source).increment(events);
+  }
+
+  public void recordDiscarded(CdcSource source, long events) {
+    discardedCounters.get(source).increment(events);
+  }
+
+  public void recordFailed(CdcSource source, long events) {
+    failedCounters.get(source).increment(events);
+  }
+
+  public <T> T timeLookup(CdcSource source, Supplier<T> lookup) {
+    return lookupTimers.get(source).record(lookup);
+  }
+
+  public <T> T timeWrite(CdcSource source, Supplier<T> write) {
+    return writeTimers.get(source).record(write);
+  }
+
+  public void timeWrite(CdcSource source, Runnable write) {
+    writeTimers.get(source).record(write);
+  }
+
+  private static Timer stageTimer(MeterRegistry meterRegistry, String queue, String stage) {
+    return Timer.builder(METRIC_PREFIX + "handler.stage")
+        .description("Time spent looking up and writing documents while handling CDC events")
+        .tags(QUEUE_TAG, queue, "stage", stage)
+        .publishPercentileHistogram()
+        .register(meterRegistry);
+  }
+
+  private static Counter eventCounter(MeterRegistry meterRegistry, String queue,
+      String outcome) {
+    return Counter.builder(METRIC_PREFIX + "events")
+        .tag(QUEUE_TAG, queue)
+        .tag("outcome", outcome)
+        .register(meterRegistry);
+  }
+}
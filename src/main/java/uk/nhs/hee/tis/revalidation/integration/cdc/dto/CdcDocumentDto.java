@@ -22,10 +22,12 @@
 package uk.nhs.hee.tis.revalidation.integration.cdc.dto;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import uk.nhs.hee.tis.revalidation.integration.cdc.message.util.CdcClusterTimeDeserializer;
 
 @Data
 @AllArgsConstructor
@@ -36,4 +38,20 @@ public class CdcDocumentDto<T> {
   private String operationType;
   private T fullDocument;
   private CdcDocumentKey documentKey;
+  /**
+   * The cluster time of the change, used as the version stamp of the fields it updates.
+   */
+  @JsonDeserialize(using = CdcClusterTimeDeserializer.class)
+  private Long clusterTime;
+
+  /**
+   * Create a cdc document without a cluster time.
+   *
+   * @param operationType the type of the change
+   * @param fullDocument  the changed document
+   * @param documentKey   the key of the changed document
+   */
+  public CdcDocumentDto(String operationType, T fullDocument, CdcDocumentKey documentKey) {
+    this(operationType, fullDocument, documentKey, null);
+  }
 }
@@ -22,8 +22,10 @@
 package uk.nhs.hee.tis.revalidation.integration.cdc.message.handler;
 
 import org.springframework.stereotype.Component;
+import uk.nhs.hee.tis.revalidation.integration.cdc.CdcMetrics;
 import uk.nhs.hee.tis.revalidation.integration.cdc.service.CdcConnectionService;
 import uk.nhs.hee.tis.revalidation.integration.entity.ConnectionLog;
+import uk.nhs.hee.tis.revalidation.integration.enums.CdcSource;
 
 /**
  * A component class to handle cdc connection log messages.
@@ -32,7 +34,8 @@ import uk.nhs.hee.tis.revalidation.integration.entity.ConnectionLog;
 @Component
 public class CdcConnectionMessageHandler extends CdcMessageHandler<ConnectionLog> {
 
-  public CdcConnectionMessageHandler(CdcConnectionService cdcConnectionService) {
-    super(cdcConnectionService);
+  public CdcConnectionMessageHandler(CdcConnectionService cdcConnectionService,
+      CdcMetrics cdcMetrics) {
+    super(cdcConnectionService, cdcMetrics, CdcSource.CONNECTION_LOG);
   }
 }
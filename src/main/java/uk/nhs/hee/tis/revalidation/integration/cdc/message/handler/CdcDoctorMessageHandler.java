@@ -22,14 +22,16 @@
 package uk.nhs.hee.tis.revalidation.integration.cdc.message.handler;
 
 import org.springframework.stereotype.Component;
+import uk.nhs.hee.tis.revalidation.integration.cdc.CdcMetrics;
 import uk.nhs.hee.tis.revalidation.integration.cdc.service.CdcDoctorService;
 import uk.nhs.hee.tis.revalidation.integration.entity.DoctorsForDB;
+import uk.nhs.hee.tis.revalidation.integration.enums.CdcSource;
 
 @Component
 public class CdcDoctorMessageHandler
     extends CdcMessageHandler<DoctorsForDB> {
 
-  public CdcDoctorMessageHandler(CdcDoctorService cdcDoctorService) {
-    super(cdcDoctorService);
+  public CdcDoctorMessageHandler(CdcDoctorService cdcDoctorService, CdcMetrics cdcMetrics) {
+    super(cdcDoctorService, cdcMetrics, CdcSource.DOCTOR);
   }
 }
@@ -22,8 +22,10 @@
 package uk.nhs.hee.tis.revalidation.integration.cdc.message.handler;
 
 import org.springframework.stereotype.Component;
+import uk.nhs.hee.tis.revalidation.integration.cdc.CdcMetrics;
 import uk.nhs.hee.tis.revalidation.integration.cdc.dto.CdcHiddenDiscrepancyDto;
 import uk.nhs.hee.tis.revalidation.integration.cdc.service.CdcHiddenDiscrepancyService;
+import uk.nhs.hee.tis.revalidation.integration.enums.CdcSource;
 
 /**
  * A component class to handle cdc hidden discrepancy messages.
@@ -32,7 +34,7 @@ import uk.nhs.hee.tis.revalidation.integration.cdc.service.CdcHiddenDiscrepancyS
 public class CdcHiddenDiscrepancyMessageHandler extends CdcMessageHandler<CdcHiddenDiscrepancyDto> {
 
   public CdcHiddenDiscrepancyMessageHandler(
-      CdcHiddenDiscrepancyService cdcHiddenDiscrepancyService) {
-    super(cdcHiddenDiscrepancyService);
+      CdcHiddenDiscrepancyService cdcHiddenDiscrepancyService, CdcMetrics cdcMetrics) {
+    super(cdcHiddenDiscrepancyService, cdcMetrics, CdcSource.HIDDEN_DISCREPANCY);
   }
 }
@@ -22,9 +22,18 @@
 package uk.nhs.hee.tis.revalidation.integration.cdc.message.handler;
 
 import com.mongodb.client.model.changestream.OperationType;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
 import javax.naming.OperationNotSupportedException;
+import lombok.extern.slf4j.Slf4j;
+import org.elasticsearch.ResourceNotFoundException;
+import uk.nhs.hee.tis.revalidation.integration.cdc.CdcMetrics;
 import uk.nhs.hee.tis.revalidation.integration.cdc.dto.CdcDocumentDto;
 import uk.nhs.hee.tis.revalidation.integration.cdc.service.CdcService;
+import uk.nhs.hee.tis.revalidation.integration.enums.CdcSource;
 import uk.nhs.hee.tis.revalidation.integration.message.MessageHandler;
 
 /**
@@ -32,26 +41,103 @@ import uk.nhs.hee.tis.revalidation.integration.message.MessageHandler;
  *
  * @param <T> the message type
  */
+@Slf4j
 public abstract class CdcMessageHandler<T> implements MessageHandler<CdcDocumentDto<T>> {
 
   CdcService<T> cdcService;
+  private final CdcMetrics cdcMetrics;
+  private final CdcSource source;
 
-  protected CdcMessageHandler(CdcService<T> cdcService) {
+  protected CdcMessageHandler(CdcService<T> cdcService, CdcMetrics cdcMetrics,
+      CdcSource source) {
     this.cdcService = cdcService;
+    this.cdcMetrics = cdcMetrics;
+    this.source = source;
   }
 
   @Override
   public void handleMessage(CdcDocumentDto<T> message) throws OperationNotSupportedException {
     final OperationType operation = OperationType.valueOf(message.getOperationType().toUpperCase());
-    switch (operation) {
-      case INSERT, REPLACE, UPDATE:
-        cdcService.upsertEntity(message.getFullDocument());
-        break;
-      case DELETE:
-        cdcService.deleteEntity(message.getDocumentKey().getId());
-        break;
-      default:
-        throw new OperationNotSupportedException("CDC operation not supported: " + operation);
+    final long start = System.nanoTime();
+    try {
+      switch (operation) {
+        case INSERT, REPLACE, UPDATE:
+          cdcService.upsertEntity(message.getFullDocument(), message.getClusterTime());
+          break;
+        case DELETE:
+          cdcService.deleteEntity(message.getDocumentKey().getId());
+          break;
+        default:
+          cdcMetrics.recordDiscarded(source, 1);
+          throw new OperationNotSupportedException("CDC operation not supported: " + operation);
+      }
+    } catch (RuntimeException e) {
+      cdcMetrics.recordFailed(source, 1);
+      throw e;
     }
+    cdcMetrics.recordHandled(source, operation, System.nanoTime() - start,
+        message.getClusterTime());
+  }
+
+  /**
+   * Handle a batch of messages. Consecutive inserts, replaces and updates are applied together,
+   * and every other operation is handled in its place in the batch. A delete of something no
+   * document holds cannot succeed when received again, so it is dropped.
+   *
+   * @param messages the messages, in the order they were received
+   * @return the messages which could not be handled and should be received again
+   */
+  public List<CdcDocumentDto<T>> handleMessages(List<CdcDocumentDto<T>> messages) {
+    List<CdcDocumentDto<T>> failed = new ArrayList<>();
+    List<CdcDocumentDto<T>> upserts = new ArrayList<>();
+    for (CdcDocumentDto<T> message : messages) {
+      try {
+        final OperationType operation =
+            OperationType.valueOf(message.getOperationType().toUpperCase());
+        if (operation == OperationType.INSERT || operation == OperationType.REPLACE
+            || operation == OperationType.UPDATE) {
+          upserts.add(message);
+          continue;
+        }
+        failed.addAll(upsertAll(upserts));
+        upserts.clear();
+        handleMessage(message);
+      } catch (OperationNotSupportedException e) {
+        log.error(e.getMessage(), e);
+      } catch (ResourceNotFoundException e) {
+        log.error("Dropping CDC message whose document does not exist: {}", message, e);
+      } catch (RuntimeException e) {
+        log.error("Failed to handle CDC message: {}", message, e);
+        failed.add(message);
+      }
+    }
+    failed.addAll(upsertAll(upserts));
+    return failed;
+  }
+
+  private List<CdcDocumentDto<T>> upsertAll(List<CdcDocumentDto<T>> upserts) {
+    if (upserts.isEmpty()) {
+      return List.of();
+    }
+    final long start = System.nanoTime();
+    Set<T> failedEntities = Collections.newSetFromMap(new IdentityHashMap<>());
+    failedEntities.addAll(cdcService.upsertEntities(
+        upserts.stream().map(CdcDocumentDto::getFullDocument).toList(),
+        upserts.stream().map(CdcDocumentDto::getClusterTime).toList()));
+    final long duration = System.nanoTime() - start;
+
+    List<CdcDocumentDto<T>> failed = new ArrayList<>();
+    for (CdcDocumentDto<T> message : upserts) {
+      if (failedEntities.contains(message.getFullDocument())) {
+        failed.add(message);
+      } else {
+        // The batch is written together, so each message is recorded with the batch duration.
+        cdcMetrics.recordHandled(source,
+            OperationType.valueOf(message.getOperationType().toUpperCase()), duration,
+            message.getClusterTime());
+      }
+    }
+    cdcMetrics.recordFailed(source, failed.size());
+    return failed;
   }
 }
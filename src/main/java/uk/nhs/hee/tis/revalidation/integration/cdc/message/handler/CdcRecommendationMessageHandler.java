@@ -22,14 +22,17 @@
 package uk.nhs.hee.tis.revalidation.integration.cdc.message.handler;
 
 import org.springframework.stereotype.Component;
+import uk.nhs.hee.tis.revalidation.integration.cdc.CdcMetrics;
 import uk.nhs.hee.tis.revalidation.integration.cdc.service.CdcRecommendationService;
 import uk.nhs.hee.tis.revalidation.integration.entity.Recommendation;
+import uk.nhs.hee.tis.revalidation.integration.enums.CdcSource;
 
 @Component
 public class CdcRecommendationMessageHandler
     extends CdcMessageHandler<Recommendation> {
 
-  public CdcRecommendationMessageHandler(CdcRecommendationService cdcRecommendationService) {
-    super(cdcRecommendationService);
+  public CdcRecommendationMessageHandler(CdcRecommendationService cdcRecommendationService,
+      CdcMetrics cdcMetrics) {
+    super(cdcRecommendationService, cdcMetrics, CdcSource.RECOMMENDATION);
   }
 }
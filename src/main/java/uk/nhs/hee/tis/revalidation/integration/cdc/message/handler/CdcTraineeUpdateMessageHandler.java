@@ -21,25 +21,45 @@
 
 package uk.nhs.hee.tis.revalidation.integration.cdc.message.handler;
 
+import com.mongodb.client.model.changestream.OperationType;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
+import uk.nhs.hee.tis.revalidation.integration.cdc.CdcMetrics;
 import uk.nhs.hee.tis.revalidation.integration.cdc.dto.ConnectionInfoDto;
 import uk.nhs.hee.tis.revalidation.integration.cdc.service.CdcTraineeUpdateService;
+import uk.nhs.hee.tis.revalidation.integration.enums.CdcSource;
 
 @Component
 @Slf4j
 public class CdcTraineeUpdateMessageHandler {
 
   private CdcTraineeUpdateService cdcTraineeUpdateService;
+  private final CdcMetrics cdcMetrics;
 
   public CdcTraineeUpdateMessageHandler(
-      CdcTraineeUpdateService cdcTraineeUpdateService
+      CdcTraineeUpdateService cdcTraineeUpdateService,
+      CdcMetrics cdcMetrics
   ) {
     this.cdcTraineeUpdateService = cdcTraineeUpdateService;
+    this.cdcMetrics = cdcMetrics;
   }
 
+  /**
+   * Apply a trainee update from TIS. TIS updates carry no cluster time, so only the time taken to
+   * handle them is recorded.
+   *
+   * @param message the updated connection information of the trainee
+   */
   public void handleMessage(ConnectionInfoDto message) {
-    cdcTraineeUpdateService.upsertEntity(message);
+    final long start = System.nanoTime();
+    try {
+      cdcTraineeUpdateService.upsertEntity(message);
+    } catch (RuntimeException e) {
+      cdcMetrics.recordFailed(CdcSource.TRAINEE_UPDATE, 1);
+      throw e;
+    }
+    cdcMetrics.recordHandled(CdcSource.TRAINEE_UPDATE, OperationType.UPDATE,
+        System.nanoTime() - start, null);
   }
 
 }
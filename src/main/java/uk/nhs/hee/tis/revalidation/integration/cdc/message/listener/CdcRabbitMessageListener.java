@@ -21,27 +21,95 @@
 
 package uk.nhs.hee.tis.revalidation.integration.cdc.message.listener;
 
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import org.springframework.amqp.AmqpRejectAndDontRequeueException;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
 import org.springframework.stereotype.Component;
+import org.springframework.util.concurrent.CompletableToListenableFutureAdapter;
+import org.springframework.util.concurrent.ListenableFuture;
+import uk.nhs.hee.tis.revalidation.integration.cdc.CdcMetrics;
 import uk.nhs.hee.tis.revalidation.integration.cdc.dto.ConnectionInfoDto;
+import uk.nhs.hee.tis.revalidation.integration.cdc.dto.TraineeNotesUpdateDto;
 import uk.nhs.hee.tis.revalidation.integration.cdc.message.handler.CdcTraineeUpdateMessageHandler;
+import uk.nhs.hee.tis.revalidation.integration.enums.CdcSource;
+import uk.nhs.hee.tis.revalidation.integration.message.DoctorLaneExecutor;
+import uk.nhs.hee.tis.revalidation.integration.sync.service.MasterDoctorNotesService;
 
 @Component
 public class CdcRabbitMessageListener {
 
   private final CdcTraineeUpdateMessageHandler cdcTraineeUpdateHandler;
+  private final DoctorLaneExecutor doctorLaneExecutor;
+  private final CdcMetrics cdcMetrics;
+  private final MasterDoctorNotesService notesService;
 
-  public CdcRabbitMessageListener(CdcTraineeUpdateMessageHandler cdcTraineeUpdateHandler) {
+  /**
+   * Create the listener for the updates published by TIS and core.
+   *
+   * @param cdcTraineeUpdateHandler the handler applying trainee updates
+   * @param doctorLaneExecutor      the executor keeping the updates of each doctor in order
+   * @param cdcMetrics              the metrics discarded messages are counted in
+   * @param notesService            the service maintaining the notes flag of each doctor
+   */
+  public CdcRabbitMessageListener(CdcTraineeUpdateMessageHandler cdcTraineeUpdateHandler,
+      DoctorLaneExecutor doctorLaneExecutor, CdcMetrics cdcMetrics,
+      MasterDoctorNotesService notesService) {
     this.cdcTraineeUpdateHandler = cdcTraineeUpdateHandler;
+    this.doctorLaneExecutor = doctorLaneExecutor;
+    this.cdcMetrics = cdcMetrics;
+    this.notesService = notesService;
   }
 
-  @RabbitListener(queues = "${app.rabbit.reval.queue.tcsdoctorinfo.updated.integration}")
-  public void getTraineeUpdateMessage(ConnectionInfoDto message) {
+  /**
+   * Apply a trainee update from TIS on the lane of the doctor. The lanes keep the updates of a
+   * doctor in the order they are dispatched, which is only the order they were published in while
+   * the queue has a single consumer, so the concurrency is left at one. The listener takes the
+   * next message while the update is applied, and the message is acknowledged once it completes.
+   *
+   * @param message the updated connection information of the trainee
+   * @return a future completed once the update has been applied
+   */
+  @RabbitListener(queues = "${app.rabbit.reval.queue.tcsdoctorinfo.updated.integration}",
+      concurrency = "${app.rabbit.reval.concurrency.tcsdoctorinfo.updated.integration:1}",
+      ackMode = "MANUAL")
+  public ListenableFuture<Void> getTraineeUpdateMessage(ConnectionInfoDto message) {
     if (message.getTcsPersonId() == null) {
-      throw new AmqpRejectAndDontRequeueException(
-          "Received update message from TIS with null tis personId");
+      cdcMetrics.recordDiscarded(CdcSource.TRAINEE_UPDATE, 1);
+      return rejected("Received update message from TIS with null tis personId");
     }
-    this.cdcTraineeUpdateHandler.handleMessage(message);
+    return new CompletableToListenableFutureAdapter<>(doctorLaneExecutor.submit(
+        DoctorLaneExecutor.doctorKey(message.getGmcReferenceNumber(), message.getTcsPersonId()),
+        () -> cdcTraineeUpdateHandler.handleMessage(message)));
+  }
+
+  /**
+   * Apply a change to the notes of a doctor from core on the lane of the doctor, keeping the
+   * notes flag of its masterdoctorindex documents up to date. The listener only starts when
+   * {@code app.rabbit.reval.traineenotes.enabled} is set, as the queue is not declared here.
+   *
+   * @param message the notes flag of the doctor
+   * @return a future completed once the notes flag has been written
+   */
+  @RabbitListener(queues = "${app.rabbit.reval.queue.traineenotes.updated.integration}",
+      autoStartup = "${app.rabbit.reval.traineenotes.enabled:false}", ackMode = "MANUAL")
+  public ListenableFuture<Void> getTraineeNotesUpdateMessage(TraineeNotesUpdateDto message) {
+    if (message.getGmcReferenceNumber() == null || message.getHasNotes() == null) {
+      cdcMetrics.recordDiscarded(CdcSource.TRAINEE_NOTES, 1);
+      return rejected("Received notes update message from core without a gmcId or notes flag");
+    }
+    return new CompletableToListenableFutureAdapter<>(doctorLaneExecutor.submit(
+        DoctorLaneExecutor.doctorKey(message.getGmcReferenceNumber(), null),
+        () -> notesService.updateHasNotes(
+            Map.of(message.getGmcReferenceNumber(), message.getHasNotes()))));
+  }
+
+  /**
+   * Reject a message without requeueing it. With manual acknowledgement a message is only
+   * rejected through the future, as an exception thrown by the listener leaves it unacknowledged.
+   */
+  private static ListenableFuture<Void> rejected(String reason) {
+    return new CompletableToListenableFutureAdapter<>(
+        CompletableFuture.failedFuture(new AmqpRejectAndDontRequeueException(reason)));
   }
 }
@@ -0,0 +1,260 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright 2026 Crown Copyright (NHS England)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package uk.nhs.hee.tis.revalidation.integration.cdc.message.listener;
+
+import com.amazonaws.services.sqs.AmazonSQSAsync;
+import com.amazonaws.services.sqs.model.DeleteMessageBatchRequestEntry;
+import com.amazonaws.services.sqs.model.DeleteMessageBatchResult;
+import com.amazonaws.services.sqs.model.Message;
+import com.amazonaws.services.sqs.model.ReceiveMessageRequest;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+import uk.nhs.hee.tis.revalidation.integration.cdc.dto.CdcDocumentDto;
+import uk.nhs.hee.tis.revalidation.integration.cdc.dto.CdcHiddenDiscrepancyDto;
+import uk.nhs.hee.tis.revalidation.integration.cdc.message.handler.CdcConnectionMessageHandler;
+import uk.nhs.hee.tis.revalidation.integration.cdc.message.handler.CdcDoctorMessageHandler;
+import uk.nhs.hee.tis.revalidation.integration.cdc.message.handler.CdcHiddenDiscrepancyMessageHandler;
+import uk.nhs.hee.tis.revalidation.integration.cdc.message.handler.CdcMessageHandler;
+import uk.nhs.hee.tis.revalidation.integration.cdc.message.handler.CdcRecommendationMessageHandler;
+import uk.nhs.hee.tis.revalidation.integration.cdc.message.util.CdcMessageReader;
+import uk.nhs.hee.tis.revalidation.integration.entity.ConnectionLog;
+import uk.nhs.hee.tis.revalidation.integration.entity.DoctorsForDB;
+import uk.nhs.hee.tis.revalidation.integration.entity.Recommendation;
+import uk.nhs.hee.tis.revalidation.integration.message.DoctorLaneExecutor;
+
+/**
+ * Consumes the CDC queues in batches instead of one message at a time.
+ *
+ * <p>Every queue is polled by one poller by default, receiving up to ten messages at a time, so
+ * the changes of a doctor are applied in the order they were received. More pollers per queue
+ * raise its throughput, but may apply changes of a doctor received in different polls out of
+ * order. A batch is applied with one lookup and one bulk write while the lanes of its doctors are
+ * held. A message is only deleted from its queue once its own change has been written or cannot
+ * ever be, so failed changes are received again after the visibility timeout. Replaces {@link CdcSqsMessageListener} when
+ * {@code app.cdc.sqs.batch.enabled} is set.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "app.cdc.sqs.batch.enabled", havingValue = "true")
+public class CdcSqsBatchMessageListener implements SmartLifecycle {
+
+  static final int MAX_MESSAGES_PER_POLL = 10;
+  private static final long POLL_FAILURE_BACKOFF_MS = 1000;
+
+  private final AmazonSQSAsync amazonSqs;
+  private final DoctorLaneExecutor doctorLaneExecutor;
+  private final int pollersPerQueue;
+  private final int waitTimeSeconds;
+  private final List<CdcQueue<?>> queues = new ArrayList<>();
+
+  private ExecutorService pollers;
+  private volatile boolean running;
+
+  /**
+   * Create the batch listener.
+   *
+   * @param amazonSqs                          the client the queues are polled with
+   * @param mapper                             the mapper converting cdc json to CdcDocuments
+   * @param doctorLaneExecutor                 the executor ordering the changes of each doctor
+   * @param cdcRecommendationMessageHandler    the handler for recommendation messages
+   * @param cdcDoctorMessageHandler            the handler for doctor messages
+   * @param cdcConnectionMessageHandler        the handler for connection log messages
+   * @param cdcHiddenDiscrepancyMessageHandler the handler for hidden discrepancy messages
+   * @param recommendationQueue                the recommendation queue name or url
+   * @param doctorQueue                        the doctor queue name or url
+   * @param connectionLogQueue                 the connection log queue name or url
+   * @param hiddenDiscrepancyQueue             the hidden discrepancy queue name or url
+   * @param pollersPerQueue                    the number of pollers receiving from each queue
+   * @param waitTimeSeconds                    the long polling wait of each receive
+   */
+  public CdcSqsBatchMessageListener(AmazonSQSAsync amazonSqs, ObjectMapper mapper,
+      DoctorLaneExecutor doctorLaneExecutor,
+      CdcRecommendationMessageHandler cdcRecommendationMessageHandler,
+      CdcDoctorMessageHandler cdcDoctorMessageHandler,
+      CdcConnectionMessageHandler cdcConnectionMessageHandler,
+      CdcHiddenDiscrepancyMessageHandler cdcHiddenDiscrepancyMessageHandler,
+      @Value("${cloud.aws.end-point.cdc.recommendation}") String recommendationQueue,
+      @Value("${cloud.aws.end-point.cdc.doctor}") String doctorQueue,
+      @Value("${cloud.aws.end-point.cdc.connectionlog}") String connectionLogQueue,
+      @Value("${cloud.aws.end-point.cdc.hiddendiscrepancy}") String hiddenDiscrepancyQueue,
+      @Value("${app.cdc.sqs.batch.pollers:1}") int pollersPerQueue,
+      @Value("${app.cdc.sqs.batch.wait-time-seconds:20}") int waitTimeSeconds) {
+    this.amazonSqs = amazonSqs;
+    this.doctorLaneExecutor = doctorLaneExecutor;
+    this.pollersPerQueue = pollersPerQueue;
+    this.waitTimeSeconds = waitTimeSeconds;
+
+    addQueue(recommendationQueue, CdcMessageReader.of(mapper, Recommendation.class),
+        cdcRecommendationMessageHandler, Recommendation::getGmcNumber);
+    addQueue(doctorQueue, CdcMessageReader.of(mapper, DoctorsForDB.class),
+        cdcDoctorMessageHandler, DoctorsForDB::getGmcReferenceNumber);
+    addQueue(connectionLogQueue, CdcMessageReader.of(mapper, ConnectionLog.class),
+        cdcConnectionMessageHandler, ConnectionLog::getGmcId);
+    addQueue(hiddenDiscrepancyQueue, CdcMessageReader.of(mapper, CdcHiddenDiscrepancyDto.class),
+        cdcHiddenDiscrepancyMessageHandler, CdcHiddenDiscrepancyDto::getGmcId);
+  }
+
+  @Override
+  public synchronized void start() {
+    if (running) {
+      return;
+    }
+    AtomicInteger pollerNumber = new AtomicInteger();
+    pollers = Executors.newFixedThreadPool(Math.max(1, queues.size() * pollersPerQueue),
+        runnable -> new Thread(runnable, "cdc-sqs-poller-" + pollerNumber.getAndIncrement()));
+    running = true;
+    for (CdcQueue<?> queue : queues) {
+      String queueUrl = resolveQueueUrl(queue.name());
+      log.info("Receiving CDC messages in batches from {} with {} pollers", queue.name(),
+          pollersPerQueue);
+      for (int i = 0; i < pollersPerQueue; i++) {
+        pollers.execute(() -> poll(queue, queueUrl));
+      }
+    }
+  }
+
+  @Override
+  public synchronized void stop() {
+    running = false;
+    if (pollers != null) {
+      pollers.shutdown();
+      try {
+        if (!pollers.awaitTermination(waitTimeSeconds + 10L, TimeUnit.SECONDS)) {
+          log.warn("CDC pollers did not finish their batches before shutdown");
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  @Override
+  public boolean isRunning() {
+    return running;
+  }
+
+  private <T> void addQueue(String name, CdcMessageReader<T> reader,
+      CdcMessageHandler<T> handler, Function<T, String> gmcNumber) {
+    if (name == null || name.isBlank()) {
+      log.warn("No queue configured for {}, its CDC messages will not be received",
+          handler.getClass().getSimpleName());
+      return;
+    }
+    queues.add(new CdcQueue<>(name, reader, handler, gmcNumber));
+  }
+
+  private String resolveQueueUrl(String queue) {
+    return queue.startsWith("http") ? queue : amazonSqs.getQueueUrl(queue).getQueueUrl();
+  }
+
+  private <T> void poll(CdcQueue<T> queue, String queueUrl) {
+    ReceiveMessageRequest request = new ReceiveMessageRequest(queueUrl)
+        .withMaxNumberOfMessages(MAX_MESSAGES_PER_POLL)
+        .withWaitTimeSeconds(waitTimeSeconds);
+    while (running) {
+      try {
+        List<Message> messages = amazonSqs.receiveMessage(request).getMessages();
+        if (!messages.isEmpty()) {
+          handleBatch(queue, queueUrl, messages);
+        }
+      } catch (RuntimeException e) {
+        log.error("Failed to receive CDC messages from {}", queue.name(), e);
+        if (!backOff()) {
+          return;
+        }
+      }
+    }
+  }
+
+  /**
+   * Apply a batch of messages and delete the ones whose change was written.
+   *
+   * @param queue    the queue the messages were received from
+   * @param queueUrl the url of the queue
+   * @param messages the received messages, in the order they were received
+   */
+  <T> void handleBatch(CdcQueue<T> queue, String queueUrl, List<Message> messages) {
+    Map<CdcDocumentDto<T>, Message> messagesByDocument = new IdentityHashMap<>();
+    List<CdcDocumentDto<T>> documents = new ArrayList<>();
+    for (Message message : messages) {
+      try {
+        CdcDocumentDto<T> document = queue.reader().read(message.getBody());
+        documents.add(document);
+        messagesByDocument.put(document, message);
+      } catch (IOException e) {
+        log.error("Failed to read CDC message from {}: {}", queue.name(), message.getBody(), e);
+      }
+    }
+
+    Set<CdcDocumentDto<T>> failed = Collections.synchronizedSet(
+        Collections.newSetFromMap(new IdentityHashMap<>()));
+    doctorLaneExecutor.executeAll(documents,
+        document -> CdcSqsMessageListener.doctorKey(document, queue.gmcNumber()),
+        part -> failed.addAll(queue.handler().handleMessages(part)));
+
+    List<DeleteMessageBatchRequestEntry> entries = new ArrayList<>();
+    for (CdcDocumentDto<T> document : documents) {
+      if (!failed.contains(document)) {
+        entries.add(new DeleteMessageBatchRequestEntry(String.valueOf(entries.size()),
+            messagesByDocument.get(document).getReceiptHandle()));
+      }
+    }
+    if (!entries.isEmpty()) {
+      DeleteMessageBatchResult result = amazonSqs.deleteMessageBatch(queueUrl, entries);
+      result.getFailed().forEach(entry -> log.warn(
+          "Failed to delete handled CDC message from {}, it will be received again: {}",
+          queue.name(), entry.getMessage()));
+    }
+  }
+
+  private boolean backOff() {
+    try {
+      Thread.sleep(POLL_FAILURE_BACKOFF_MS);
+      return true;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
+    }
+  }
+
+  record CdcQueue<T>(String name, CdcMessageReader<T> reader,
+      CdcMessageHandler<T> handler, Function<T, String> gmcNumber) {
+
+  }
+}
@@ -21,13 +21,17 @@
 
 package uk.nhs.hee.tis.revalidation.integration.cdc.message.listener;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.awspring.cloud.messaging.listener.Acknowledgment;
+import io.awspring.cloud.messaging.listener.SqsMessageDeletionPolicy;
 import io.awspring.cloud.messaging.listener.annotation.SqsListener;
 import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.function.Predicate;
 import javax.naming.OperationNotSupportedException;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Component;
 import uk.nhs.hee.tis.revalidation.integration.cdc.dto.CdcDocumentDto;
 import uk.nhs.hee.tis.revalidation.integration.cdc.dto.CdcHiddenDiscrepancyDto;
@@ -35,22 +39,35 @@ import uk.nhs.hee.tis.revalidation.integration.cdc.message.handler.CdcConnection
 import uk.nhs.hee.tis.revalidation.integration.cdc.message.handler.CdcDoctorMessageHandler;
 import uk.nhs.hee.tis.revalidation.integration.cdc.message.handler.CdcHiddenDiscrepancyMessageHandler;
 import uk.nhs.hee.tis.revalidation.integration.cdc.message.handler.CdcRecommendationMessageHandler;
+import uk.nhs.hee.tis.revalidation.integration.cdc.message.util.CdcMessageReader;
 import uk.nhs.hee.tis.revalidation.integration.entity.ConnectionLog;
 import uk.nhs.hee.tis.revalidation.integration.entity.DoctorsForDB;
 import uk.nhs.hee.tis.revalidation.integration.entity.Recommendation;
+import uk.nhs.hee.tis.revalidation.integration.message.DoctorLaneExecutor;
 
 /**
- * A class to listen all the log messages.
+ * A class to listen all the log messages. Messages are handled on the lane of the doctor they
+ * change, so changes to the same doctor dispatched one after the other are applied in order, and
+ * are deleted from their queue once their change has been handled.
  */
 @Slf4j
 @Component
+@ConditionalOnProperty(name = "app.cdc.sqs.batch.enabled", havingValue = "false",
+    matchIfMissing = true)
 public class CdcSqsMessageListener {
 
+  private static final Predicate<Throwable> UNSUPPORTED =
+      OperationNotSupportedException.class::isInstance;
+
   private final CdcRecommendationMessageHandler cdcRecommendationMessageHandler;
   private final CdcDoctorMessageHandler cdcDoctorMessageHandler;
   private final CdcConnectionMessageHandler cdcConnectionMessageHandler;
   private final CdcHiddenDiscrepancyMessageHandler cdcHiddenDiscrepancyMessageHandler;
-  private final ObjectMapper mapper;
+  private final CdcMessageReader<Recommendation> recommendationReader;
+  private final CdcMessageReader<DoctorsForDB> doctorReader;
+  private final CdcMessageReader<ConnectionLog> connectionLogReader;
+  private final CdcMessageReader<CdcHiddenDiscrepancyDto> hiddenDiscrepancyReader;
+  private final DoctorLaneExecutor doctorLaneExecutor;
 
   /**
    * Create a Listener.
@@ -60,87 +77,129 @@ public class CdcSqsMessageListener {
    * @param cdcDoctorMessageHandler         The handler class that will apply business logic to
    *                                        doctor messages
    * @param mapper                          A mapper for converting cdc json to a CDCDocument
+   * @param doctorLaneExecutor              The executor ordering the changes of each doctor
    */
   public CdcSqsMessageListener(
       CdcRecommendationMessageHandler cdcRecommendationMessageHandler,
       CdcDoctorMessageHandler cdcDoctorMessageHandler,
       CdcConnectionMessageHandler cdcConnectionMessageHandler,
       CdcHiddenDiscrepancyMessageHandler cdcHiddenDiscrepancyMessageHandler,
-      ObjectMapper mapper) {
+      ObjectMapper mapper, DoctorLaneExecutor doctorLaneExecutor) {
     this.cdcRecommendationMessageHandler = cdcRecommendationMessageHandler;
     this.cdcDoctorMessageHandler = cdcDoctorMessageHandler;
     this.cdcConnectionMessageHandler = cdcConnectionMessageHandler;
     this.cdcHiddenDiscrepancyMessageHandler = cdcHiddenDiscrepancyMessageHandler;
-    this.mapper = mapper;
+    this.recommendationReader = CdcMessageReader.of(mapper, Recommendation.class);
+    this.doctorReader = CdcMessageReader.of(mapper, DoctorsForDB.class);
+    this.connectionLogReader = CdcMessageReader.of(mapper, ConnectionLog.class);
+    this.hiddenDiscrepancyReader = CdcMessageReader.of(mapper, CdcHiddenDiscrepancyDto.class);
+    this.doctorLaneExecutor = doctorLaneExecutor;
   }
 
   /**
    * Get recommendation cdc message which is a json string.
    *
-   * @param message containing change data for recommendation
+   * @param message        containing change data for recommendation
+   * @param acknowledgment deletes the message once its change has been handled
    */
-  @SqsListener("${cloud.aws.end-point.cdc.recommendation}")
-  public void getRecommendationMessage(String message) throws IOException {
-    try {
-      CdcDocumentDto<Recommendation> cdcDocument =
-          mapper.readValue(message, new TypeReference<>() {
-          });
-      cdcRecommendationMessageHandler.handleMessage(cdcDocument);
-    } catch (OperationNotSupportedException e) {
-      log.error(e.getMessage(), e);
-    }
+  @SqsListener(value = "${cloud.aws.end-point.cdc.recommendation}",
+      deletionPolicy = SqsMessageDeletionPolicy.NEVER)
+  public void getRecommendationMessage(String message, Acknowledgment acknowledgment)
+      throws IOException {
+    CdcDocumentDto<Recommendation> cdcDocument = recommendationReader.read(message);
+    acknowledgeWhenHandled(message, acknowledgment, UNSUPPORTED,
+        doctorLaneExecutor.submit(doctorKey(cdcDocument, Recommendation::getGmcNumber),
+            () -> cdcRecommendationMessageHandler.handleMessage(cdcDocument)));
   }
 
   /**
    * Get doctor cdc message which is a json string.
    *
-   * @param message containing change data for doctorsForDb
+   * @param message        containing change data for doctorsForDb
+   * @param acknowledgment deletes the message once its change has been handled
    */
-  @SqsListener("${cloud.aws.end-point.cdc.doctor}")
-  public void getDoctorMessage(String message) throws IOException {
-    try {
-      CdcDocumentDto<DoctorsForDB> cdcDocument =
-          mapper.readValue(message, new TypeReference<>() {
-          });
-      cdcDoctorMessageHandler.handleMessage(cdcDocument);
-    } catch (OperationNotSupportedException e) {
-      log.error(e.getMessage(), e);
-    }
+  @SqsListener(value = "${cloud.aws.end-point.cdc.doctor}",
+      deletionPolicy = SqsMessageDeletionPolicy.NEVER)
+  public void getDoctorMessage(String message, Acknowledgment acknowledgment)
+      throws IOException {
+    CdcDocumentDto<DoctorsForDB> cdcDocument = doctorReader.read(message);
+    acknowledgeWhenHandled(message, acknowledgment, UNSUPPORTED,
+        doctorLaneExecutor.submit(doctorKey(cdcDocument, DoctorsForDB::getGmcReferenceNumber),
+            () -> cdcDoctorMessageHandler.handleMessage(cdcDocument)));
   }
 
   /**
    * Get connection log cdc message which is a json string.
    *
-   * @param message containing change data for connectionLog
+   * @param message        containing change data for connectionLog
+   * @param acknowledgment deletes the message once its change has been handled
    */
-  @SqsListener("${cloud.aws.end-point.cdc.connectionlog}")
-  public void getConnectionMessage(String message) throws IOException {
-    try {
-      CdcDocumentDto<ConnectionLog> cdcDocument =
-          mapper.readValue(message, new TypeReference<>() {
-          });
-      cdcConnectionMessageHandler.handleMessage(cdcDocument);
-    } catch (OperationNotSupportedException e) {
-      log.error(e.getMessage(), e);
-    }
+  @SqsListener(value = "${cloud.aws.end-point.cdc.connectionlog}",
+      deletionPolicy = SqsMessageDeletionPolicy.NEVER)
+  public void getConnectionMessage(String message, Acknowledgment acknowledgment)
+      throws IOException {
+    CdcDocumentDto<ConnectionLog> cdcDocument = connectionLogReader.read(message);
+    acknowledgeWhenHandled(message, acknowledgment, UNSUPPORTED,
+        doctorLaneExecutor.submit(doctorKey(cdcDocument, ConnectionLog::getGmcId),
+            () -> cdcConnectionMessageHandler.handleMessage(cdcDocument)));
   }
 
   /**
-   * Get hidden discrepancy cdc message which is a json string.
+   * Get hidden discrepancy cdc message which is a json string. A hidden discrepancy that cannot
+   * be applied is dropped.
    *
-   * @param message containing change data for a hiddenDiscrepancy
+   * @param message        containing change data for a hiddenDiscrepancy
+   * @param acknowledgment deletes the message once its change has been handled
    */
-  @SqsListener("${cloud.aws.end-point.cdc.hiddendiscrepancy}")
-  public void getHiddenDiscrepancyMessage(String message) throws IOException {
+  @SqsListener(value = "${cloud.aws.end-point.cdc.hiddendiscrepancy}",
+      deletionPolicy = SqsMessageDeletionPolicy.NEVER)
+  public void getHiddenDiscrepancyMessage(String message, Acknowledgment acknowledgment) {
+    CdcDocumentDto<CdcHiddenDiscrepancyDto> cdcDocument;
     try {
-      CdcDocumentDto<CdcHiddenDiscrepancyDto> cdcDocument =
-          mapper.readValue(message, new TypeReference<>() {
-          });
-      cdcHiddenDiscrepancyMessageHandler.handleMessage(cdcDocument);
-    } catch (OperationNotSupportedException e) {
-      log.error(e.getMessage(), e);
-    } catch (Exception e) {
+      cdcDocument = hiddenDiscrepancyReader.read(message);
+    } catch (IOException e) {
       log.error("Failed to handle hidden discrepancy: {}", message, e);
+      acknowledgment.acknowledge();
+      return;
     }
+    acknowledgeWhenHandled(message, acknowledgment, failure -> true,
+        doctorLaneExecutor.submit(doctorKey(cdcDocument, CdcHiddenDiscrepancyDto::getGmcId),
+            () -> cdcHiddenDiscrepancyMessageHandler.handleMessage(cdcDocument)));
+  }
+
+  /**
+   * Delete a message once its change has been handled on the lane of its doctor, without holding
+   * the listener thread. A message whose change failed is received again after the visibility
+   * timeout, unless the failure is one the change is dropped for.
+   */
+  private static void acknowledgeWhenHandled(String message, Acknowledgment acknowledgment,
+      Predicate<Throwable> dropped, CompletableFuture<Void> handled) {
+    handled.whenComplete((result, failure) -> {
+      if (failure == null) {
+        acknowledgment.acknowledge();
+      } else if (dropped.test(failure)) {
+        log.error("Dropping CDC message that cannot be handled: {}", message, failure);
+        acknowledgment.acknowledge();
+      } else {
+        log.error("Failed to handle CDC message, it will be received again: {}", message,
+            failure);
+      }
+    });
+  }
+
+  /**
+   * Build the key of the doctor a CDC document changes.
+   *
+   * @param cdcDocument the CDC document
+   * @param gmcNumber   reads the GMC number of the full document
+   * @param <T>         the type of the full document
+   * @return the doctor key, or null when the doctor is not known, as for deletes which carry no
+   *     full document. A batch runs such a document apart from the documents of every doctor.
+   */
+  static <T> String doctorKey(CdcDocumentDto<T> cdcDocument,
+      Function<T, String> gmcNumber) {
+    T fullDocument = cdcDocument.getFullDocument();
+    return fullDocument == null ? null
+        : DoctorLaneExecutor.doctorKey(gmcNumber.apply(fullDocument), null);
   }
 }
@@ -0,0 +1,80 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright 2026 Crown Copyright (NHS England)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package uk.nhs.hee.tis.revalidation.integration.cdc.message.util;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonNode;
+import java.io.IOException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A custom deserializer to read the cluster time of a cdc message as a single comparable long.
+ *
+ * <p>The cluster time is a BSON timestamp of seconds since the epoch and an ordinal within that
+ * second, received as {@code {"$timestamp": {"t": 1746481690, "i": 1}}} or as
+ * {@code "Timestamp(1746481690, 1)"}. It is read into the long the timestamp is stored as, the
+ * seconds in the high 32 bits and the ordinal in the low 32 bits, so later changes always have
+ * larger values. A cluster time in any other shape is read as null.
+ */
+public class CdcClusterTimeDeserializer extends JsonDeserializer<Long> {
+
+  private static final Pattern TIMESTAMP_STRING =
+      Pattern.compile("Timestamp\\(\\s*(\\d+)\\s*,\\s*(\\d+)\\s*\\)");
+
+  @Override
+  public Long deserialize(JsonParser p, DeserializationContext ctx)
+      throws IOException {
+
+    JsonNode node = p.getCodec().readTree(p);
+
+    if (node.isIntegralNumber()) {
+      return node.asLong();
+    }
+    if (node.isTextual()) {
+      Matcher matcher = TIMESTAMP_STRING.matcher(node.asText());
+      return matcher.matches()
+          ? toLong(Long.parseLong(matcher.group(1)), Long.parseLong(matcher.group(2))) : null;
+    }
+    JsonNode timestamp = node.get("$timestamp");
+    if (timestamp != null && timestamp.hasNonNull("t") && timestamp.hasNonNull("i")) {
+      return toLong(timestamp.get("t").asLong(), timestamp.get("i").asLong());
+    }
+    return null;
+  }
+
+  static long toLong(long seconds, long ordinal) {
+    return (seconds << 32) | (ordinal & 0xFFFFFFFFL);
+  }
+
+  /**
+   * Get the time of a change from the long its cluster time was read into.
+   *
+   * @param clusterTime the cluster time read by this deserializer
+   * @return the seconds since the epoch of the change
+   */
+  public static long toEpochSecond(long clusterTime) {
+    return clusterTime >>> 32;
+  }
+}
@@ -21,13 +21,10 @@
 
 package uk.nhs.hee.tis.revalidation.integration.cdc.message.util;
 
-import static java.time.format.DateTimeFormatter.ISO_DATE_TIME;
-
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.DeserializationContext;
 import com.fasterxml.jackson.databind.JsonDeserializer;
-import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.datatype.jsr310.deser.LocalDateDeserializer;
 import java.io.IOException;
 import java.time.LocalDate;
@@ -36,6 +33,10 @@ import java.time.format.DateTimeParseException;
 
 /**
  * Date deserializer for deserializing dates for cdc messages.
+ *
+ * <p>Accepts {@code {"$date": "2025-04-29T00:00:00Z"}} objects and {@code yyyy-MM-dd HH:mm:ss}
+ * or {@code yyyy-MM-dd} strings. These layouts are parsed without throwing, anything
+ * else is left to the formatters.
  */
 public class CdcDateDeserializer extends JsonDeserializer<LocalDate> {
 
@@ -55,13 +56,16 @@ public class CdcDateDeserializer extends JsonDeserializer<LocalDate> {
     try {
       JsonToken token = p.getCurrentToken();
       if (token == JsonToken.START_OBJECT) {
-        JsonNode node = p.readValueAsTree();
-        String dateStr = node.get("$date").asText();
-        return LocalDate.parse(dateStr, ISO_DATE_TIME);
-      } else {
-        String dateStr = p.getText();
-        return LocalDate.parse(dateStr, CDC_DATE_FORMAT);
+        return CdcDateParser.readDateField(p).toLocalDate();
+      }
+      if (token == JsonToken.VALUE_STRING) {
+        LocalDate parsed = CdcDateParser.parseDate(p.getTextCharacters(),
+            p.getTextOffset(), p.getTextLength());
+        if (parsed != null) {
+          return parsed;
+        }
       }
+      return LocalDate.parse(p.getText(), CDC_DATE_FORMAT);
     } catch (DateTimeParseException e) {
       return localDateDeserializer.deserialize(p, ctx);
     }
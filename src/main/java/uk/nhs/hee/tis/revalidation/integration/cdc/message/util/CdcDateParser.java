@@ -0,0 +1,221 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright 2026 Crown Copyright (NHS England)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package uk.nhs.hee.tis.revalidation.integration.cdc.message.util;
+
+import static java.time.format.DateTimeFormatter.ISO_DATE_TIME;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Parses the date layouts received in cdc messages straight from the characters of a JSON token.
+ *
+ * <p>Each parse method only accepts the common shape of its layout and returns null for anything
+ * else, including invalid dates and times, without throwing. The deserializers then fall back to
+ * their {@code DateTimeFormatter}, which keeps the result of unusual input unchanged.
+ */
+final class CdcDateParser {
+
+  static final String DATE_FIELD = "$date";
+
+  private static final int DATE_LENGTH = 10;
+  private static final int MAX_FRACTION_DIGITS = 9;
+  private static final int MAX_OFFSET_HOURS = 18;
+
+  private CdcDateParser() {
+  }
+
+  /**
+   * Parse a {@code yyyy-MM-dd} date, or the date of a {@code yyyy-MM-dd HH:mm:ss} date time.
+   *
+   * @param buf    the characters holding the text
+   * @param offset the offset of the text
+   * @param length the length of the text
+   * @return the date, or null if the text has another layout or is not valid
+   */
+  static LocalDate parseDate(char[] buf, int offset, int length) {
+    if (length == DATE_LENGTH) {
+      return parseLocalDate(buf, offset);
+    }
+    if (length == 19 && buf[offset + DATE_LENGTH] == ' '
+        && parseTime(buf, offset + 11, true) != null) {
+      return parseLocalDate(buf, offset);
+    }
+    return null;
+  }
+
+  /**
+   * Parse a {@code yyyy-MM-dd'T'HH:mm:ss.SSS} date time.
+   *
+   * @param buf    the characters holding the text
+   * @param offset the offset of the text
+   * @param length the length of the text
+   * @return the date time, or null if the text has another layout or is not valid
+   */
+  static LocalDateTime parseMillisDateTime(char[] buf, int offset, int length) {
+    if (length != 23 || buf[offset + 19] != '.' || !isDigit(buf[offset + 22])) {
+      return null;
+    }
+    return parseIsoDateTime(buf, offset, length);
+  }
+
+  /**
+   * Parse the local date time of an ISO date time with an optional offset, such as
+   * {@code 2025-04-29T00:00:54.956Z}. The offset is ignored, as it is by
+   * {@code LocalDateTime.parse(text, ISO_DATE_TIME)}.
+   *
+   * @param buf    the characters holding the text
+   * @param offset the offset of the text
+   * @param length the length of the text
+   * @return the date time, or null if the text has another layout or is not valid
+   */
+  static LocalDateTime parseIsoDateTime(char[] buf, int offset, int length) {
+    int end = offset + length;
+    if (length < 16 || buf[offset + DATE_LENGTH] != 'T') {
+      return null;
+    }
+    LocalDate date = parseLocalDate(buf, offset);
+    LocalTime time = parseTime(buf, offset + 11, false);
+    if (date == null || time == null) {
+      return null;
+    }
+    int i = offset + 16;
+    int second = 0;
+    int nano = 0;
+    if (i < end && buf[i] == ':') {
+      second = i + 3 <= end ? twoDigits(buf, i + 1) : -1;
+      if (second < 0 || second > 59) {
+        return null;
+      }
+      i += 3;
+      if (i < end && buf[i] == '.') {
+        int digits = 0;
+        for (i++; i < end && isDigit(buf[i]) && digits < MAX_FRACTION_DIGITS; i++, digits++) {
+          nano = nano * 10 + buf[i] - '0';
+        }
+        if (digits == 0) {
+          return null;
+        }
+        for (; digits < MAX_FRACTION_DIGITS; digits++) {
+          nano *= 10;
+        }
+      }
+    }
+    if (i < end && !isOffset(buf, i, end)) {
+      return null;
+    }
+    return LocalDateTime.of(date,
+        LocalTime.of(time.getHour(), time.getMinute(), second, nano));
+  }
+
+  /**
+   * Read a {@code {"$date": ...}} object, leaving the parser on its END_OBJECT token.
+   *
+   * @param p the parser, on the START_OBJECT token of the object
+   * @return the local date time of the date
+   * @throws IOException            if the object has no date
+   * @throws DateTimeParseException if the date is not an ISO date time
+   */
+  static LocalDateTime readDateField(JsonParser p) throws IOException {
+    boolean found = false;
+    LocalDateTime dateTime = null;
+    String text = null;
+    while (p.nextToken() == JsonToken.FIELD_NAME) {
+      String field = p.getCurrentName();
+      JsonToken value = p.nextToken();
+      if (DATE_FIELD.equals(field)) {
+        found = true;
+        if (value.isScalarValue()) {
+          dateTime = parseIsoDateTime(p.getTextCharacters(), p.getTextOffset(),
+              p.getTextLength());
+          text = dateTime == null ? p.getText() : null;
+        } else {
+          dateTime = null;
+          text = "";
+        }
+      }
+      p.skipChildren();
+    }
+    if (!found) {
+      throw JsonMappingException.from(p, "Expected a " + DATE_FIELD + " field in the date");
+    }
+    // Any other layout is parsed once the whole object is read, so a failure can fall back.
+    return dateTime != null ? dateTime : LocalDateTime.parse(text, ISO_DATE_TIME);
+  }
+
+  private static LocalDate parseLocalDate(char[] buf, int offset) {
+    int century = twoDigits(buf, offset);
+    int yearOfCentury = twoDigits(buf, offset + 2);
+    int year = century * 100 + yearOfCentury;
+    int month = twoDigits(buf, offset + 5);
+    int day = twoDigits(buf, offset + 8);
+    // Year zero is left to the formatters, as yyyy patterns do not accept it.
+    if (century < 0 || yearOfCentury < 0 || year == 0 || month < 1 || month > 12 || day < 1
+        || buf[offset + 4] != '-' || buf[offset + 7] != '-') {
+      return null;
+    }
+    if (day > 28 && day > YearMonth.of(year, month).lengthOfMonth()) {
+      return null;
+    }
+    return LocalDate.of(year, month, day);
+  }
+
+  private static LocalTime parseTime(char[] buf, int offset, boolean withSeconds) {
+    int hour = twoDigits(buf, offset);
+    int minute = twoDigits(buf, offset + 3);
+    int second = withSeconds ? twoDigits(buf, offset + 6) : 0;
+    if (hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 59
+        || buf[offset + 2] != ':' || (withSeconds && buf[offset + 5] != ':')) {
+      return null;
+    }
+    return LocalTime.of(hour, minute, second);
+  }
+
+  private static boolean isOffset(char[] buf, int i, int end) {
+    if (buf[i] == 'Z') {
+      return i + 1 == end;
+    }
+    if ((buf[i] != '+' && buf[i] != '-') || i + 6 != end || buf[i + 3] != ':') {
+      return false;
+    }
+    int hours = twoDigits(buf, i + 1);
+    int minutes = twoDigits(buf, i + 4);
+    return hours >= 0 && hours <= MAX_OFFSET_HOURS && minutes >= 0 && minutes <= 59;
+  }
+
+  private static int twoDigits(char[] buf, int offset) {
+    char tens = buf[offset];
+    char units = buf[offset + 1];
+    return isDigit(tens) && isDigit(units) ? (tens - '0') * 10 + units - '0' : -1;
+  }
+
+  private static boolean isDigit(char c) {
+    return c >= '0' && c <= '9';
+  }
+}
@@ -21,13 +21,10 @@
 
 package uk.nhs.hee.tis.revalidation.integration.cdc.message.util;
 
-import static java.time.format.DateTimeFormatter.ISO_DATE_TIME;
-
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.DeserializationContext;
 import com.fasterxml.jackson.databind.JsonDeserializer;
-import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.datatype.jsr310.deser.LocalDateTimeDeserializer;
 import java.io.IOException;
 import java.time.LocalDateTime;
@@ -36,6 +33,10 @@ import java.time.format.DateTimeParseException;
 
 /**
  * Date deserializer for deserializing local datetimes for cdc messages.
+ *
+ * <p>Accepts {@code {"$date": "2025-10-10T00:00:00.000Z"}} objects and
+ * {@code yyyy-MM-dd'T'HH:mm:ss.SSS} strings. These layouts are parsed without throwing, anything
+ * else is left to the formatters.
  */
 public class CdcLocalDateTimeDeserializer extends JsonDeserializer<LocalDateTime> {
 
@@ -55,13 +56,16 @@ public class CdcLocalDateTimeDeserializer extends JsonDeserializer<LocalDateTime
     try {
       JsonToken token = p.getCurrentToken();
       if (token == JsonToken.START_OBJECT) {
-        JsonNode node = p.readValueAsTree();
-        String dateStr = node.get("$date").asText();
-        return LocalDateTime.parse(dateStr, ISO_DATE_TIME);
-      } else {
-        String dateStr = p.getText();
-        return LocalDateTime.parse(dateStr, CDC_DATE_FORMAT);
+        return CdcDateParser.readDateField(p);
+      }
+      if (token == JsonToken.VALUE_STRING) {
+        LocalDateTime parsed = CdcDateParser.parseMillisDateTime(p.getTextCharacters(),
+            p.getTextOffset(), p.getTextLength());
+        if (parsed != null) {
+          return parsed;
+        }
       }
+      return LocalDateTime.parse(p.getText(), CDC_DATE_FORMAT);
     } catch (DateTimeParseException e) {
       return localDateTimeDeserializer.deserialize(p, ctx);
     }
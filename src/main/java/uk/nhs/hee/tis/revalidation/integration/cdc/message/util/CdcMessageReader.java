@@ -0,0 +1,84 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright 2026 Crown Copyright (NHS England)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package uk.nhs.hee.tis.revalidation.integration.cdc.message.util;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import uk.nhs.hee.tis.revalidation.integration.cdc.dto.CdcDocumentDto;
+
+/**
+ * Reads the cdc messages of one collection into CdcDocuments.
+ *
+ * <p>The generic {@code CdcDocumentDto<T>} type is resolved once, when the reader is created, and
+ * the reader is immutable and safe to share between threads. Messages can be read from bytes, so
+ * a payload received as bytes does not have to be decoded to a String first.
+ *
+ * @param <T> the type of the changed documents
+ */
+public final class CdcMessageReader<T> {
+
+  private final ObjectReader reader;
+
+  private CdcMessageReader(ObjectReader reader) {
+    this.reader = reader;
+  }
+
+  /**
+   * Create a reader for the cdc messages of a collection.
+   *
+   * @param mapper       the mapper configuring how messages are read
+   * @param documentType the type of the changed documents
+   * @param <T>          the type of the changed documents
+   * @return the reader
+   */
+  public static <T> CdcMessageReader<T> of(ObjectMapper mapper, Class<T> documentType) {
+    return new CdcMessageReader<>(mapper.readerFor(
+        mapper.getTypeFactory().constructParametricType(CdcDocumentDto.class, documentType)));
+  }
+
+  public CdcDocumentDto<T> read(String message) throws IOException {
+    return reader.readValue(message);
+  }
+
+  public CdcDocumentDto<T> read(byte[] message) throws IOException {
+    return reader.readValue(message);
+  }
+
+  /**
+   * Read a message from the remaining bytes of a buffer, without copying an array backed buffer.
+   *
+   * @param message the buffer holding the message, its position is not changed
+   * @return the CdcDocument
+   * @throws IOException if the message could not be read
+   */
+  public CdcDocumentDto<T> read(ByteBuffer message) throws IOException {
+    if (message.hasArray()) {
+      return reader.readValue(message.array(), message.arrayOffset() + message.position(),
+          message.remaining());
+    }
+    byte[] bytes = new byte[message.remaining()];
+    message.duplicate().get(bytes);
+    return reader.readValue(bytes);
+  }
+}
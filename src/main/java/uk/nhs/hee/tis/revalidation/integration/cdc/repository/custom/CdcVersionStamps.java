@@ -0,0 +1,128 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright 2026 Crown Copyright (NHS England)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package uk.nhs.hee.tis.revalidation.integration.cdc.repository.custom;
+
+import java.util.HashMap;
+import java.util.Map;
+import org.elasticsearch.script.Script;
+import org.elasticsearch.script.ScriptType;
+import uk.nhs.hee.tis.revalidation.integration.enums.CdcFieldGroup;
+
+/**
+ * Version stamps that make CDC updates of a masterdoctorindex document conditional, so a change
+ * received late or redelivered cannot overwrite a newer one.
+ *
+ * <p>An update is stamped by adding the version of its change to the fields it writes, in the
+ * version field of its {@link CdcFieldGroup}. Stamped updates are written with a painless script
+ * which leaves the document untouched if it already holds the same or a newer version of the
+ * group, so the comparison is made against the latest version of the document on the cluster.
+ */
+public final class CdcVersionStamps {
+
+  static final String LANG = "painless";
+  static final String VERSION_FIELD_PARAM = "versionField";
+  static final String VERSION_PARAM = "version";
+  static final String FIELDS_PARAM = "fields";
+  static final String CONDITIONAL_UPDATE =
+      """
+          def current = ctx._source[params.versionField];
+          if (current != null && current >= params.version) {
+            ctx.op = 'noop';
+          } else {
+            ctx._source.putAll(params.fields);
+          }
+          """;
+
+  private CdcVersionStamps() {
+  }
+
+  /**
+   * Stamp the fields written by a change with its version.
+   *
+   * @param fields  the fields written by the change
+   * @param group   the field group the change updates
+   * @param version the version of the change, may be null
+   * @return the stamped fields, or the given fields if there is no version
+   */
+  public static Map<String, Object> stamp(Map<String, Object> fields, CdcFieldGroup group,
+      Long version) {
+    if (version == null) {
+      return fields;
+    }
+    Map<String, Object> stamped = new HashMap<>(fields);
+    stamped.put(group.getVersionField(), version);
+    return stamped;
+  }
+
+  /**
+   * Find the field group a set of fields is stamped for.
+   *
+   * @param fields the fields to be written
+   * @return the stamped field group, or null if the fields are not stamped
+   */
+  public static CdcFieldGroup stampedGroup(Map<String, Object> fields) {
+    for (CdcFieldGroup group : CdcFieldGroup.values()) {
+      if (fields.get(group.getVersionField()) != null) {
+        return group;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Merge two updates of the same document, the later update winning for each field unless the
+   * earlier update is stamped with a newer version of the same field group.
+   *
+   * @param earlier the fields of the update received first
+   * @param later   the fields of the update received later
+   * @return the merged fields
+   */
+  public static Map<String, Object> merge(Map<String, Object> earlier,
+      Map<String, Object> later) {
+    CdcFieldGroup group = stampedGroup(later);
+    if (group != null && group == stampedGroup(earlier)
+        && version(earlier, group) > version(later, group)) {
+      return earlier;
+    }
+    Map<String, Object> merged = new HashMap<>(earlier);
+    merged.putAll(later);
+    return merged;
+  }
+
+  /**
+   * Build a script writing stamped fields unless the document holds the same or a newer version.
+   *
+   * @param group  the field group the fields are stamped for
+   * @param fields the stamped fields to write
+   * @return the update script
+   */
+  public static Script conditionalUpdate(CdcFieldGroup group, Map<String, Object> fields) {
+    return new Script(ScriptType.INLINE, LANG, CONDITIONAL_UPDATE, Map.of(
+        VERSION_FIELD_PARAM, group.getVersionField(),
+        VERSION_PARAM, version(fields, group),
+        FIELDS_PARAM, fields));
+  }
+
+  private static long version(Map<String, Object> fields, CdcFieldGroup group) {
+    return ((Number) fields.get(group.getVersionField())).longValue();
+  }
+}
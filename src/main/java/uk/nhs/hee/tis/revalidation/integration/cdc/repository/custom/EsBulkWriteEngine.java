@@ -0,0 +1,335 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright 2026 Crown Copyright (NHS England)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package uk.nhs.hee.tis.revalidation.integration.cdc.repository.custom;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.extern.slf4j.Slf4j;
+import org.elasticsearch.ElasticsearchStatusException;
+import org.elasticsearch.action.DocWriteRequest;
+import org.elasticsearch.action.DocWriteResponse;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.rest.RestStatus;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Writes batches of documents to Elasticsearch with adaptive bulk requests.
+ *
+ * <p>Work is split into bulk requests by document count and estimated size, and the requests are
+ * sent concurrently on the bounded {@code esBulkExecutor}. When Elasticsearch rejects work with a
+ * 429 or 413 the batch limits are halved and only the rejected items are retried after an
+ * exponential back-off. Clean responses grow the limits back towards the configured maximum.
+ * Documents which could not be created because they already exist, or deleted because they changed
+ * since the caller read them, are reported apart so the caller can resolve them.
+ */
+@Slf4j
+@Component
+public class EsBulkWriteEngine {
+
+  private static final String METRIC_PREFIX = "es.bulk.";
+
+  private final RestHighLevelClient highLevelClient;
+  private final ExecutorService executor;
+  private final int maxActions;
+  private final int minActions;
+  private final long maxBytes;
+  private final int maxRetries;
+  private final long initialBackoffMs;
+  private final long maxBackoffMs;
+
+  private final AtomicInteger currentMaxActions;
+  private final AtomicLong currentMaxBytes;
+  private final AtomicLong lastThroughput = new AtomicLong();
+
+  private final Counter succeededCounter;
+  private final Counter failedCounter;
+  private final Counter retriedCounter;
+  private final Counter tooManyRequestsCounter;
+  private final Counter tooLargeCounter;
+  private final Timer requestTimer;
+
+  /**
+   * Create the bulk write engine.
+   *
+   * @param highLevelClient  the Elasticsearch client used to send bulk requests
+   * @param executor         the bounded pool the bulk requests are sent on
+   * @param meterRegistry    the registry the throughput and rejection metrics are published to
+   * @param maxActions       the maximum number of documents in a single bulk request
+   * @param minActions       the number of documents a bulk request is never shrunk below
+   * @param maxBytes         the maximum estimated size of a single bulk request
+   * @param maxRetries       the number of times rejected items are retried
+   * @param initialBackoffMs the wait before the first retry, doubled for each further retry
+   * @param maxBackoffMs     the maximum wait between retries
+   */
+  public EsBulkWriteEngine(RestHighLevelClient highLevelClient,
+      @Qualifier("esBulkExecutor") ExecutorService executor,
+      MeterRegistry meterRegistry,
+      @Value("${app.es.bulk.max-actions:1000}") int maxActions,
+      @Value("${app.es.bulk.min-actions:50}") int minActions,
+      @Value("${app.es.bulk.max-bytes:5242880}") long maxBytes,
+      @Value("${app.es.bulk.max-retries:5}") int maxRetries,
+      @Value("${app.es.bulk.initial-backoff-ms:200}") long initialBackoffMs,
+      @Value("${app.es.bulk.max-backoff-ms:10000}") long maxBackoffMs) {
+    this.highLevelClient = highLevelClient;
+    this.executor = executor;
+    this.maxActions = maxActions;
+    this.minActions = Math.min(minActions, maxActions);
+    this.maxBytes = maxBytes;
+    this.maxRetries = maxRetries;
+    this.initialBackoffMs = initialBackoffMs;
+    this.maxBackoffMs = maxBackoffMs;
+    this.currentMaxActions = new AtomicInteger(maxActions);
+    this.currentMaxBytes = new AtomicLong(maxBytes);
+
+    succeededCounter = Counter.builder(METRIC_PREFIX + "documents")
+        .tag("outcome", "succeeded").register(meterRegistry);
+    failedCounter = Counter.builder(METRIC_PREFIX + "documents")
+        .tag("outcome", "failed").register(meterRegistry);
+    retriedCounter = Counter.builder(METRIC_PREFIX + "documents")
+        .tag("outcome", "retried").register(meterRegistry);
+    tooManyRequestsCounter = Counter.builder(METRIC_PREFIX + "rejections")
+        .tag("status", String.valueOf(RestStatus.TOO_MANY_REQUESTS.getStatus()))
+        .register(meterRegistry);
+    tooLargeCounter = Counter.builder(METRIC_PREFIX + "rejections")
+        .tag("status", String.valueOf(RestStatus.REQUEST_ENTITY_TOO_LARGE.getStatus()))
+        .register(meterRegistry);
+    requestTimer = Timer.builder(METRIC_PREFIX + "requests").register(meterRegistry);
+    meterRegistry.gauge(METRIC_PREFIX + "batch.actions", currentMaxActions);
+    meterRegistry.gauge(METRIC_PREFIX + "throughput", lastThroughput);
+  }
+
+  /**
+   * Write the requests to Elasticsearch, retrying items rejected by the cluster.
+   *
+   * @param requests the index, update or delete requests to send
+   * @return the number of succeeded documents, the ids of the documents that failed, the ids of
+   *     the documents left unchanged and the ids of the documents that already existed
+   */
+  public BulkWriteResult write(List<? extends DocWriteRequest<?>> requests) {
+    if (requests.isEmpty()) {
+      return new BulkWriteResult(0, List.of());
+    }
+    final long start = System.nanoTime();
+    final AtomicInteger succeeded = new AtomicInteger();
+    final List<String> failedIds = Collections.synchronizedList(new ArrayList<>());
+    final List<String> noopIds = Collections.synchronizedList(new ArrayList<>());
+    final List<String> conflictIds = Collections.synchronizedList(new ArrayList<>());
+    List<DocWriteRequest<?>> pending = new ArrayList<>(requests);
+
+    for (int attempt = 0; !pending.isEmpty(); attempt++) {
+      if (attempt > 0) {
+        if (attempt > maxRetries || !backOff(attempt)) {
+          log.error("Giving up on {} Elasticsearch documents after {} retries",
+              pending.size(), attempt - 1);
+          pending.forEach(r -> failedIds.add(r.id()));
+          failedCounter.increment(pending.size());
+          break;
+        }
+        retriedCounter.increment(pending.size());
+      }
+      List<CompletableFuture<List<DocWriteRequest<?>>>> futures = partition(pending).stream()
+          .map(batch -> CompletableFuture.supplyAsync(
+              () -> execute(batch, succeeded, failedIds, noopIds, conflictIds), executor))
+          .toList();
+      pending = futures.stream()
+          .map(CompletableFuture::join)
+          .flatMap(List::stream)
+          .toList();
+    }
+
+    long elapsedMs = Math.max(1, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    lastThroughput.set(succeeded.get() * 1000L / elapsedMs);
+    log.info("Bulk wrote {} documents ({} failed) in {} ms, {} docs/s",
+        succeeded.get(), failedIds.size(), elapsedMs, lastThroughput.get());
+    return new BulkWriteResult(succeeded.get(), List.copyOf(failedIds), List.copyOf(noopIds),
+        List.copyOf(conflictIds));
+  }
+
+  /**
+   * Split the requests into bulk requests within the current action and size limits. A request
+   * which would take a bulk request over the size limit starts the next one, so only a single
+   * document larger than the limit is sent in a bulk request over it.
+   */
+  List<BulkRequest> partition(List<DocWriteRequest<?>> requests) {
+    final int actionsLimit = currentMaxActions.get();
+    final long bytesLimit = currentMaxBytes.get();
+    List<BulkRequest> batches = new ArrayList<>();
+    BulkRequest batch = new BulkRequest();
+
+    for (DocWriteRequest<?> request : requests) {
+      long requestBytes = new BulkRequest().add(request).estimatedSizeInBytes();
+      if (batch.numberOfActions() > 0 && (batch.numberOfActions() >= actionsLimit
+          || batch.estimatedSizeInBytes() + requestBytes > bytesLimit)) {
+        batches.add(batch);
+        batch = new BulkRequest();
+      }
+      batch.add(request);
+    }
+    if (batch.numberOfActions() > 0) {
+      batches.add(batch);
+    }
+    return batches;
+  }
+
+  /**
+   * Send a single bulk request.
+   *
+   * @return the requests which were rejected and should be retried
+   */
+  private List<DocWriteRequest<?>> execute(BulkRequest batch, AtomicInteger succeeded,
+      List<String> failedIds, List<String> noopIds, List<String> conflictIds) {
+    BulkResponse response;
+    long start = System.nanoTime();
+    try {
+      response = highLevelClient.bulk(batch, RequestOptions.DEFAULT);
+    } catch (ElasticsearchStatusException e) {
+      if (e.status() == RestStatus.TOO_MANY_REQUESTS
+          || e.status() == RestStatus.REQUEST_ENTITY_TOO_LARGE) {
+        countRejection(e.status());
+        shrink();
+        return batch.requests();
+      }
+      return fail(batch.requests(), failedIds, e);
+    } catch (IOException e) {
+      log.warn("IO error sending bulk request of {} documents, will retry",
+          batch.numberOfActions(), e);
+      return batch.requests();
+    } catch (Exception e) {
+      return fail(batch.requests(), failedIds, e);
+    } finally {
+      requestTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    List<DocWriteRequest<?>> rejected = new ArrayList<>();
+    for (BulkItemResponse item : response.getItems()) {
+      if (!item.isFailed()) {
+        succeeded.incrementAndGet();
+        succeededCounter.increment();
+        if (item.getResponse() != null
+            && item.getResponse().getResult() == DocWriteResponse.Result.NOOP) {
+          noopIds.add(item.getId());
+        }
+      } else if (item.getFailure().getStatus() == RestStatus.TOO_MANY_REQUESTS) {
+        countRejection(RestStatus.TOO_MANY_REQUESTS);
+        rejected.add(batch.requests().get(item.getItemId()));
+      } else if (item.getFailure().getStatus() == RestStatus.CONFLICT
+          && item.getOpType() != DocWriteRequest.OpType.UPDATE) {
+        log.debug("Elasticsearch {} of document {} refused on a version conflict",
+            item.getOpType().getLowercase(), item.getId());
+        failedIds.add(item.getId());
+        conflictIds.add(item.getId());
+      } else {
+        log.error("Elasticsearch bulk item failed for document: {} with status: {}, {}",
+            item.getId(), item.getFailure().getStatus(), item.getFailureMessage());
+        failedIds.add(item.getId());
+        failedCounter.increment();
+      }
+    }
+
+    if (rejected.isEmpty()) {
+      grow();
+    } else {
+      shrink();
+    }
+    return rejected;
+  }
+
+  private List<DocWriteRequest<?>> fail(List<DocWriteRequest<?>> requests,
+      List<String> failedIds, Exception e) {
+    log.error("Elasticsearch bulk request of {} documents failed", requests.size(), e);
+    requests.forEach(r -> failedIds.add(r.id()));
+    failedCounter.increment(requests.size());
+    return List.of();
+  }
+
+  private void countRejection(RestStatus status) {
+    if (status == RestStatus.TOO_MANY_REQUESTS) {
+      tooManyRequestsCounter.increment();
+    } else {
+      tooLargeCounter.increment();
+    }
+  }
+
+  private void shrink() {
+    int actions = currentMaxActions.updateAndGet(a -> Math.max(minActions, a / 2));
+    currentMaxBytes.updateAndGet(b -> Math.max(maxBytes * minActions / maxActions, b / 2));
+    log.warn("Elasticsearch is pushing back, reducing bulk requests to {} documents", actions);
+  }
+
+  private void grow() {
+    int step = Math.max(1, maxActions / 10);
+    currentMaxActions.updateAndGet(a -> Math.min(maxActions, a + step));
+    currentMaxBytes.updateAndGet(b -> Math.min(maxBytes, b + maxBytes / 10));
+  }
+
+  private boolean backOff(int attempt) {
+    long wait = Math.min(maxBackoffMs, initialBackoffMs << Math.min(attempt - 1, 20));
+    try {
+      Thread.sleep(wait);
+      return true;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
+    }
+  }
+
+  /**
+   * The outcome of a bulk write.
+   *
+   * @param succeeded   the number of documents written
+   * @param failedIds   the ids of the documents which could not be written
+   * @param noopIds     the ids of the written documents which were left unchanged
+   * @param conflictIds the ids of the failed documents which could not be created because they
+   *                    already exist, or deleted because their version changed
+   */
+  public record BulkWriteResult(int succeeded, List<String> failedIds, List<String> noopIds,
+      List<String> conflictIds) {
+
+    public BulkWriteResult(int succeeded, List<String> failedIds) {
+      this(succeeded, failedIds, List.of(), List.of());
+    }
+
+    public BulkWriteResult(int succeeded, List<String> failedIds, List<String> noopIds) {
+      this(succeeded, failedIds, noopIds, List.of());
+    }
+
+    public boolean hasFailures() {
+      return !failedIds.isEmpty();
+    }
+  }
+}
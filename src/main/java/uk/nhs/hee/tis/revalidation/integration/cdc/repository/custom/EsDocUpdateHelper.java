@@ -24,22 +24,37 @@ package uk.nhs.hee.tis.revalidation.integration.cdc.repository.custom;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import lombok.extern.slf4j.Slf4j;
+import org.elasticsearch.ElasticsearchStatusException;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.DocWriteRequest;
+import org.elasticsearch.action.DocWriteResponse;
+import org.elasticsearch.action.get.GetRequest;
+import org.elasticsearch.action.index.IndexRequest;
 import org.elasticsearch.action.update.UpdateRequest;
 import org.elasticsearch.action.update.UpdateResponse;
 import org.elasticsearch.client.RequestOptions;
 import org.elasticsearch.client.RestHighLevelClient;
-import org.springframework.data.elasticsearch.BulkFailureException;
-import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
-import org.springframework.data.elasticsearch.core.document.Document;
-import org.springframework.data.elasticsearch.core.mapping.IndexCoordinates;
-import org.springframework.data.elasticsearch.core.query.UpdateQuery;
+import org.elasticsearch.index.query.QueryBuilder;
+import org.elasticsearch.index.reindex.BulkByScrollResponse;
+import org.elasticsearch.index.reindex.UpdateByQueryRequest;
+import org.elasticsearch.rest.RestStatus;
+import org.elasticsearch.script.Script;
+import org.elasticsearch.search.fetch.subphase.FetchSourceContext;
 import org.springframework.stereotype.Component;
+import uk.nhs.hee.tis.revalidation.integration.cdc.CdcMetrics;
+import uk.nhs.hee.tis.revalidation.integration.cdc.repository.custom.EsBulkWriteEngine.BulkWriteResult;
+import uk.nhs.hee.tis.revalidation.integration.enums.CdcFieldGroup;
 
 /**
  * EsDocUpdateHelper provides utility methods for updating Elasticsearch documents.
+ *
+ * <p>Partial updates whose fields are stamped with a CDC version are written conditionally, see
+ * {@link CdcVersionStamps}, and the updates skipped as stale are counted.
  */
 @Slf4j
 @Component
@@ -51,20 +66,25 @@ public class EsDocUpdateHelper {
 
   private final ObjectMapper objectMapper;
 
-  private final ElasticsearchOperations esOperations;
+  private final EsBulkWriteEngine bulkWriteEngine;
+
+  private final CdcMetrics cdcMetrics;
 
   /**
-   * Constructs an EsDocUpdateHelper with the given ElasticsearchOperations instance.
+   * Constructs an EsDocUpdateHelper with the given Elasticsearch client.
    *
    * @param highLevelClient the Elasticsearch high-level client used to execute update operations.
    * @param objectMapper    the object mapper used to convert the Elasticsearch response
    *                        {@code updatedMap} into the corresponding Java entity.
+   * @param bulkWriteEngine the engine used to execute bulk updates.
+   * @param cdcMetrics      the metrics stale CDC updates are counted in.
    */
   public EsDocUpdateHelper(RestHighLevelClient highLevelClient,
-      ObjectMapper objectMapper, ElasticsearchOperations esOperations) {
+      ObjectMapper objectMapper, EsBulkWriteEngine bulkWriteEngine, CdcMetrics cdcMetrics) {
     this.highLevelClient = highLevelClient;
     this.objectMapper = objectMapper;
-    this.esOperations = esOperations;
+    this.bulkWriteEngine = bulkWriteEngine;
+    this.cdcMetrics = cdcMetrics;
   }
 
   /**
@@ -110,6 +130,208 @@ public class EsDocUpdateHelper {
     }
   }
 
+  /**
+   * Performs a partial update on a document in the specified Elasticsearch index without returning
+   * the updated document.
+   *
+   * <p>Only the fields provided in the {@code fields} map will be updated, leaving
+   * other fields intact. The updated source is not fetched, so use this when the caller does not
+   * need the result of the update.
+   *
+   * @param index  the name of the Elasticsearch index where the document resides
+   * @param id     the unique identifier of the document to update
+   * @param fields a map of field names and their new values to be updated
+   */
+  public void update(String index, String id, Map<String, Object> fields) {
+    try {
+      UpdateResponse response =
+          highLevelClient.update(updateRequest(index, id, fields), RequestOptions.DEFAULT);
+      countIfStale(id, fields, response);
+    } catch (IOException e) {
+      log.error("Failed to update document in index {} with ID {}: {}", index, id, e.getMessage(),
+          e);
+      throw new EsUpdateException("Failed to update document. Index: " + index + ", ID: " + id, e);
+    }
+  }
+
+  /**
+   * Performs a partial update on a document in the specified Elasticsearch index if the document
+   * exists, without returning the updated document.
+   *
+   * @param index  the name of the Elasticsearch index where the document resides
+   * @param id     the unique identifier of the document to update
+   * @param fields a map of field names and their new values to be updated
+   * @return true if the document was updated, false if it does not exist
+   */
+  public boolean updateIfExists(String index, String id, Map<String, Object> fields) {
+    try {
+      update(index, id, fields);
+      return true;
+    } catch (ElasticsearchStatusException e) {
+      if (e.status() == RestStatus.NOT_FOUND) {
+        return false;
+      }
+      throw e;
+    }
+  }
+
+  /**
+   * Checks whether a document exists in the specified Elasticsearch index. The check is realtime,
+   * so a document written but not yet refreshed is found, and no source is transferred.
+   *
+   * @param index the name of the Elasticsearch index where the document resides
+   * @param id    the unique identifier of the document
+   * @return true if the document exists
+   */
+  public boolean exists(String index, String id) {
+    GetRequest request = new GetRequest(index, id)
+        .fetchSourceContext(FetchSourceContext.DO_NOT_FETCH_SOURCE)
+        .storedFields("_none_");
+    try {
+      return highLevelClient.exists(request, RequestOptions.DEFAULT);
+    } catch (IOException e) {
+      log.error("Failed to check document in index {} with ID {}: {}", index, id, e.getMessage(),
+          e);
+      throw new EsUpdateException("Failed to check document. Index: " + index + ", ID: " + id, e);
+    }
+  }
+
+  /**
+   * Runs an update script against a document in the specified Elasticsearch index.
+   *
+   * <p>The script runs against the latest version of the document on the cluster and is retried
+   * if the document changes while it runs, so concurrent updates are not lost.
+   *
+   * @param index  the name of the Elasticsearch index where the document resides
+   * @param id     the unique identifier of the document to update
+   * @param script the script to run
+   */
+  public void scriptedUpdate(String index, String id, Script script) {
+    UpdateRequest request = new UpdateRequest(index, id)
+        .script(script)
+        .retryOnConflict(DEFAULT_RETRY_ON_CONFLICT);
+    try {
+      highLevelClient.update(request, RequestOptions.DEFAULT);
+    } catch (IOException e) {
+      log.error("Failed to update document in index {} with ID {}: {}", index, id, e.getMessage(),
+          e);
+      throw new EsUpdateException("Failed to update document. Index: " + index + ", ID: " + id, e);
+    }
+  }
+
+  /**
+   * Runs an update script against a document in the specified Elasticsearch index if the document
+   * exists.
+   *
+   * @param index  the name of the Elasticsearch index where the document resides
+   * @param id     the unique identifier of the document to update
+   * @param script the script to run
+   * @return true if the script was run, false if the document does not exist
+   */
+  public boolean scriptedUpdateIfExists(String index, String id, Script script) {
+    try {
+      scriptedUpdate(index, id, script);
+      return true;
+    } catch (ElasticsearchStatusException e) {
+      if (e.status() == RestStatus.NOT_FOUND) {
+        return false;
+      }
+      throw e;
+    }
+  }
+
+  /**
+   * Runs an update script against every document matching a query in the specified Elasticsearch
+   * index.
+   *
+   * <p>Documents that change while the update runs are skipped and the update is run again, up to
+   * the same number of times an update by id is retried, so the script must be safe to run more
+   * than once on the same document.
+   *
+   * @param index  the name of the Elasticsearch index where the documents reside
+   * @param query  the query selecting the documents to update
+   * @param script the script to run
+   * @return the number of documents the script changed
+   */
+  public long updateByQuery(String index, QueryBuilder query, Script script) {
+    long updated = 0;
+    for (int attempt = 0; attempt <= DEFAULT_RETRY_ON_CONFLICT; attempt++) {
+      UpdateByQueryRequest request = new UpdateByQueryRequest(index)
+          .setQuery(query)
+          .setScript(script)
+          .setAbortOnVersionConflict(false);
+      BulkByScrollResponse response;
+      try {
+        response = highLevelClient.updateByQuery(request, RequestOptions.DEFAULT);
+      } catch (IOException e) {
+        log.error("Failed to update documents by query in index {}: {}", index, e.getMessage(), e);
+        throw new EsUpdateException("Failed to update documents by query. Index: " + index, e);
+      }
+      if (!response.getBulkFailures().isEmpty() || !response.getSearchFailures().isEmpty()) {
+        log.error("Failures during update by query in index {}: {} {}", index,
+            response.getBulkFailures(), response.getSearchFailures());
+        throw new EsUpdateException("Failed to update documents by query. Index: " + index);
+      }
+      updated += response.getUpdated();
+      if (response.getVersionConflicts() == 0) {
+        return updated;
+      }
+    }
+    throw new EsUpdateException(
+        "Documents kept changing during the update by query. Index: " + index);
+  }
+
+  /**
+   * Performs a partial update on a document in the specified Elasticsearch index without waiting
+   * for it or returning the updated document.
+   *
+   * @param index  the name of the Elasticsearch index where the document resides
+   * @param id     the unique identifier of the document to update
+   * @param fields a map of field names and their new values to be updated
+   * @return a future completed when the update has been applied, or completed exceptionally with
+   *     an {@link EsUpdateException} if it failed
+   */
+  public CompletableFuture<Void> updateAsync(String index, String id, Map<String, Object> fields) {
+    CompletableFuture<Void> future = new CompletableFuture<>();
+    highLevelClient.updateAsync(updateRequest(index, id, fields), RequestOptions.DEFAULT,
+        ActionListener.wrap(response -> {
+          countIfStale(id, fields, response);
+          future.complete(null);
+        }, e -> {
+          log.error("Failed to update document in index {} with ID {}: {}", index, id,
+              e.getMessage(), e);
+          future.completeExceptionally(new EsUpdateException(
+              "Failed to update document. Index: " + index + ", ID: " + id, e));
+        }));
+    return future;
+  }
+
+  private UpdateRequest updateRequest(String index, String id, Map<String, Object> fields) {
+    UpdateRequest request = new UpdateRequest(index, id)
+        .retryOnConflict(DEFAULT_RETRY_ON_CONFLICT);
+    CdcFieldGroup group = CdcVersionStamps.stampedGroup(fields);
+    return group == null ? request.doc(fields)
+        : request.script(CdcVersionStamps.conditionalUpdate(group, fields));
+  }
+
+  private void countIfStale(String id, Map<String, Object> fields, UpdateResponse response) {
+    CdcFieldGroup group = CdcVersionStamps.stampedGroup(fields);
+    if (group != null && response.getResult() == DocWriteResponse.Result.NOOP) {
+      log.debug("Skipped a stale {} update of document {}", group, id);
+      cdcMetrics.recordStale(group, 1);
+    }
+  }
+
+  private void countStale(Map<String, Map<String, Object>> fieldsById, BulkWriteResult result) {
+    for (String id : result.noopIds()) {
+      Map<String, Object> fields = fieldsById.get(id);
+      CdcFieldGroup group = fields == null ? null : CdcVersionStamps.stampedGroup(fields);
+      if (group != null) {
+        cdcMetrics.recordStale(group, 1);
+      }
+    }
+  }
+
   /**
    * A custom runtime exception indicating a failure during an Elasticsearch update operation.
    */
@@ -128,25 +350,171 @@ public class EsDocUpdateHelper {
    * Performs a bulk partial update of documents in the specified Elasticsearch index.
    *
    * <p>Only the fields provided in the {@code fieldsById} map will be updated, leaving
-   * other fields intact.
+   * other fields intact. The updates are sent through the {@link EsBulkWriteEngine}, which splits
+   * them into appropriately sized bulk requests and retries documents rejected by the cluster.
    *
    * @param index      the name of the Elasticsearch index where the document resides
    * @param fieldsById a map of fields to update, mapped by documentId
+   * @return the number of updated documents and the ids of the documents that failed
    */
-  public void bulkPartialUpdate(String index, Map<String, Map<String, Object>> fieldsById) {
-    List<UpdateQuery> queries = new ArrayList<>();
+  public BulkWriteResult bulkPartialUpdate(String index,
+      Map<String, Map<String, Object>> fieldsById) {
+    List<UpdateRequest> requests = new ArrayList<>();
 
     for (var entry : fieldsById.entrySet()) {
-      queries.add(UpdateQuery.builder(entry.getKey())
-          .withDocument(Document.from(entry.getValue()))
-          .build());
+      requests.add(updateRequest(index, entry.getKey(), entry.getValue()));
     }
-    try {
-      esOperations.bulkUpdate(queries, IndexCoordinates.of(index));
-    } catch (BulkFailureException e) {
+    BulkWriteResult result = bulkWriteEngine.write(requests);
+    countStale(fieldsById, result);
+    if (result.hasFailures()) {
       log.error(
           "Exception during elasticsearch bulk update with the following failed documents: {} ",
-          e.getFailedDocuments());
+          result.failedIds());
+    }
+    return result;
+  }
+
+  /**
+   * Performs a bulk partial update of existing documents and creates new documents in the same
+   * bulk write.
+   *
+   * <p>New documents are created with the given ids and never replace a document with the same
+   * id. A new document which already exists, for example because a search did not see it yet, is
+   * partially updated with its own fields instead. The writes are sent through the
+   * {@link EsBulkWriteEngine}.
+   *
+   * @param index            the name of the Elasticsearch index where the documents reside
+   * @param fieldsById       a map of fields to update, mapped by documentId
+   * @param newDocumentsById the source of the documents to create, mapped by documentId
+   * @return the number of written documents and the ids of the documents that failed
+   */
+  public BulkWriteResult bulkUpsert(String index, Map<String, Map<String, Object>> fieldsById,
+      Map<String, Map<String, Object>> newDocumentsById) {
+    return bulkUpsert(index, fieldsById, newDocumentsById, newDocumentsById);
+  }
+
+  /**
+   * Performs a bulk partial update of existing documents and creates new documents in the same
+   * bulk write, updating a new document which already exists with the given fields instead.
+   *
+   * @param index                the name of the Elasticsearch index where the documents reside
+   * @param fieldsById           a map of fields to update, mapped by documentId
+   * @param newDocumentsById     the source of the documents to create, mapped by documentId
+   * @param fieldsOnConflictById the fields to update when a new document already exists, mapped
+   *                             by documentId
+   * @return the number of written documents and the ids of the documents that failed
+   */
+  public BulkWriteResult bulkUpsert(String index, Map<String, Map<String, Object>> fieldsById,
+      Map<String, Map<String, Object>> newDocumentsById,
+      Map<String, Map<String, Object>> fieldsOnConflictById) {
+    List<DocWriteRequest<?>> requests = new ArrayList<>();
+
+    for (var entry : fieldsById.entrySet()) {
+      requests.add(updateRequest(index, entry.getKey(), entry.getValue()));
+    }
+    for (var entry : newDocumentsById.entrySet()) {
+      requests.add(new IndexRequest(index)
+          .id(entry.getKey())
+          .source(entry.getValue())
+          .create(true));
+    }
+    return writeCreatingOrUpdating(index, requests, fieldsById, fieldsOnConflictById, "upsert");
+  }
+
+  /**
+   * Replaces existing documents and creates new documents in the same bulk write.
+   *
+   * <p>Use this only for documents whose whole source was read and merged by the caller. New
+   * documents never replace a document with the same id, a new document which already exists is
+   * partially updated with the given fields instead.
+   *
+   * @param index                the name of the Elasticsearch index where the documents reside
+   * @param documentsById        the source of the documents to replace, mapped by documentId
+   * @param newDocumentsById     the source of the documents to create, mapped by documentId
+   * @param fieldsOnConflictById the fields to update when a new document already exists, mapped
+   *                             by documentId
+   * @return the number of written documents and the ids of the documents that failed
+   */
+  public BulkWriteResult bulkReplace(String index, Map<String, Map<String, Object>> documentsById,
+      Map<String, Map<String, Object>> newDocumentsById,
+      Map<String, Map<String, Object>> fieldsOnConflictById) {
+    List<DocWriteRequest<?>> requests = new ArrayList<>();
+
+    for (var entry : documentsById.entrySet()) {
+      requests.add(new IndexRequest(index).id(entry.getKey()).source(entry.getValue()));
+    }
+    for (var entry : newDocumentsById.entrySet()) {
+      requests.add(new IndexRequest(index)
+          .id(entry.getKey())
+          .source(entry.getValue())
+          .create(true));
+    }
+    return writeCreatingOrUpdating(index, requests, Map.of(), fieldsOnConflictById, "replace");
+  }
+
+  private BulkWriteResult writeCreatingOrUpdating(String index,
+      List<DocWriteRequest<?>> requests, Map<String, Map<String, Object>> fieldsById,
+      Map<String, Map<String, Object>> fieldsOnConflictById, String operation) {
+    BulkWriteResult result = bulkWriteEngine.write(requests);
+    countStale(fieldsById, result);
+    if (!result.conflictIds().isEmpty()) {
+      result = updateExisting(index, result, fieldsOnConflictById);
+    }
+    if (result.hasFailures()) {
+      log.error(
+          "Exception during elasticsearch bulk {} with the following failed documents: {} ",
+          operation, result.failedIds());
+    }
+    return result;
+  }
+
+  private BulkWriteResult updateExisting(String index, BulkWriteResult result,
+      Map<String, Map<String, Object>> fieldsOnConflictById) {
+    log.info("{} new documents already exist in {}, updating them instead",
+        result.conflictIds().size(), index);
+    Map<String, Map<String, Object>> fieldsById = new LinkedHashMap<>();
+    List<UpdateRequest> requests = new ArrayList<>();
+    for (String id : result.conflictIds()) {
+      Map<String, Object> fields = fieldsOnConflictById.getOrDefault(id, Map.of());
+      fieldsById.put(id, fields);
+      requests.add(updateRequest(index, id, fields));
+    }
+    BulkWriteResult updated = bulkWriteEngine.write(requests);
+    countStale(fieldsById, updated);
+
+    List<String> failedIds = new ArrayList<>(result.failedIds());
+    failedIds.removeAll(result.conflictIds());
+    failedIds.addAll(updated.failedIds());
+    List<String> noopIds = new ArrayList<>(result.noopIds());
+    noopIds.addAll(updated.noopIds());
+    return new BulkWriteResult(result.succeeded() + updated.succeeded(), failedIds, noopIds);
+  }
+
+  /**
+   * Performs a bulk scripted update of documents in the specified Elasticsearch index.
+   *
+   * <p>The scripts run against the latest version of each document on the cluster, so the
+   * documents do not need to be read first. The updates are sent through the
+   * {@link EsBulkWriteEngine}.
+   *
+   * @param index       the name of the Elasticsearch index where the document resides
+   * @param scriptsById the script to run, mapped by documentId
+   * @return the number of updated documents and the ids of the documents that failed
+   */
+  public BulkWriteResult bulkScriptedUpdate(String index, Map<String, Script> scriptsById) {
+    List<UpdateRequest> requests = new ArrayList<>();
+
+    for (var entry : scriptsById.entrySet()) {
+      requests.add(new UpdateRequest(index, entry.getKey())
+          .script(entry.getValue())
+          .retryOnConflict(DEFAULT_RETRY_ON_CONFLICT));
+    }
+    BulkWriteResult result = bulkWriteEngine.write(requests);
+    if (result.hasFailures()) {
+      log.error(
+          "Exception during elasticsearch bulk scripted update with the following failed "
+              + "documents: {} ", result.failedIds());
     }
+    return result;
   }
 }
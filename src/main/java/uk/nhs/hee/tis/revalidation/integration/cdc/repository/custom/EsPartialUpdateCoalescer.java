@@ -0,0 +1,186 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright 2026 Crown Copyright (NHS England)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package uk.nhs.hee.tis.revalidation.integration.cdc.repository.custom;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import uk.nhs.hee.tis.revalidation.integration.cdc.repository.custom.EsBulkWriteEngine.BulkWriteResult;
+import uk.nhs.hee.tis.revalidation.integration.enums.CdcFieldGroup;
+
+/**
+ * Merges the partial updates made to the same Elasticsearch document within a short window, so a
+ * burst of changes to one doctor is written as a single update.
+ *
+ * <p>Updates are merged in arrival order and the last value of each field wins, unless the updates
+ * are stamped with CDC versions and the buffered one is newer. Updates stamped for different field
+ * groups are buffered apart, as each is written conditionally on its own version. The buffer is
+ * written with one bulk update when the window ends, when it holds the maximum number of
+ * documents, and on shutdown. A buffered update is accepted before it is written, so a failed
+ * write is only logged. With a window of zero every update is written immediately and a failed
+ * write is thrown to the caller.
+ */
+@Slf4j
+@Component
+public class EsPartialUpdateCoalescer {
+
+  private final EsDocUpdateHelper esDocUpdateHelper;
+  private final long windowMs;
+  private final int maxBufferedDocuments;
+  private final ScheduledExecutorService scheduler;
+  private final Object flushLock = new Object();
+
+  private Map<BufferKey, Map<String, Map<String, Object>>> pending = new LinkedHashMap<>();
+  private int bufferedDocuments;
+  private boolean flushScheduled;
+
+  /**
+   * Create the coalescer.
+   *
+   * @param esDocUpdateHelper    the helper the merged updates are written with
+   * @param windowMs             the time updates are buffered for, zero to write immediately
+   * @param maxBufferedDocuments the number of buffered documents that triggers an early write
+   */
+  public EsPartialUpdateCoalescer(EsDocUpdateHelper esDocUpdateHelper,
+      @Value("${app.cdc.coalescer.window-ms:0}") long windowMs,
+      @Value("${app.cdc.coalescer.max-buffered-documents:500}") int maxBufferedDocuments) {
+    this.esDocUpdateHelper = esDocUpdateHelper;
+    this.windowMs = windowMs;
+    this.maxBufferedDocuments = maxBufferedDocuments;
+    this.scheduler = windowMs > 0 ? Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "es-update-coalescer");
+      thread.setDaemon(true);
+      return thread;
+    }) : null;
+  }
+
+  /**
+   * Update the given fields of a document, merging them with any buffered update of the same
+   * document.
+   *
+   * @param index  the name of the Elasticsearch index where the document resides
+   * @param id     the unique identifier of the document to update
+   * @param fields a map of field names and their new values to be updated
+   */
+  public void update(String index, String id, Map<String, Object> fields) {
+    if (scheduler == null) {
+      esDocUpdateHelper.update(index, id, fields);
+      return;
+    }
+    boolean flushNow;
+    synchronized (this) {
+      Map<String, Map<String, Object>> fieldsById = pending.computeIfAbsent(
+          new BufferKey(index, CdcVersionStamps.stampedGroup(fields)), k -> new LinkedHashMap<>());
+      Map<String, Object> buffered = fieldsById.get(id);
+      if (buffered == null) {
+        bufferedDocuments++;
+        fieldsById.put(id, new HashMap<>(fields));
+      } else {
+        fieldsById.put(id, CdcVersionStamps.merge(buffered, fields));
+      }
+      flushNow = bufferedDocuments >= maxBufferedDocuments || scheduler.isShutdown();
+      if (!flushNow && !flushScheduled) {
+        flushScheduled = true;
+        scheduler.schedule(this::flush, windowMs, TimeUnit.MILLISECONDS);
+      }
+    }
+    if (flushNow) {
+      flush();
+    }
+  }
+
+  /**
+   * Update the given fields of a document if it exists, merging them with any buffered update of
+   * the same document. A document already buffered is known to exist, otherwise its existence is
+   * checked before the update is buffered.
+   *
+   * @param index  the name of the Elasticsearch index where the document resides
+   * @param id     the unique identifier of the document to update
+   * @param fields a map of field names and their new values to be updated
+   * @return true if the document was updated or buffered, false if it does not exist
+   */
+  public boolean updateIfExists(String index, String id, Map<String, Object> fields) {
+    if (scheduler == null) {
+      return esDocUpdateHelper.updateIfExists(index, id, fields);
+    }
+    if (!isBuffered(index, id) && !esDocUpdateHelper.exists(index, id)) {
+      return false;
+    }
+    update(index, id, fields);
+    return true;
+  }
+
+  /**
+   * Write every buffered update. Buffers are written one at a time, so the updates of a document
+   * reach the index in the order they were made.
+   */
+  public void flush() {
+    synchronized (flushLock) {
+      Map<BufferKey, Map<String, Map<String, Object>>> batch;
+      synchronized (this) {
+        batch = pending;
+        pending = new LinkedHashMap<>();
+        bufferedDocuments = 0;
+        flushScheduled = false;
+      }
+      batch.forEach((key, fieldsById) -> {
+        String index = key.index();
+        try {
+          BulkWriteResult result = esDocUpdateHelper.bulkPartialUpdate(index, fieldsById);
+          if (result.hasFailures()) {
+            log.error("Failed to write {} coalesced updates to {}: {}",
+                result.failedIds().size(), index, result.failedIds());
+          }
+        } catch (RuntimeException e) {
+          log.error("Failed to write {} coalesced updates to {}", fieldsById.size(), index, e);
+        }
+      });
+    }
+  }
+
+  /**
+   * Stop buffering and write the updates buffered so far.
+   */
+  @PreDestroy
+  public void shutdown() {
+    if (scheduler != null) {
+      scheduler.shutdown();
+      flush();
+    }
+  }
+
+  private synchronized boolean isBuffered(String index, String id) {
+    return pending.entrySet().stream()
+        .anyMatch(e -> e.getKey().index().equals(index) && e.getValue().containsKey(id));
+  }
+
+  private record BufferKey(String index, CdcFieldGroup group) {
+
+  }
+}
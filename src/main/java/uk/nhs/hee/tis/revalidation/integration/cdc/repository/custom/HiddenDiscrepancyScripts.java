@@ -0,0 +1,127 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright 2026 Crown Copyright (NHS England)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package uk.nhs.hee.tis.revalidation.integration.cdc.repository.custom;
+
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.elasticsearch.script.Script;
+import org.elasticsearch.script.ScriptType;
+import uk.nhs.hee.tis.revalidation.integration.entity.HiddenDiscrepancy;
+
+/**
+ * Painless scripts that change the nested hidden discrepancies of a masterdoctorindex document in
+ * place, so the caller does not have to read and reindex the whole document.
+ */
+public final class HiddenDiscrepancyScripts {
+
+  static final String LANG = "painless";
+  static final String HIDDEN_DISCREPANCIES_PARAM = "hiddenDiscrepancies";
+  static final String ADD_HIDDEN_DISCREPANCIES =
+      """
+          if (ctx._source.hiddenDiscrepancies == null) {
+            ctx._source.hiddenDiscrepancies = [];
+          }
+          boolean changed = false;
+          for (def discrepancy : params.hiddenDiscrepancies) {
+            boolean hidden = false;
+            for (def existing : ctx._source.hiddenDiscrepancies) {
+              if (existing.hiddenForDesignatedBodyCode
+                  == discrepancy.hiddenForDesignatedBodyCode) {
+                hidden = true;
+                break;
+              }
+            }
+            if (!hidden) {
+              ctx._source.hiddenDiscrepancies.add(discrepancy);
+              changed = true;
+            }
+          }
+          if (!changed) {
+            ctx.op = 'noop';
+          }
+          """;
+  static final String HIDDEN_DISCREPANCY_ID_PARAM = "id";
+  static final String REMOVE_HIDDEN_DISCREPANCY =
+      """
+          if (ctx._source.hiddenDiscrepancies == null
+              || !ctx._source.hiddenDiscrepancies.removeIf(d -> d.id == params.id)) {
+            ctx.op = 'noop';
+          }
+          """;
+  // The format of HiddenDiscrepancy.hiddenDateTime in the index mapping.
+  private static final DateTimeFormatter ES_DATETIME_FORMATTER =
+      DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSS");
+
+  private HiddenDiscrepancyScripts() {
+  }
+
+  /**
+   * Build a script appending hidden discrepancies to a document, skipping any for a designated
+   * body that is already hidden, including earlier ones in the same list.
+   *
+   * @param hiddenDiscrepancies the hidden discrepancies to add, in order
+   * @return the update script
+   */
+  public static Script addHiddenDiscrepancies(List<HiddenDiscrepancy> hiddenDiscrepancies) {
+    List<Map<String, Object>> params = hiddenDiscrepancies.stream()
+        .map(HiddenDiscrepancyScripts::toSource)
+        .toList();
+    return new Script(ScriptType.INLINE, LANG, ADD_HIDDEN_DISCREPANCIES,
+        Map.of(HIDDEN_DISCREPANCIES_PARAM, params));
+  }
+
+  /**
+   * Build a script removing a hidden discrepancy from a document by id. Documents without it are
+   * left unchanged, so the script can be run again safely.
+   *
+   * @param id the id of the hidden discrepancy to remove
+   * @return the update script
+   */
+  public static Script removeHiddenDiscrepancy(String id) {
+    return new Script(ScriptType.INLINE, LANG, REMOVE_HIDDEN_DISCREPANCY,
+        Map.of(HIDDEN_DISCREPANCY_ID_PARAM, id));
+  }
+
+  static Map<String, Object> toSource(HiddenDiscrepancy hiddenDiscrepancy) {
+    // Null fields are left out, as they are when the document is saved through the repository.
+    Map<String, Object> source = new HashMap<>();
+    putIfNotNull(source, "id", hiddenDiscrepancy.getId());
+    putIfNotNull(source, "gmcId", hiddenDiscrepancy.getGmcId());
+    putIfNotNull(source, "hiddenForDesignatedBodyCode",
+        hiddenDiscrepancy.getHiddenForDesignatedBodyCode());
+    putIfNotNull(source, "hiddenBy", hiddenDiscrepancy.getHiddenBy());
+    putIfNotNull(source, "reason", hiddenDiscrepancy.getReason());
+    if (hiddenDiscrepancy.getHiddenDateTime() != null) {
+      source.put("hiddenDateTime",
+          hiddenDiscrepancy.getHiddenDateTime().format(ES_DATETIME_FORMATTER));
+    }
+    return source;
+  }
+
+  private static void putIfNotNull(Map<String, Object> source, String field, Object value) {
+    if (value != null) {
+      source.put(field, value);
+    }
+  }
+}
@@ -0,0 +1,110 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright 2026 Crown Copyright (NHS England)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package uk.nhs.hee.tis.revalidation.integration.cdc.repository.custom;
+
+import static uk.nhs.hee.tis.revalidation.integration.config.EsConstant.Aliases.MASTER_DOCTOR_READ_ALIAS;
+import static uk.nhs.hee.tis.revalidation.integration.config.EsConstant.Indexes.MASTER_DOCTOR_INDEX;
+
+import java.util.function.Consumer;
+import java.util.function.Function;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import uk.nhs.hee.tis.revalidation.integration.cdc.repository.custom.EsBulkWriteEngine.BulkWriteResult;
+
+/**
+ * Keeps the masterdoctorindex generation served to readers up to date with CDC changes while a
+ * new generation is rebuilt behind the write alias.
+ *
+ * <p>While a rebuild is in progress the write alias and the read aliases point at different
+ * indices, so a CDC change written through the write alias would stay invisible to readers until
+ * the rebuilt index is promoted. While mirroring, each CDC write is repeated on the index behind
+ * the read alias. Both generations key the documents of a doctor by the same derived id. The
+ * rebuilt index stays the source of truth, so a write that fails on the live index is only logged.
+ */
+@Slf4j
+@Component
+public class LiveGenerationMirror {
+
+  private volatile boolean mirroring;
+
+  /**
+   * Start repeating CDC writes on the live index, as a rebuild has moved the write alias away
+   * from it.
+   */
+  public void start() {
+    mirroring = true;
+  }
+
+  /**
+   * Stop repeating CDC writes, as the write alias and the read aliases point at the same index.
+   */
+  public void stop() {
+    mirroring = false;
+  }
+
+  /**
+   * Whether CDC writes are repeated on the live index.
+   *
+   * @return true while a rebuild is in progress
+   */
+  public boolean isMirroring() {
+    return mirroring;
+  }
+
+  /**
+   * Apply a write to the masterdoctorindex and, while mirroring, repeat it on the live index.
+   *
+   * @param write the write, given the name of the index to write to
+   * @param <R>   the type of the result of the write
+   * @return the result of the write to the masterdoctorindex
+   */
+  public <R> R write(Function<String, R> write) {
+    R result = write.apply(MASTER_DOCTOR_INDEX);
+    if (mirroring) {
+      try {
+        R mirrored = write.apply(MASTER_DOCTOR_READ_ALIAS);
+        if (mirrored instanceof BulkWriteResult bulkWriteResult
+            && bulkWriteResult.hasFailures()) {
+          log.warn("{} CDC writes could not be repeated on the live masterdoctorindex, readers "
+              + "see them once the rebuilt index is promoted.", bulkWriteResult.failedIds().size());
+        }
+      } catch (RuntimeException e) {
+        log.warn("A CDC write could not be repeated on the live masterdoctorindex, readers see "
+            + "it once the rebuilt index is promoted.", e);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Apply a write without a result to the masterdoctorindex and, while mirroring, repeat it on the
+   * live index.
+   *
+   * @param write the write, given the name of the index to write to
+   */
+  public void update(Consumer<String> write) {
+    write(index -> {
+      write.accept(index);
+      return null;
+    });
+  }
+}
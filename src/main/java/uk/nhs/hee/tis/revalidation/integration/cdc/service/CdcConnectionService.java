@@ -21,18 +21,28 @@
 
 package uk.nhs.hee.tis.revalidation.integration.cdc.service;
 
-import static uk.nhs.hee.tis.revalidation.integration.config.EsConstant.Indexes.MASTER_DOCTOR_INDEX;
+import static uk.nhs.hee.tis.revalidation.integration.cdc.repository.custom.CdcVersionStamps.stamp;
 
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.NotImplementedException;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import uk.nhs.hee.tis.revalidation.integration.cdc.CdcMetrics;
 import uk.nhs.hee.tis.revalidation.integration.cdc.repository.custom.EsDocUpdateHelper;
+import uk.nhs.hee.tis.revalidation.integration.cdc.repository.custom.EsPartialUpdateCoalescer;
+import uk.nhs.hee.tis.revalidation.integration.cdc.repository.custom.LiveGenerationMirror;
 import uk.nhs.hee.tis.revalidation.integration.entity.ConnectionLog;
+import uk.nhs.hee.tis.revalidation.integration.enums.CdcFieldGroup;
+import uk.nhs.hee.tis.revalidation.integration.enums.CdcSource;
+import uk.nhs.hee.tis.revalidation.integration.sync.helper.MasterDoctorIdentityResolver;
 import uk.nhs.hee.tis.revalidation.integration.sync.repository.MasterDoctorElasticSearchRepository;
 import uk.nhs.hee.tis.revalidation.integration.sync.view.MasterDoctorView;
 
@@ -51,15 +61,35 @@ public class CdcConnectionService extends CdcService<ConnectionLog> {
 
   private final EsDocUpdateHelper esUpdateHelper;
 
+  private final EsPartialUpdateCoalescer updateCoalescer;
+
+  private final MasterDoctorIdentityResolver identityResolver;
+
+  private final boolean updateByDocumentId;
+
+  private final CdcMetrics cdcMetrics;
+
+  private final LiveGenerationMirror liveGenerationMirror;
+
   /**
    * Service responsible for updating the ConnectionLog composite fields used for searching.
    */
   public CdcConnectionService(
       MasterDoctorElasticSearchRepository repository,
-      EsDocUpdateHelper esUpdateHelper
+      EsDocUpdateHelper esUpdateHelper,
+      EsPartialUpdateCoalescer updateCoalescer,
+      MasterDoctorIdentityResolver identityResolver,
+      @Value("${app.cdc.update-by-document-id:false}") boolean updateByDocumentId,
+      CdcMetrics cdcMetrics,
+      LiveGenerationMirror liveGenerationMirror
   ) {
     super(repository);
     this.esUpdateHelper = esUpdateHelper;
+    this.updateCoalescer = updateCoalescer;
+    this.identityResolver = identityResolver;
+    this.updateByDocumentId = updateByDocumentId;
+    this.cdcMetrics = cdcMetrics;
+    this.liveGenerationMirror = liveGenerationMirror;
   }
 
   /**
@@ -69,36 +99,42 @@ public class CdcConnectionService extends CdcService<ConnectionLog> {
    */
   @Override
   public void upsertEntity(ConnectionLog entity) {
+    upsertEntity(entity, null);
+  }
+
+  /**
+   * Add new connection to index, unless the doctor holds a newer version of the connection fields.
+   *
+   * @param entity  connectionlog to add to index
+   * @param version the version of the change, null if it is not known
+   */
+  @Override
+  public void upsertEntity(ConnectionLog entity, Long version) {
     String gmcId = entity.getGmcId();
     final var repository = getRepository();
-    final boolean successfulResponse = entity.getResponseCode() != null
-        && entity.getResponseCode().equals(SUCCESSFUL_REQUEST_RESPONSE_CODE);
-    final boolean updatedByGmc =
-        entity.getUpdatedBy() != null && entity.getUpdatedBy().equals(UPDATED_BY_GMC);
 
-    if (!updatedByGmc && !successfulResponse) {
-      log.info("Discarding unsuccessful connection log for gmcId: {}, response code: {}",
-          entity.getGmcId(), entity.getResponseCode());
+    if (isDiscarded(entity)) {
       return;
     }
 
     try {
-      List<MasterDoctorView> masterDoctorViewList = repository.findByGmcReferenceNumber(gmcId);
+      Map<String, Object> doc = stamp(toEsDoc(entity), CdcFieldGroup.CONNECTION, version);
+      if (updateByDocumentId && cdcMetrics.timeWrite(CdcSource.CONNECTION_LOG,
+          () -> updateByGmcDocumentId(liveGenerationMirror, updateCoalescer, gmcId, doc))) {
+        return;
+      }
+      List<MasterDoctorView> masterDoctorViewList = cdcMetrics.timeLookup(
+          CdcSource.CONNECTION_LOG, () -> repository.findByGmcReferenceNumber(gmcId));
       if (!masterDoctorViewList.isEmpty()) {
         if (masterDoctorViewList.size() > 1) {
           log.error("Multiple doctors assigned to the same GMC number: {}", gmcId);
         }
         MasterDoctorView masterDoctorView = masterDoctorViewList.get(0);
-
-        String updatedBy = entity.getUpdatedBy();
-        LocalDateTime requestTime = entity.getRequestTime();
-
-        // Partial updates on fields related to connection logs
-        Map<String, Object> doc = new HashMap<>();
-        doc.put("updatedBy", updatedBy);
-        doc.put("lastConnectionDateTime", requestTime.format(ES_DATETIME_FORMATTER));
-        esUpdateHelper.partialUpdate(MASTER_DOCTOR_INDEX,
-            masterDoctorView.getId(), doc, MasterDoctorView.class);
+        cdcMetrics.timeWrite(CdcSource.CONNECTION_LOG,
+            () -> liveGenerationMirror.update(
+                index -> updateCoalescer.update(index, masterDoctorView.getId(), doc)));
+      } else {
+        cdcMetrics.recordNoop(CdcSource.CONNECTION_LOG, 1);
       }
     } catch (Exception e) {
       log.error("CDC error adding connection: {}, exception: {}", entity, e.getMessage(), e);
@@ -106,8 +142,90 @@ public class CdcConnectionService extends CdcService<ConnectionLog> {
     }
   }
 
+  /**
+   * Add a batch of connections to the index with one lookup and one bulk update. Changes to the
+   * same doctor are merged in the order they were received, keeping the newest version.
+   *
+   * @param entities connectionlogs to add to index, in the order they were received
+   * @param versions the version of the change of each connectionlog, null where it is not known
+   * @return the connectionlogs which could not be written
+   */
+  @Override
+  public List<ConnectionLog> upsertEntities(List<ConnectionLog> entities, List<Long> versions) {
+    Map<ConnectionLog, Long> versionsByEntity = new IdentityHashMap<>();
+    for (int i = 0; i < entities.size(); i++) {
+      versionsByEntity.put(entities.get(i), versions.get(i));
+    }
+    List<ConnectionLog> accepted = entities.stream().filter(e -> !isDiscarded(e)).toList();
+    List<ConnectionLog> failed = new ArrayList<>();
+    Map<String, Map<String, Object>> fieldsById = new LinkedHashMap<>();
+    Map<String, List<ConnectionLog>> entitiesByDocId = new HashMap<>();
+    try {
+      Map<String, List<String>> existingIdsByGmc = cdcMetrics.timeLookup(
+          CdcSource.CONNECTION_LOG, () -> identityResolver.resolveByGmcReferenceNumbers(
+              accepted.stream().map(ConnectionLog::getGmcId).toList()));
+      for (ConnectionLog entity : accepted) {
+        List<String> existingIds = existingIdsByGmc.getOrDefault(entity.getGmcId(), List.of());
+        if (existingIds.isEmpty()) {
+          cdcMetrics.recordNoop(CdcSource.CONNECTION_LOG, 1);
+          continue;
+        }
+        if (existingIds.size() > 1) {
+          log.error("Multiple doctors assigned to the same GMC number: {}", entity.getGmcId());
+        }
+        Map<String, Object> doc;
+        try {
+          doc = stamp(toEsDoc(entity), CdcFieldGroup.CONNECTION, versionsByEntity.get(entity));
+        } catch (RuntimeException e) {
+          log.error("CDC error adding connection: {}, exception: {}", entity, e.getMessage(), e);
+          failed.add(entity);
+          continue;
+        }
+        String id = existingIds.get(0);
+        fieldsById.merge(id, doc, CdcService::mergeFields);
+        entitiesByDocId.computeIfAbsent(id, k -> new ArrayList<>()).add(entity);
+      }
+      if (!fieldsById.isEmpty()) {
+        failed.addAll(failedEntities(cdcMetrics.timeWrite(CdcSource.CONNECTION_LOG,
+            () -> liveGenerationMirror.write(
+                index -> esUpdateHelper.bulkPartialUpdate(index, fieldsById))),
+            entitiesByDocId));
+      }
+      return failed;
+    } catch (Exception e) {
+      log.error("CDC error adding a batch of {} connections", entities.size(), e);
+      return accepted;
+    }
+  }
+
   @Override
   public void deleteEntity(String key) {
     throw new NotImplementedException();
   }
+
+  private boolean isDiscarded(ConnectionLog entity) {
+    final boolean successfulResponse = entity.getResponseCode() != null
+        && entity.getResponseCode().equals(SUCCESSFUL_REQUEST_RESPONSE_CODE);
+    final boolean updatedByGmc =
+        entity.getUpdatedBy() != null && entity.getUpdatedBy().equals(UPDATED_BY_GMC);
+
+    if (!updatedByGmc && !successfulResponse) {
+      log.info("Discarding unsuccessful connection log for gmcId: {}, response code: {}",
+          entity.getGmcId(), entity.getResponseCode());
+      cdcMetrics.recordDiscarded(CdcSource.CONNECTION_LOG, 1);
+      return true;
+    }
+    return false;
+  }
+
+  private Map<String, Object> toEsDoc(ConnectionLog entity) {
+    String updatedBy = entity.getUpdatedBy();
+    LocalDateTime requestTime = entity.getRequestTime();
+
+    // Partial updates on fields related to connection logs
+    Map<String, Object> doc = new HashMap<>();
+    doc.put("updatedBy", updatedBy);
+    doc.put("lastConnectionDateTime", requestTime.format(ES_DATETIME_FORMATTER));
+    return doc;
+  }
 }
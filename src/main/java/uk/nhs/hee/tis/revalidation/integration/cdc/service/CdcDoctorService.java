@@ -21,17 +21,30 @@
 
 package uk.nhs.hee.tis.revalidation.integration.cdc.service;
 
-import static uk.nhs.hee.tis.revalidation.integration.config.EsConstant.Indexes.MASTER_DOCTOR_INDEX;
+import static uk.nhs.hee.tis.revalidation.integration.cdc.repository.custom.CdcVersionStamps.stamp;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.NotImplementedException;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import uk.nhs.hee.tis.revalidation.integration.cdc.CdcMetrics;
+import uk.nhs.hee.tis.revalidation.integration.cdc.repository.custom.EsBulkWriteEngine.BulkWriteResult;
 import uk.nhs.hee.tis.revalidation.integration.cdc.repository.custom.EsDocUpdateHelper;
+import uk.nhs.hee.tis.revalidation.integration.cdc.repository.custom.EsDocUpdateHelper.EsUpdateException;
+import uk.nhs.hee.tis.revalidation.integration.cdc.repository.custom.EsPartialUpdateCoalescer;
+import uk.nhs.hee.tis.revalidation.integration.cdc.repository.custom.LiveGenerationMirror;
 import uk.nhs.hee.tis.revalidation.integration.entity.DoctorsForDB;
+import uk.nhs.hee.tis.revalidation.integration.enums.CdcFieldGroup;
+import uk.nhs.hee.tis.revalidation.integration.enums.CdcSource;
 import uk.nhs.hee.tis.revalidation.integration.router.mapper.MasterDoctorViewMapper;
+import uk.nhs.hee.tis.revalidation.integration.sync.helper.MasterDoctorDocumentIds;
+import uk.nhs.hee.tis.revalidation.integration.sync.helper.MasterDoctorIdentityResolver;
 import uk.nhs.hee.tis.revalidation.integration.sync.repository.MasterDoctorElasticSearchRepository;
-import uk.nhs.hee.tis.revalidation.integration.sync.view.MasterDoctorView;
 
 /**
  * Service responsible for updating the repository of composite Doctor records used for searching.
@@ -44,19 +57,41 @@ public class CdcDoctorService extends CdcService<DoctorsForDB> {
 
   private final EsDocUpdateHelper esDocUpdateHelper;
 
+  private final EsPartialUpdateCoalescer updateCoalescer;
+
+  private final MasterDoctorIdentityResolver identityResolver;
+
+  private final boolean updateByDocumentId;
+
+  private final CdcMetrics cdcMetrics;
+
+  private final LiveGenerationMirror liveGenerationMirror;
+
   /**
    * Create a service.
    *
-   * @param repository        The ElasticSearch repository with the index managed by the service
-   * @param esDocUpdateHelper the helper to update ES docs
-   * @param mapper            a mapper for converting to/from the persisted composite view
+   * @param repository           The ElasticSearch repository with the index managed by the service
+   * @param esDocUpdateHelper    the helper to update ES docs
+   * @param updateCoalescer      the coalescer merging updates to the same doc
+   * @param mapper               a mapper for converting to/from the persisted composite view
+   * @param identityResolver     the resolver finding the documents of a batch of doctors
+   * @param updateByDocumentId   whether existing doctors are updated by id before searching
+   * @param cdcMetrics           the metrics the lookups and writes are timed with
+   * @param liveGenerationMirror the mirror repeating the writes on the live index in a rebuild
    */
   public CdcDoctorService(MasterDoctorElasticSearchRepository repository,
-      EsDocUpdateHelper esDocUpdateHelper,
-      MasterDoctorViewMapper mapper) {
+      EsDocUpdateHelper esDocUpdateHelper, EsPartialUpdateCoalescer updateCoalescer,
+      MasterDoctorViewMapper mapper, MasterDoctorIdentityResolver identityResolver,
+      @Value("${app.cdc.update-by-document-id:false}") boolean updateByDocumentId,
+      CdcMetrics cdcMetrics, LiveGenerationMirror liveGenerationMirror) {
     super(repository);
     this.esDocUpdateHelper = esDocUpdateHelper;
+    this.updateCoalescer = updateCoalescer;
     this.mapper = mapper;
+    this.identityResolver = identityResolver;
+    this.updateByDocumentId = updateByDocumentId;
+    this.cdcMetrics = cdcMetrics;
+    this.liveGenerationMirror = liveGenerationMirror;
   }
 
   /**
@@ -66,22 +101,46 @@ public class CdcDoctorService extends CdcService<DoctorsForDB> {
    */
   @Override
   public void upsertEntity(DoctorsForDB entity) {
+    upsertEntity(entity, null);
+  }
+
+  /**
+   * Add new doctor to index, unless the doctor holds a newer version of the doctor fields.
+   *
+   * @param entity  doctorsForDb to add to index
+   * @param version the version of the change, null if it is not known
+   */
+  @Override
+  public void upsertEntity(DoctorsForDB entity, Long version) {
 
     final var repository = getRepository();
-    final var existingDoctors = repository.findByGmcReferenceNumber(entity.getGmcReferenceNumber());
+    Map<String, Object> doc = stamp(mapper.doctorToEsDoc(entity), CdcFieldGroup.DOCTOR, version);
+    if (updateByDocumentId && cdcMetrics.timeWrite(CdcSource.DOCTOR,
+        () -> updateByGmcDocumentId(liveGenerationMirror, updateCoalescer,
+            entity.getGmcReferenceNumber(), doc))) {
+      return;
+    }
+    final var existingDoctors = cdcMetrics.timeLookup(CdcSource.DOCTOR,
+        () -> repository.findByGmcReferenceNumber(entity.getGmcReferenceNumber()));
     try {
       if (existingDoctors.isEmpty()) {
-        repository.save(mapper.doctorToMasterView(entity));
+        // A document the search did not see yet is updated with the doctor fields, not replaced.
+        String id = MasterDoctorDocumentIds.newDocumentId(entity.getGmcReferenceNumber(), null);
+        BulkWriteResult result = cdcMetrics.timeWrite(CdcSource.DOCTOR,
+            () -> liveGenerationMirror.write(
+                index -> esDocUpdateHelper.bulkUpsert(index, Map.of(), Map.of(id, doc))));
+        if (result.hasFailures()) {
+          throw new EsUpdateException("Failed to create document: " + id);
+        }
       } else {
         if (existingDoctors.size() > 1) {
           log.error("Multiple doctors assigned to the same GMC number: {}",
               entity.getGmcReferenceNumber());
         }
 
-        Map<String, Object> doc = mapper.doctorToEsDoc(entity);
-        esDocUpdateHelper.partialUpdate(MASTER_DOCTOR_INDEX,
-            existingDoctors.get(0).getId(), doc,
-            MasterDoctorView.class);
+        String id = existingDoctors.get(0).getId();
+        cdcMetrics.timeWrite(CdcSource.DOCTOR, () -> liveGenerationMirror.update(
+            index -> updateCoalescer.update(index, id, doc)));
       }
     } catch (Exception e) {
       log.error(String.format("Failed to insert new record for gmcId: %s, error: %s",
@@ -91,6 +150,55 @@ public class CdcDoctorService extends CdcService<DoctorsForDB> {
     }
   }
 
+  /**
+   * Add a batch of doctors to the index with one lookup and one bulk write. Changes to the same
+   * doctor are merged in the order they were received, keeping the newest version, and doctors
+   * without a document are created.
+   *
+   * @param entities doctorsForDb to add to index, in the order they were received
+   * @param versions the version of the change of each doctor, null where it is not known
+   * @return the doctors which could not be written
+   */
+  @Override
+  public List<DoctorsForDB> upsertEntities(List<DoctorsForDB> entities, List<Long> versions) {
+    Map<String, Map<String, Object>> fieldsById = new LinkedHashMap<>();
+    Map<String, Map<String, Object>> newDocumentsById = new LinkedHashMap<>();
+    Map<String, List<DoctorsForDB>> entitiesByDocId = new HashMap<>();
+    Map<String, String> newIdsByGmc = new HashMap<>();
+    try {
+      Map<String, List<String>> existingIdsByGmc = cdcMetrics.timeLookup(CdcSource.DOCTOR,
+          () -> identityResolver.resolveByGmcReferenceNumbers(
+              entities.stream().map(DoctorsForDB::getGmcReferenceNumber).toList()));
+      for (int i = 0; i < entities.size(); i++) {
+        DoctorsForDB entity = entities.get(i);
+        String gmcId = entity.getGmcReferenceNumber();
+        Map<String, Object> doc =
+            stamp(mapper.doctorToEsDoc(entity), CdcFieldGroup.DOCTOR, versions.get(i));
+        List<String> existingIds = existingIdsByGmc.getOrDefault(gmcId, List.of());
+        String id;
+        if (existingIds.isEmpty()) {
+          id = newIdsByGmc.computeIfAbsent(gmcId,
+              k -> MasterDoctorDocumentIds.newDocumentId(gmcId, null));
+          newDocumentsById.merge(id, doc, CdcService::mergeFields);
+        } else {
+          if (existingIds.size() > 1) {
+            log.error("Multiple doctors assigned to the same GMC number: {}", gmcId);
+          }
+          id = existingIds.get(0);
+          fieldsById.merge(id, doc, CdcService::mergeFields);
+        }
+        entitiesByDocId.computeIfAbsent(id, k -> new ArrayList<>()).add(entity);
+      }
+      BulkWriteResult result = cdcMetrics.timeWrite(CdcSource.DOCTOR,
+          () -> liveGenerationMirror.write(
+              index -> esDocUpdateHelper.bulkUpsert(index, fieldsById, newDocumentsById)));
+      return failedEntities(result, entitiesByDocId);
+    } catch (Exception e) {
+      log.error("Failed to upsert a batch of {} doctors", entities.size(), e);
+      return entities;
+    }
+  }
+
   @Override
   public void deleteEntity(String key) {
     throw new NotImplementedException();
@@ -27,121 +27,109 @@ import static org.elasticsearch.index.query.QueryBuilders.boolQuery;
 import static org.elasticsearch.index.query.QueryBuilders.matchQuery;
 import static org.elasticsearch.index.query.QueryBuilders.nestedQuery;
 
-import java.util.ArrayList;
 import java.util.List;
 import lombok.extern.slf4j.Slf4j;
 import org.elasticsearch.ResourceNotFoundException;
-import org.elasticsearch.index.query.BoolQueryBuilder;
-import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
-import org.springframework.data.elasticsearch.core.SearchHit;
-import org.springframework.data.elasticsearch.core.query.NativeSearchQuery;
-import org.springframework.data.elasticsearch.core.query.NativeSearchQueryBuilder;
+import org.elasticsearch.index.query.QueryBuilder;
+import org.elasticsearch.script.Script;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import uk.nhs.hee.tis.revalidation.integration.cdc.CdcMetrics;
 import uk.nhs.hee.tis.revalidation.integration.cdc.dto.CdcHiddenDiscrepancyDto;
 import uk.nhs.hee.tis.revalidation.integration.cdc.mapper.CdcHiddenDiscrepancyMapper;
-import uk.nhs.hee.tis.revalidation.integration.entity.HiddenDiscrepancy;
+import uk.nhs.hee.tis.revalidation.integration.cdc.repository.custom.EsDocUpdateHelper;
+import uk.nhs.hee.tis.revalidation.integration.cdc.repository.custom.HiddenDiscrepancyScripts;
+import uk.nhs.hee.tis.revalidation.integration.cdc.repository.custom.LiveGenerationMirror;
+import uk.nhs.hee.tis.revalidation.integration.enums.CdcSource;
+import uk.nhs.hee.tis.revalidation.integration.sync.helper.MasterDoctorDocumentIds;
 import uk.nhs.hee.tis.revalidation.integration.sync.repository.MasterDoctorElasticSearchRepository;
 import uk.nhs.hee.tis.revalidation.integration.sync.view.MasterDoctorView;
 
 /**
  * A service class that updates hidden discrepancy fields.
+ *
+ * <p>Hidden discrepancies are added and removed with painless scripts run on the cluster, so
+ * concurrent changes to the same doctor do not overwrite each other.
  */
 @Slf4j
 @Service
 public class CdcHiddenDiscrepancyService extends CdcService<CdcHiddenDiscrepancyDto> {
 
-  private final ElasticsearchOperations elasticsearchOperations;
+  private final EsDocUpdateHelper esDocUpdateHelper;
   private final CdcHiddenDiscrepancyMapper cdcHiddenDiscrepancyMapper;
+  private final boolean updateByDocumentId;
+  private final CdcMetrics cdcMetrics;
+  private final LiveGenerationMirror liveGenerationMirror;
 
   /**
    * Service responsible for updating the hidden discrepancy nested fields used for searching.
    */
   public CdcHiddenDiscrepancyService(
       MasterDoctorElasticSearchRepository repository,
-      ElasticsearchOperations elasticsearchOperations,
-      CdcHiddenDiscrepancyMapper cdcHiddenDiscrepancyMapper
+      EsDocUpdateHelper esDocUpdateHelper,
+      CdcHiddenDiscrepancyMapper cdcHiddenDiscrepancyMapper,
+      @Value("${app.cdc.update-by-document-id:false}") boolean updateByDocumentId,
+      CdcMetrics cdcMetrics,
+      LiveGenerationMirror liveGenerationMirror
   ) {
     super(repository);
-    this.elasticsearchOperations = elasticsearchOperations;
+    this.esDocUpdateHelper = esDocUpdateHelper;
     this.cdcHiddenDiscrepancyMapper = cdcHiddenDiscrepancyMapper;
+    this.updateByDocumentId = updateByDocumentId;
+    this.cdcMetrics = cdcMetrics;
+    this.liveGenerationMirror = liveGenerationMirror;
   }
 
   /**
    * Add new hidden discrepancy to index (this is an aggregation, updating an existing record).
+   * A doctor keeps one hidden discrepancy per designated body, so adding one for a designated body
+   * that is already hidden leaves the document unchanged.
    *
    * @param entity hidden discrepancy to add to index
    */
   @Override
   public void upsertEntity(CdcHiddenDiscrepancyDto entity) {
     String gmcId = entity.getGmcId();
-    final var repository = getRepository();
-
-    List<MasterDoctorView> masterDoctorViewList = repository.findByGmcReferenceNumber(gmcId);
-    if (!masterDoctorViewList.isEmpty()) {
-      MasterDoctorView masterDoctorView = handleDuplicateRecords(masterDoctorViewList);
-
-      List<HiddenDiscrepancy> hiddenDiscrepancies = new ArrayList<>();
-
-      if (masterDoctorView.getHiddenDiscrepancies() != null) {
-        hiddenDiscrepancies.addAll(masterDoctorView.getHiddenDiscrepancies());
-      }
-
-      boolean alreadyHidden = hiddenDiscrepancies.stream().anyMatch(h ->
-          h.getHiddenForDesignatedBodyCode().equals(entity.getHiddenForDesignatedBodyCode()));
-
-      if (alreadyHidden) {
-        log.info(
-            "gmcReferenceNumber: {} already has a hidden discrepancy for designated body: {}",
-            entity.getGmcId(), entity.getHiddenForDesignatedBodyCode());
+    Script script = HiddenDiscrepancyScripts.addHiddenDiscrepancies(
+        List.of(cdcHiddenDiscrepancyMapper.toEntity(entity)));
+
+    if (updateByDocumentId) {
+      String id = MasterDoctorDocumentIds.documentId(gmcId, null);
+      if (id != null && cdcMetrics.timeWrite(CdcSource.HIDDEN_DISCREPANCY,
+          () -> liveGenerationMirror.write(
+              index -> esDocUpdateHelper.scriptedUpdateIfExists(index, id, script)))) {
         return;
       }
-
-      hiddenDiscrepancies.add(cdcHiddenDiscrepancyMapper.toEntity(entity));
-      masterDoctorView = repository.findByGmcReferenceNumber(gmcId).get(0);
-      masterDoctorView.setHiddenDiscrepancies(hiddenDiscrepancies);
-
-      repository.save(masterDoctorView);
+    }
+    List<MasterDoctorView> masterDoctorViewList = cdcMetrics.timeLookup(
+        CdcSource.HIDDEN_DISCREPANCY, () -> getRepository().findByGmcReferenceNumber(gmcId));
+    if (!masterDoctorViewList.isEmpty()) {
+      MasterDoctorView masterDoctorView = handleDuplicateRecords(masterDoctorViewList);
+      cdcMetrics.timeWrite(CdcSource.HIDDEN_DISCREPANCY, () -> liveGenerationMirror.update(
+          index -> esDocUpdateHelper.scriptedUpdate(index, masterDoctorView.getId(), script)));
+    } else {
+      cdcMetrics.recordNoop(CdcSource.HIDDEN_DISCREPANCY, 1);
     }
   }
 
+  /**
+   * Remove a hidden discrepancy from every document it was added to.
+   *
+   * @param key the id of the hidden discrepancy to remove
+   */
   @Override
   public void deleteEntity(String key) {
-    MasterDoctorView masterDoctorView = findRecordAssociatedWithHiddenDiscrepancy(key);
-    String gmcId = masterDoctorView.getGmcReferenceNumber();
-    final var repository = getRepository();
-
-    List<HiddenDiscrepancy> updatedList = new ArrayList<>();
-    if (masterDoctorView.getHiddenDiscrepancies() != null) {
-      updatedList = masterDoctorView.getHiddenDiscrepancies().stream()
-          .filter(h -> !h.getId()
-              .equals(key)).toList();
-    }
-
-    masterDoctorView = repository.findByGmcReferenceNumber(gmcId).get(0);
-    masterDoctorView.setHiddenDiscrepancies(updatedList);
-
-    repository.save(masterDoctorView);
-  }
-
-  private MasterDoctorView findRecordAssociatedWithHiddenDiscrepancy(String key) {
-    BoolQueryBuilder rootQuery = boolQuery();
-    rootQuery.must(boolQuery().filter(nestedQuery("hiddenDiscrepancies", boolQuery()
-        .must(matchQuery("hiddenDiscrepancies.id.keyword", key)), None)));
-    NativeSearchQuery searchQueryEsResult = new NativeSearchQueryBuilder()
-        .withQuery(rootQuery)
-        .build();
-    List<MasterDoctorView> result = elasticsearchOperations.search(searchQueryEsResult,
-            MasterDoctorView.class)
-        .getSearchHits()
-        .stream()
-        .map(SearchHit::getContent)
-        .toList();
-    if (!result.isEmpty()) {
-      return handleDuplicateRecords(result);
-    } else {
+    QueryBuilder query = boolQuery().filter(nestedQuery("hiddenDiscrepancies", boolQuery()
+        .must(matchQuery("hiddenDiscrepancies.id.keyword", key)), None));
+    long updated = cdcMetrics.timeWrite(CdcSource.HIDDEN_DISCREPANCY,
+        () -> liveGenerationMirror.write(index -> esDocUpdateHelper.updateByQuery(index, query,
+            HiddenDiscrepancyScripts.removeHiddenDiscrepancy(key))));
+    if (updated == 0) {
       throw new ResourceNotFoundException(
           String.format("No elasticsearch record found to delete hidden discrepancy with id: %s",
               key));
+    } else if (updated > 1) {
+      log.error("Hidden discrepancy with id: {} was removed from {} doctors", key, updated);
     }
   }
 
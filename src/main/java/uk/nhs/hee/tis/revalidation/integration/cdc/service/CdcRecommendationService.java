@@ -21,16 +21,25 @@
 
 package uk.nhs.hee.tis.revalidation.integration.cdc.service;
 
-import static uk.nhs.hee.tis.revalidation.integration.config.EsConstant.Indexes.MASTER_DOCTOR_INDEX;
+import static uk.nhs.hee.tis.revalidation.integration.cdc.repository.custom.CdcVersionStamps.stamp;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.NotImplementedException;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import uk.nhs.hee.tis.revalidation.integration.cdc.CdcMetrics;
 import uk.nhs.hee.tis.revalidation.integration.cdc.repository.custom.EsDocUpdateHelper;
+import uk.nhs.hee.tis.revalidation.integration.cdc.repository.custom.EsPartialUpdateCoalescer;
+import uk.nhs.hee.tis.revalidation.integration.cdc.repository.custom.LiveGenerationMirror;
 import uk.nhs.hee.tis.revalidation.integration.entity.Recommendation;
+import uk.nhs.hee.tis.revalidation.integration.enums.CdcFieldGroup;
+import uk.nhs.hee.tis.revalidation.integration.enums.CdcSource;
+import uk.nhs.hee.tis.revalidation.integration.sync.helper.MasterDoctorIdentityResolver;
 import uk.nhs.hee.tis.revalidation.integration.sync.repository.MasterDoctorElasticSearchRepository;
 import uk.nhs.hee.tis.revalidation.integration.sync.view.MasterDoctorView;
 
@@ -40,15 +49,35 @@ public class CdcRecommendationService extends CdcService<Recommendation> {
 
   private final EsDocUpdateHelper esUpdateHelper;
 
+  private final EsPartialUpdateCoalescer updateCoalescer;
+
+  private final MasterDoctorIdentityResolver identityResolver;
+
+  private final boolean updateByDocumentId;
+
+  private final CdcMetrics cdcMetrics;
+
+  private final LiveGenerationMirror liveGenerationMirror;
+
   /**
    * Service responsible for updating the Recommendation composite fields used for searching.
    */
   public CdcRecommendationService(
       MasterDoctorElasticSearchRepository repository,
-      EsDocUpdateHelper esUpdateHelper
+      EsDocUpdateHelper esUpdateHelper,
+      EsPartialUpdateCoalescer updateCoalescer,
+      MasterDoctorIdentityResolver identityResolver,
+      @Value("${app.cdc.update-by-document-id:false}") boolean updateByDocumentId,
+      CdcMetrics cdcMetrics,
+      LiveGenerationMirror liveGenerationMirror
   ) {
     super(repository);
     this.esUpdateHelper = esUpdateHelper;
+    this.updateCoalescer = updateCoalescer;
+    this.identityResolver = identityResolver;
+    this.updateByDocumentId = updateByDocumentId;
+    this.cdcMetrics = cdcMetrics;
+    this.liveGenerationMirror = liveGenerationMirror;
   }
 
   /**
@@ -58,23 +87,38 @@ public class CdcRecommendationService extends CdcService<Recommendation> {
    */
   @Override
   public void upsertEntity(Recommendation entity) {
+    upsertEntity(entity, null);
+  }
+
+  /**
+   * Add new recommendation to index, unless the doctor holds a newer version of the
+   * recommendation fields.
+   *
+   * @param entity  recommendation to add to index
+   * @param version the version of the change, null if it is not known
+   */
+  @Override
+  public void upsertEntity(Recommendation entity, Long version) {
     String gmcId = entity.getGmcNumber();
     final var repository = getRepository();
     try {
-      List<MasterDoctorView> masterDoctorViewList = repository.findByGmcReferenceNumber(gmcId);
+      Map<String, Object> doc = stamp(toEsDoc(entity), CdcFieldGroup.RECOMMENDATION, version);
+      if (updateByDocumentId && cdcMetrics.timeWrite(CdcSource.RECOMMENDATION,
+          () -> updateByGmcDocumentId(liveGenerationMirror, updateCoalescer, gmcId, doc))) {
+        return;
+      }
+      List<MasterDoctorView> masterDoctorViewList = cdcMetrics.timeLookup(
+          CdcSource.RECOMMENDATION, () -> repository.findByGmcReferenceNumber(gmcId));
       if (!masterDoctorViewList.isEmpty()) {
         if (masterDoctorViewList.size() > 1) {
           log.error("Multiple doctors assigned to the same GMC number!");
         }
         MasterDoctorView masterDoctorView = masterDoctorViewList.get(0);
-        // Partial updates on fields related to recommendation
-        Map<String, Object> doc = new HashMap<>();
-        doc.put("admin", entity.getAdmin());
-        if (entity.getOutcome() != null) {
-          doc.put("gmcStatus", entity.getOutcome().getOutcome());
-        }
-        esUpdateHelper.partialUpdate(MASTER_DOCTOR_INDEX,
-            masterDoctorView.getId(), doc, MasterDoctorView.class);
+        cdcMetrics.timeWrite(CdcSource.RECOMMENDATION,
+            () -> liveGenerationMirror.update(
+                index -> updateCoalescer.update(index, masterDoctorView.getId(), doc)));
+      } else {
+        cdcMetrics.recordNoop(CdcSource.RECOMMENDATION, 1);
       }
     } catch (Exception e) {
       log.error(String
@@ -84,8 +128,64 @@ public class CdcRecommendationService extends CdcService<Recommendation> {
     }
   }
 
+  /**
+   * Add a batch of recommendations to the index with one lookup and one bulk update. Changes to
+   * the same doctor are merged in the order they were received, keeping the newest version.
+   *
+   * @param entities recommendations to add to index, in the order they were received
+   * @param versions the version of the change of each recommendation, null where it is not known
+   * @return the recommendations which could not be written
+   */
+  @Override
+  public List<Recommendation> upsertEntities(List<Recommendation> entities,
+      List<Long> versions) {
+    Map<String, Map<String, Object>> fieldsById = new LinkedHashMap<>();
+    Map<String, List<Recommendation>> entitiesByDocId = new HashMap<>();
+    try {
+      Map<String, List<String>> existingIdsByGmc = cdcMetrics.timeLookup(
+          CdcSource.RECOMMENDATION, () -> identityResolver.resolveByGmcReferenceNumbers(
+              entities.stream().map(Recommendation::getGmcNumber).toList()));
+      for (int i = 0; i < entities.size(); i++) {
+        Recommendation entity = entities.get(i);
+        List<String> existingIds =
+            existingIdsByGmc.getOrDefault(entity.getGmcNumber(), List.of());
+        if (existingIds.isEmpty()) {
+          cdcMetrics.recordNoop(CdcSource.RECOMMENDATION, 1);
+          continue;
+        }
+        if (existingIds.size() > 1) {
+          log.error("Multiple doctors assigned to the same GMC number!");
+        }
+        String id = existingIds.get(0);
+        fieldsById.merge(id, stamp(toEsDoc(entity), CdcFieldGroup.RECOMMENDATION, versions.get(i)),
+            CdcService::mergeFields);
+        entitiesByDocId.computeIfAbsent(id, k -> new ArrayList<>()).add(entity);
+      }
+      if (fieldsById.isEmpty()) {
+        return List.of();
+      }
+      return failedEntities(cdcMetrics.timeWrite(CdcSource.RECOMMENDATION,
+          () -> liveGenerationMirror.write(
+              index -> esUpdateHelper.bulkPartialUpdate(index, fieldsById))),
+          entitiesByDocId);
+    } catch (Exception e) {
+      log.error("CDC error adding a batch of {} recommendations", entities.size(), e);
+      return entities;
+    }
+  }
+
   @Override
   public void deleteEntity(String key) {
     throw new NotImplementedException();
   }
+
+  private Map<String, Object> toEsDoc(Recommendation entity) {
+    // Partial updates on fields related to recommendation
+    Map<String, Object> doc = new HashMap<>();
+    doc.put("admin", entity.getAdmin());
+    if (entity.getOutcome() != null) {
+      doc.put("gmcStatus", entity.getOutcome().getOutcome());
+    }
+    return doc;
+  }
 }
@@ -21,7 +21,16 @@
 
 package uk.nhs.hee.tis.revalidation.integration.cdc.service;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import lombok.extern.slf4j.Slf4j;
+import uk.nhs.hee.tis.revalidation.integration.cdc.repository.custom.CdcVersionStamps;
+import uk.nhs.hee.tis.revalidation.integration.cdc.repository.custom.EsBulkWriteEngine.BulkWriteResult;
+import uk.nhs.hee.tis.revalidation.integration.cdc.repository.custom.EsPartialUpdateCoalescer;
+import uk.nhs.hee.tis.revalidation.integration.cdc.repository.custom.LiveGenerationMirror;
+import uk.nhs.hee.tis.revalidation.integration.sync.helper.MasterDoctorDocumentIds;
 import uk.nhs.hee.tis.revalidation.integration.sync.repository.MasterDoctorElasticSearchRepository;
 
 @Slf4j
@@ -41,5 +50,96 @@ public abstract class CdcService<T> {
 
   public abstract void upsertEntity(T entity);
 
+  /**
+   * Add an entity to the index, unless the index holds a newer version of the fields it updates.
+   * Services that do not keep version stamps add the entity unconditionally.
+   *
+   * @param entity  the entity to add
+   * @param version the version of the change, null if it is not known
+   */
+  public void upsertEntity(T entity, Long version) {
+    upsertEntity(entity);
+  }
+
+  /**
+   * Add a batch of entities to the index, one at a time unless a service applies them together.
+   *
+   * @param entities the entities to add, in the order they were received
+   * @return the entities which could not be added
+   */
+  public List<T> upsertEntities(List<T> entities) {
+    return upsertEntities(entities, Collections.nCopies(entities.size(), null));
+  }
+
+  /**
+   * Add a batch of versioned entities to the index, one at a time unless a service applies them
+   * together.
+   *
+   * @param entities the entities to add, in the order they were received
+   * @param versions the version of the change of each entity, null where it is not known
+   * @return the entities which could not be added
+   */
+  public List<T> upsertEntities(List<T> entities, List<Long> versions) {
+    List<T> failed = new ArrayList<>();
+    for (int i = 0; i < entities.size(); i++) {
+      T entity = entities.get(i);
+      try {
+        upsertEntity(entity, versions.get(i));
+      } catch (RuntimeException e) {
+        log.error("Failed to upsert CDC entity: {}", entity, e);
+        failed.add(entity);
+      }
+    }
+    return failed;
+  }
+
+  /**
+   * Find the entities whose changes were written to a document that failed in a bulk write.
+   *
+   * @param result          the result of the bulk write
+   * @param entitiesByDocId the entities, mapped by the id of the document they were written to
+   * @param <T>             the type of the entities
+   * @return the entities which could not be written
+   */
+  protected static <T> List<T> failedEntities(BulkWriteResult result,
+      Map<String, List<T>> entitiesByDocId) {
+    return result.failedIds().stream()
+        .flatMap(id -> entitiesByDocId.getOrDefault(id, List.of()).stream())
+        .toList();
+  }
+
   public abstract void deleteEntity(String key);
+
+  /**
+   * Merge two partial updates of the same document, the later update winning for each field
+   * unless the earlier update is stamped with a newer version.
+   *
+   * @param earlier the fields of the update received first
+   * @param later   the fields of the update received later
+   * @return the merged fields
+   */
+  protected static Map<String, Object> mergeFields(Map<String, Object> earlier,
+      Map<String, Object> later) {
+    return CdcVersionStamps.merge(earlier, later);
+  }
+
+  /**
+   * Update the document of a doctor addressed by the id derived from its GMC number, without
+   * searching for it first. Documents which have not been re-keyed are not found this way, so the
+   * caller falls back to searching when this returns false. A doctor's document is always either
+   * found or not found by id, so its updates are never split between the two paths.
+   *
+   * @param liveGenerationMirror the mirror repeating the update on the live index during a rebuild
+   * @param updateCoalescer      the coalescer the update is written with
+   * @param gmcReferenceNumber   the GMC number of the doctor
+   * @param fields               the fields to update
+   * @return true if the document was updated, false if it must be searched for
+   */
+  protected static boolean updateByGmcDocumentId(LiveGenerationMirror liveGenerationMirror,
+      EsPartialUpdateCoalescer updateCoalescer, String gmcReferenceNumber,
+      Map<String, Object> fields) {
+    String id = MasterDoctorDocumentIds.documentId(gmcReferenceNumber, null);
+    return id != null && liveGenerationMirror.write(
+        index -> updateCoalescer.updateIfExists(index, id, fields));
+  }
 }
@@ -21,12 +21,26 @@
 
 package uk.nhs.hee.tis.revalidation.integration.cdc.service;
 
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.NotImplementedException;
 import org.springframework.stereotype.Service;
+import uk.nhs.hee.tis.revalidation.integration.cdc.CdcMetrics;
 import uk.nhs.hee.tis.revalidation.integration.cdc.dto.ConnectionInfoDto;
+import uk.nhs.hee.tis.revalidation.integration.cdc.repository.custom.EsBulkWriteEngine.BulkWriteResult;
+import uk.nhs.hee.tis.revalidation.integration.cdc.repository.custom.EsDocUpdateHelper;
+import uk.nhs.hee.tis.revalidation.integration.cdc.repository.custom.EsDocUpdateHelper.EsUpdateException;
+import uk.nhs.hee.tis.revalidation.integration.cdc.repository.custom.LiveGenerationMirror;
+import uk.nhs.hee.tis.revalidation.integration.enums.CdcSource;
 import uk.nhs.hee.tis.revalidation.integration.router.mapper.MasterDoctorViewMapper;
+import uk.nhs.hee.tis.revalidation.integration.sync.helper.MasterDoctorDocumentIds;
+import uk.nhs.hee.tis.revalidation.integration.sync.helper.MasterDoctorIdentityResolver;
 import uk.nhs.hee.tis.revalidation.integration.sync.repository.MasterDoctorElasticSearchRepository;
 import uk.nhs.hee.tis.revalidation.integration.sync.view.MasterDoctorView;
 
@@ -34,119 +48,127 @@ import uk.nhs.hee.tis.revalidation.integration.sync.view.MasterDoctorView;
 @Service
 public class CdcTraineeUpdateService extends CdcService<ConnectionInfoDto> {
 
-  private final MasterDoctorViewMapper mapper;
-
   /**
-   * Service responsible for updating the Trainee composite fields used for searching.
+   * The TIS fields removed from a document which is no longer linked with a TIS record.
    */
-  protected CdcTraineeUpdateService(MasterDoctorElasticSearchRepository repository,
-      MasterDoctorViewMapper mapper) {
-    super(repository);
-    this.mapper = mapper;
+  static final Map<String, Object> DETACHED_TIS_FIELDS;
+
+  static {
+    Map<String, Object> fields = new HashMap<>();
+    fields.put("tcsPersonId", null);
+    fields.put("tcsDesignatedBody", null);
+    fields.put("membershipStartDate", null);
+    fields.put("membershipEndDate", null);
+    fields.put("programmeName", null);
+    fields.put("curriculumEndDate", null);
+    fields.put("membershipType", null);
+    fields.put("programmeOwner", null);
+    fields.put("placementGrade", null);
+    DETACHED_TIS_FIELDS = Collections.unmodifiableMap(fields);
   }
 
-  /**
-   * When tcs personId exists && is filtered out in tcs traineeInfoForConnection.sql, tcs exports a
-   * dto only with tisPersonId to Reval. After Reval receives it, it tries using the tisPersonId to
-   * find the ES record: if there are ES records found, remove or detach TIS info for them and
-   * propagate these updates to Recommendation index.
-   *
-   * @param receivedTcsId received TIS person id
-   */
-  protected void detachTisInfoForFilteredOutRecords(Long receivedTcsId) {
-    final var repository = getRepository();
-    List<MasterDoctorView> viewsToRemove = repository.findByTcsPersonId(receivedTcsId);
-    // If the ES document is not present, ignore the change
-    if (!viewsToRemove.isEmpty()) {
-      viewsToRemove.forEach(this::detachTisInfo);
-    }
-  }
+  private final MasterDoctorViewMapper mapper;
 
-  /**
-   * If gmc DBC is null (doctor is not connected with GMC), remove the record; if gmc DBC is not
-   * null, detach TIS info. If the ES doc is deleted, publish a MasterDoctorView with only doc id;
-   * otherwise, publish the updated view.
-   *
-   * @param viewToRemove view to remove TIS info
-   * @return MasterDoctorView saved or deleted view
-   */
-  protected MasterDoctorView detachTisInfo(MasterDoctorView viewToRemove) {
-    final var repository = getRepository();
-    String gmcNumber = viewToRemove.getGmcReferenceNumber();
-    log.debug("Attempting to detach TIS info for tcs gmc number: [{}]", gmcNumber);
-    viewToRemove.setTcsPersonId(null);
-    viewToRemove.setTcsDesignatedBody(null);
-    viewToRemove.setMembershipStartDate(null);
-    viewToRemove.setMembershipEndDate(null);
-    viewToRemove.setProgrammeName(null);
-    viewToRemove.setCurriculumEndDate(null);
-    viewToRemove.setMembershipType(null);
-    viewToRemove.setProgrammeOwner(null);
-    viewToRemove.setPlacementGrade(null);
-    return repository.save(viewToRemove);
-  }
+  private final EsDocUpdateHelper esDocUpdateHelper;
+
+  private final MasterDoctorIdentityResolver identityResolver;
+
+  private final CdcMetrics cdcMetrics;
+
+  private final LiveGenerationMirror liveGenerationMirror;
 
   /**
-   * If there are ES docs whose tcsPersonId matches but gmcNumber doesn't match the received record,
-   * it means the ES docs is not linked with ths TIS records. Note: gmc number won't be null in ES
-   * indices.
-   *
-   * @param receivedDto received dto from TIS
+   * Service responsible for updating the Trainee composite fields used for searching.
    */
-  protected void detachTisInfoIfGmcNumberNotMatch(ConnectionInfoDto receivedDto) {
-    final var repository = getRepository();
-    Long receivedTcsId = receivedDto.getTcsPersonId();
-    String receivedGmcReferenceNumber = receivedDto.getGmcReferenceNumber();
-
-    List<MasterDoctorView> viewsToRemoveTisInfo =
-        repository.findByTcsPersonIdAndGmcReferenceNumberNot(receivedTcsId,
-            receivedGmcReferenceNumber);
-    viewsToRemoveTisInfo.forEach(this::detachTisInfo);
+  protected CdcTraineeUpdateService(MasterDoctorElasticSearchRepository repository,
+      MasterDoctorViewMapper mapper, EsDocUpdateHelper esDocUpdateHelper,
+      MasterDoctorIdentityResolver identityResolver, CdcMetrics cdcMetrics,
+      LiveGenerationMirror liveGenerationMirror) {
+    super(repository);
+    this.mapper = mapper;
+    this.esDocUpdateHelper = esDocUpdateHelper;
+    this.identityResolver = identityResolver;
+    this.cdcMetrics = cdcMetrics;
+    this.liveGenerationMirror = liveGenerationMirror;
   }
 
   /**
    * Add new trainee details to index (this is an aggregation, updating an existing record or
    * removing TIS info).
    *
+   * <p>Every document sharing the GMC number or the TIS person id of the trainee is found with one
+   * search, and the documents are classified in memory. When doctor record is filtered out by TIS
+   * sql, TIS sends null gmcNumber to Reval, and the TIS info is detached from every document with
+   * the TIS person id. Otherwise the documents with both the GMC number and the TIS person id are
+   * updated, or the documents with the GMC number if there are none, or a new document is
+   * created. Documents with the TIS person id but another GMC number are not linked with the TIS
+   * record, so the TIS info is detached from them. All the resulting writes are sent in one bulk
+   * request.
+   *
    * @param receivedDto trainee info to add to index
    */
   @Override
   public void upsertEntity(ConnectionInfoDto receivedDto) {
-
     Long receivedTcsId = receivedDto.getTcsPersonId();
     String receivedGmcReferenceNumber = receivedDto.getGmcReferenceNumber();
 
-    // When doctor record is filtered out by TIS sql, TIS sends null gmcNumber to Reval.
+    List<MasterDoctorView> candidates = cdcMetrics.timeLookup(CdcSource.TRAINEE_UPDATE,
+        () -> identityResolver.findByGmcReferenceNumberOrTcsPersonId(receivedGmcReferenceNumber,
+            receivedTcsId));
+    Map<String, Map<String, Object>> fieldsById = new LinkedHashMap<>();
+    Map<String, Map<String, Object>> newDocumentsById = new LinkedHashMap<>();
+
     if (receivedGmcReferenceNumber == null) {
-      detachTisInfoForFilteredOutRecords(receivedTcsId);
+      candidates.stream()
+          .filter(view -> hasTcsPersonId(view, receivedTcsId))
+          .forEach(view -> fieldsById.put(view.getId(), DETACHED_TIS_FIELDS));
     } else {
       log.debug("Attempting to upsert document for GMC Ref: [{}]", receivedGmcReferenceNumber);
-
-      // Use both gmcNumber and tcsPersonId to get view, if not found, try only gmcNumber.
-      final var repository = getRepository();
-      List<MasterDoctorView> existingViews =
-          repository.findByGmcReferenceNumberAndTcsPersonId(receivedGmcReferenceNumber,
-              receivedTcsId);
-
+      List<MasterDoctorView> viewsFromGmcNumber = new ArrayList<>();
+      List<MasterDoctorView> existingViews = new ArrayList<>();
+      List<MasterDoctorView> viewsToDetach = new ArrayList<>();
+      for (MasterDoctorView view : candidates) {
+        if (!hasGmcReferenceNumber(view, receivedGmcReferenceNumber)) {
+          if (hasTcsPersonId(view, receivedTcsId)) {
+            viewsToDetach.add(view);
+          }
+        } else {
+          viewsFromGmcNumber.add(view);
+          if (hasTcsPersonId(view, receivedTcsId)) {
+            existingViews.add(view);
+          }
+        }
+      }
       if (existingViews.isEmpty()) {
-        List<MasterDoctorView> viewsFromGmcNumber = repository.findByGmcReferenceNumber(
-            receivedGmcReferenceNumber);
-        existingViews.addAll(
-            viewsFromGmcNumber.isEmpty() ? List.of(new MasterDoctorView())
-                : viewsFromGmcNumber);
+        existingViews = viewsFromGmcNumber;
       }
 
-      // upsert entity
       if (existingViews.size() > 1) {
         log.warn("Multiple doctor records found in masterdoctorindex for the same GMC number: {}",
             receivedGmcReferenceNumber);
       }
 
-      existingViews.forEach(view ->
-          repository.save(mapper.updateMasterDoctorView(receivedDto, view))
-      );
+      Map<String, Object> doc = mapper.traineeToEsDoc(receivedDto);
+      if (existingViews.isEmpty()) {
+        newDocumentsById.put(
+            MasterDoctorDocumentIds.newDocumentId(receivedGmcReferenceNumber, receivedTcsId), doc);
+      }
+      existingViews.forEach(view -> fieldsById.put(view.getId(), doc));
+      viewsToDetach.forEach(view -> fieldsById.put(view.getId(), DETACHED_TIS_FIELDS));
+    }
 
-      detachTisInfoIfGmcNumberNotMatch(receivedDto);
+    // If the ES document is not present, ignore the change
+    if (fieldsById.isEmpty() && newDocumentsById.isEmpty()) {
+      cdcMetrics.recordNoop(CdcSource.TRAINEE_UPDATE, 1);
+      return;
+    }
+    BulkWriteResult result = cdcMetrics.timeWrite(CdcSource.TRAINEE_UPDATE,
+        () -> liveGenerationMirror.write(
+            index -> esDocUpdateHelper.bulkUpsert(index, fieldsById, newDocumentsById)));
+    if (result.hasFailures()) {
+      throw new EsUpdateException(String.format(
+          "Failed to apply trainee update for tcsPersonId: %s to documents: %s", receivedTcsId,
+          result.failedIds()));
     }
   }
 
@@ -154,4 +176,15 @@ public class CdcTraineeUpdateService extends CdcService<ConnectionInfoDto> {
   public void deleteEntity(String key) {
     throw new NotImplementedException();
   }
+
+  private static boolean hasGmcReferenceNumber(MasterDoctorView view, String gmcReferenceNumber) {
+    // gmcReferenceNumber is an analysed text field, so the finders matched it case-insensitively.
+    String gmcToken = MasterDoctorDocumentIds.normaliseGmcReferenceNumber(gmcReferenceNumber);
+    return gmcToken != null && gmcToken.equals(
+        MasterDoctorDocumentIds.normaliseGmcReferenceNumber(view.getGmcReferenceNumber()));
+  }
+
+  private static boolean hasTcsPersonId(MasterDoctorView view, Long tcsPersonId) {
+    return tcsPersonId != null && tcsPersonId.equals(view.getTcsPersonId());
+  }
 }
@@ -45,6 +45,7 @@ public final class EsConstant {
     }
 
     public static final String MASTER_DOCTOR_INDEX = "masterdoctorindex";
+    public static final String SYNC_STATE_INDEX = "syncstate";
   }
 
   /**
@@ -61,5 +62,6 @@ public final class EsConstant {
     public static final String DISCREPANCIES_ALIAS = "discrepancies";
     public static final String CURRENT_CONNECTIONS_ALIAS = "current_connections";
     public static final String RECOMMENDATION_ALIAS = "recommendations";
+    public static final String MASTER_DOCTOR_READ_ALIAS = "masterdoctorindex_read";
   }
 }
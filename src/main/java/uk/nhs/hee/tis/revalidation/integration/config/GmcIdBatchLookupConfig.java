@@ -0,0 +1,105 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright 2026 Crown Copyright (NHS England)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package uk.nhs.hee.tis.revalidation.integration.config;
+
+import static uk.nhs.hee.tis.revalidation.integration.router.helper.GmcIdBatchLookup.GMC_IDS_HEADER;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import org.apache.camel.Exchange;
+import org.apache.camel.ProducerTemplate;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpHeaders;
+import uk.nhs.hee.tis.revalidation.integration.router.helper.GmcIdBatchLookup;
+
+/**
+ * Configuration of the batched lookups of doctors by GMC number.
+ *
+ * <p>Each lookup sends its chunks to a route that calls the downstream service with the chunk in
+ * the {@code gmcIds} header and unmarshals the response to a map keyed by GMC number. The TCS
+ * chunk route sets its own service token, so the lookups of every caller are collapsed. The
+ * concern service authorises the caller, so concern lookups are only collapsed per caller and
+ * their chunks carry the caller's Authorization header.
+ */
+@Configuration
+public class GmcIdBatchLookupConfig {
+
+  public static final String TCS_TRAINEES_CHUNK_ROUTE = "direct:tcs-trainees-chunk";
+  public static final String LATEST_CONCERNS_CHUNK_ROUTE = "direct:latest-concern-chunk";
+
+  private final ProducerTemplate producerTemplate;
+  private final ExecutorService gmcIdLookupExecutor;
+  private final long windowMs;
+  private final int maxChunkChars;
+
+  /**
+   * Create the configuration of the batched lookups.
+   *
+   * @param producerTemplate    the template the chunks are sent to their routes with
+   * @param gmcIdLookupExecutor the executor the chunks are looked up on
+   * @param windowMs            the time GMC numbers are collected for, zero to look up immediately
+   * @param maxChunkChars       the maximum length of the GMC numbers sent in one URL
+   */
+  public GmcIdBatchLookupConfig(ProducerTemplate producerTemplate,
+      @Qualifier("gmcIdLookupExecutor") ExecutorService gmcIdLookupExecutor,
+      @Value("${app.gmc-id-batch.window-ms:5}") long windowMs,
+      @Value("${app.gmc-id-batch.max-chunk-chars:1500}") int maxChunkChars) {
+    this.producerTemplate = producerTemplate;
+    this.gmcIdLookupExecutor = gmcIdLookupExecutor;
+    this.windowMs = windowMs;
+    this.maxChunkChars = maxChunkChars;
+  }
+
+  @Bean(name = "tcsTraineesLookup", destroyMethod = "shutdown")
+  public GmcIdBatchLookup tcsTraineesLookup() {
+    return batchLookup("tcs-trainees", TCS_TRAINEES_CHUNK_ROUTE, null);
+  }
+
+  @Bean(name = "latestConcernsLookup", destroyMethod = "shutdown")
+  public GmcIdBatchLookup latestConcernsLookup() {
+    return batchLookup("latest-concerns", LATEST_CONCERNS_CHUNK_ROUTE, HttpHeaders.AUTHORIZATION);
+  }
+
+  private GmcIdBatchLookup batchLookup(String name, String chunkRoute, String callerHeader) {
+    return new GmcIdBatchLookup(name,
+        (gmcIds, caller) -> requestChunk(chunkRoute, gmcIds, callerHeader, caller),
+        gmcIdLookupExecutor, windowMs, maxChunkChars, callerHeader);
+  }
+
+  private Map<String, ?> requestChunk(String chunkRoute, List<String> gmcIds, String callerHeader,
+      String caller) throws Exception {
+    Exchange result = producerTemplate.request(chunkRoute, exchange -> {
+      exchange.getIn().setHeader(GMC_IDS_HEADER, String.join(",", gmcIds));
+      if (callerHeader != null && caller != null) {
+        exchange.getIn().setHeader(callerHeader, caller);
+      }
+    });
+    if (result.getException() != null) {
+      throw result.getException();
+    }
+    return result.getMessage().getBody(Map.class);
+  }
+}
@@ -0,0 +1,86 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright 2026 Crown Copyright (NHS England)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package uk.nhs.hee.tis.revalidation.integration.config;
+
+import java.util.concurrent.ExecutorService;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import uk.nhs.hee.tis.revalidation.integration.router.dto.ConnectionInfoDto;
+import uk.nhs.hee.tis.revalidation.integration.router.dto.ConnectionSummaryDto;
+import uk.nhs.hee.tis.revalidation.integration.router.dto.TraineeInfoDto;
+import uk.nhs.hee.tis.revalidation.integration.router.dto.TraineeSummaryDto;
+import uk.nhs.hee.tis.revalidation.integration.router.helper.NotesPresenceCache;
+import uk.nhs.hee.tis.revalidation.integration.router.helper.NotesRows;
+import uk.nhs.hee.tis.revalidation.integration.router.processor.AttachCachedNotesProcessor;
+import uk.nhs.hee.tis.revalidation.integration.router.processor.AttachIndexedNotesProcessor;
+import uk.nhs.hee.tis.revalidation.integration.router.processor.MergeLookedUpNotesProcessor;
+import uk.nhs.hee.tis.revalidation.integration.sync.service.MasterDoctorNotesService;
+
+/**
+ * Configuration of the processors enriching the connection and doctor summary pages with the
+ * notes flags of the {@link NotesPresenceCache} and the masterdoctorindex.
+ */
+@Configuration
+public class NotesEnrichmentConfig {
+
+  @Bean
+  public AttachCachedNotesProcessor<ConnectionInfoDto> attachCachedNotesToConnectionProcessor(
+      NotesPresenceCache notesPresenceCache) {
+    return new AttachCachedNotesProcessor<>(notesPresenceCache, NotesRows.CONNECTIONS);
+  }
+
+  @Bean
+  public AttachCachedNotesProcessor<TraineeInfoDto> attachCachedNotesToDoctorProcessor(
+      NotesPresenceCache notesPresenceCache) {
+    return new AttachCachedNotesProcessor<>(notesPresenceCache, NotesRows.DOCTORS);
+  }
+
+  @Bean
+  public AttachIndexedNotesProcessor<ConnectionSummaryDto, ConnectionInfoDto>
+      attachIndexedNotesToConnectionsProcessor(MasterDoctorNotesService notesService) {
+    return new AttachIndexedNotesProcessor<>(notesService, NotesRows.CONNECTIONS);
+  }
+
+  @Bean
+  public MergeLookedUpNotesProcessor<ConnectionSummaryDto, ConnectionInfoDto>
+      mergeLookedUpNotesIntoConnectionsProcessor(MasterDoctorNotesService notesService,
+      @Qualifier("notesWriteBackExecutor") ExecutorService notesWriteBackExecutor) {
+    return new MergeLookedUpNotesProcessor<>(notesService, NotesRows.CONNECTIONS,
+        notesWriteBackExecutor);
+  }
+
+  @Bean
+  public AttachIndexedNotesProcessor<TraineeSummaryDto, TraineeInfoDto>
+      attachIndexedNotesToDoctorsProcessor(MasterDoctorNotesService notesService) {
+    return new AttachIndexedNotesProcessor<>(notesService, NotesRows.DOCTORS);
+  }
+
+  @Bean
+  public MergeLookedUpNotesProcessor<TraineeSummaryDto, TraineeInfoDto>
+      mergeLookedUpNotesIntoDoctorsProcessor(MasterDoctorNotesService notesService,
+      @Qualifier("notesWriteBackExecutor") ExecutorService notesWriteBackExecutor) {
+    return new MergeLookedUpNotesProcessor<>(notesService, NotesRows.DOCTORS,
+        notesWriteBackExecutor);
+  }
+}
@@ -23,10 +23,13 @@ package uk.nhs.hee.tis.revalidation.integration.config;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.amqp.core.AcknowledgeMode;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
 import org.springframework.amqp.rabbit.connection.ConnectionFactory;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
 import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.amqp.SimpleRabbitListenerContainerFactoryConfigurer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
@@ -49,4 +52,29 @@ public class RabbitConfig {
     rabbitTemplate.containerAckMode(AcknowledgeMode.AUTO);
     return rabbitTemplate;
   }
+
+  /**
+   * Listener container factory for batch listeners. A single consumer drains up to the batch size,
+   * or whatever has arrived when no message is received within the timeout, so the batches keep
+   * the order of the queue. Listeners acknowledge each message of a batch themselves once it has
+   * been processed, and unacknowledged messages are requeued when the listener fails.
+   */
+  @Bean
+  public SimpleRabbitListenerContainerFactory batchRabbitListenerContainerFactory(
+      final SimpleRabbitListenerContainerFactoryConfigurer configurer,
+      final ConnectionFactory connectionFactory,
+      @Value("${app.rabbit.reval.batch.size:500}") final int batchSize,
+      @Value("${app.rabbit.reval.batch.receive-timeout-ms:1000}") final long receiveTimeout) {
+    final var factory = new SimpleRabbitListenerContainerFactory();
+    configurer.configure(factory, connectionFactory);
+    factory.setBatchListener(true);
+    factory.setConsumerBatchEnabled(true);
+    factory.setBatchSize(batchSize);
+    factory.setReceiveTimeout(receiveTimeout);
+    factory.setPrefetchCount(batchSize);
+    factory.setConcurrentConsumers(1);
+    factory.setMaxConcurrentConsumers(1);
+    factory.setAcknowledgeMode(AcknowledgeMode.MANUAL);
+    return factory;
+  }
 }
@@ -23,14 +23,18 @@ package uk.nhs.hee.tis.revalidation.integration.config;
 
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
 /**
- * Configuration class for thread pool executors used by Camel routes.
+ * Configuration class for thread pool executors used by Camel routes and Elasticsearch writes.
  *
- * <p>This executor is used for doctor notes enrichment.
- * The pool size is intentionally limited to prevent overwhelming downstream services.</p>
+ * <p>The notes executor is used for doctor notes enrichment, the GMC id lookup executor runs the
+ * chunks of the batched lookups by GMC number and the ES bulk executor bounds the number of
+ * concurrent Elasticsearch bulk requests. The notes write-back executor records the looked up notes
+ * flags in the masterdoctorindex after the summary page has been returned.
+ * The pool sizes are intentionally limited to prevent overwhelming downstream services.</p>
  */
 @Configuration
 public class ThreadPoolConfig {
@@ -39,4 +43,22 @@ public class ThreadPoolConfig {
   public ExecutorService notesExecutor() {
     return Executors.newFixedThreadPool(10);
   }
+
+  @Bean(name = "gmcIdLookupExecutor", destroyMethod = "shutdown")
+  public ExecutorService gmcIdLookupExecutor(
+      @Value("${app.gmc-id-batch.max-concurrent-chunks:4}") int maxConcurrentChunks) {
+    return Executors.newFixedThreadPool(maxConcurrentChunks);
+  }
+
+  @Bean(name = "esBulkExecutor", destroyMethod = "shutdown")
+  public ExecutorService esBulkExecutor(
+      @Value("${app.es.bulk.max-concurrent-requests:4}") int maxConcurrentRequests) {
+    return Executors.newFixedThreadPool(maxConcurrentRequests);
+  }
+
+  @Bean(name = "notesWriteBackExecutor", destroyMethod = "shutdown")
+  public ExecutorService notesWriteBackExecutor(
+      @Value("${app.notes.write-back.threads:2}") int threads) {
+    return Executors.newFixedThreadPool(threads);
+  }
 }
@@ -0,0 +1,48 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright 2026 Crown Copyright (NHS England)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package uk.nhs.hee.tis.revalidation.integration.enums;
+
+/**
+ * The groups of masterdoctorindex fields updated by each kind of CDC event, with the field each
+ * group keeps its version stamp in and the queue its events are received from.
+ */
+public enum CdcFieldGroup {
+  DOCTOR("doctorCdcVersion", CdcSource.DOCTOR),
+  RECOMMENDATION("recommendationCdcVersion", CdcSource.RECOMMENDATION),
+  CONNECTION("connectionCdcVersion", CdcSource.CONNECTION_LOG);
+
+  private final String versionField;
+  private final CdcSource source;
+
+  CdcFieldGroup(final String versionField, final CdcSource source) {
+    this.versionField = versionField;
+    this.source = source;
+  }
+
+  public String getVersionField() {
+    return versionField;
+  }
+
+  public CdcSource getSource() {
+    return source;
+  }
+}
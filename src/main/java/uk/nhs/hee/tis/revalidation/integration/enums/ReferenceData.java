@@ -0,0 +1,44 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright 2026 Crown Copyright (NHS England)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package uk.nhs.hee.tis.revalidation.integration.enums;
+
+/**
+ * The reference data lists held by the reference data cache, with the route each is loaded from.
+ */
+public enum ReferenceData {
+  SITES("direct:reference-sites-load"),
+  GRADES("direct:reference-grades-load"),
+  EMPLOYERS("direct:reference-employers-load"),
+  SOURCES("direct:reference-sources-load"),
+  TYPES("direct:reference-types-load"),
+  DBCS("direct:reference-dbcs-load");
+
+  private final String loadRoute;
+
+  ReferenceData(final String loadRoute) {
+    this.loadRoute = loadRoute;
+  }
+
+  public String getLoadRoute() {
+    return loadRoute;
+  }
+}
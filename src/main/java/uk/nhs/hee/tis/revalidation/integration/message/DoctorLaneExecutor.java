@@ -0,0 +1,252 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright 2026 Crown Copyright (NHS England)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package uk.nhs.hee.tis.revalidation.integration.message;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import javax.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import uk.nhs.hee.tis.revalidation.integration.sync.helper.MasterDoctorDocumentIds;
+
+/**
+ * Dispatches doctor updates onto a fixed set of single-threaded lanes.
+ *
+ * <p>A doctor is keyed by GMC number, or by TIS person id when the GMC number is null, and every
+ * key always maps to the same lane. Updates for different doctors run in parallel while updates
+ * for the same doctor run one at a time in the order they were dispatched, so the
+ * read-modify-write upserts of a doctor's masterdoctorindex document cannot interleave.
+ *
+ * <p>Lanes keep the order updates are dispatched in, not the order they were received in, so a
+ * queue whose updates must stay in order is only consumed by one consumer at a time.
+ */
+@Component
+public class DoctorLaneExecutor {
+
+  private static final String TCS_PERSON_ID_KEY_PREFIX = "tis:";
+  private static final ThreadLocal<Boolean> ON_LANE = ThreadLocal.withInitial(() -> false);
+
+  private final ExecutorService[] lanes;
+
+  /**
+   * Create the lanes.
+   *
+   * @param laneCount the number of lanes doctors are spread over
+   */
+  public DoctorLaneExecutor(@Value("${app.doctor-lanes.count:8}") int laneCount) {
+    if (laneCount < 1) {
+      throw new IllegalArgumentException("At least one doctor lane is required");
+    }
+    lanes = new ExecutorService[laneCount];
+    for (int i = 0; i < laneCount; i++) {
+      String name = "doctor-lane-" + i;
+      lanes[i] = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(() -> {
+          ON_LANE.set(true);
+          runnable.run();
+        }, name);
+        thread.setDaemon(true);
+        return thread;
+      });
+    }
+  }
+
+  /**
+   * Build the key a doctor is dispatched by.
+   *
+   * @param gmcReferenceNumber the GMC number of the doctor, may be null
+   * @param tcsPersonId        the TIS person id of the doctor, may be null
+   * @return the doctor key, or null if the doctor has neither identifier
+   */
+  public static String doctorKey(String gmcReferenceNumber, Long tcsPersonId) {
+    String gmcToken = MasterDoctorDocumentIds.normaliseGmcReferenceNumber(gmcReferenceNumber);
+    if (gmcToken != null) {
+      return gmcToken;
+    }
+    return tcsPersonId == null ? null : TCS_PERSON_ID_KEY_PREFIX + tcsPersonId;
+  }
+
+  public int getLaneCount() {
+    return lanes.length;
+  }
+
+  /**
+   * Run a task on the lane of a doctor without waiting for it, so the caller can take the next
+   * message while the lanes work. The message the task handles should only be acknowledged once
+   * the returned future completes. A task dispatched from a lane runs in place.
+   *
+   * @param doctorKey the key of the doctor, see {@link #doctorKey(String, Long)}
+   * @param task      the task to run
+   * @return a future completed when the task has run, or completed exceptionally with its failure
+   */
+  public CompletableFuture<Void> submit(String doctorKey, LaneTask<?> task) {
+    CompletableFuture<Void> future = new CompletableFuture<>();
+    if (ON_LANE.get()) {
+      run(task, future);
+    } else {
+      lanes[laneOf(doctorKey)].execute(() -> run(task, future));
+    }
+    return future;
+  }
+
+  /**
+   * Run a task on a whole batch on the calling thread while the lanes of its doctors are held, so
+   * a batch can be resolved with one lookup and written with one bulk request. Tasks dispatched
+   * to those lanes before the batch complete before it runs, and tasks dispatched after it wait
+   * until it has run, so the read-modify-write of each doctor stays in order.
+   *
+   * <p>An item without a doctor key, such as a delete whose doctor is not known, may change any
+   * doctor, so a batch holding one holds every lane.
+   *
+   * @param items     the batch, in the order it was received
+   * @param keyMapper maps an item to the key of its doctor
+   * @param task      the task applied to the batch
+   * @param <T>       the type of the items
+   */
+  public <T> void executeAll(List<T> items, Function<T, String> keyMapper,
+      Consumer<List<T>> task) {
+    if (items.isEmpty()) {
+      return;
+    }
+    if (ON_LANE.get()) {
+      task.accept(items);
+      return;
+    }
+    Set<Integer> heldLanes = new TreeSet<>();
+    for (T item : items) {
+      String doctorKey = keyMapper.apply(item);
+      if (doctorKey == null) {
+        heldLanes = IntStream.range(0, lanes.length).boxed().collect(Collectors.toSet());
+        break;
+      }
+      heldLanes.add(laneOf(doctorKey));
+    }
+
+    CountDownLatch held = new CountDownLatch(heldLanes.size());
+    CountDownLatch released = new CountDownLatch(1);
+    // Holds are queued together, so batches holding the same lanes cannot wait on each other.
+    synchronized (lanes) {
+      heldLanes.forEach(lane -> lanes[lane].execute(() -> {
+        held.countDown();
+        awaitRelease(released);
+      }));
+    }
+    try {
+      await(held);
+      ON_LANE.set(true);
+      task.accept(items);
+    } finally {
+      ON_LANE.set(false);
+      released.countDown();
+    }
+  }
+
+  /**
+   * Wait until every task dispatched to the lanes so far has completed.
+   */
+  public void awaitDrained() {
+    if (ON_LANE.get()) {
+      throw new IllegalStateException("Doctor lanes cannot be drained from a lane");
+    }
+    List<Future<?>> markers = new ArrayList<>();
+    for (ExecutorService lane : lanes) {
+      markers.add(lane.submit(() -> {
+      }));
+    }
+    markers.forEach(DoctorLaneExecutor::await);
+  }
+
+  /**
+   * Stop the lanes once their queued tasks have run.
+   */
+  @PreDestroy
+  public void shutdown() {
+    for (ExecutorService lane : lanes) {
+      lane.shutdown();
+    }
+  }
+
+  int laneOf(String doctorKey) {
+    return doctorKey == null ? 0 : Math.floorMod(doctorKey.hashCode(), lanes.length);
+  }
+
+  private static void await(Future<?> future) {
+    try {
+      future.get();
+    } catch (ExecutionException e) {
+      throw new IllegalStateException("Doctor lane failed", e.getCause());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted waiting for a doctor lane", e);
+    }
+  }
+
+  private static void await(CountDownLatch latch) {
+    try {
+      latch.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted waiting for a doctor lane", e);
+    }
+  }
+
+  private static void awaitRelease(CountDownLatch released) {
+    try {
+      released.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private static void run(LaneTask<?> task, CompletableFuture<Void> future) {
+    try {
+      task.run();
+      future.complete(null);
+    } catch (Exception | Error e) {
+      future.completeExceptionally(e);
+    }
+  }
+
+  /**
+   * A task run on a doctor lane.
+   *
+   * @param <E> the checked exception the task may throw
+   */
+  @FunctionalInterface
+  public interface LaneTask<E extends Exception> {
+
+    void run() throws E;
+  }
+}
@@ -1,60 +0,0 @@
-/*
- * The MIT License (MIT)
- * Copyright 2020 Crown Copyright (Health Education England)
- *
- * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
- * associated documentation files (the "Software"), to deal in the Software without restriction,
- * including without limitation the rights to use, copy, modify, merge, publish, distribute,
- * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
- * furnished to do so, subject to the following conditions:
- *
- * The above copyright notice and this permission notice shall be included in all copies or
- * substantial portions of the Software.
- *
- * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
- * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
- * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
- * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
- * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
- */
-
-package uk.nhs.hee.tis.revalidation.integration.router.aggregation;
-
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import org.apache.camel.Exchange;
-import org.apache.camel.Message;
-import org.apache.camel.processor.aggregate.StringAggregationStrategy;
-import org.apache.camel.support.builder.ExpressionBuilder;
-
-public class JsonStringAggregationStrategy extends StringAggregationStrategy {
-
-  public JsonStringAggregationStrategy() {
-    delimiter(",");
-
-    pick(ExpressionBuilder.inMessageExpression(message -> {
-      String aggregationKey = message.getHeader(AggregationKey.HEADER, String.class);
-      String body = message.getBody(String.class);
-
-      return String.format("\"%s\": %s", aggregationKey, body.isEmpty() ? "{}" : body);
-    }));
-  }
-
-  @Override
-  public void onCompletion(Exchange exchange) {
-    super.onCompletion(exchange);
-
-    // Wrap the resulting message.
-    Message message = exchange.getMessage();
-    String formatted = String.format("{%s}", message.getBody());
-
-    try {
-      ObjectMapper mapper = new ObjectMapper();
-      JsonNode object = mapper.readTree(formatted);
-      message.setBody(object);
-    } catch (JsonProcessingException e) {
-      exchange.setException(e);
-    }
-  }
-}
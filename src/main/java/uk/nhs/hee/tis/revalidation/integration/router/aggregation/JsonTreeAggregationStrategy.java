@@ -0,0 +1,91 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright 2026 Crown Copyright (NHS England)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package uk.nhs.hee.tis.revalidation.integration.router.aggregation;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.io.IOException;
+import org.apache.camel.AggregationStrategy;
+import org.apache.camel.Exchange;
+import org.apache.camel.Message;
+import org.springframework.stereotype.Component;
+
+/**
+ * Aggregates the responses of multicast branches into one JSON object, holding the response of
+ * each branch under its {@link AggregationKey#HEADER}.
+ *
+ * <p>Each branch body is parsed once with the shared mapper and added to the object as a tree, an
+ * empty body becomes an empty object. If a body is not valid JSON the aggregated exchange fails
+ * with the parse error when the multicast completes.
+ */
+@Component
+public class JsonTreeAggregationStrategy implements AggregationStrategy {
+
+  private static final String TREE_PROPERTY = "jsonTreeAggregation";
+  private static final String FAILURE_PROPERTY = "jsonTreeAggregationFailure";
+
+  private final ObjectMapper mapper;
+
+  public JsonTreeAggregationStrategy(ObjectMapper mapper) {
+    this.mapper = mapper;
+  }
+
+  @Override
+  public Exchange aggregate(Exchange oldExchange, Exchange newExchange) {
+    final var result = oldExchange == null ? newExchange : oldExchange;
+    var tree = result.getProperty(TREE_PROPERTY, ObjectNode.class);
+    if (tree == null) {
+      tree = mapper.createObjectNode();
+      result.setProperty(TREE_PROPERTY, tree);
+    }
+
+    final Message message = newExchange.getMessage();
+    final String aggregationKey = message.getHeader(AggregationKey.HEADER, String.class);
+    try {
+      tree.set(aggregationKey, parse(message));
+    } catch (IOException e) {
+      result.setProperty(FAILURE_PROPERTY, e);
+    }
+    return result;
+  }
+
+  @Override
+  public void onCompletion(Exchange exchange) {
+    final var tree = exchange.removeProperty(TREE_PROPERTY);
+    final var failure = exchange.removeProperty(FAILURE_PROPERTY);
+    if (failure instanceof Exception e) {
+      exchange.setException(e);
+    } else if (tree != null) {
+      exchange.getMessage().setBody(tree);
+    }
+  }
+
+  private JsonNode parse(Message message) throws IOException {
+    final Object body = message.getBody();
+    if (body instanceof JsonNode node) {
+      return node;
+    }
+    final byte[] bytes = message.getBody(byte[].class);
+    return bytes == null || bytes.length == 0 ? mapper.createObjectNode() : mapper.readTree(bytes);
+  }
+}
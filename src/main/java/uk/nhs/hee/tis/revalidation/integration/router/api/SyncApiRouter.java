@@ -33,6 +33,9 @@ public class SyncApiRouter extends RouteBuilder {
     restConfiguration().component("servlet");
 
     rest("/sync")
-        .get().bindingMode(RestBindingMode.auto).to("direct:start-tis-sync");
+        .get().bindingMode(RestBindingMode.auto).to("direct:start-tis-sync")
+        .get("/state").bindingMode(RestBindingMode.auto).to("direct:tis-sync-state")
+        .get("/resume").bindingMode(RestBindingMode.auto).to("direct:resume-tis-sync")
+        .get("/rekey").bindingMode(RestBindingMode.auto).to("direct:rekey-masterdoctorindex");
   }
 }
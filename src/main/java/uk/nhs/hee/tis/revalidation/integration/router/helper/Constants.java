@@ -27,5 +27,6 @@ public class Constants {
   public static final String GET_TOKEN_METHOD = "getAuthToken";
   public static final String GET_ROLE_NAMES_HEADER = "roleNames";
   public static final String GET_ROLE_NAMES_METHOD = "getRoles";
+  public static final String NOTES_CACHED_PROPERTY = "notesCached";
 
 }
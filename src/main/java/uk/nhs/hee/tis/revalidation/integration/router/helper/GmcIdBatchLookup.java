@@ -0,0 +1,316 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright 2026 Crown Copyright (NHS England)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package uk.nhs.hee.tis.revalidation.integration.router.helper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.camel.Exchange;
+import org.apache.camel.Processor;
+
+/**
+ * Collapses the lookups of doctors by GMC number made by concurrent exchanges into as few
+ * downstream calls as possible.
+ *
+ * <p>The GMC numbers asked for within a short window are deduplicated and split into chunks that
+ * keep the comma separated list under a safe URL length. The chunks are looked up in parallel and
+ * every exchange gets the values of the GMC numbers it asked for. An exchange asking for a GMC
+ * number that is already being looked up waits for that lookup instead of starting another. A
+ * failed chunk fails every exchange waiting on it. With a window of zero the lookup starts
+ * immediately, only sharing the calls already in flight.
+ *
+ * <p>When the downstream service authorises the caller, the lookup is given the header holding
+ * the caller's credentials. Lookups are then only collapsed with those of the same caller, and
+ * their chunks are looked up with those credentials.
+ *
+ * <p>As a processor it reads the GMC numbers from the {@code gmcIds} header, either a list or a
+ * comma separated String, and sets the body to the found values mapped by GMC number.
+ */
+@Slf4j
+public class GmcIdBatchLookup implements Processor {
+
+  public static final String GMC_IDS_HEADER = "gmcIds";
+
+  private final String name;
+  private final ChunkLookup chunkLookup;
+  private final Executor executor;
+  private final long windowMs;
+  private final int maxChunkChars;
+  private final String callerHeader;
+  private final ScheduledExecutorService scheduler;
+
+  private final Map<String, Batch> batchesByCaller = new HashMap<>();
+
+  /**
+   * Create a batch lookup which collapses the lookups of every caller.
+   *
+   * @param name          the name of the lookup, used in logs and thread names
+   * @param chunkLookup   the downstream lookup of one chunk of GMC numbers
+   * @param executor      the executor the chunks are looked up on
+   * @param windowMs      the time GMC numbers are collected for, zero to look up immediately
+   * @param maxChunkChars the maximum length of the comma separated GMC numbers of a chunk
+   */
+  public GmcIdBatchLookup(String name, ChunkLookup chunkLookup, Executor executor, long windowMs,
+      int maxChunkChars) {
+    this(name, chunkLookup, executor, windowMs, maxChunkChars, null);
+  }
+
+  /**
+   * Create the batch lookup.
+   *
+   * @param name          the name of the lookup, used in logs and thread names
+   * @param chunkLookup   the downstream lookup of one chunk of GMC numbers
+   * @param executor      the executor the chunks are looked up on
+   * @param windowMs      the time GMC numbers are collected for, zero to look up immediately
+   * @param maxChunkChars the maximum length of the comma separated GMC numbers of a chunk
+   * @param callerHeader  the header holding the credentials of the caller, null when the lookups
+   *                      of every caller may be collapsed
+   */
+  public GmcIdBatchLookup(String name, ChunkLookup chunkLookup, Executor executor, long windowMs,
+      int maxChunkChars, String callerHeader) {
+    this.name = name;
+    this.chunkLookup = chunkLookup;
+    this.executor = executor;
+    this.windowMs = windowMs;
+    this.maxChunkChars = maxChunkChars;
+    this.callerHeader = callerHeader;
+    this.scheduler = windowMs > 0 ? Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "gmc-id-batch-" + name);
+      thread.setDaemon(true);
+      return thread;
+    }) : null;
+  }
+
+  @Override
+  public void process(Exchange exchange) throws Exception {
+    String caller = callerHeader == null ? null
+        : exchange.getIn().getHeader(callerHeader, String.class);
+    exchange.getIn().setBody(lookup(gmcIds(exchange.getIn().getHeader(GMC_IDS_HEADER)), caller));
+  }
+
+  /**
+   * Look up doctors by GMC number, waiting until every one of them has been looked up.
+   *
+   * @param gmcIds the GMC numbers to look up
+   * @return the found values mapped by GMC number, GMC numbers that were not found are left out
+   * @throws Exception the failure of a chunk holding one of the GMC numbers
+   */
+  public Map<String, Object> lookup(Collection<String> gmcIds) throws Exception {
+    return lookup(gmcIds, null);
+  }
+
+  /**
+   * Look up doctors by GMC number for a caller, waiting until every one of them has been looked
+   * up.
+   *
+   * @param gmcIds the GMC numbers to look up
+   * @param caller the credentials of the caller, may be null
+   * @return the found values mapped by GMC number, GMC numbers that were not found are left out
+   * @throws Exception the failure of a chunk holding one of the GMC numbers
+   */
+  public Map<String, Object> lookup(Collection<String> gmcIds, String caller) throws Exception {
+    Map<String, CompletableFuture<Object>> futures = new LinkedHashMap<>();
+    boolean flushNow = false;
+    synchronized (this) {
+      Batch batch = batchesByCaller.computeIfAbsent(caller, key -> new Batch());
+      for (String gmcId : gmcIds) {
+        if (gmcId != null && !gmcId.isBlank() && !futures.containsKey(gmcId)) {
+          futures.put(gmcId, batch.inFlight.computeIfAbsent(gmcId, id -> {
+            batch.pending.add(id);
+            return new CompletableFuture<>();
+          }));
+        }
+      }
+      if (!batch.pending.isEmpty() && !batch.flushScheduled) {
+        if (scheduler == null || scheduler.isShutdown()) {
+          flushNow = true;
+        } else {
+          batch.flushScheduled = true;
+          scheduler.schedule(() -> flush(caller), windowMs, TimeUnit.MILLISECONDS);
+        }
+      }
+      removeIfIdle(caller, batch);
+    }
+    if (flushNow) {
+      flush(caller);
+    }
+
+    Map<String, Object> values = new LinkedHashMap<>();
+    for (Map.Entry<String, CompletableFuture<Object>> entry : futures.entrySet()) {
+      try {
+        Object value = entry.getValue().get();
+        if (value != null) {
+          values.put(entry.getKey(), value);
+        }
+      } catch (ExecutionException e) {
+        throw e.getCause() instanceof Exception cause ? cause : e;
+      }
+    }
+    return values;
+  }
+
+  /**
+   * Start looking up the GMC numbers collected for every caller, a chunk at a time.
+   */
+  public void flush() {
+    List<String> callers;
+    synchronized (this) {
+      callers = new ArrayList<>(batchesByCaller.keySet());
+    }
+    callers.forEach(this::flush);
+  }
+
+  /**
+   * Stop collecting and look up the GMC numbers collected so far.
+   */
+  public void shutdown() {
+    if (scheduler != null) {
+      scheduler.shutdown();
+      flush();
+    }
+  }
+
+  List<List<String>> chunk(List<String> gmcIds) {
+    List<List<String>> chunks = new ArrayList<>();
+    List<String> chunk = new ArrayList<>();
+    int chars = 0;
+    for (String gmcId : gmcIds) {
+      if (!chunk.isEmpty() && chars + 1 + gmcId.length() > maxChunkChars) {
+        chunks.add(chunk);
+        chunk = new ArrayList<>();
+        chars = 0;
+      }
+      chars += chunk.isEmpty() ? gmcId.length() : 1 + gmcId.length();
+      chunk.add(gmcId);
+    }
+    if (!chunk.isEmpty()) {
+      chunks.add(chunk);
+    }
+    return chunks;
+  }
+
+  private void flush(String caller) {
+    List<String> collected;
+    synchronized (this) {
+      Batch batch = batchesByCaller.get(caller);
+      if (batch == null) {
+        return;
+      }
+      collected = batch.pending;
+      batch.pending = new ArrayList<>();
+      batch.flushScheduled = false;
+    }
+    List<List<String>> chunks = chunk(collected);
+    if (!chunks.isEmpty()) {
+      log.debug("Looking up {} GMC numbers for {} in {} chunks", collected.size(), name,
+          chunks.size());
+    }
+    for (List<String> chunk : chunks) {
+      try {
+        executor.execute(() -> fetch(caller, chunk));
+      } catch (RejectedExecutionException e) {
+        complete(caller, chunk, null, e);
+      }
+    }
+  }
+
+  private void fetch(String caller, List<String> chunk) {
+    try {
+      complete(caller, chunk, chunkLookup.lookup(chunk, caller), null);
+    } catch (Exception e) {
+      log.warn("Failed to look up {} GMC numbers for {}", chunk.size(), name, e);
+      complete(caller, chunk, null, e);
+    }
+  }
+
+  private void complete(String caller, List<String> chunk, Map<String, ?> values,
+      Exception failure) {
+    List<CompletableFuture<Object>> futures;
+    synchronized (this) {
+      Batch batch = batchesByCaller.get(caller);
+      futures = chunk.stream().map(batch.inFlight::remove).toList();
+      removeIfIdle(caller, batch);
+    }
+    for (int i = 0; i < chunk.size(); i++) {
+      if (failure != null) {
+        futures.get(i).completeExceptionally(failure);
+      } else {
+        futures.get(i).complete(values == null ? null : values.get(chunk.get(i)));
+      }
+    }
+  }
+
+  private void removeIfIdle(String caller, Batch batch) {
+    if (batch.inFlight.isEmpty() && !batch.flushScheduled) {
+      batchesByCaller.remove(caller);
+    }
+  }
+
+  private static List<String> gmcIds(Object header) {
+    if (header instanceof Collection<?> collection) {
+      return collection.stream().filter(Objects::nonNull).map(String::valueOf).toList();
+    } else if (header == null) {
+      return List.of();
+    }
+    return Arrays.stream(header.toString().split(",")).map(String::trim).toList();
+  }
+
+  /**
+   * The downstream lookup of one chunk of GMC numbers.
+   */
+  @FunctionalInterface
+  public interface ChunkLookup {
+
+    /**
+     * Look up a chunk of doctors.
+     *
+     * @param gmcIds the GMC numbers of the chunk
+     * @param caller the credentials of the caller the chunk is looked up for, may be null
+     * @return the found values mapped by GMC number
+     * @throws Exception if the lookup failed
+     */
+    Map<String, ?> lookup(List<String> gmcIds, String caller) throws Exception;
+  }
+
+  /**
+   * The GMC numbers collected and being looked up for one caller.
+   */
+  private static class Batch {
+
+    private final Map<String, CompletableFuture<Object>> inFlight = new HashMap<>();
+    private List<String> pending = new ArrayList<>();
+    private boolean flushScheduled;
+  }
+}
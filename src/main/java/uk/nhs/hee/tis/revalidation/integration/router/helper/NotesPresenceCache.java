@@ -0,0 +1,175 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright 2026 Crown Copyright (NHS England)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package uk.nhs.hee.tis.revalidation.integration.router.helper;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Remembers whether a doctor has notes in core, so the notes enrichment routes only ask core for
+ * doctors they have not seen recently.
+ *
+ * <p>The cache holds at most {@code maxSize} doctors and evicts the least recently used one when
+ * it is full. An entry expires {@code ttlSeconds} after it was stored. A doctor whose notes are
+ * added or edited through this service is known to have notes, and a lookup reporting no notes
+ * does not replace that until it expires, as the lookup may have started before the note was
+ * saved.
+ */
+@Component
+public class NotesPresenceCache {
+
+  private static final String METRIC_PREFIX = "notes.cache.";
+
+  private final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+  private final int maxSize;
+  private final long ttlNanos;
+  private final LongSupplier nanoClock;
+  private final Counter hits;
+  private final Counter misses;
+  private final Counter sizeEvictions;
+  private final Counter expiredEvictions;
+
+  /**
+   * Create the cache and register its meters.
+   *
+   * @param meterRegistry the registry the cache meters are published to
+   * @param maxSize       the number of doctors the cache holds before evicting
+   * @param ttlSeconds    the number of seconds an entry is used for
+   */
+  @Autowired
+  public NotesPresenceCache(MeterRegistry meterRegistry,
+      @Value("${app.notes.cache.max-size:10000}") int maxSize,
+      @Value("${app.notes.cache.ttl-seconds:300}") long ttlSeconds) {
+    this(meterRegistry, maxSize, ttlSeconds, System::nanoTime);
+  }
+
+  NotesPresenceCache(MeterRegistry meterRegistry, int maxSize, long ttlSeconds,
+      LongSupplier nanoClock) {
+    this.maxSize = maxSize;
+    this.ttlNanos = TimeUnit.SECONDS.toNanos(ttlSeconds);
+    this.nanoClock = nanoClock;
+    hits = requestCounter(meterRegistry, "hit");
+    misses = requestCounter(meterRegistry, "miss");
+    sizeEvictions = evictionCounter(meterRegistry, "size");
+    expiredEvictions = evictionCounter(meterRegistry, "expired");
+    Gauge.builder(METRIC_PREFIX + "size", this, NotesPresenceCache::size)
+        .description("Doctors held in the notes presence cache")
+        .register(meterRegistry);
+  }
+
+  /**
+   * Get whether a doctor has notes.
+   *
+   * @param gmcId the GMC number of the doctor
+   * @return the cached flag, or null if the doctor is not cached or the entry has expired
+   */
+  public synchronized Boolean get(String gmcId) {
+    if (gmcId == null) {
+      return null;
+    }
+    Entry entry = entries.get(gmcId);
+    if (entry != null && isExpired(entry)) {
+      entries.remove(gmcId);
+      expiredEvictions.increment();
+      entry = null;
+    }
+    if (entry == null) {
+      misses.increment();
+      return null;
+    }
+    hits.increment();
+    return entry.hasNotes();
+  }
+
+  /**
+   * Remember whether a doctor has notes, evicting the least recently used doctors if the cache is
+   * full.
+   *
+   * @param gmcId    the GMC number of the doctor
+   * @param hasNotes whether the doctor has notes
+   */
+  public synchronized void put(String gmcId, boolean hasNotes) {
+    if (gmcId == null) {
+      return;
+    }
+    Entry current = entries.get(gmcId);
+    if (!hasNotes && current != null && current.noteSaved() && !isExpired(current)) {
+      return;
+    }
+    store(gmcId, new Entry(hasNotes, false, nanoClock.getAsLong()));
+  }
+
+  /**
+   * Remember that a note of a doctor has just been added or edited, so the doctor has notes.
+   * Lookups reporting no notes for the doctor are ignored until the entry expires.
+   *
+   * @param gmcId the GMC number of the doctor
+   */
+  public synchronized void putNoteSaved(String gmcId) {
+    if (gmcId != null) {
+      store(gmcId, new Entry(true, true, nanoClock.getAsLong()));
+    }
+  }
+
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  private void store(String gmcId, Entry entry) {
+    entries.put(gmcId, entry);
+    Iterator<Entry> eldest = entries.values().iterator();
+    while (entries.size() > maxSize) {
+      eldest.next();
+      eldest.remove();
+      sizeEvictions.increment();
+    }
+  }
+
+  private boolean isExpired(Entry entry) {
+    return nanoClock.getAsLong() - entry.storedAt() >= ttlNanos;
+  }
+
+  private static Counter requestCounter(MeterRegistry meterRegistry, String result) {
+    return Counter.builder(METRIC_PREFIX + "requests")
+        .tag("result", result)
+        .register(meterRegistry);
+  }
+
+  private static Counter evictionCounter(MeterRegistry meterRegistry, String cause) {
+    return Counter.builder(METRIC_PREFIX + "evictions")
+        .tag("cause", cause)
+        .register(meterRegistry);
+  }
+
+  private record Entry(boolean hasNotes, boolean noteSaved, long storedAt) {
+
+  }
+}
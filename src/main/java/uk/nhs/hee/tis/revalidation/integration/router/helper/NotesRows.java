@@ -0,0 +1,62 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright 2026 Crown Copyright (NHS England)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package uk.nhs.hee.tis.revalidation.integration.router.helper;
+
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import uk.nhs.hee.tis.revalidation.integration.router.dto.ConnectionInfoDto;
+import uk.nhs.hee.tis.revalidation.integration.router.dto.ConnectionSummaryDto;
+import uk.nhs.hee.tis.revalidation.integration.router.dto.TraineeInfoDto;
+import uk.nhs.hee.tis.revalidation.integration.router.dto.TraineeSummaryDto;
+
+/**
+ * The rows of a summary page whose notes flags are enriched, and how the GMC number and notes flag
+ * of a row are read and set.
+ *
+ * @param name        the name of the rows, used in logs
+ * @param rowProperty the exchange property holding the row whose notes are looked up in core
+ * @param summaryType the type of the summary page
+ * @param rowType     the type of the rows
+ * @param rows        reads the rows of a summary page, which may be null
+ * @param gmcId       reads the GMC number of a row
+ * @param notes       reads the notes flag of a row
+ * @param setNotes    sets the notes flag of a row
+ * @param <S>         the type of the summary page
+ * @param <R>         the type of the rows
+ */
+public record NotesRows<S, R>(String name, String rowProperty, Class<S> summaryType,
+    Class<R> rowType, Function<S, List<R>> rows, Function<R, String> gmcId,
+    Function<R, Boolean> notes, BiConsumer<R, Boolean> setNotes) {
+
+  public static final NotesRows<ConnectionSummaryDto, ConnectionInfoDto> CONNECTIONS =
+      new NotesRows<>("connections", "connection", ConnectionSummaryDto.class,
+          ConnectionInfoDto.class, ConnectionSummaryDto::getConnections,
+          ConnectionInfoDto::getGmcReferenceNumber, ConnectionInfoDto::getNotes,
+          ConnectionInfoDto::setNotes);
+
+  public static final NotesRows<TraineeSummaryDto, TraineeInfoDto> DOCTORS =
+      new NotesRows<>("doctors", "doctor", TraineeSummaryDto.class, TraineeInfoDto.class,
+          TraineeSummaryDto::getTraineeInfo, TraineeInfoDto::getGmcReferenceNumber,
+          TraineeInfoDto::getNotes, TraineeInfoDto::setNotes);
+}
@@ -0,0 +1,185 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright 2026 Crown Copyright (NHS England)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package uk.nhs.hee.tis.revalidation.integration.router.helper;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import javax.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.camel.Exchange;
+import org.apache.camel.ProducerTemplate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import uk.nhs.hee.tis.revalidation.integration.enums.ReferenceData;
+
+/**
+ * Holds the reference data lists as returned by the reference service, so the routes serving them
+ * do not call the reference service on every request.
+ *
+ * <p>Every list is loaded when the application is ready and refreshed in the background every
+ * {@code refreshSeconds}, before it expires after {@code ttlSeconds}. When a refresh fails the
+ * last loaded list is kept and served, with a warning once it has expired. A list that has never
+ * been loaded is loaded by the request asking for it, which gets the failure if the load fails.
+ */
+@Slf4j
+@Component
+public class ReferenceDataCache {
+
+  private static final String METRIC_PREFIX = "reference.cache.";
+  private static final String DATA_TAG = "data";
+
+  private final ProducerTemplate producerTemplate;
+  private final long refreshSeconds;
+  private final long ttlNanos;
+  private final LongSupplier nanoClock;
+  private final Map<ReferenceData, Entry> entries = new ConcurrentHashMap<>();
+  private final Map<ReferenceData, Timer> refreshTimers = new EnumMap<>(ReferenceData.class);
+  private final Map<ReferenceData, Counter> failureCounters = new EnumMap<>(ReferenceData.class);
+  private final ScheduledExecutorService scheduler;
+
+  /**
+   * Create the cache and register its meters.
+   *
+   * @param producerTemplate the template the load routes are called with
+   * @param meterRegistry    the registry the cache meters are published to
+   * @param refreshSeconds   the number of seconds between background refreshes
+   * @param ttlSeconds       the number of seconds after which a list is stale
+   */
+  @Autowired
+  public ReferenceDataCache(ProducerTemplate producerTemplate, MeterRegistry meterRegistry,
+      @Value("${app.reference-cache.refresh-seconds:240}") long refreshSeconds,
+      @Value("${app.reference-cache.ttl-seconds:300}") long ttlSeconds) {
+    this(producerTemplate, meterRegistry, refreshSeconds, ttlSeconds, System::nanoTime);
+  }
+
+  ReferenceDataCache(ProducerTemplate producerTemplate, MeterRegistry meterRegistry,
+      long refreshSeconds, long ttlSeconds, LongSupplier nanoClock) {
+    this.producerTemplate = producerTemplate;
+    this.refreshSeconds = refreshSeconds;
+    this.ttlNanos = TimeUnit.SECONDS.toNanos(ttlSeconds);
+    this.nanoClock = nanoClock;
+    for (ReferenceData data : ReferenceData.values()) {
+      String dataName = data.name();
+      refreshTimers.put(data, Timer.builder(METRIC_PREFIX + "refresh")
+          .tag(DATA_TAG, dataName).register(meterRegistry));
+      failureCounters.put(data, Counter.builder(METRIC_PREFIX + "refresh.failures")
+          .tag(DATA_TAG, dataName).register(meterRegistry));
+      Gauge.builder(METRIC_PREFIX + "age", this, cache -> cache.getAgeSeconds(data))
+          .tag(DATA_TAG, dataName)
+          .description("Seconds since the reference data was loaded")
+          .baseUnit("seconds")
+          .register(meterRegistry);
+    }
+    this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "reference-data-cache");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  /**
+   * Load every list and start refreshing them in the background.
+   */
+  @EventListener(ApplicationReadyEvent.class)
+  public void start() {
+    scheduler.scheduleWithFixedDelay(this::refreshAll, 0, refreshSeconds, TimeUnit.SECONDS);
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    scheduler.shutdown();
+  }
+
+  /**
+   * Get a reference data list, loading it if it has never been loaded.
+   *
+   * @param data the list to get
+   * @return the list as returned by the reference service
+   * @throws Exception the failure of the load if the list has never been loaded
+   */
+  public String get(ReferenceData data) throws Exception {
+    Entry entry = entries.get(data);
+    if (entry == null) {
+      return refresh(data);
+    }
+    if (nanoClock.getAsLong() - entry.loadedAt() >= ttlNanos) {
+      log.warn("Serving {} reference data loaded {}s ago as it could not be refreshed", data,
+          Math.round(getAgeSeconds(data)));
+    }
+    return entry.body();
+  }
+
+  /**
+   * Refresh every list, keeping the last loaded version of a list that fails to load.
+   */
+  public void refreshAll() {
+    for (ReferenceData data : ReferenceData.values()) {
+      try {
+        refresh(data);
+      } catch (Exception e) {
+        failureCounters.get(data).increment();
+        log.warn("Failed to refresh {} reference data, the last loaded data is kept", data, e);
+      }
+    }
+  }
+
+  /**
+   * Get the time since a list was loaded.
+   *
+   * @param data the list
+   * @return the age in seconds, or NaN if the list has never been loaded
+   */
+  public double getAgeSeconds(ReferenceData data) {
+    Entry entry = entries.get(data);
+    return entry == null ? Double.NaN : (nanoClock.getAsLong() - entry.loadedAt()) / 1e9;
+  }
+
+  private String refresh(ReferenceData data) throws Exception {
+    long start = System.nanoTime();
+    Exchange result = producerTemplate.request(data.getLoadRoute(), exchange -> {
+    });
+    refreshTimers.get(data).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    if (result.getException() != null) {
+      throw result.getException();
+    }
+    String body = Objects.requireNonNullElse(result.getMessage().getBody(String.class), "");
+    entries.put(data, new Entry(body, nanoClock.getAsLong()));
+    return body;
+  }
+
+  private record Entry(String body, long loadedAt) {
+
+  }
+}
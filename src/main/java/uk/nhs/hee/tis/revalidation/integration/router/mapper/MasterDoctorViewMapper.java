@@ -100,6 +100,42 @@ public interface MasterDoctorViewMapper {
     return map;
   }
 
+  /**
+   * Map a TIS trainee update to the fields of an ElasticSearch document, following the rules of
+   * {@link #updateMasterDoctorView(ConnectionInfoDto, MasterDoctorView)}: the TIS programme fields
+   * are always written, while the doctor's identity and name are only written when present.
+   *
+   * @param trainee the trainee update from TIS
+   * @return a map of fields for Elasticsearch document
+   */
+  default Map<String, Object> traineeToEsDoc(ConnectionInfoDto trainee) {
+    if (trainee == null) {
+      return Map.of();
+    }
+    Map<String, Object> map = new HashMap<>();
+    putIfNotNull(map, "tcsPersonId", trainee.getTcsPersonId());
+    putIfNotNull(map, "gmcReferenceNumber", trainee.getGmcReferenceNumber());
+    putIfNotNull(map, "doctorFirstName", trainee.getDoctorFirstName());
+    putIfNotNull(map, "doctorLastName", trainee.getDoctorLastName());
+    putIfNotNull(map, "submissionDate", trainee.getSubmissionDate());
+    putIfNotNull(map, "designatedBody", trainee.getDesignatedBody());
+    map.put("programmeName", trainee.getProgrammeName());
+    map.put("membershipType", trainee.getProgrammeMembershipType());
+    map.put("programmeOwner", trainee.getProgrammeOwner());
+    map.put("curriculumEndDate", trainee.getCurriculumEndDate());
+    map.put("membershipStartDate", trainee.getProgrammeMembershipStartDate());
+    map.put("membershipEndDate", trainee.getProgrammeMembershipEndDate());
+    map.put("tcsDesignatedBody", trainee.getTcsDesignatedBody());
+    map.put("placementGrade", trainee.getPlacementGrade());
+    return map;
+  }
+
+  private static void putIfNotNull(Map<String, Object> map, String field, Object value) {
+    if (value != null) {
+      map.put(field, value);
+    }
+  }
+
   @Mapping(target = "doctorFirstName", source = "doctor.doctorFirstName")
   @Mapping(target = "doctorLastName", source = "doctor.doctorLastName")
   @Mapping(target = "gmcReferenceNumber", source = "doctor.gmcReferenceNumber")
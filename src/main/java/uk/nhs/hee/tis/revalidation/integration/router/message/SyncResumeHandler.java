@@ -0,0 +1,145 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright 2026 Crown Copyright (NHS England)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package uk.nhs.hee.tis.revalidation.integration.router.message;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.camel.Handler;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import uk.nhs.hee.tis.revalidation.integration.enums.SyncPhase;
+import uk.nhs.hee.tis.revalidation.integration.enums.SyncStatus;
+import uk.nhs.hee.tis.revalidation.integration.sync.helper.SyncMetrics;
+import uk.nhs.hee.tis.revalidation.integration.sync.service.DoctorUpsertElasticSearchService;
+import uk.nhs.hee.tis.revalidation.integration.sync.service.SyncStateService;
+import uk.nhs.hee.tis.revalidation.integration.sync.view.SyncState;
+
+/**
+ * Resumes a masterdoctorindex rebuild that was interrupted by a restart.
+ *
+ * <p>The data already queued for the current phase survives a restart, so on startup the rebuild
+ * is only taken over. When the phase data was lost as well, resuming re-requests the current
+ * phase without clearing the documents written by the earlier phases.
+ */
+@Slf4j
+@Component
+public class SyncResumeHandler {
+
+  @Value("${app.rabbit.reval.exchange}")
+  private String revalExchange;
+
+  @Value("${app.rabbit.reval.routingKey.connection.syncstart}")
+  private String tcsSyncStartRoutingKey;
+
+  @Value("${app.rabbit.reval.routingKey.recommendation.syncstart}")
+  private String gmcSyncStartRoutingKey;
+
+  @Value("${app.rabbit.reval.routingKey.connectionlog.essyncstart}")
+  private String connectionLogSyncStartRoutingKey;
+
+  @Value("${app.rabbit.reval.routingKey.hiddendiscrepancy.essyncstart}")
+  private String hiddenDiscrepancySyncStartRoutingKey;
+
+  @Value("${app.es.rebuild.staging.enabled:false}")
+  private boolean stagingEnabled;
+
+  @Autowired
+  RabbitTemplate rabbitTemplate;
+
+  @Autowired
+  DoctorUpsertElasticSearchService doctorUpsertElasticSearchService;
+
+  @Autowired
+  SyncStateService syncStateService;
+
+  @Autowired
+  SyncStartHandler syncStartHandler;
+
+  @Autowired
+  SyncMetrics syncMetrics;
+
+  /**
+   * Re-request the current phase of an interrupted rebuild. A staged rebuild cannot be resumed
+   * as the staged records are lost on restart, so it is started again.
+   *
+   * @return the state of the rebuild before it was resumed
+   */
+  @Handler
+  public SyncState resumeTraineeSync() {
+    SyncState state = syncStateService.getState();
+    if (!isInProgress(state)) {
+      log.info("No masterdoctorindex sync in progress to resume.");
+      return state;
+    }
+    if (stagingEnabled) {
+      log.info("Staged masterdoctorindex rebuilds cannot be resumed, starting the sync again.");
+      syncStartHandler.startTraineeSync();
+      return state;
+    }
+
+    SyncPhase phase = state.getPhase();
+    log.info("Resuming the masterdoctorindex sync from phase: {}", phase);
+    doctorUpsertElasticSearchService.resumeMasterDoctorIndexRebuild(state.getIndexName());
+    syncStateService.recordResume();
+    syncMetrics.startPhase(phase);
+    rabbitTemplate.convertAndSend(revalExchange, getStartRoutingKey(phase),
+        phase.getStartMessage());
+    return state;
+  }
+
+  /**
+   * Take over a rebuild that was in progress when the application stopped, so it is promoted
+   * when the queued phase data has been consumed.
+   */
+  @EventListener(ApplicationReadyEvent.class)
+  public void takeOverInterruptedSync() {
+    SyncState state = syncStateService.getState();
+    if (!isInProgress(state)) {
+      return;
+    }
+    if (stagingEnabled) {
+      log.warn("A staged masterdoctorindex sync was interrupted in phase: {}, "
+          + "call /sync/resume to start it again.", state.getPhase());
+      return;
+    }
+    log.info("Taking over the masterdoctorindex sync interrupted in phase: {}, "
+        + "call /sync/resume if its data is no longer queued.", state.getPhase());
+    doctorUpsertElasticSearchService.resumeMasterDoctorIndexRebuild(state.getIndexName());
+    syncMetrics.startPhase(state.getPhase());
+  }
+
+  private boolean isInProgress(SyncState state) {
+    return state != null && state.getStatus() == SyncStatus.IN_PROGRESS;
+  }
+
+  private String getStartRoutingKey(SyncPhase phase) {
+    return switch (phase) {
+      case TCS -> tcsSyncStartRoutingKey;
+      case GMC -> gmcSyncStartRoutingKey;
+      case CONNECTION_LOG -> connectionLogSyncStartRoutingKey;
+      case HIDDEN_DISCREPANCY -> hiddenDiscrepancySyncStartRoutingKey;
+    };
+  }
+}
@@ -27,7 +27,9 @@ import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
+import uk.nhs.hee.tis.revalidation.integration.enums.SyncPhase;
 import uk.nhs.hee.tis.revalidation.integration.sync.service.DoctorUpsertElasticSearchService;
+import uk.nhs.hee.tis.revalidation.integration.sync.service.SyncStateService;
 
 @Slf4j
 @Component
@@ -45,10 +47,21 @@ public class SyncStartHandler {
   @Autowired
   DoctorUpsertElasticSearchService doctorUpsertElasticSearchService;
 
+  @Autowired
+  SyncStateService syncStateService;
+
   @Handler
   public void startTraineeSync() {
     log.info("Elastic Search update sync start.");
-    doctorUpsertElasticSearchService.clearMasterDoctorIndex();
-    rabbitTemplate.convertAndSend(revalExchange, revalSyncStartRoutingKey, "syncStart");
+    String indexName = doctorUpsertElasticSearchService.startMasterDoctorIndexRebuild();
+    syncStateService.startSync(indexName);
+    try {
+      rabbitTemplate.convertAndSend(revalExchange, revalSyncStartRoutingKey,
+          SyncPhase.TCS.getStartMessage());
+    } catch (RuntimeException e) {
+      doctorUpsertElasticSearchService.restoreMasterDoctorIndexSettings();
+      syncStateService.finish(false);
+      throw e;
+    }
   }
 }
@@ -0,0 +1,58 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright 2026 Crown Copyright (NHS England)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package uk.nhs.hee.tis.revalidation.integration.router.processor;
+
+import static uk.nhs.hee.tis.revalidation.integration.router.helper.Constants.NOTES_CACHED_PROPERTY;
+
+import org.apache.camel.Exchange;
+import org.apache.camel.Processor;
+import uk.nhs.hee.tis.revalidation.integration.router.helper.NotesPresenceCache;
+import uk.nhs.hee.tis.revalidation.integration.router.helper.NotesRows;
+
+/**
+ * Sets the notes flag of a summary row from the {@link NotesPresenceCache}, and records in the
+ * {@code notesCached} property whether it was found so the lookup in core can be skipped.
+ *
+ * @param <R> the type of the rows
+ */
+public class AttachCachedNotesProcessor<R> implements Processor {
+
+  private final NotesPresenceCache notesPresenceCache;
+  private final NotesRows<?, R> notesRows;
+
+  public AttachCachedNotesProcessor(NotesPresenceCache notesPresenceCache,
+      NotesRows<?, R> notesRows) {
+    this.notesPresenceCache = notesPresenceCache;
+    this.notesRows = notesRows;
+  }
+
+  @Override
+  public void process(Exchange exchange) {
+    R row = exchange.getProperty(notesRows.rowProperty(), notesRows.rowType());
+
+    Boolean notes = notesPresenceCache.get(notesRows.gmcId().apply(row));
+    if (notes != null) {
+      notesRows.setNotes().accept(row, notes);
+    }
+    exchange.setProperty(NOTES_CACHED_PROPERTY, notes != null);
+  }
+}
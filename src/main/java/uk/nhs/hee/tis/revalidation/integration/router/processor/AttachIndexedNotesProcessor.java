@@ -0,0 +1,91 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright 2026 Crown Copyright (NHS England)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package uk.nhs.hee.tis.revalidation.integration.router.processor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.camel.Exchange;
+import org.apache.camel.Processor;
+import uk.nhs.hee.tis.revalidation.integration.router.helper.NotesRows;
+import uk.nhs.hee.tis.revalidation.integration.sync.service.MasterDoctorNotesService;
+
+/**
+ * Sets the notes flag of the rows on a summary page from the masterdoctorindex. The summary is kept
+ * in the {@value #INDEXED_SUMMARY} property and the body is replaced with the rows whose flag is
+ * not known yet, to be looked up in core.
+ *
+ * @param <S> the type of the summary page
+ * @param <R> the type of the rows
+ */
+@Slf4j
+public class AttachIndexedNotesProcessor<S, R> implements Processor {
+
+  public static final String INDEXED_SUMMARY = "indexedSummary";
+
+  private final MasterDoctorNotesService notesService;
+  private final NotesRows<S, R> notesRows;
+
+  public AttachIndexedNotesProcessor(MasterDoctorNotesService notesService,
+      NotesRows<S, R> notesRows) {
+    this.notesService = notesService;
+    this.notesRows = notesRows;
+  }
+
+  @Override
+  public void process(Exchange exchange) {
+    S summary = exchange.getMessage().getBody(notesRows.summaryType());
+    exchange.setProperty(INDEXED_SUMMARY, summary);
+    List<R> rows = notesRows.rows().apply(summary);
+    if (rows == null) {
+      rows = List.of();
+    }
+
+    Map<String, Boolean> hasNotesByGmc = findHasNotes(rows.stream()
+        .map(notesRows.gmcId())
+        .filter(Objects::nonNull)
+        .toList());
+    List<R> unresolved = new ArrayList<>();
+    rows.forEach(row -> {
+      String gmcId = notesRows.gmcId().apply(row);
+      Boolean hasNotes = gmcId == null ? null : hasNotesByGmc.get(gmcId);
+      if (hasNotes == null) {
+        unresolved.add(row);
+      } else {
+        notesRows.setNotes().accept(row, hasNotes);
+      }
+    });
+    exchange.getMessage().setBody(unresolved);
+  }
+
+  private Map<String, Boolean> findHasNotes(List<String> gmcReferenceNumbers) {
+    try {
+      return notesService.findHasNotes(gmcReferenceNumbers);
+    } catch (RuntimeException e) {
+      log.warn("Could not read the notes flags of {} {} from masterdoctorindex, "
+          + "looking them up in core instead.", gmcReferenceNumbers.size(), notesRows.name(), e);
+      return Map.of();
+    }
+  }
+}
@@ -26,13 +26,23 @@ import org.apache.camel.Processor;
 import org.springframework.stereotype.Component;
 import uk.nhs.hee.tis.revalidation.integration.router.dto.TraineeInfoDto;
 import uk.nhs.hee.tis.revalidation.integration.router.dto.TraineeNotesDto;
+import uk.nhs.hee.tis.revalidation.integration.router.helper.NotesPresenceCache;
 
 /**
  * Custom logic class for doctor notes enrichment.
+ *
+ * <p>The flag is remembered in the {@link NotesPresenceCache} when core answered the lookup, a
+ * failed lookup is not cached.
  */
 @Component
 public class AttachNotesToDoctorProcessor implements Processor {
 
+  private final NotesPresenceCache notesPresenceCache;
+
+  public AttachNotesToDoctorProcessor(NotesPresenceCache notesPresenceCache) {
+    this.notesPresenceCache = notesPresenceCache;
+  }
+
   @Override
   public void process(Exchange exchange) {
     TraineeInfoDto doctor = exchange.getProperty("doctor", TraineeInfoDto.class);
@@ -43,6 +53,10 @@ public class AttachNotesToDoctorProcessor implements Processor {
         traineeNotesDto != null && traineeNotesDto.getNotes() != null && !traineeNotesDto.getNotes()
             .isEmpty();
     doctor.setNotes(notes);
+    Integer status = exchange.getMessage().getHeader(Exchange.HTTP_RESPONSE_CODE, Integer.class);
+    if (status != null && (status == 200 || status == 404)) {
+      notesPresenceCache.put(doctor.getGmcReferenceNumber(), notes);
+    }
 
     exchange.getMessage().setBody(doctor, TraineeInfoDto.class);
   }
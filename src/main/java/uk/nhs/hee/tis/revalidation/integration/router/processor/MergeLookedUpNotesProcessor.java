@@ -0,0 +1,108 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright 2026 Crown Copyright (NHS England)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package uk.nhs.hee.tis.revalidation.integration.router.processor;
+
+import static uk.nhs.hee.tis.revalidation.integration.router.processor.AttachIndexedNotesProcessor.INDEXED_SUMMARY;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.camel.Exchange;
+import org.apache.camel.Processor;
+import uk.nhs.hee.tis.revalidation.integration.router.helper.NotesRows;
+import uk.nhs.hee.tis.revalidation.integration.sync.service.MasterDoctorNotesService;
+
+/**
+ * Completes the notes enrichment of a summary page once the rows without a known notes flag have
+ * been looked up in core, and records the flags found in the masterdoctorindex so later pages can
+ * read them. The flags are recorded on the given executor, so the page is returned without
+ * waiting for the index. The rows whose notes could not be looked up are shown without notes and
+ * looked up again next time.
+ *
+ * @param <S> the type of the summary page
+ * @param <R> the type of the rows
+ */
+@Slf4j
+public class MergeLookedUpNotesProcessor<S, R> implements Processor {
+
+  private final MasterDoctorNotesService notesService;
+  private final NotesRows<S, R> notesRows;
+  private final Executor writeBackExecutor;
+
+  /**
+   * Create the processor.
+   *
+   * @param notesService      the service the notes flags are recorded with
+   * @param notesRows         the accessors of the rows of the summary page
+   * @param writeBackExecutor the executor the notes flags are recorded on
+   */
+  public MergeLookedUpNotesProcessor(MasterDoctorNotesService notesService,
+      NotesRows<S, R> notesRows, Executor writeBackExecutor) {
+    this.notesService = notesService;
+    this.notesRows = notesRows;
+    this.writeBackExecutor = writeBackExecutor;
+  }
+
+  @Override
+  public void process(Exchange exchange) {
+    @SuppressWarnings("unchecked")
+    List<R> lookedUp = exchange.getMessage().getBody(List.class);
+
+    Map<String, Boolean> hasNotesByGmc = new HashMap<>();
+    lookedUp.forEach(row -> {
+      Boolean notes = notesRows.notes().apply(row);
+      String gmcId = notesRows.gmcId().apply(row);
+      if (notes == null) {
+        notesRows.setNotes().accept(row, false);
+      } else if (gmcId != null) {
+        hasNotesByGmc.put(gmcId, notes);
+      }
+    });
+    if (!hasNotesByGmc.isEmpty()) {
+      recordHasNotes(hasNotesByGmc);
+    }
+
+    exchange.getMessage()
+        .setBody(exchange.getProperty(INDEXED_SUMMARY, notesRows.summaryType()));
+  }
+
+  private void recordHasNotes(Map<String, Boolean> hasNotesByGmc) {
+    try {
+      CompletableFuture.runAsync(() -> notesService.updateHasNotes(hasNotesByGmc),
+          writeBackExecutor).exceptionally(e -> {
+            logNotRecorded(hasNotesByGmc, e);
+            return null;
+          });
+    } catch (RejectedExecutionException e) {
+      logNotRecorded(hasNotesByGmc, e);
+    }
+  }
+
+  private void logNotRecorded(Map<String, Boolean> hasNotesByGmc, Throwable e) {
+    log.warn("Could not record the notes flags of {} {} in masterdoctorindex.",
+        hasNotesByGmc.size(), notesRows.name(), e);
+  }
+}
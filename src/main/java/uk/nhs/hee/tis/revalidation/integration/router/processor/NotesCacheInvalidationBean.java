@@ -0,0 +1,110 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright 2026 Crown Copyright (NHS England)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package uk.nhs.hee.tis.revalidation.integration.router.processor;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.util.Map;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.camel.Exchange;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import uk.nhs.hee.tis.revalidation.integration.router.dto.TraineeNotesInfoDto;
+import uk.nhs.hee.tis.revalidation.integration.router.helper.NotesPresenceCache;
+import uk.nhs.hee.tis.revalidation.integration.sync.service.MasterDoctorNotesService;
+
+/**
+ * Refreshes the notes flags of a doctor once a note of the doctor has been added or edited in
+ * core: the doctor is cached as having notes in the {@link NotesPresenceCache} and the flag of the
+ * masterdoctorindex is set, as the doctor now has a note.
+ */
+@Slf4j
+@Component
+public class NotesCacheInvalidationBean {
+
+  private static final String NOTES_GMC_ID_PROPERTY = "notesGmcId";
+
+  private final ObjectMapper mapper;
+  private final NotesPresenceCache notesPresenceCache;
+  private final MasterDoctorNotesService notesService;
+
+  /**
+   * Create the bean refreshing the notes flags.
+   *
+   * @param mapper             the mapper the notes are read with
+   * @param notesPresenceCache the cache of the notes flags
+   * @param notesService       the service maintaining the notes flags of the masterdoctorindex
+   */
+  public NotesCacheInvalidationBean(ObjectMapper mapper, NotesPresenceCache notesPresenceCache,
+      MasterDoctorNotesService notesService) {
+    this.mapper = mapper;
+    this.notesPresenceCache = notesPresenceCache;
+    this.notesService = notesService;
+  }
+
+  /**
+   * Remember the GMC number of the note being sent to core. The body is read as a String and put
+   * back, so it can still be sent after the request stream has been consumed.
+   *
+   * @param exchange the exchange holding the note
+   */
+  public void captureGmcId(final Exchange exchange) {
+    final var body = exchange.getIn().getBody(String.class);
+    exchange.getIn().setBody(body);
+    if (!StringUtils.hasText(body)) {
+      return;
+    }
+    try {
+      exchange.setProperty(NOTES_GMC_ID_PROPERTY,
+          mapper.readValue(body, TraineeNotesInfoDto.class).getGmcId());
+    } catch (JsonProcessingException e) {
+      log.warn("Could not read the gmcId of a trainee note, its cached notes flag is kept", e);
+    }
+  }
+
+  /**
+   * Cache the doctor captured by {@link #captureGmcId(Exchange)} as having notes.
+   *
+   * @param exchange the exchange the note was sent with
+   */
+  public void cacheHasNotes(final Exchange exchange) {
+    notesPresenceCache.putNoteSaved(exchange.getProperty(NOTES_GMC_ID_PROPERTY, String.class));
+  }
+
+  /**
+   * Set the indexed notes flag of the doctor captured by {@link #captureGmcId(Exchange)}. A failure
+   * is logged rather than failing the note, which core has already saved.
+   *
+   * @param exchange the exchange the note was sent with
+   */
+  public void markHasNotes(final Exchange exchange) {
+    final var gmcId = exchange.getProperty(NOTES_GMC_ID_PROPERTY, String.class);
+    if (!StringUtils.hasText(gmcId)) {
+      return;
+    }
+    try {
+      notesService.updateHasNotes(Map.of(gmcId, true));
+    } catch (RuntimeException e) {
+      log.warn("Could not set the indexed notes flag of doctor {}", gmcId, e);
+    }
+  }
+}
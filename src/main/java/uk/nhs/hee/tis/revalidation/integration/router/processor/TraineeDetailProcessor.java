@@ -20,8 +20,9 @@
 
 package uk.nhs.hee.tis.revalidation.integration.router.processor;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import java.util.Map;
 import org.apache.camel.Exchange;
 import org.apache.camel.Processor;
 import org.springframework.http.HttpStatus;
@@ -46,14 +47,14 @@ public class TraineeDetailProcessor implements Processor {
 
   @Override
   public void process(Exchange exchange) throws Exception {
-    String body = exchange.getIn().getBody(String.class);
-    Map<String, Object> map = mapper.readValue(body, Map.class);
-    TraineeDetailsDto traineeDetailsDto = mapper.convertValue(map.get(TRAINEE_AGGREGATION_HEADER),
+    Object body = exchange.getIn().getBody();
+    JsonNode tree = body instanceof JsonNode node ? node
+        : mapper.readTree(exchange.getIn().getBody(String.class));
+    TraineeDetailsDto traineeDetailsDto = read(tree, TRAINEE_AGGREGATION_HEADER,
         TraineeDetailsDto.class);
-    TraineeSummaryDto traineeSummaryDto = mapper.convertValue(map.get(GMC_AGGREGATION_HEADER),
+    TraineeSummaryDto traineeSummaryDto = read(tree, GMC_AGGREGATION_HEADER,
         TraineeSummaryDto.class);
-    TraineeNotesDto traineeNotesDto = mapper.convertValue(map.get(NOTES_AGGREGATION_HEADER),
-        TraineeNotesDto.class);
+    TraineeNotesDto traineeNotesDto = read(tree, NOTES_AGGREGATION_HEADER, TraineeNotesDto.class);
 
     TraineeDetailsDto traineeDetailsDtoResult = null;
     if (traineeDetailsDto != null && traineeDetailsDto.getGmcNumber() != null) {
@@ -78,4 +79,10 @@ public class TraineeDetailProcessor implements Processor {
       exchange.getIn().setHeader(Exchange.HTTP_RESPONSE_CODE, HttpStatus.NOT_FOUND.value());
     }
   }
+
+  private <T> T read(JsonNode tree, String aggregationKey, Class<T> type)
+      throws JsonProcessingException {
+    JsonNode node = tree.get(aggregationKey);
+    return node == null || node.isNull() ? null : mapper.treeToValue(node, type);
+  }
 }
@@ -21,21 +21,27 @@
 
 package uk.nhs.hee.tis.revalidation.integration.router.service;
 
+import static uk.nhs.hee.tis.revalidation.integration.config.GmcIdBatchLookupConfig.LATEST_CONCERNS_CHUNK_ROUTE;
 import static uk.nhs.hee.tis.revalidation.integration.router.helper.Constants.GET_TOKEN_METHOD;
 import static uk.nhs.hee.tis.revalidation.integration.router.helper.Constants.OIDC_ACCESS_TOKEN_HEADER;
 
-import org.apache.camel.AggregationStrategy;
+import java.util.Map;
 import org.apache.camel.Exchange;
 import org.apache.camel.builder.RouteBuilder;
+import org.apache.camel.model.dataformat.JsonLibrary;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.MediaType;
 import org.springframework.stereotype.Component;
+import uk.nhs.hee.tis.revalidation.integration.enums.ReferenceData;
 import uk.nhs.hee.tis.revalidation.integration.router.aggregation.AggregationKey;
 import uk.nhs.hee.tis.revalidation.integration.router.aggregation.ConcernTcsAggregationStrategy;
 import uk.nhs.hee.tis.revalidation.integration.router.aggregation.DoctorConcernAggregationStrategy;
-import uk.nhs.hee.tis.revalidation.integration.router.aggregation.JsonStringAggregationStrategy;
+import uk.nhs.hee.tis.revalidation.integration.router.aggregation.JsonTreeAggregationStrategy;
+import uk.nhs.hee.tis.revalidation.integration.router.helper.GmcIdBatchLookup;
+import uk.nhs.hee.tis.revalidation.integration.router.helper.ReferenceDataCache;
 import uk.nhs.hee.tis.revalidation.integration.router.processor.GmcIdProcessorBean;
 import uk.nhs.hee.tis.revalidation.integration.router.processor.KeycloakBean;
 
@@ -56,8 +62,6 @@ public class ConcernServiceRouter extends RouteBuilder {
   private static final String API_TYPES = "/api/concern-types?bridgeEndpoint=true";
   private static final String API_LATEST_CONCERNS = "/api/concerns/summary/${header.gmcIds}?bridgeEndpoint=true";
 
-  private static final AggregationStrategy AGGREGATOR = new JsonStringAggregationStrategy();
-
   @Autowired
   private GmcIdProcessorBean gmcIdProcessorBean;
 
@@ -67,9 +71,19 @@ public class ConcernServiceRouter extends RouteBuilder {
   @Autowired
   private ConcernTcsAggregationStrategy concernTcsAggregationStrategy;
 
+  @Autowired
+  private JsonTreeAggregationStrategy jsonTreeAggregationStrategy;
+
   @Autowired
   private KeycloakBean reference;
 
+  @Autowired
+  @Qualifier("latestConcernsLookup")
+  private GmcIdBatchLookup latestConcernsLookup;
+
+  @Autowired
+  private ReferenceDataCache referenceDataCache;
+
   @Value("${service.concern.url}")
   private String serviceUrlConcern;
 
@@ -84,17 +98,24 @@ public class ConcernServiceRouter extends RouteBuilder {
         .setHeader("gmcIds").method(gmcIdProcessorBean, "process")
         .enrich("direct:latest-concern", doctorConcernAggregationStrategy);
 
+    // Concurrent lookups of the same caller are collapsed into chunked calls of the chunk route,
+    // which forward the caller's Authorization header.
     from("direct:latest-concern")
-        .toD(serviceUrlConcern + API_LATEST_CONCERNS)
+        .process(latestConcernsLookup)
+        .marshal().json(JsonLibrary.Jackson)
         .enrich("direct:tcs-trainees", concernTcsAggregationStrategy);
 
+    from(LATEST_CONCERNS_CHUNK_ROUTE)
+        .toD(serviceUrlConcern + API_LATEST_CONCERNS)
+        .unmarshal().json(JsonLibrary.Jackson, Map.class);
+
     from("direct:concern-save")
         .setHeader(Exchange.HTTP_METHOD, constant(HttpMethod.POST))
         .setHeader(Exchange.CONTENT_TYPE, constant(MediaType.APPLICATION_JSON))
         .to(serviceUrlConcern + API_CONCERNS);
 
     from("direct:concerns-gmc-id-aggregation")
-        .multicast(AGGREGATOR)
+        .multicast(jsonTreeAggregationStrategy)
         .parallelProcessing()
         .to("direct:gmc-number")
         .to("direct:concerns-gmc-id")
@@ -109,25 +130,42 @@ public class ConcernServiceRouter extends RouteBuilder {
     from("direct:concerns-gmc-id")
         .toD(serviceUrlConcern + API_CONCERNS_GMC_ID)
         .setHeader(AggregationKey.HEADER).constant(AggregationKey.CONCERNS);
+    // The reference data is served from the cache, which calls the load routes.
     from("direct:reference-sites")
-        .setHeader(OIDC_ACCESS_TOKEN_HEADER).method(reference, GET_TOKEN_METHOD)
         .setHeader(AggregationKey.HEADER).constant(AggregationKey.SITES)
-        .toD(serviceUrlReference + API_SITES);
+        .process(exchange -> exchange.getMessage()
+            .setBody(referenceDataCache.get(ReferenceData.SITES)));
     from("direct:reference-grades")
-        .setHeader(OIDC_ACCESS_TOKEN_HEADER).method(reference, GET_TOKEN_METHOD)
         .setHeader(AggregationKey.HEADER).constant(AggregationKey.GRADES)
-        .toD(serviceUrlReference + API_GRADES);
+        .process(exchange -> exchange.getMessage()
+            .setBody(referenceDataCache.get(ReferenceData.GRADES)));
     from("direct:reference-employers")
-        .setHeader(OIDC_ACCESS_TOKEN_HEADER).method(reference, GET_TOKEN_METHOD)
         .setHeader(AggregationKey.HEADER).constant(AggregationKey.EMPLOYERS)
-        .toD(serviceUrlReference + API_TRUSTS);
+        .process(exchange -> exchange.getMessage()
+            .setBody(referenceDataCache.get(ReferenceData.EMPLOYERS)));
     from("direct:reference-sources")
-        .setHeader(OIDC_ACCESS_TOKEN_HEADER).method(reference, GET_TOKEN_METHOD)
         .setHeader(AggregationKey.HEADER).constant(AggregationKey.SOURCES)
-        .toD(serviceUrlReference + API_SOURCES);
+        .process(exchange -> exchange.getMessage()
+            .setBody(referenceDataCache.get(ReferenceData.SOURCES)));
     from("direct:reference-types")
-        .setHeader(OIDC_ACCESS_TOKEN_HEADER).method(reference, GET_TOKEN_METHOD)
         .setHeader(AggregationKey.HEADER).constant(AggregationKey.TYPES)
+        .process(exchange -> exchange.getMessage()
+            .setBody(referenceDataCache.get(ReferenceData.TYPES)));
+
+    from(ReferenceData.SITES.getLoadRoute())
+        .setHeader(OIDC_ACCESS_TOKEN_HEADER).method(reference, GET_TOKEN_METHOD)
+        .toD(serviceUrlReference + API_SITES);
+    from(ReferenceData.GRADES.getLoadRoute())
+        .setHeader(OIDC_ACCESS_TOKEN_HEADER).method(reference, GET_TOKEN_METHOD)
+        .toD(serviceUrlReference + API_GRADES);
+    from(ReferenceData.EMPLOYERS.getLoadRoute())
+        .setHeader(OIDC_ACCESS_TOKEN_HEADER).method(reference, GET_TOKEN_METHOD)
+        .toD(serviceUrlReference + API_TRUSTS);
+    from(ReferenceData.SOURCES.getLoadRoute())
+        .setHeader(OIDC_ACCESS_TOKEN_HEADER).method(reference, GET_TOKEN_METHOD)
+        .toD(serviceUrlReference + API_SOURCES);
+    from(ReferenceData.TYPES.getLoadRoute())
+        .setHeader(OIDC_ACCESS_TOKEN_HEADER).method(reference, GET_TOKEN_METHOD)
         .toD(serviceUrlReference + API_TYPES);
   }
 }
@@ -21,8 +21,9 @@
 
 package uk.nhs.hee.tis.revalidation.integration.router.service;
 
+import static uk.nhs.hee.tis.revalidation.integration.router.helper.Constants.NOTES_CACHED_PROPERTY;
+
 import java.util.concurrent.ExecutorService;
-import org.apache.camel.AggregationStrategy;
 import org.apache.camel.Exchange;
 import org.apache.camel.builder.RouteBuilder;
 import org.apache.camel.model.dataformat.JsonLibrary;
@@ -31,13 +32,19 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.MediaType;
 import org.springframework.stereotype.Component;
+import uk.nhs.hee.tis.revalidation.integration.enums.NotesEnrichmentMode;
 import uk.nhs.hee.tis.revalidation.integration.router.aggregation.AggregationKey;
 import uk.nhs.hee.tis.revalidation.integration.router.aggregation.EnrichedConnectionsAggregationStrategy;
-import uk.nhs.hee.tis.revalidation.integration.router.aggregation.JsonStringAggregationStrategy;
+import uk.nhs.hee.tis.revalidation.integration.router.aggregation.JsonTreeAggregationStrategy;
+import uk.nhs.hee.tis.revalidation.integration.router.dto.ConnectionInfoDto;
 import uk.nhs.hee.tis.revalidation.integration.router.dto.ConnectionSummaryDto;
 import uk.nhs.hee.tis.revalidation.integration.router.dto.TraineeNotesDto;
+import uk.nhs.hee.tis.revalidation.integration.router.helper.NotesRows;
+import uk.nhs.hee.tis.revalidation.integration.router.processor.AttachCachedNotesProcessor;
+import uk.nhs.hee.tis.revalidation.integration.router.processor.AttachIndexedNotesProcessor;
 import uk.nhs.hee.tis.revalidation.integration.router.processor.AttachNotesToConnectionProcessor;
 import uk.nhs.hee.tis.revalidation.integration.router.processor.MergeEnrichedConnectionsIntoSummaryProcessor;
+import uk.nhs.hee.tis.revalidation.integration.router.processor.MergeLookedUpNotesProcessor;
 
 @Component
 public class ConnectionServiceRouter extends RouteBuilder {
@@ -64,12 +71,22 @@ public class ConnectionServiceRouter extends RouteBuilder {
       "/api/exceptionLog/today?bridgeEndpoint=true";
   private static final String ENRICH_CONNECTED_SUMMARY_WITH_NOTES =
       "direct:enrich-connected-summary-with-notes";
-  private static final AggregationStrategy AGGREGATOR = new JsonStringAggregationStrategy();
+  private static final String ENRICH_CONNECTED_SUMMARY_WITH_INDEXED_NOTES =
+      "direct:enrich-connected-summary-with-indexed-notes";
+  private static final String ENRICH_CONNECTIONS_WITH_NOTES =
+      "direct:enrich-connections-with-notes";
   private final ExecutorService notesExecutor;
   private final EnrichedConnectionsAggregationStrategy enrichedConnectionsAggregationStrategy;
   private final AttachNotesToConnectionProcessor attachNotesToConnectionProcessor;
   private final MergeEnrichedConnectionsIntoSummaryProcessor
       mergeEnrichedConnectionsIntoSummaryProcessor;
+  private final AttachIndexedNotesProcessor<ConnectionSummaryDto, ConnectionInfoDto>
+      attachIndexedNotesToConnectionsProcessor;
+  private final MergeLookedUpNotesProcessor<ConnectionSummaryDto, ConnectionInfoDto>
+      mergeLookedUpNotesIntoConnectionsProcessor;
+  private final AttachCachedNotesProcessor<ConnectionInfoDto>
+      attachCachedNotesToConnectionProcessor;
+  private final JsonTreeAggregationStrategy jsonTreeAggregationStrategy;
 
   @Value("${service.tcs.url}")
   private String tcsServiceUrl;
@@ -83,22 +100,37 @@ public class ConnectionServiceRouter extends RouteBuilder {
   @Value("${service.connection.url}")
   private String serviceUrlConnection;
 
+  @Value("${app.notes.enrichment-mode:HTTP}")
+  private NotesEnrichmentMode notesEnrichmentMode;
+
   /**
    * Constructor of ConnectionServiceRouter.
    */
   public ConnectionServiceRouter(@Qualifier("notesExecutor") ExecutorService notesExecutor,
       EnrichedConnectionsAggregationStrategy enrichedConnectionsAggregationStrategy,
       AttachNotesToConnectionProcessor attachNotesToConnectionProcessor,
-      MergeEnrichedConnectionsIntoSummaryProcessor mergeEnrichedConnectionsIntoSummaryProcessor) {
+      MergeEnrichedConnectionsIntoSummaryProcessor mergeEnrichedConnectionsIntoSummaryProcessor,
+      AttachIndexedNotesProcessor<ConnectionSummaryDto, ConnectionInfoDto>
+          attachIndexedNotesToConnectionsProcessor,
+      MergeLookedUpNotesProcessor<ConnectionSummaryDto, ConnectionInfoDto>
+          mergeLookedUpNotesIntoConnectionsProcessor,
+      AttachCachedNotesProcessor<ConnectionInfoDto> attachCachedNotesToConnectionProcessor,
+      JsonTreeAggregationStrategy jsonTreeAggregationStrategy) {
     this.notesExecutor = notesExecutor;
     this.enrichedConnectionsAggregationStrategy = enrichedConnectionsAggregationStrategy;
     this.attachNotesToConnectionProcessor = attachNotesToConnectionProcessor;
     this.mergeEnrichedConnectionsIntoSummaryProcessor =
         mergeEnrichedConnectionsIntoSummaryProcessor;
+    this.attachIndexedNotesToConnectionsProcessor = attachIndexedNotesToConnectionsProcessor;
+    this.mergeLookedUpNotesIntoConnectionsProcessor = mergeLookedUpNotesIntoConnectionsProcessor;
+    this.attachCachedNotesToConnectionProcessor = attachCachedNotesToConnectionProcessor;
+    this.jsonTreeAggregationStrategy = jsonTreeAggregationStrategy;
   }
 
   @Override
   public void configure() {
+    final String enrichWithNotes = notesEnrichmentMode == NotesEnrichmentMode.HTTP
+        ? ENRICH_CONNECTED_SUMMARY_WITH_NOTES : ENRICH_CONNECTED_SUMMARY_WITH_INDEXED_NOTES;
 
     // Connection summary page - exception queue tab
     from("direct:connection-exception-summary")
@@ -109,13 +141,13 @@ public class ConnectionServiceRouter extends RouteBuilder {
     from("direct:connection-discrepancies-summary")
         .to(serviceUrlConnection + API_CONNECTION_DISCREPANCIES)
         .unmarshal().json(JsonLibrary.Jackson, ConnectionSummaryDto.class)
-        .to(ENRICH_CONNECTED_SUMMARY_WITH_NOTES);
+        .to(enrichWithNotes);
 
     // Connection summary page - Connected queue tab
     from("direct:connection-connected-summary")
         .to(serviceUrlConnection + API_CONNECTION_CONNECTED)
         .unmarshal().json(JsonLibrary.Jackson, ConnectionSummaryDto.class)
-        .to(ENRICH_CONNECTED_SUMMARY_WITH_NOTES);
+        .to(enrichWithNotes);
 
     // Hidden Discrepancies page - Hidden Discrepancies tab
     from("direct:connection-hidden-discrepancies-summary")
@@ -128,7 +160,7 @@ public class ConnectionServiceRouter extends RouteBuilder {
 
     // Connection Details page
     from("direct:connection-gmc-id-aggregation")
-        .multicast(AGGREGATOR)
+        .multicast(jsonTreeAggregationStrategy)
         .parallelProcessing()
         .to("direct:doctor-designated-body")
         .to("direct:connection-history")
@@ -178,6 +210,8 @@ public class ConnectionServiceRouter extends RouteBuilder {
         .executorService(notesExecutor)
         .setProperty("connection", body())
         .setHeader("gmcId", simple("${exchangeProperty.connection.gmcReferenceNumber}"))
+        .process(attachCachedNotesToConnectionProcessor)
+        .filter(exchangeProperty(NOTES_CACHED_PROPERTY).isNotEqualTo(true))
         .to("direct:traineenotes-get")
         .choice()
         .when(header(Exchange.HTTP_RESPONSE_CODE).isEqualTo(200))
@@ -193,8 +227,20 @@ public class ConnectionServiceRouter extends RouteBuilder {
         .end()
         .process(attachNotesToConnectionProcessor)
         .end()
+        .end()
         .aggregate(constant(true), enrichedConnectionsAggregationStrategy)
         .completionPredicate(exchangeProperty(Exchange.SPLIT_COMPLETE).isEqualTo(true))
         .process(mergeEnrichedConnectionsIntoSummaryProcessor);
+
+    // Enrich connected summary with the notes flags of masterdoctorindex
+    from(ENRICH_CONNECTED_SUMMARY_WITH_INDEXED_NOTES)
+        .process(attachIndexedNotesToConnectionsProcessor)
+        .filter(simple("${body.size()} > 0"))
+        .to(ENRICH_CONNECTIONS_WITH_NOTES)
+        .end()
+        .process(mergeLookedUpNotesIntoConnectionsProcessor);
+
+    NotesLookupRoute.configure(this, ENRICH_CONNECTIONS_WITH_NOTES, NotesRows.CONNECTIONS,
+        notesExecutor, attachCachedNotesToConnectionProcessor, attachNotesToConnectionProcessor);
   }
 }
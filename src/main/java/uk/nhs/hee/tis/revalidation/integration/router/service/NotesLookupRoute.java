@@ -0,0 +1,88 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright 2026 Crown Copyright (NHS England)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package uk.nhs.hee.tis.revalidation.integration.router.service;
+
+import static org.apache.camel.builder.Builder.body;
+import static org.apache.camel.builder.Builder.constant;
+import static org.apache.camel.builder.Builder.exchangeProperty;
+import static org.apache.camel.builder.Builder.header;
+import static org.apache.camel.builder.Builder.simple;
+import static uk.nhs.hee.tis.revalidation.integration.router.helper.Constants.NOTES_CACHED_PROPERTY;
+
+import java.util.concurrent.ExecutorService;
+import org.apache.camel.Exchange;
+import org.apache.camel.Processor;
+import org.apache.camel.builder.RouteBuilder;
+import org.apache.camel.model.dataformat.JsonLibrary;
+import uk.nhs.hee.tis.revalidation.integration.router.dto.TraineeNotesDto;
+import uk.nhs.hee.tis.revalidation.integration.router.helper.NotesRows;
+
+/**
+ * Builds the routes looking up the notes of a list of summary rows in core, one lookup per row.
+ * The rows are enriched in place, a row whose notes could not be looked up is left without a notes
+ * flag.
+ */
+final class NotesLookupRoute {
+
+  private NotesLookupRoute() {
+  }
+
+  /**
+   * Add the route looking up the notes of the rows in the body.
+   *
+   * @param builder           the route builder the route is added to
+   * @param endpoint          the endpoint the route consumes from
+   * @param notesRows         the rows whose notes are looked up
+   * @param notesExecutor     the executor the lookups run on
+   * @param attachCachedNotes the processor setting the notes flag of a row known to the cache
+   * @param attachNotes       the processor setting the notes flag of a row from the lookup
+   */
+  static void configure(RouteBuilder builder, String endpoint, NotesRows<?, ?> notesRows,
+      ExecutorService notesExecutor, Processor attachCachedNotes, Processor attachNotes) {
+    builder.from(endpoint)
+        .split(body())
+        .executorService(notesExecutor)
+        .setProperty(notesRows.rowProperty(), body())
+        .setHeader("gmcId",
+            simple("${exchangeProperty." + notesRows.rowProperty() + ".gmcReferenceNumber}"))
+        .process(attachCachedNotes)
+        .filter(exchangeProperty(NOTES_CACHED_PROPERTY).isNotEqualTo(true))
+        .to("direct:traineenotes-get")
+        .choice()
+        .when(header(Exchange.HTTP_RESPONSE_CODE).isEqualTo(200))
+        .unmarshal().json(JsonLibrary.Jackson, TraineeNotesDto.class)
+        .process(attachNotes)
+        .endChoice()
+        .when(header(Exchange.HTTP_RESPONSE_CODE).isEqualTo(404))
+        .setBody(constant((Object) null))
+        .process(attachNotes)
+        .endChoice()
+        .otherwise()
+        .log(
+            "Unexpected notes response for gmcId=${header.gmcId}, "
+                + "status=${header.CamelHttpResponseCode}")
+        .end()
+        .end()
+        .end();
+  }
+}
@@ -21,7 +21,9 @@
 
 package uk.nhs.hee.tis.revalidation.integration.router.service;
 
+import static uk.nhs.hee.tis.revalidation.integration.config.GmcIdBatchLookupConfig.TCS_TRAINEES_CHUNK_ROUTE;
 import static uk.nhs.hee.tis.revalidation.integration.router.helper.Constants.GET_TOKEN_METHOD;
+import static uk.nhs.hee.tis.revalidation.integration.router.helper.Constants.NOTES_CACHED_PROPERTY;
 import static uk.nhs.hee.tis.revalidation.integration.router.helper.Constants.OIDC_ACCESS_TOKEN_HEADER;
 
 import java.util.Map;
@@ -35,14 +37,21 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.MediaType;
 import org.springframework.stereotype.Component;
+import uk.nhs.hee.tis.revalidation.integration.enums.NotesEnrichmentMode;
 import uk.nhs.hee.tis.revalidation.integration.router.aggregation.DoctorRecommendationAggregationStrategy;
 import uk.nhs.hee.tis.revalidation.integration.router.aggregation.EnrichedDoctorsAggregationStrategy;
+import uk.nhs.hee.tis.revalidation.integration.router.dto.TraineeInfoDto;
 import uk.nhs.hee.tis.revalidation.integration.router.dto.TraineeNotesDto;
 import uk.nhs.hee.tis.revalidation.integration.router.dto.TraineeSummaryDto;
 import uk.nhs.hee.tis.revalidation.integration.router.exception.ExceptionHandlerProcessor;
+import uk.nhs.hee.tis.revalidation.integration.router.helper.GmcIdBatchLookup;
+import uk.nhs.hee.tis.revalidation.integration.router.helper.NotesRows;
+import uk.nhs.hee.tis.revalidation.integration.router.processor.AttachCachedNotesProcessor;
+import uk.nhs.hee.tis.revalidation.integration.router.processor.AttachIndexedNotesProcessor;
 import uk.nhs.hee.tis.revalidation.integration.router.processor.AttachNotesToDoctorProcessor;
 import uk.nhs.hee.tis.revalidation.integration.router.processor.KeycloakBean;
 import uk.nhs.hee.tis.revalidation.integration.router.processor.MergeEnrichedDoctorsIntoSummaryProcessor;
+import uk.nhs.hee.tis.revalidation.integration.router.processor.MergeLookedUpNotesProcessor;
 
 @Component
 public class RecommendationServiceRouter extends RouteBuilder {
@@ -54,10 +63,18 @@ public class RecommendationServiceRouter extends RouteBuilder {
   private final ExceptionHandlerProcessor exceptionHandlerProcessor;
   private final AttachNotesToDoctorProcessor attachNotesToDoctorProcessor;
   private final MergeEnrichedDoctorsIntoSummaryProcessor mergeEnrichedDoctorsIntoSummaryProcessor;
+  private final AttachIndexedNotesProcessor<TraineeSummaryDto, TraineeInfoDto>
+      attachIndexedNotesToDoctorsProcessor;
+  private final MergeLookedUpNotesProcessor<TraineeSummaryDto, TraineeInfoDto>
+      mergeLookedUpNotesIntoDoctorsProcessor;
+  private final AttachCachedNotesProcessor<TraineeInfoDto> attachCachedNotesToDoctorProcessor;
+  private final GmcIdBatchLookup tcsTraineesLookup;
   @Value("${service.tcs.url}")
   private String tcsServiceUrl;
   @Value("${service.recommendation.url}")
   private String serviceUrl;
+  @Value("${app.notes.enrichment-mode:HTTP}")
+  private NotesEnrichmentMode notesEnrichmentMode;
 
   /**
    * Constructor of RecommendationServiceRouter.
@@ -68,7 +85,13 @@ public class RecommendationServiceRouter extends RouteBuilder {
       EnrichedDoctorsAggregationStrategy enrichedDoctorsAggregationStrategy,
       ExceptionHandlerProcessor exceptionHandlerProcessor,
       AttachNotesToDoctorProcessor attachNotesToDoctorProcessor,
-      MergeEnrichedDoctorsIntoSummaryProcessor mergeEnrichedDoctorsIntoSummaryProcessor) {
+      MergeEnrichedDoctorsIntoSummaryProcessor mergeEnrichedDoctorsIntoSummaryProcessor,
+      AttachIndexedNotesProcessor<TraineeSummaryDto, TraineeInfoDto>
+          attachIndexedNotesToDoctorsProcessor,
+      MergeLookedUpNotesProcessor<TraineeSummaryDto, TraineeInfoDto>
+          mergeLookedUpNotesIntoDoctorsProcessor,
+      AttachCachedNotesProcessor<TraineeInfoDto> attachCachedNotesToDoctorProcessor,
+      @Qualifier("tcsTraineesLookup") GmcIdBatchLookup tcsTraineesLookup) {
     this.notesExecutor = notesExecutor;
     this.keycloakBean = keycloakBean;
     this.doctorRecommendationAggregationStrategy = doctorRecommendationAggregationStrategy;
@@ -76,6 +99,10 @@ public class RecommendationServiceRouter extends RouteBuilder {
     this.exceptionHandlerProcessor = exceptionHandlerProcessor;
     this.attachNotesToDoctorProcessor = attachNotesToDoctorProcessor;
     this.mergeEnrichedDoctorsIntoSummaryProcessor = mergeEnrichedDoctorsIntoSummaryProcessor;
+    this.attachIndexedNotesToDoctorsProcessor = attachIndexedNotesToDoctorsProcessor;
+    this.mergeLookedUpNotesIntoDoctorsProcessor = mergeLookedUpNotesIntoDoctorsProcessor;
+    this.attachCachedNotesToDoctorProcessor = attachCachedNotesToDoctorProcessor;
+    this.tcsTraineesLookup = tcsTraineesLookup;
   }
 
   @Override
@@ -84,7 +111,11 @@ public class RecommendationServiceRouter extends RouteBuilder {
     onException(HttpOperationFailedException.class)
         .process(exceptionHandlerProcessor);
 
+    // Concurrent lookups are collapsed into chunked calls of the chunk route.
     from("direct:tcs-trainees")
+        .process(tcsTraineesLookup);
+
+    from(TCS_TRAINEES_CHUNK_ROUTE)
         .setHeader(OIDC_ACCESS_TOKEN_HEADER).method(keycloakBean, GET_TOKEN_METHOD)
         .toD(tcsServiceUrl + "/api/revalidation/trainees/${header.gmcIds}?bridgeEndpoint=true")
         .unmarshal().json(JsonLibrary.Jackson, Map.class);
@@ -127,7 +158,18 @@ public class RecommendationServiceRouter extends RouteBuilder {
     from("direct:recommendation-summary")
         .to(serviceUrl + "/api/v1/doctors?bridgeEndpoint=true")
         .unmarshal().json(JsonLibrary.Jackson, TraineeSummaryDto.class)
-        .to("direct:enrich-page-with-notes");
+        .to(notesEnrichmentMode == NotesEnrichmentMode.HTTP
+            ? "direct:enrich-page-with-notes" : "direct:enrich-page-with-indexed-notes");
+
+    from("direct:enrich-page-with-indexed-notes")
+        .process(attachIndexedNotesToDoctorsProcessor)
+        .filter(simple("${body.size()} > 0"))
+        .to("direct:enrich-doctors-with-notes")
+        .end()
+        .process(mergeLookedUpNotesIntoDoctorsProcessor);
+
+    NotesLookupRoute.configure(this, "direct:enrich-doctors-with-notes", NotesRows.DOCTORS,
+        notesExecutor, attachCachedNotesToDoctorProcessor, attachNotesToDoctorProcessor);
 
     from("direct:enrich-page-with-notes")
         .setProperty("summary", body())
@@ -135,6 +177,8 @@ public class RecommendationServiceRouter extends RouteBuilder {
         .executorService(notesExecutor)
         .setProperty("doctor", body())
         .setHeader("gmcId", simple("${exchangeProperty.doctor.gmcReferenceNumber}"))
+        .process(attachCachedNotesToDoctorProcessor)
+        .filter(exchangeProperty(NOTES_CACHED_PROPERTY).isNotEqualTo(true))
         .to("direct:traineenotes-get")
         .choice()
         .when(header(Exchange.HTTP_RESPONSE_CODE).isEqualTo(200))
@@ -150,6 +194,7 @@ public class RecommendationServiceRouter extends RouteBuilder {
         .end()
         .process(attachNotesToDoctorProcessor)
         .end()
+        .end()
         .aggregate(constant(true), enrichedDoctorsAggregationStrategy)
         .completionPredicate(exchangeProperty(Exchange.SPLIT_COMPLETE).isEqualTo(true))
         .process(mergeEnrichedDoctorsIntoSummaryProcessor);
@@ -29,6 +29,8 @@ import org.apache.camel.model.dataformat.JsonLibrary;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
+import uk.nhs.hee.tis.revalidation.integration.enums.ReferenceData;
+import uk.nhs.hee.tis.revalidation.integration.router.helper.ReferenceDataCache;
 import uk.nhs.hee.tis.revalidation.integration.router.processor.KeycloakBean;
 
 @Component
@@ -39,6 +41,9 @@ public class ReferenceServiceRouter extends RouteBuilder {
   @Autowired
   private KeycloakBean keycloakBean;
 
+  @Autowired
+  private ReferenceDataCache referenceDataCache;
+
   @Value("${service.reference.url}")
   private String serviceUrlReference;
 
@@ -46,8 +51,12 @@ public class ReferenceServiceRouter extends RouteBuilder {
   public void configure() {
 
     from("direct:reference-dbcs")
-        .setHeader(OIDC_ACCESS_TOKEN_HEADER).method(keycloakBean, GET_TOKEN_METHOD)
-        .toD(serviceUrlReference + API_DBCS)
+        .process(exchange -> exchange.getMessage()
+            .setBody(referenceDataCache.get(ReferenceData.DBCS)))
         .unmarshal().json(JsonLibrary.Jackson);
+
+    from(ReferenceData.DBCS.getLoadRoute())
+        .setHeader(OIDC_ACCESS_TOKEN_HEADER).method(keycloakBean, GET_TOKEN_METHOD)
+        .toD(serviceUrlReference + API_DBCS);
   }
 }
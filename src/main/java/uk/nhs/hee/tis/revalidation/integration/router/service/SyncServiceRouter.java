@@ -31,5 +31,14 @@ public class SyncServiceRouter extends RouteBuilder {
   public void configure() {
     from("direct:start-tis-sync")
         .to("bean:syncStartHandler");
+
+    from("direct:tis-sync-state")
+        .to("bean:syncStateService?method=getState");
+
+    from("direct:resume-tis-sync")
+        .to("bean:syncResumeHandler");
+
+    from("direct:rekey-masterdoctorindex")
+        .to("bean:masterDoctorDocumentIdMigrationService?method=start");
   }
 }
@@ -24,7 +24,6 @@ package uk.nhs.hee.tis.revalidation.integration.router.service;
 import static uk.nhs.hee.tis.revalidation.integration.router.helper.Constants.GET_TOKEN_METHOD;
 import static uk.nhs.hee.tis.revalidation.integration.router.helper.Constants.OIDC_ACCESS_TOKEN_HEADER;
 
-import org.apache.camel.AggregationStrategy;
 import org.apache.camel.Exchange;
 import org.apache.camel.builder.RouteBuilder;
 import org.apache.camel.http.base.HttpOperationFailedException;
@@ -33,11 +32,12 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Component;
 import uk.nhs.hee.tis.revalidation.integration.router.aggregation.AggregationKey;
-import uk.nhs.hee.tis.revalidation.integration.router.aggregation.JsonStringAggregationStrategy;
+import uk.nhs.hee.tis.revalidation.integration.router.aggregation.JsonTreeAggregationStrategy;
 import uk.nhs.hee.tis.revalidation.integration.router.aggregation.TraineeNotesAggregationStrategy;
 import uk.nhs.hee.tis.revalidation.integration.router.exception.ExceptionHandlerProcessor;
 import uk.nhs.hee.tis.revalidation.integration.router.processor.GmcIdProcessorBean;
 import uk.nhs.hee.tis.revalidation.integration.router.processor.KeycloakBean;
+import uk.nhs.hee.tis.revalidation.integration.router.processor.NotesCacheInvalidationBean;
 import uk.nhs.hee.tis.revalidation.integration.router.processor.TraineeDetailProcessor;
 
 @Component
@@ -55,7 +55,6 @@ public class TraineeServiceRouter extends RouteBuilder {
       "/api/trainee/notes/edit?bridgeEndpoint=true";
   private static final String GET_DOCTORS_BY_GMC_IDS =
       "/api/v1/doctors/gmcIds/${header.gmcIds}?bridgeEndpoint=true";
-  private static final AggregationStrategy AGGREGATOR = new JsonStringAggregationStrategy();
 
   @Autowired
   private KeycloakBean keycloakBean;
@@ -66,6 +65,12 @@ public class TraineeServiceRouter extends RouteBuilder {
   @Autowired
   private TraineeNotesAggregationStrategy traineeNotesAggregationStrategy;
 
+  @Autowired
+  private JsonTreeAggregationStrategy jsonTreeAggregationStrategy;
+
+  @Autowired
+  private NotesCacheInvalidationBean notesCacheInvalidationBean;
+
   @Value("${service.tcs.url}")
   private String serviceUrl;
 
@@ -85,7 +90,7 @@ public class TraineeServiceRouter extends RouteBuilder {
   public void configure() {
 
     from("direct:trainee")
-        .multicast(AGGREGATOR)
+        .multicast(jsonTreeAggregationStrategy)
         .parallelProcessing()
         .to("direct:trainee-details")
         .to("direct:traineenotes-get")
@@ -120,9 +125,15 @@ public class TraineeServiceRouter extends RouteBuilder {
         .toD(recommendationServiceUrl + GET_DOCTORS_BY_GMC_IDS);
 
     from("direct:traineenotes-add")
-        .to(coreServiceUrl + API_TRAINEEENOTES_ADD);
+        .bean(notesCacheInvalidationBean, "captureGmcId")
+        .to(coreServiceUrl + API_TRAINEEENOTES_ADD)
+        .bean(notesCacheInvalidationBean, "cacheHasNotes")
+        .bean(notesCacheInvalidationBean, "markHasNotes");
     from("direct:traineenotes-edit")
-        .to(coreServiceUrl + API_TRAINEEENOTES_EDIT);
+        .bean(notesCacheInvalidationBean, "captureGmcId")
+        .to(coreServiceUrl + API_TRAINEEENOTES_EDIT)
+        .bean(notesCacheInvalidationBean, "cacheHasNotes")
+        .bean(notesCacheInvalidationBean, "markHasNotes");
     from("direct:trainees")
         .setHeader(OIDC_ACCESS_TOKEN_HEADER).method(keycloakBean, GET_TOKEN_METHOD)
         .toD(serviceUrl + API_TRAINEES);
@@ -23,6 +23,10 @@ package uk.nhs.hee.tis.revalidation.integration.sync.helper;
 
 import java.io.IOException;
 import java.net.SocketTimeoutException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.http.client.config.RequestConfig;
@@ -32,6 +36,12 @@ import org.elasticsearch.action.admin.indices.alias.IndicesAliasesRequest;
 import org.elasticsearch.action.admin.indices.alias.IndicesAliasesRequest.AliasActions;
 import org.elasticsearch.action.admin.indices.alias.get.GetAliasesRequest;
 import org.elasticsearch.action.admin.indices.delete.DeleteIndexRequest;
+import org.elasticsearch.action.admin.indices.forcemerge.ForceMergeRequest;
+import org.elasticsearch.action.admin.indices.refresh.RefreshRequest;
+import org.elasticsearch.action.admin.indices.settings.get.GetSettingsRequest;
+import org.elasticsearch.action.admin.indices.settings.get.GetSettingsResponse;
+import org.elasticsearch.action.admin.indices.settings.put.UpdateSettingsRequest;
+import org.elasticsearch.client.GetAliasesResponse;
 import org.elasticsearch.client.RequestOptions;
 import org.elasticsearch.client.RestHighLevelClient;
 import org.elasticsearch.client.indices.CreateIndexRequest;
@@ -41,6 +51,7 @@ import org.elasticsearch.client.indices.GetIndexResponse;
 import org.elasticsearch.client.indices.GetMappingsRequest;
 import org.elasticsearch.client.indices.GetMappingsResponse;
 import org.elasticsearch.cluster.metadata.MappingMetadata;
+import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.index.reindex.ReindexRequest;
 import org.springframework.stereotype.Component;
@@ -128,6 +139,34 @@ public class ElasticsearchIndexHelper {
     highLevelClient.indices().create(request, RequestOptions.DEFAULT);
   }
 
+  /**
+   * Create an elasticsearch index with the given field mappings and default settings.
+   *
+   * @param indexName The name of the elasticsearch index to be created
+   * @param mapping   the desired mapping source
+   * @throws IOException for any connection timeout, or socket timeout, or other IO exceptions
+   * @throws ResourceAlreadyExistsException when the index name already exists
+   */
+  public void createIndex(String indexName, Map<String, Object> mapping)
+      throws IOException, ResourceAlreadyExistsException {
+    log.info("Creating elastic search index: {} with custom mapping.", indexName);
+
+    CreateIndexRequest request = new CreateIndexRequest(indexName).mapping(mapping);
+    highLevelClient.indices().create(request, RequestOptions.DEFAULT);
+  }
+
+  /**
+   * Check if an index or alias exists in ES.
+   *
+   * @param indexName the index name or alias to search with
+   * @return true or false
+   * @throws IOException for any connection timeout, or socket timeout, or other IO exceptions
+   */
+  public boolean indexExists(String indexName) throws IOException {
+    GetIndexRequest request = new GetIndexRequest(indexName);
+    return highLevelClient.indices().exists(request, RequestOptions.DEFAULT);
+  }
+
   /**
    * Check if an alias exists in ES.
    *
@@ -175,6 +214,34 @@ public class ElasticsearchIndexHelper {
     highLevelClient.indices().updateAliases(request, RequestOptions.DEFAULT);
   }
 
+  /**
+   * Get the names of the indices an alias points to.
+   *
+   * @param aliasName alias to search with
+   * @return the index names, empty when the alias does not exist
+   * @throws IOException for any connection timeout, or socket timeout, or other IO exceptions
+   */
+  public Set<String> getIndicesForAlias(String aliasName) throws IOException {
+    GetAliasesRequest request = new GetAliasesRequest(aliasName);
+    GetAliasesResponse response =
+        highLevelClient.indices().getAlias(request, RequestOptions.DEFAULT);
+    return new HashSet<>(response.getAliases().keySet());
+  }
+
+  /**
+   * Apply several alias actions in a single atomic request.
+   *
+   * @param aliasActions the alias actions to apply
+   * @throws IOException for any connection timeout, or socket timeout, or other IO exceptions
+   */
+  public void updateAliases(List<AliasActions> aliasActions) throws IOException {
+    log.info("Updating elastic search aliases: {}.", aliasActions);
+
+    IndicesAliasesRequest request = new IndicesAliasesRequest();
+    aliasActions.forEach(request::addAliasAction);
+    highLevelClient.indices().updateAliases(request, RequestOptions.DEFAULT);
+  }
+
   /**
    * Delete an alias from an index.
    *
@@ -204,4 +271,63 @@ public class ElasticsearchIndexHelper {
         highLevelClient.indices().getMapping(request, RequestOptions.DEFAULT);
     return getMappingsResponse.mappings().get(indexName);
   }
+
+  /**
+   * Get the settings of an index.
+   *
+   * @param indexName the exact index name to search with
+   * @return the index settings, empty when the index does not exist
+   * @throws IOException for any connection timeout, or socket timeout, or other IO exceptions
+   */
+  public Settings getSettings(String indexName) throws IOException {
+    GetSettingsRequest request = new GetSettingsRequest().indices(indexName);
+    GetSettingsResponse response =
+        highLevelClient.indices().getSettings(request, RequestOptions.DEFAULT);
+    Settings settings = response.getIndexToSettings().get(indexName);
+    return settings == null ? Settings.EMPTY : settings;
+  }
+
+  /**
+   * Update the dynamic settings of an index.
+   *
+   * @param indexName index name or alias to update
+   * @param settings  the settings to apply, null values reset a setting to its default
+   * @throws IOException for any connection timeout, or socket timeout, or other IO exceptions
+   */
+  public void updateSettings(String indexName, Settings settings) throws IOException {
+    log.info("Updating settings of elastic search index: {} to {}.", indexName, settings);
+
+    UpdateSettingsRequest request = new UpdateSettingsRequest(indexName).settings(settings);
+    highLevelClient.indices().putSettings(request, RequestOptions.DEFAULT);
+  }
+
+  /**
+   * Refresh an index so that all operations performed on it are visible to searches.
+   *
+   * @param indexName index name or alias to refresh
+   * @throws IOException for any connection timeout, or socket timeout, or other IO exceptions
+   */
+  public void refresh(String indexName) throws IOException {
+    log.info("Refreshing elastic search index: {}.", indexName);
+
+    RefreshRequest request = new RefreshRequest(indexName);
+    highLevelClient.indices().refresh(request, RequestOptions.DEFAULT);
+  }
+
+  /**
+   * Force merge an index down to a maximum number of segments.
+   *
+   * @param indexName      index name or alias to merge
+   * @param maxNumSegments the number of segments to merge to
+   * @throws IOException for any connection timeout, or socket timeout, or other IO exceptions
+   */
+  public void forceMerge(String indexName, int maxNumSegments) throws IOException {
+    log.info("Force merging elastic search index: {} to {} segments.", indexName,
+        maxNumSegments);
+
+    ForceMergeRequest request = new ForceMergeRequest(indexName).maxNumSegments(maxNumSegments);
+    RequestOptions options = RequestOptions.DEFAULT.toBuilder().setRequestConfig(REQUEST_CONFIG)
+        .build();
+    highLevelClient.indices().forcemerge(request, options);
+  }
 }
@@ -0,0 +1,111 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright 2026 Crown Copyright (NHS England)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package uk.nhs.hee.tis.revalidation.integration.sync.helper;
+
+import java.util.Locale;
+import java.util.UUID;
+import uk.nhs.hee.tis.revalidation.integration.sync.view.MasterDoctorView;
+
+/**
+ * Derives the id of a masterdoctorindex document from the identity of its doctor, so a writer can
+ * address the document of a doctor without searching for it first.
+ *
+ * <p>A doctor with a GMC number is keyed by the normalised GMC number, so there can only be one
+ * document per GMC number. TIS-only records have no GMC number and are keyed by TIS person id.
+ * Such a record keeps its person id key when it later gains a GMC number, until the id migration
+ * or the next rebuild re-keys it, so writers that address documents by GMC number must fall back
+ * to a search when the document is not found. A record with neither gets a random id.
+ */
+public final class MasterDoctorDocumentIds {
+
+  static final String GMC_PREFIX = "gmc-";
+  static final String TIS_PREFIX = "tis-";
+
+  private MasterDoctorDocumentIds() {
+  }
+
+  /**
+   * Derive the document id of a doctor.
+   *
+   * @param gmcReferenceNumber the GMC number of the doctor, may be null
+   * @param tcsPersonId        the TIS person id of the doctor, may be null
+   * @return the document id, or null if the doctor has neither a GMC number nor a person id
+   */
+  public static String documentId(String gmcReferenceNumber, Long tcsPersonId) {
+    String gmcToken = normaliseGmcReferenceNumber(gmcReferenceNumber);
+    if (gmcToken != null) {
+      return GMC_PREFIX + gmcToken;
+    }
+    return tcsPersonId == null ? null : TIS_PREFIX + tcsPersonId;
+  }
+
+  /**
+   * Normalise a GMC number the way every writer keys and looks up doctors by it.
+   * gmcReferenceNumber is an analysed text field, so lookups match it case-insensitively.
+   *
+   * @param gmcReferenceNumber the GMC number of the doctor, may be null
+   * @return the trimmed lowercase GMC number, or null if it is null or blank
+   */
+  public static String normaliseGmcReferenceNumber(String gmcReferenceNumber) {
+    if (gmcReferenceNumber == null || gmcReferenceNumber.isBlank()) {
+      return null;
+    }
+    return gmcReferenceNumber.trim().toLowerCase(Locale.ROOT);
+  }
+
+  /**
+   * Derive the document id of a doctor.
+   *
+   * @param doctor the doctor, only the GMC number and TIS person id are used
+   * @return the document id, or null if the doctor has neither a GMC number nor a person id
+   */
+  public static String documentId(MasterDoctorView doctor) {
+    return documentId(doctor.getGmcReferenceNumber(), doctor.getTcsPersonId());
+  }
+
+  /**
+   * Derive the id of a new document, or generate a random id if it cannot be derived.
+   *
+   * @param gmcReferenceNumber the GMC number of the doctor, may be null
+   * @param tcsPersonId        the TIS person id of the doctor, may be null
+   * @return the document id
+   */
+  public static String newDocumentId(String gmcReferenceNumber, Long tcsPersonId) {
+    String id = documentId(gmcReferenceNumber, tcsPersonId);
+    return id == null ? UUID.randomUUID().toString() : id;
+  }
+
+  /**
+   * Give a new document its derived id, or a random id if it cannot be derived. Documents that
+   * already have an id keep it.
+   *
+   * @param doctor the document to give an id
+   * @return the id of the document
+   */
+  public static String assignId(MasterDoctorView doctor) {
+    if (doctor.getId() == null) {
+      doctor.setId(newDocumentId(doctor.getGmcReferenceNumber(), doctor.getTcsPersonId()));
+    }
+    return doctor.getId();
+  }
+}
@@ -0,0 +1,241 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright 2026 Crown Copyright (NHS England)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package uk.nhs.hee.tis.revalidation.integration.sync.helper;
+
+import static org.elasticsearch.index.query.QueryBuilders.boolQuery;
+import static org.elasticsearch.index.query.QueryBuilders.termQuery;
+import static org.elasticsearch.index.query.QueryBuilders.termsQuery;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+import lombok.extern.slf4j.Slf4j;
+import org.elasticsearch.index.query.BoolQueryBuilder;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.SearchHit;
+import org.springframework.data.elasticsearch.core.SearchHits;
+import org.springframework.data.elasticsearch.core.query.FetchSourceFilter;
+import org.springframework.data.elasticsearch.core.query.NativeSearchQueryBuilder;
+import org.springframework.stereotype.Component;
+import uk.nhs.hee.tis.revalidation.integration.sync.view.MasterDoctorView;
+
+/**
+ * Resolves the existing masterdoctorindex documents for a batch of doctors with a single search.
+ *
+ * <p>The lookup keeps the per-doctor rules of the repository finders: a doctor with both a GMC
+ * number and a TIS person id only matches documents with both, a doctor with only a GMC number
+ * matches on GMC number, and a doctor with only a TIS person id matches on person id.
+ */
+@Slf4j
+@Component
+public class MasterDoctorIdentityResolver {
+
+  static final int MAX_IDENTITIES_PER_LOOKUP = 1000;
+  static final int MAX_HITS_PER_LOOKUP = 10000;
+  private static final String GMC_REFERENCE_NUMBER_FIELD = "gmcReferenceNumber";
+  private static final String TCS_PERSON_ID_FIELD = "tcsPersonId";
+  private static final String KEY_SEPARATOR = ":";
+
+  private final ElasticsearchOperations elasticsearchOperations;
+
+  public MasterDoctorIdentityResolver(ElasticsearchOperations elasticsearchOperations) {
+    this.elasticsearchOperations = elasticsearchOperations;
+  }
+
+  /**
+   * Build the key used to look up a doctor in the map returned by {@link #resolve(Collection)}.
+   *
+   * @param gmcReferenceNumber the GMC number of the doctor, may be null
+   * @param tcsPersonId        the TIS person id of the doctor, may be null
+   * @return the identity key
+   */
+  public static String identityKey(String gmcReferenceNumber, Long tcsPersonId) {
+    return gmcReferenceNumber + KEY_SEPARATOR + tcsPersonId;
+  }
+
+  /**
+   * Build the key used to look up a doctor in the map returned by {@link #resolve(Collection)}.
+   *
+   * @param doctor the doctor to build the key for
+   * @return the identity key
+   */
+  public static String identityKey(MasterDoctorView doctor) {
+    return identityKey(doctor.getGmcReferenceNumber(), doctor.getTcsPersonId());
+  }
+
+  /**
+   * Find the ids of the existing documents for every doctor in the batch.
+   *
+   * @param doctors the doctors to resolve, only the GMC number and TIS person id are used
+   * @return the matching document ids mapped by {@link #identityKey(MasterDoctorView)}, doctors
+   *     without a matching document map to an empty list
+   */
+  public Map<String, List<String>> resolve(Collection<MasterDoctorView> doctors) {
+    Map<String, List<String>> docIdsByKey = new HashMap<>();
+    findMatches(doctors, false).forEach((key, matches) ->
+        docIdsByKey.put(key, matches.stream().map(MasterDoctorView::getId).toList()));
+    return docIdsByKey;
+  }
+
+  /**
+   * Find the full existing documents for every doctor in the batch.
+   *
+   * @param doctors the doctors to look up, only the GMC number and TIS person id are used
+   * @return the matching documents mapped by {@link #identityKey(MasterDoctorView)}, doctors
+   *     without a matching document map to an empty list
+   */
+  public Map<String, List<MasterDoctorView>> findExisting(Collection<MasterDoctorView> doctors) {
+    return findMatches(doctors, true);
+  }
+
+  /**
+   * Find the ids of the existing documents for every GMC number in the batch.
+   *
+   * @param gmcReferenceNumbers the GMC numbers to resolve
+   * @return the matching document ids mapped by GMC number
+   */
+  public Map<String, List<String>> resolveByGmcReferenceNumbers(
+      Collection<String> gmcReferenceNumbers) {
+    List<MasterDoctorView> doctors = gmcReferenceNumbers.stream()
+        .filter(Objects::nonNull)
+        .distinct()
+        .map(gmcId -> MasterDoctorView.builder().gmcReferenceNumber(gmcId).build())
+        .toList();
+    Map<String, List<String>> docIdsByKey = resolve(doctors);
+    return doctors.stream().collect(Collectors.toMap(MasterDoctorView::getGmcReferenceNumber,
+        d -> docIdsByKey.getOrDefault(identityKey(d), List.of())));
+  }
+
+  /**
+   * Find the documents of a doctor that share its GMC number or its TIS person id, with a single
+   * search returning only the identity fields of each document.
+   *
+   * @param gmcReferenceNumber the GMC number of the doctor, may be null
+   * @param tcsPersonId        the TIS person id of the doctor, may be null
+   * @return the documents matching either identifier, with only the id, GMC number and TIS person
+   *     id populated
+   */
+  public List<MasterDoctorView> findByGmcReferenceNumberOrTcsPersonId(String gmcReferenceNumber,
+      Long tcsPersonId) {
+    String gmcToken = MasterDoctorDocumentIds.normaliseGmcReferenceNumber(gmcReferenceNumber);
+    if (gmcToken == null && tcsPersonId == null) {
+      return List.of();
+    }
+    BoolQueryBuilder query = boolQuery().minimumShouldMatch(1);
+    if (gmcToken != null) {
+      query.should(termQuery(GMC_REFERENCE_NUMBER_FIELD, gmcToken));
+    }
+    if (tcsPersonId != null) {
+      query.should(termQuery(TCS_PERSON_ID_FIELD, tcsPersonId));
+    }
+    return search(query, false, 1);
+  }
+
+  private Map<String, List<MasterDoctorView>> findMatches(Collection<MasterDoctorView> doctors,
+      boolean fullSource) {
+    List<MasterDoctorView> identifiable = doctors.stream()
+        .filter(d -> d.getGmcReferenceNumber() != null || d.getTcsPersonId() != null)
+        .toList();
+    Map<String, List<MasterDoctorView>> matchesByKey = new HashMap<>();
+
+    for (int from = 0; from < identifiable.size(); from += MAX_IDENTITIES_PER_LOOKUP) {
+      var chunk = identifiable.subList(from,
+          Math.min(from + MAX_IDENTITIES_PER_LOOKUP, identifiable.size()));
+      List<MasterDoctorView> candidates = findCandidates(chunk, fullSource);
+      Map<String, List<MasterDoctorView>> candidatesByGmc = candidates.stream()
+          .filter(c -> c.getGmcReferenceNumber() != null)
+          .collect(Collectors.groupingBy(MasterDoctorView::getGmcReferenceNumber));
+      Map<Long, List<MasterDoctorView>> candidatesByPersonId = candidates.stream()
+          .filter(c -> c.getTcsPersonId() != null)
+          .collect(Collectors.groupingBy(MasterDoctorView::getTcsPersonId));
+
+      chunk.forEach(doctor -> matchesByKey.computeIfAbsent(identityKey(doctor),
+          key -> match(doctor, candidatesByGmc, candidatesByPersonId)));
+    }
+    return matchesByKey;
+  }
+
+  private List<MasterDoctorView> match(MasterDoctorView doctor,
+      Map<String, List<MasterDoctorView>> candidatesByGmc,
+      Map<Long, List<MasterDoctorView>> candidatesByPersonId) {
+    String gmcReferenceNumber = doctor.getGmcReferenceNumber();
+    Long tcsPersonId = doctor.getTcsPersonId();
+
+    if (gmcReferenceNumber != null && tcsPersonId != null) {
+      return candidatesByGmc.getOrDefault(gmcReferenceNumber, List.of()).stream()
+          .filter(c -> tcsPersonId.equals(c.getTcsPersonId()))
+          .toList();
+    } else if (gmcReferenceNumber != null) {
+      return candidatesByGmc.getOrDefault(gmcReferenceNumber, List.of());
+    }
+    return candidatesByPersonId.getOrDefault(tcsPersonId, List.of());
+  }
+
+  private List<MasterDoctorView> findCandidates(List<MasterDoctorView> doctors,
+      boolean fullSource) {
+    // gmcReferenceNumber is an analysed text field, so search with the lowercase token.
+    Set<String> gmcReferenceNumbers = doctors.stream()
+        .map(MasterDoctorView::getGmcReferenceNumber)
+        .map(MasterDoctorDocumentIds::normaliseGmcReferenceNumber)
+        .filter(Objects::nonNull)
+        .collect(Collectors.toSet());
+    // Doctors with a GMC number are always matched on it, so person ids are only needed for the
+    // TIS-only records.
+    Set<Long> tcsPersonIds = doctors.stream()
+        .filter(d -> d.getGmcReferenceNumber() == null)
+        .map(MasterDoctorView::getTcsPersonId)
+        .collect(Collectors.toSet());
+
+    BoolQueryBuilder query = boolQuery().minimumShouldMatch(1);
+    if (!gmcReferenceNumbers.isEmpty()) {
+      query.should(termsQuery(GMC_REFERENCE_NUMBER_FIELD, gmcReferenceNumbers));
+    }
+    if (!tcsPersonIds.isEmpty()) {
+      query.should(termsQuery(TCS_PERSON_ID_FIELD, tcsPersonIds));
+    }
+    return search(query, fullSource, doctors.size());
+  }
+
+  private List<MasterDoctorView> search(BoolQueryBuilder query, boolean fullSource,
+      int doctors) {
+    NativeSearchQueryBuilder searchQuery = new NativeSearchQueryBuilder()
+        .withQuery(query)
+        .withPageable(PageRequest.of(0, MAX_HITS_PER_LOOKUP));
+    if (!fullSource) {
+      searchQuery.withSourceFilter(new FetchSourceFilter(
+          new String[]{GMC_REFERENCE_NUMBER_FIELD, TCS_PERSON_ID_FIELD}, null));
+    }
+
+    SearchHits<MasterDoctorView> hits =
+        elasticsearchOperations.search(searchQuery.build(), MasterDoctorView.class);
+    if (hits.getTotalHits() > MAX_HITS_PER_LOOKUP) {
+      log.warn("Identity lookup for {} doctors matched {} documents, only the first {} are used",
+          doctors, hits.getTotalHits(), MAX_HITS_PER_LOOKUP);
+    }
+    return hits.getSearchHits().stream().map(SearchHit::getContent).toList();
+  }
+}
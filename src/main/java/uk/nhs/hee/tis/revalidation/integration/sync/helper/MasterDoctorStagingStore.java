@@ -0,0 +1,318 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright 2026 Crown Copyright (NHS England)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package uk.nhs.hee.tis.revalidation.integration.sync.helper;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import uk.nhs.hee.tis.revalidation.integration.sync.view.MasterDoctorView;
+
+/**
+ * Holds the masterdoctorindex documents of a staged rebuild until they are written in one pass.
+ *
+ * <p>Records are addressed by slot and can be found by GMC number and TIS person id with the same
+ * rules as {@link MasterDoctorIdentityResolver}. The first records are kept on the heap, later
+ * ones are serialised into memory-mapped regions of a temporary spill file. Each spilled record is
+ * given room to grow, as later phases add to it, and is updated in place while it fits. Only a
+ * record which outgrows its room is written again at the end of the file, with room to grow by
+ * half again, so the file stays within a small factor of the staged data.
+ */
+@Slf4j
+@Component
+public class MasterDoctorStagingStore {
+
+  static final int REGION_SIZE = 64 * 1024 * 1024;
+  static final int MIN_SPILL_SLACK = 256;
+
+  private final ObjectMapper objectMapper;
+  private final int maxInHeap;
+  private final Path spillDirectory;
+
+  private final List<Object> records = new ArrayList<>();
+  private final List<Identity> identities = new ArrayList<>();
+  private final Map<String, List<Integer>> slotsByGmc = new HashMap<>();
+  private final Map<Long, List<Integer>> slotsByPersonId = new HashMap<>();
+  private final List<MappedByteBuffer> regions = new ArrayList<>();
+  private int inHeap;
+  private Path spillFile;
+  private FileChannel spillChannel;
+  private boolean open;
+
+  /**
+   * Create the staging store.
+   *
+   * @param objectMapper   the mapper used to serialise spilled records
+   * @param maxInHeap      the number of records kept on the heap before spilling to disk
+   * @param spillDirectory the directory the spill file is created in
+   */
+  public MasterDoctorStagingStore(ObjectMapper objectMapper,
+      @Value("${app.es.rebuild.staging.max-in-heap:50000}") int maxInHeap,
+      @Value("${app.es.rebuild.staging.spill-dir:${java.io.tmpdir}}") Path spillDirectory) {
+    this.objectMapper = objectMapper;
+    this.maxInHeap = maxInHeap;
+    this.spillDirectory = spillDirectory;
+  }
+
+  /**
+   * Discard anything staged so far and start accepting records.
+   */
+  public synchronized void open() {
+    close();
+    open = true;
+  }
+
+  public synchronized boolean isOpen() {
+    return open;
+  }
+
+  public synchronized int size() {
+    return records.size();
+  }
+
+  public synchronized int spilled() {
+    return records.size() - inHeap;
+  }
+
+  /**
+   * Get the number of bytes taken in the spill file, including the room left for records to grow.
+   *
+   * @return the size of the used part of the spill file
+   */
+  public synchronized long spillSize() {
+    return regions.isEmpty() ? 0
+        : (long) (regions.size() - 1) * REGION_SIZE + regions.get(regions.size() - 1).position();
+  }
+
+  /**
+   * Find the slots of the staged records for a doctor.
+   *
+   * @param gmcReferenceNumber the GMC number of the doctor, may be null
+   * @param tcsPersonId        the TIS person id of the doctor, may be null
+   * @return the matching slots, in the order the records were added
+   */
+  public synchronized List<Integer> find(String gmcReferenceNumber, Long tcsPersonId) {
+    if (gmcReferenceNumber != null && tcsPersonId != null) {
+      return slotsByGmc.getOrDefault(normalise(gmcReferenceNumber), List.of()).stream()
+          .filter(slot -> tcsPersonId.equals(identities.get(slot).tcsPersonId()))
+          .toList();
+    } else if (gmcReferenceNumber != null) {
+      return List.copyOf(slotsByGmc.getOrDefault(normalise(gmcReferenceNumber), List.of()));
+    } else if (tcsPersonId != null) {
+      return List.copyOf(slotsByPersonId.getOrDefault(tcsPersonId, List.of()));
+    }
+    return List.of();
+  }
+
+  /**
+   * Get a staged record. Changes to it must be written back with
+   * {@link #put(int, MasterDoctorView)}, as a spilled record is read into a new object.
+   *
+   * @param slot the slot of the record
+   * @return the staged record
+   */
+  public synchronized MasterDoctorView get(int slot) {
+    Object stored = records.get(slot);
+    if (stored instanceof SpilledRecord spilledRecord) {
+      return read(spilledRecord);
+    }
+    return (MasterDoctorView) stored;
+  }
+
+  /**
+   * Stage a new record.
+   *
+   * @param view the record to stage
+   * @return the slot of the record
+   */
+  public synchronized int add(MasterDoctorView view) {
+    checkOpen();
+    int slot = records.size();
+    if (inHeap < maxInHeap) {
+      records.add(view);
+      inHeap++;
+    } else {
+      records.add(write(view, null));
+    }
+    identities.add(null);
+    index(slot, view);
+    return slot;
+  }
+
+  /**
+   * Replace a staged record.
+   *
+   * @param slot the slot of the record
+   * @param view the new content of the record
+   */
+  public synchronized void put(int slot, MasterDoctorView view) {
+    checkOpen();
+    if (records.get(slot) instanceof SpilledRecord spilledRecord) {
+      records.set(slot, write(view, spilledRecord));
+    } else {
+      records.set(slot, view);
+    }
+    index(slot, view);
+  }
+
+  /**
+   * Discard everything staged and delete the spill file.
+   */
+  @PreDestroy
+  public synchronized void close() {
+    open = false;
+    records.clear();
+    identities.clear();
+    slotsByGmc.clear();
+    slotsByPersonId.clear();
+    // Mapped regions are released by the garbage collector once no longer referenced.
+    regions.clear();
+    inHeap = 0;
+    if (spillChannel != null) {
+      try {
+        spillChannel.close();
+        Files.deleteIfExists(spillFile);
+      } catch (IOException e) {
+        log.warn("Could not delete the staging spill file {}", spillFile, e);
+      }
+      spillChannel = null;
+      spillFile = null;
+    }
+  }
+
+  private void checkOpen() {
+    if (!open) {
+      throw new IllegalStateException("The masterdoctorindex staging store is not open");
+    }
+  }
+
+  private void index(int slot, MasterDoctorView view) {
+    Identity previous = identities.get(slot);
+    Identity current = new Identity(normalise(view.getGmcReferenceNumber()),
+        view.getTcsPersonId());
+    if (current.equals(previous)) {
+      return;
+    }
+    if (previous != null) {
+      removeSlot(slotsByGmc, previous.gmcReferenceNumber(), slot);
+      removeSlot(slotsByPersonId, previous.tcsPersonId(), slot);
+    }
+    if (current.gmcReferenceNumber() != null) {
+      slotsByGmc.computeIfAbsent(current.gmcReferenceNumber(), k -> new ArrayList<>()).add(slot);
+    }
+    if (current.tcsPersonId() != null) {
+      slotsByPersonId.computeIfAbsent(current.tcsPersonId(), k -> new ArrayList<>()).add(slot);
+    }
+    identities.set(slot, current);
+  }
+
+  private <K> void removeSlot(Map<K, List<Integer>> slotsByKey, K key, int slot) {
+    if (key == null) {
+      return;
+    }
+    List<Integer> slots = slotsByKey.get(key);
+    if (slots != null) {
+      slots.remove(Integer.valueOf(slot));
+    }
+  }
+
+  private SpilledRecord write(MasterDoctorView view, SpilledRecord previous) {
+    try {
+      byte[] bytes = objectMapper.writeValueAsBytes(view);
+      if (bytes.length > REGION_SIZE) {
+        throw new IllegalStateException("Staged record of " + bytes.length
+            + " bytes does not fit in a spill region");
+      }
+      if (previous != null && bytes.length <= previous.capacity()) {
+        ByteBuffer buffer = regions.get(previous.region()).duplicate();
+        buffer.position(previous.offset());
+        buffer.put(bytes);
+        return new SpilledRecord(previous.region(), previous.offset(), bytes.length,
+            previous.capacity());
+      }
+      int capacity = (int) Math.min(REGION_SIZE,
+          bytes.length + Math.max(MIN_SPILL_SLACK, bytes.length / 2L));
+      MappedByteBuffer region = regions.isEmpty() ? null : regions.get(regions.size() - 1);
+      if (region == null || region.remaining() < capacity) {
+        region = mapRegion();
+      }
+      int offset = region.position();
+      region.put(bytes);
+      region.position(offset + capacity);
+      return new SpilledRecord(regions.size() - 1, offset, bytes.length, capacity);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Could not spill a staged masterdoctorindex record", e);
+    }
+  }
+
+  private MappedByteBuffer mapRegion() throws IOException {
+    if (spillChannel == null) {
+      spillFile = Files.createTempFile(spillDirectory, "masterdoctorindex-staging", ".bin");
+      spillChannel = FileChannel.open(spillFile, StandardOpenOption.READ,
+          StandardOpenOption.WRITE);
+      log.info("Staged masterdoctorindex rebuild outgrew {} records on the heap, spilling to {}",
+          maxInHeap, spillFile);
+    }
+    MappedByteBuffer region = spillChannel.map(MapMode.READ_WRITE,
+        (long) regions.size() * REGION_SIZE, REGION_SIZE);
+    regions.add(region);
+    return region;
+  }
+
+  private MasterDoctorView read(SpilledRecord spilledRecord) {
+    ByteBuffer buffer = regions.get(spilledRecord.region()).duplicate();
+    buffer.position(spilledRecord.offset());
+    byte[] bytes = new byte[spilledRecord.length()];
+    buffer.get(bytes);
+    try {
+      return objectMapper.readValue(bytes, MasterDoctorView.class);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Could not read a spilled masterdoctorindex record", e);
+    }
+  }
+
+  private static String normalise(String gmcReferenceNumber) {
+    return MasterDoctorDocumentIds.normaliseGmcReferenceNumber(gmcReferenceNumber);
+  }
+
+  private record Identity(String gmcReferenceNumber, Long tcsPersonId) {
+
+  }
+
+  private record SpilledRecord(int region, int offset, int length, int capacity) {
+
+  }
+}
@@ -0,0 +1,203 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright 2026 Crown Copyright (NHS England)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package uk.nhs.hee.tis.revalidation.integration.sync.helper;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import org.springframework.stereotype.Component;
+import uk.nhs.hee.tis.revalidation.integration.enums.SyncPhase;
+
+/**
+ * Publishes the progress of a masterdoctorindex rebuild to Micrometer.
+ *
+ * <p>Every phase counts the documents it received, inserted, updated and skipped, and times its
+ * lookups, its bulk writes and its duration. The rate and estimated remaining time of the running
+ * phase are published as gauges. The estimate needs the number of documents the phase is
+ * expected to receive, which is taken from the counts of the last completed rebuild. Rebuilds
+ * which could not be promoted are counted, so a failed promotion can be alerted on.
+ */
+@Component
+public class SyncMetrics {
+
+  private static final String METRIC_PREFIX = "sync.";
+  private static final String PHASE_TAG = "phase";
+
+  private final Map<SyncPhase, Counter> receivedCounters = new EnumMap<>(SyncPhase.class);
+  private final Map<SyncPhase, Counter> insertedCounters = new EnumMap<>(SyncPhase.class);
+  private final Map<SyncPhase, Counter> updatedCounters = new EnumMap<>(SyncPhase.class);
+  private final Map<SyncPhase, Counter> skippedCounters = new EnumMap<>(SyncPhase.class);
+  private final Map<SyncPhase, Timer> lookupTimers = new EnumMap<>(SyncPhase.class);
+  private final Map<SyncPhase, Timer> bulkTimers = new EnumMap<>(SyncPhase.class);
+  private final Map<SyncPhase, Timer> durationTimers = new EnumMap<>(SyncPhase.class);
+  private final Map<SyncPhase, Long> expectedRecords = new EnumMap<>(SyncPhase.class);
+  private final Counter promotionFailures;
+
+  private final AtomicLong phaseReceived = new AtomicLong();
+  private SyncPhase currentPhase;
+  private long phaseStartNanos;
+
+  /**
+   * Register the sync meters.
+   *
+   * @param meterRegistry the registry the sync meters are published to
+   */
+  public SyncMetrics(MeterRegistry meterRegistry) {
+    for (SyncPhase phase : SyncPhase.values()) {
+      String phaseName = phase.name();
+      receivedCounters.put(phase, documentCounter(meterRegistry, phaseName, "received"));
+      insertedCounters.put(phase, documentCounter(meterRegistry, phaseName, "inserted"));
+      updatedCounters.put(phase, documentCounter(meterRegistry, phaseName, "updated"));
+      skippedCounters.put(phase, documentCounter(meterRegistry, phaseName, "skipped"));
+      lookupTimers.put(phase, Timer.builder(METRIC_PREFIX + "lookup")
+          .tag(PHASE_TAG, phaseName).register(meterRegistry));
+      bulkTimers.put(phase, Timer.builder(METRIC_PREFIX + "bulk")
+          .tag(PHASE_TAG, phaseName).register(meterRegistry));
+      durationTimers.put(phase, Timer.builder(METRIC_PREFIX + "phase.duration")
+          .tag(PHASE_TAG, phaseName).register(meterRegistry));
+    }
+    Gauge.builder(METRIC_PREFIX + "phase.rate", this, SyncMetrics::getRate)
+        .description("Documents received per second by the running sync phase")
+        .baseUnit("documents/s")
+        .register(meterRegistry);
+    Gauge.builder(METRIC_PREFIX + "phase.eta", this, SyncMetrics::getEtaSeconds)
+        .description("Estimated seconds until the running sync phase has received all documents")
+        .baseUnit("seconds")
+        .register(meterRegistry);
+    promotionFailures = Counter.builder(METRIC_PREFIX + "promotion.failures")
+        .description("Rebuilt masterdoctorindex generations that could not be promoted")
+        .register(meterRegistry);
+  }
+
+  /**
+   * Set the number of documents each phase is expected to receive.
+   *
+   * @param expectedRecords the expected document counts, mapped by phase
+   */
+  public synchronized void setExpectedRecords(Map<SyncPhase, Long> expectedRecords) {
+    this.expectedRecords.clear();
+    this.expectedRecords.putAll(expectedRecords);
+  }
+
+  /**
+   * Start timing a phase, ending the phase that was running before.
+   *
+   * @param phase the phase being started
+   */
+  public synchronized void startPhase(SyncPhase phase) {
+    endPhase();
+    currentPhase = phase;
+    phaseStartNanos = System.nanoTime();
+    phaseReceived.set(0);
+  }
+
+  /**
+   * End the running phase.
+   */
+  public synchronized void endPhase() {
+    if (currentPhase != null) {
+      durationTimers.get(currentPhase).record(System.nanoTime() - phaseStartNanos,
+          TimeUnit.NANOSECONDS);
+      currentPhase = null;
+    }
+  }
+
+  /**
+   * Count documents received by a phase, including them in the rate of the running phase.
+   *
+   * @param phase     the phase the documents were received by
+   * @param documents the number of documents
+   */
+  public void recordReceived(SyncPhase phase, long documents) {
+    receivedCounters.get(phase).increment(documents);
+    phaseReceived.addAndGet(documents);
+  }
+
+  public void recordInserted(SyncPhase phase, long documents) {
+    insertedCounters.get(phase).increment(documents);
+  }
+
+  public void recordUpdated(SyncPhase phase, long documents) {
+    updatedCounters.get(phase).increment(documents);
+  }
+
+  public void recordSkipped(SyncPhase phase, long documents) {
+    skippedCounters.get(phase).increment(documents);
+  }
+
+  /**
+   * Count a rebuilt index which could not be promoted, leaving readers on the previous index.
+   */
+  public void recordPromotionFailure() {
+    promotionFailures.increment();
+  }
+
+  public <T> T timeLookup(SyncPhase phase, Supplier<T> lookup) {
+    return lookupTimers.get(phase).record(lookup);
+  }
+
+  public <T> T timeBulk(SyncPhase phase, Supplier<T> bulkWrite) {
+    return bulkTimers.get(phase).record(bulkWrite);
+  }
+
+  /**
+   * Get the rate the running phase receives documents at.
+   *
+   * @return documents per second, or 0 if no phase is running
+   */
+  public synchronized double getRate() {
+    if (currentPhase == null) {
+      return 0;
+    }
+    double elapsedSeconds = (System.nanoTime() - phaseStartNanos) / 1e9;
+    return elapsedSeconds > 0 ? phaseReceived.get() / elapsedSeconds : 0;
+  }
+
+  /**
+   * Estimate the time until the running phase has received all its documents.
+   *
+   * @return the estimated seconds, or NaN if no phase is running, nothing has been received yet
+   *     or the number of expected documents is unknown
+   */
+  public synchronized double getEtaSeconds() {
+    Long expected = currentPhase == null ? null : expectedRecords.get(currentPhase);
+    double rate = getRate();
+    if (expected == null || rate <= 0) {
+      return Double.NaN;
+    }
+    return Math.max(0, expected - phaseReceived.get()) / rate;
+  }
+
+  private static Counter documentCounter(MeterRegistry meterRegistry, String phase,
+      String outcome) {
+    return Counter.builder(METRIC_PREFIX + "documents")
+        .tag(PHASE_TAG, phase)
+        .tag("outcome", outcome)
+        .register(meterRegistry);
+  }
+}
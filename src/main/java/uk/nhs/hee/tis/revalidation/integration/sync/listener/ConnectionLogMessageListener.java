@@ -27,9 +27,12 @@ import org.springframework.amqp.rabbit.annotation.RabbitListener;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import uk.nhs.hee.tis.revalidation.integration.enums.SyncPhase;
+import uk.nhs.hee.tis.revalidation.integration.message.DoctorLaneExecutor;
 import uk.nhs.hee.tis.revalidation.integration.router.dto.ConnectionLogDto;
 import uk.nhs.hee.tis.revalidation.integration.router.message.payload.IndexSyncMessage;
 import uk.nhs.hee.tis.revalidation.integration.sync.service.DoctorUpsertElasticSearchService;
+import uk.nhs.hee.tis.revalidation.integration.sync.service.SyncStateService;
 
 /**
  * Listener for connection log messages from RabbitMQ to sync data into Elasticsearch.
@@ -48,16 +51,25 @@ public class ConnectionLogMessageListener {
 
   private final RabbitTemplate rabbitTemplate;
 
+  private final SyncStateService syncStateService;
+
+  private final DoctorLaneExecutor doctorLaneExecutor;
+
   /**
    * Constructor for the ConnectionLogMessageListener.
    *
    * @param doctorUpsertElasticSearchService the service to upsert doctors in Elasticsearch
+   * @param syncStateService                 the service checkpointing the sync progress
+   * @param doctorLaneExecutor               the executor keeping the updates of each doctor in order
    */
   public ConnectionLogMessageListener(
       DoctorUpsertElasticSearchService doctorUpsertElasticSearchService,
-      RabbitTemplate rabbitTemplate) {
+      RabbitTemplate rabbitTemplate, SyncStateService syncStateService,
+      DoctorLaneExecutor doctorLaneExecutor) {
     this.doctorUpsertElasticSearchService = doctorUpsertElasticSearchService;
     this.rabbitTemplate = rabbitTemplate;
+    this.syncStateService = syncStateService;
+    this.doctorLaneExecutor = doctorLaneExecutor;
   }
 
   /**
@@ -69,11 +81,16 @@ public class ConnectionLogMessageListener {
   public void receiveConnectionLogMessage(IndexSyncMessage<List<ConnectionLogDto>> message) {
     if (message.getSyncEnd() != null && message.getSyncEnd()) {
       log.info("ConnectionLogs ES sync completed. Starting hidden discrepancies sync.");
-      String hiddenDiscrepancySyncStart = "hiddenDiscrepancySyncStart";
+      doctorLaneExecutor.awaitDrained();
+      doctorUpsertElasticSearchService.refreshMasterDoctorIndex();
+      syncStateService.enterPhase(SyncPhase.HIDDEN_DISCREPANCY);
       rabbitTemplate.convertAndSend(revalExchange, hiddenDiscrepanciesSyncRoutingKey,
-          hiddenDiscrepancySyncStart);
+          SyncPhase.HIDDEN_DISCREPANCY.getStartMessage());
     } else {
-      doctorUpsertElasticSearchService.populateMasterIndexByConnectionLogs(message.getPayload());
+      doctorLaneExecutor.executeAll(message.getPayload(),
+          connectionLog -> DoctorLaneExecutor.doctorKey(connectionLog.getGmcId(), null),
+          doctorUpsertElasticSearchService::populateMasterIndexByConnectionLogs);
+      syncStateService.recordProgress(SyncPhase.CONNECTION_LOG, message.getPayload().size());
     }
   }
 }
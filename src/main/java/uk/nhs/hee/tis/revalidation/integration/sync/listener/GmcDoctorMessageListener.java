@@ -27,10 +27,14 @@ import org.springframework.amqp.rabbit.annotation.RabbitListener;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import uk.nhs.hee.tis.revalidation.integration.enums.SyncPhase;
+import uk.nhs.hee.tis.revalidation.integration.message.DoctorLaneExecutor;
 import uk.nhs.hee.tis.revalidation.integration.router.dto.RevalidationSummaryDto;
 import uk.nhs.hee.tis.revalidation.integration.router.mapper.MasterDoctorViewMapper;
 import uk.nhs.hee.tis.revalidation.integration.router.message.payload.IndexSyncMessage;
 import uk.nhs.hee.tis.revalidation.integration.sync.service.DoctorUpsertElasticSearchService;
+import uk.nhs.hee.tis.revalidation.integration.sync.service.SyncStateService;
+import uk.nhs.hee.tis.revalidation.integration.sync.view.MasterDoctorView;
 
 /**
  * Listener for handling ES rebuild gmc sync messages.
@@ -48,18 +52,25 @@ public class GmcDoctorMessageListener {
   private final DoctorUpsertElasticSearchService doctorUpsertElasticSearchService;
   private final MasterDoctorViewMapper mapper;
   private final RabbitTemplate rabbitTemplate;
+  private final SyncStateService syncStateService;
+  private final DoctorLaneExecutor doctorLaneExecutor;
 
   /**
    * The listener to handle gmc doctor elasticsearch sync messages.
    *
    * @param doctorUpsertElasticSearchService the service to upsert doctors to ES
    * @param mapper                           the class mapping messages to documents
+   * @param syncStateService                 the service checkpointing the sync progress
+   * @param doctorLaneExecutor               the executor keeping the updates of each doctor in order
    */
   public GmcDoctorMessageListener(DoctorUpsertElasticSearchService doctorUpsertElasticSearchService,
-      MasterDoctorViewMapper mapper, RabbitTemplate rabbitTemplate) {
+      MasterDoctorViewMapper mapper, RabbitTemplate rabbitTemplate,
+      SyncStateService syncStateService, DoctorLaneExecutor doctorLaneExecutor) {
     this.doctorUpsertElasticSearchService = doctorUpsertElasticSearchService;
     this.mapper = mapper;
     this.rabbitTemplate = rabbitTemplate;
+    this.syncStateService = syncStateService;
+    this.doctorLaneExecutor = doctorLaneExecutor;
   }
 
   /**
@@ -71,12 +82,18 @@ public class GmcDoctorMessageListener {
   public void getMessage(IndexSyncMessage<List<RevalidationSummaryDto>> message) {
     if (message.getSyncEnd() != null && message.getSyncEnd()) {
       log.info("GMC sync completed. Starting ConnectionLog sync.");
-      String connectionLogSyncStart = "connectionLogSyncStart";
+      doctorLaneExecutor.awaitDrained();
+      doctorUpsertElasticSearchService.refreshMasterDoctorIndex();
+      syncStateService.enterPhase(SyncPhase.CONNECTION_LOG);
       rabbitTemplate.convertAndSend(revalExchange, connectionLogSyncRoutingKey,
-          connectionLogSyncStart);
+          SyncPhase.CONNECTION_LOG.getStartMessage());
     } else {
-      doctorUpsertElasticSearchService.populateMasterIndex(
-          mapper.fromRevalidationSummaryDtos(message.getPayload()));
+      List<MasterDoctorView> masterDoctorViews =
+          mapper.fromRevalidationSummaryDtos(message.getPayload());
+      doctorLaneExecutor.executeAll(masterDoctorViews,
+          view -> DoctorLaneExecutor.doctorKey(view.getGmcReferenceNumber(), view.getTcsPersonId()),
+          doctorUpsertElasticSearchService::populateMasterIndex);
+      syncStateService.recordProgress(SyncPhase.GMC, message.getPayload().size());
     }
   }
 }
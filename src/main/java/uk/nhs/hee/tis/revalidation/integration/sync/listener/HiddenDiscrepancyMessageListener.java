@@ -26,8 +26,11 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
 import org.springframework.stereotype.Service;
 import uk.nhs.hee.tis.revalidation.integration.entity.HiddenDiscrepancy;
+import uk.nhs.hee.tis.revalidation.integration.enums.SyncPhase;
+import uk.nhs.hee.tis.revalidation.integration.message.DoctorLaneExecutor;
 import uk.nhs.hee.tis.revalidation.integration.router.message.payload.IndexSyncMessage;
 import uk.nhs.hee.tis.revalidation.integration.sync.service.DoctorUpsertElasticSearchService;
+import uk.nhs.hee.tis.revalidation.integration.sync.service.SyncStateService;
 
 /**
  * Listener for hidden discrepancy messages from RabbitMQ to sync data into Elasticsearch.
@@ -38,18 +41,29 @@ public class HiddenDiscrepancyMessageListener {
 
   private final DoctorUpsertElasticSearchService doctorUpsertElasticSearchService;
 
+  private final SyncStateService syncStateService;
+
+  private final DoctorLaneExecutor doctorLaneExecutor;
+
   /**
    * Constructor for the HiddenDiscrepancyMessageListener.
    *
    * @param doctorUpsertElasticSearchService the service to upsert doctors in Elasticsearch
+   * @param syncStateService                 the service checkpointing the sync progress
+   * @param doctorLaneExecutor               the executor keeping the updates of each doctor in order
    */
   public HiddenDiscrepancyMessageListener(
-      DoctorUpsertElasticSearchService doctorUpsertElasticSearchService) {
+      DoctorUpsertElasticSearchService doctorUpsertElasticSearchService,
+      SyncStateService syncStateService, DoctorLaneExecutor doctorLaneExecutor) {
     this.doctorUpsertElasticSearchService = doctorUpsertElasticSearchService;
+    this.syncStateService = syncStateService;
+    this.doctorLaneExecutor = doctorLaneExecutor;
   }
 
   /**
    * Receives hidden discrepancy messages from RabbitMQ and processes them for Elasticsearch sync.
+   * This is the last phase of the sync, so the end message switches readers over to the rebuilt
+   * masterdoctorindex.
    *
    * @param message the index sync message containing hiddenDiscrepancy data
    */
@@ -58,9 +72,13 @@ public class HiddenDiscrepancyMessageListener {
       IndexSyncMessage<List<HiddenDiscrepancy>> message) {
     if (message.getSyncEnd() != null && message.getSyncEnd()) {
       log.info("Hidden Discrepancies ES sync completed.");
+      doctorLaneExecutor.awaitDrained();
+      syncStateService.finish(doctorUpsertElasticSearchService.promoteMasterDoctorIndex());
     } else {
-      doctorUpsertElasticSearchService.populateMasterIndexByHiddenDiscrepancies(
-          message.getPayload());
+      doctorLaneExecutor.executeAll(message.getPayload(),
+          hiddenDiscrepancy -> DoctorLaneExecutor.doctorKey(hiddenDiscrepancy.getGmcId(), null),
+          doctorUpsertElasticSearchService::populateMasterIndexByHiddenDiscrepancies);
+      syncStateService.recordProgress(SyncPhase.HIDDEN_DISCREPANCY, message.getPayload().size());
     }
   }
 }
@@ -22,49 +22,203 @@
 
 package uk.nhs.hee.tis.revalidation.integration.sync.listener;
 
+import com.rabbitmq.client.Channel;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.support.AmqpHeaders;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.Message;
 import org.springframework.stereotype.Component;
+import org.springframework.util.concurrent.CompletableToListenableFutureAdapter;
+import org.springframework.util.concurrent.ListenableFuture;
+import uk.nhs.hee.tis.revalidation.integration.enums.SyncPhase;
+import uk.nhs.hee.tis.revalidation.integration.message.DoctorLaneExecutor;
 import uk.nhs.hee.tis.revalidation.integration.router.dto.ConnectionInfoDto;
 import uk.nhs.hee.tis.revalidation.integration.sync.service.DoctorUpsertElasticSearchService;
+import uk.nhs.hee.tis.revalidation.integration.sync.service.SyncStateService;
 import uk.nhs.hee.tis.revalidation.integration.sync.view.MasterDoctorView;
 
 @Component
 @Slf4j
 public class TraineeDataMessageListener {
 
+  static final String ATTEMPTS_HEADER = "x-tcs-sync-attempts";
+
   @Value("${app.rabbit.reval.exchange}")
   private String exchange;
 
   @Value("${app.rabbit.reval.routingKey.recommendation.syncstart}")
   private String routingKey;
 
+  @Value("${app.rabbit.reval.queue.connection.syncdata}")
+  private String syncDataQueue;
+
+  @Value("${app.rabbit.reval.batch.max-attempts:5}")
+  private int maxAttempts;
+
   @Autowired
   private DoctorUpsertElasticSearchService doctorUpsertElasticSearchService;
 
   @Autowired
   private RabbitTemplate rabbitTemplate;
 
+  @Autowired
+  private SyncStateService syncStateService;
+
+  @Autowired
+  private DoctorLaneExecutor doctorLaneExecutor;
+
   /**
-   * Updates Master ElasticSearch index with data from connection sync data router.
+   * Updates Master ElasticSearch index with data from connection sync data router. The record is
+   * written on the lane of its doctor while the listener takes the next message, and the message
+   * is acknowledged once it has been written. The end of the sync waits for every lane to drain.
    *
    * @param connectionInfo Trainee Connection Info
+   * @return a future completed once the message has been handled
    */
-  @RabbitListener(queues = "${app.rabbit.reval.queue.connection.syncdata}")
-  public void receiveMessage(final ConnectionInfoDto connectionInfo) {
+  @RabbitListener(queues = "${app.rabbit.reval.queue.connection.syncdata}",
+      autoStartup = "#{!${app.rabbit.reval.batch.enabled:true}}", ackMode = "MANUAL")
+  public ListenableFuture<Void> receiveMessage(final ConnectionInfoDto connectionInfo) {
     if (connectionInfo.getSyncEnd() != null && connectionInfo.getSyncEnd()) {
-      log.info("TCS sync completed. Starting GMC sync.");
-      String gmcSyncStart = "gmcSyncStart";
-      rabbitTemplate.convertAndSend(exchange, routingKey, gmcSyncStart);
-    } else {
-      var masterDoctorView = getMasterDoctorView(connectionInfo);
-      doctorUpsertElasticSearchService.populateMasterIndex(masterDoctorView);
+      endSync();
+      return new CompletableToListenableFutureAdapter<>(CompletableFuture.completedFuture(null));
+    }
+    var masterDoctorView = getMasterDoctorView(connectionInfo);
+    return new CompletableToListenableFutureAdapter<>(doctorLaneExecutor.submit(
+        doctorKey(masterDoctorView), () -> {
+          doctorUpsertElasticSearchService.populateMasterIndex(masterDoctorView);
+          syncStateService.recordProgress(SyncPhase.TCS, 1);
+        }));
+  }
+
+  /**
+   * Updates Master ElasticSearch index in bulk with a batch of messages from connection sync data
+   * router. The batch is resolved with one lookup and written with one bulk request while the
+   * lanes of its doctors are held, and each message is acknowledged once its own record has been
+   * handled. The message of a failed record is
+   * published to the back of the queue again, and dropped once it has failed
+   * {@code app.rabbit.reval.batch.max-attempts} times. The end of the sync is only handled once
+   * the data received before it has been handled, otherwise it is published again behind the
+   * records being retried.
+   *
+   * @param messages Trainee Connection Info messages, in the order they were received
+   * @param channel  the channel the messages were received on, used to acknowledge them
+   * @throws IOException when a message cannot be acknowledged
+   */
+  @RabbitListener(queues = "${app.rabbit.reval.queue.connection.syncdata}",
+      containerFactory = "batchRabbitListenerContainerFactory",
+      autoStartup = "${app.rabbit.reval.batch.enabled:true}")
+  public void receiveMessages(final List<Message<ConnectionInfoDto>> messages,
+      final Channel channel) throws IOException {
+    if (messages.isEmpty()) {
+      return;
+    }
+    final long lastDeliveryTag = deliveryTag(messages.get(messages.size() - 1));
+    try {
+      Map<MasterDoctorView, Message<ConnectionInfoDto>> messagesByView = new IdentityHashMap<>();
+      List<MasterDoctorView> masterDoctorViews = new ArrayList<>();
+      for (int i = 0; i < messages.size(); i++) {
+        Message<ConnectionInfoDto> message = messages.get(i);
+        ConnectionInfoDto connectionInfo = message.getPayload();
+        if (connectionInfo.getSyncEnd() != null && connectionInfo.getSyncEnd()) {
+          if (!populateMasterIndex(masterDoctorViews, messagesByView, channel)) {
+            log.warn("Retrying the end of the TCS sync behind the records that failed.");
+            for (Message<ConnectionInfoDto> later : messages.subList(i, messages.size())) {
+              publishAgain(later, attempts(later));
+              channel.basicAck(deliveryTag(later), false);
+            }
+            return;
+          }
+          masterDoctorViews = new ArrayList<>();
+          endSync();
+          channel.basicAck(deliveryTag(message), false);
+        } else {
+          MasterDoctorView masterDoctorView = getMasterDoctorView(connectionInfo);
+          messagesByView.put(masterDoctorView, message);
+          masterDoctorViews.add(masterDoctorView);
+        }
+      }
+      populateMasterIndex(masterDoctorViews, messagesByView, channel);
+    } catch (RuntimeException e) {
+      channel.basicNack(lastDeliveryTag, true, true);
+      throw e;
     }
   }
 
+  /**
+   * Write a part of a batch and acknowledge its messages. The messages of the records that failed
+   * are published again to be retried, or dropped when they are out of attempts.
+   *
+   * @return true if no record is being retried
+   */
+  private boolean populateMasterIndex(List<MasterDoctorView> masterDoctorViews,
+      Map<MasterDoctorView, Message<ConnectionInfoDto>> messagesByView, Channel channel)
+      throws IOException {
+    Set<MasterDoctorView> failed = Collections.synchronizedSet(
+        Collections.newSetFromMap(new IdentityHashMap<>()));
+    doctorLaneExecutor.executeAll(masterDoctorViews, TraineeDataMessageListener::doctorKey,
+        part -> failed.addAll(
+            doctorUpsertElasticSearchService.populateMasterIndexByTcsRecords(part)));
+
+    boolean retrying = false;
+    for (MasterDoctorView masterDoctorView : masterDoctorViews) {
+      Message<ConnectionInfoDto> message = messagesByView.get(masterDoctorView);
+      if (failed.contains(masterDoctorView)) {
+        int attempts = attempts(message) + 1;
+        if (attempts < maxAttempts) {
+          publishAgain(message, attempts);
+          retrying = true;
+        } else {
+          log.error("Dropping TCS record of doctor gmcId: {}, personId: {} after {} attempts",
+              masterDoctorView.getGmcReferenceNumber(), masterDoctorView.getTcsPersonId(),
+              attempts);
+        }
+      }
+      channel.basicAck(deliveryTag(message), false);
+    }
+    syncStateService.recordProgress(SyncPhase.TCS, masterDoctorViews.size() - failed.size());
+    return !retrying;
+  }
+
+  private void publishAgain(Message<ConnectionInfoDto> message, int attempts) {
+    rabbitTemplate.convertAndSend("", syncDataQueue, message.getPayload(), retry -> {
+      retry.getMessageProperties().setHeader(ATTEMPTS_HEADER, attempts);
+      return retry;
+    });
+  }
+
+  private static int attempts(Message<?> message) {
+    Object attempts = message.getHeaders().get(ATTEMPTS_HEADER);
+    return attempts instanceof Number number ? number.intValue() : 0;
+  }
+
+  private static long deliveryTag(Message<?> message) {
+    return message.getHeaders().get(AmqpHeaders.DELIVERY_TAG, Long.class);
+  }
+
+  private void endSync() {
+    log.info("TCS sync completed. Starting GMC sync.");
+    doctorLaneExecutor.awaitDrained();
+    doctorUpsertElasticSearchService.refreshMasterDoctorIndex();
+    syncStateService.enterPhase(SyncPhase.GMC);
+    rabbitTemplate.convertAndSend(exchange, routingKey, SyncPhase.GMC.getStartMessage());
+  }
+
+  private static String doctorKey(MasterDoctorView masterDoctorView) {
+    return DoctorLaneExecutor.doctorKey(masterDoctorView.getGmcReferenceNumber(),
+        masterDoctorView.getTcsPersonId());
+  }
+
   private MasterDoctorView getMasterDoctorView(ConnectionInfoDto connectionInfo) {
     return MasterDoctorView.builder()
         .tcsPersonId(connectionInfo.getTcsPersonId())
@@ -36,7 +36,4 @@ public interface MasterDoctorElasticSearchRepository extends
   List<MasterDoctorView> findByGmcReferenceNumber(String gmcReferenceNumber);
 
   List<MasterDoctorView> findByTcsPersonId(Long tcsPersonId);
-
-  List<MasterDoctorView> findByTcsPersonIdAndGmcReferenceNumberNot(
-      Long tcsPersonId, String gmcReferenceNumber);
 }
@@ -23,26 +23,43 @@ package uk.nhs.hee.tis.revalidation.integration.sync.service;
 
 import static uk.nhs.hee.tis.revalidation.integration.config.EsConstant.Aliases.CURRENT_CONNECTIONS_ALIAS;
 import static uk.nhs.hee.tis.revalidation.integration.config.EsConstant.Aliases.DISCREPANCIES_ALIAS;
+import static uk.nhs.hee.tis.revalidation.integration.config.EsConstant.Aliases.MASTER_DOCTOR_READ_ALIAS;
 import static uk.nhs.hee.tis.revalidation.integration.config.EsConstant.Aliases.RECOMMENDATION_ALIAS;
 import static uk.nhs.hee.tis.revalidation.integration.config.EsConstant.Indexes.MASTER_DOCTOR_INDEX;
+import static uk.nhs.hee.tis.revalidation.integration.sync.helper.MasterDoctorIdentityResolver.identityKey;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+import javax.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import org.elasticsearch.common.util.iterable.Iterables;
-import org.elasticsearch.index.IndexNotFoundException;
+import org.elasticsearch.script.Script;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
-import org.springframework.data.elasticsearch.core.mapping.IndexCoordinates;
 import org.springframework.stereotype.Service;
+import uk.nhs.hee.tis.revalidation.integration.cdc.repository.custom.EsBulkWriteEngine.BulkWriteResult;
 import uk.nhs.hee.tis.revalidation.integration.cdc.repository.custom.EsDocUpdateHelper;
+import uk.nhs.hee.tis.revalidation.integration.cdc.repository.custom.HiddenDiscrepancyScripts;
+import uk.nhs.hee.tis.revalidation.integration.cdc.repository.custom.LiveGenerationMirror;
 import uk.nhs.hee.tis.revalidation.integration.entity.HiddenDiscrepancy;
+import uk.nhs.hee.tis.revalidation.integration.enums.SyncPhase;
 import uk.nhs.hee.tis.revalidation.integration.router.dto.ConnectionLogDto;
 import uk.nhs.hee.tis.revalidation.integration.router.mapper.MasterDoctorViewMapper;
 import uk.nhs.hee.tis.revalidation.integration.sync.helper.ElasticsearchIndexHelper;
+import uk.nhs.hee.tis.revalidation.integration.sync.helper.MasterDoctorDocumentIds;
+import uk.nhs.hee.tis.revalidation.integration.sync.helper.MasterDoctorIdentityResolver;
+import uk.nhs.hee.tis.revalidation.integration.sync.helper.SyncMetrics;
 import uk.nhs.hee.tis.revalidation.integration.sync.repository.MasterDoctorElasticSearchRepository;
 import uk.nhs.hee.tis.revalidation.integration.sync.view.MasterDoctorView;
 
@@ -61,21 +78,56 @@ public class DoctorUpsertElasticSearchService {
                }
              }
           """;
+  protected static final Map<String, String> MASTER_DOCTOR_READ_ALIASES = Map.of(
+      MASTER_DOCTOR_READ_ALIAS, "",
+      CURRENT_CONNECTIONS_ALIAS, ES_CURRENT_CONNECTIONS_FILTER,
+      DISCREPANCIES_ALIAS, ES_DISCREPANCIES_FILTER,
+      RECOMMENDATION_ALIAS, "");
   private final MasterDoctorElasticSearchRepository repository;
   private final MasterDoctorViewMapper mapper;
   private final ElasticsearchOperations elasticSearchOperations;
+  private final ElasticsearchIndexService elasticsearchIndexService;
   private final ElasticsearchIndexHelper elasticsearchIndexHelper;
   private final EsDocUpdateHelper esDocUpdateHelper;
+  private final MasterDoctorIdentityResolver identityResolver;
+  private final MasterDoctorStagedRebuildService stagedRebuildService;
+  private final MasterDoctorNotesService notesService;
+  private final SyncMetrics syncMetrics;
+  private final LiveGenerationMirror liveGenerationMirror;
+
+  @Value("${app.es.rebuild.staging.enabled:false}")
+  private boolean stagingEnabled;
+
+  @Value("${app.es.rebuild.bulk-load-profile:true}")
+  private boolean bulkLoadProfileEnabled;
+
+  @Value("${app.es.rebuild.force-merge:false}")
+  private boolean forceMergeEnabled;
+
+  @Value("${app.es.rebuild.force-merge-max-segments:1}")
+  private int forceMergeMaxSegments;
+
+  private volatile boolean rebuildInProgress;
 
   public DoctorUpsertElasticSearchService(MasterDoctorElasticSearchRepository repository,
       MasterDoctorViewMapper mapper,
       ElasticsearchOperations elasticSearchOperations,
-      ElasticsearchIndexHelper elasticsearchIndexHelper, EsDocUpdateHelper esDocUpdateHelper) {
+      ElasticsearchIndexService elasticsearchIndexService,
+      ElasticsearchIndexHelper elasticsearchIndexHelper, EsDocUpdateHelper esDocUpdateHelper,
+      MasterDoctorIdentityResolver identityResolver,
+      MasterDoctorStagedRebuildService stagedRebuildService, MasterDoctorNotesService notesService,
+      SyncMetrics syncMetrics, LiveGenerationMirror liveGenerationMirror) {
     this.repository = repository;
     this.mapper = mapper;
     this.elasticSearchOperations = elasticSearchOperations;
+    this.elasticsearchIndexService = elasticsearchIndexService;
     this.elasticsearchIndexHelper = elasticsearchIndexHelper;
     this.esDocUpdateHelper = esDocUpdateHelper;
+    this.identityResolver = identityResolver;
+    this.stagedRebuildService = stagedRebuildService;
+    this.notesService = notesService;
+    this.syncMetrics = syncMetrics;
+    this.liveGenerationMirror = liveGenerationMirror;
   }
 
   /**
@@ -84,18 +136,31 @@ public class DoctorUpsertElasticSearchService {
    * @param masterDoctorDocumentToSave MasterDoctorView to save
    */
   public void populateMasterIndex(MasterDoctorView masterDoctorDocumentToSave) {
+    if (stagedRebuildService.isActive()) {
+      stagedRebuildService.stageTcsRecords(List.of(masterDoctorDocumentToSave));
+      return;
+    }
+    upsertTcsRecord(masterDoctorDocumentToSave);
+  }
+
+  /**
+   * Upsert a single TCS record.
+   *
+   * @return true if the record was written
+   */
+  private boolean upsertTcsRecord(MasterDoctorView masterDoctorDocumentToSave) {
     // find trainee record from Exception ES index
-    Iterable<MasterDoctorView> existingRecords = findMasterDoctorRecordByGmcNumberPersonId(
-        masterDoctorDocumentToSave);
+    Iterable<MasterDoctorView> existingRecords = syncMetrics.timeLookup(SyncPhase.TCS,
+        () -> findMasterDoctorRecordByGmcNumberPersonId(masterDoctorDocumentToSave));
 
     // if doctor already exists in ES index, then update the existing record
     if (Iterables.size(existingRecords) > 0) {
-      updateMasterDoctorViews(existingRecords, masterDoctorDocumentToSave);
+      syncMetrics.recordUpdated(SyncPhase.TCS, Iterables.size(existingRecords));
+      return updateMasterDoctorViews(existingRecords, masterDoctorDocumentToSave);
     }
     // otherwise, add a new record
-    else {
-      addMasterDoctorViews(masterDoctorDocumentToSave);
-    }
+    syncMetrics.recordInserted(SyncPhase.TCS, 1);
+    return addMasterDoctorViews(masterDoctorDocumentToSave);
   }
 
   /**
@@ -106,30 +171,133 @@ public class DoctorUpsertElasticSearchService {
    * @param docs MasterDoctorViews to save
    */
   public void populateMasterIndex(List<MasterDoctorView> docs) {
+    if (stagedRebuildService.isActive()) {
+      stagedRebuildService.stageGmcRecords(docs);
+      return;
+    }
     // find trainee record from Exception ES index
-    List<MasterDoctorView> newRecords = new ArrayList<>();
+    Map<String, Map<String, Object>> newRecords = new LinkedHashMap<>();
+    Map<String, Map<String, Object>> fieldsOnConflict = new HashMap<>();
     Map<String, Map<String, Object>> updates = new HashMap<>();
+    Map<String, List<String>> existingIdsByKey =
+        syncMetrics.timeLookup(SyncPhase.GMC, () -> resolveExistingDocIds(docs));
 
     docs.forEach(doctor -> {
-      var existing = findMasterDoctorRecordByGmcNumberPersonId(doctor);
+      var existing = existingIdsByKey.getOrDefault(identityKey(doctor), List.of());
       if (!existing.isEmpty()) {
         if (existing.size() > 1) {
           log.warn("Multiple doctors found for gmcID: {} while syncing ES gmc records",
               doctor.getGmcReferenceNumber());
         }
-        updates.put(existing.get(0).getId(), generateUpdatedDocument(doctor));
+        updates.put(existing.get(0), generateUpdatedDocument(doctor));
 
       } else {
-        newRecords.add(doctor);
+        String id = MasterDoctorDocumentIds.assignId(doctor);
+        newRecords.put(id, toSource(doctor));
+        fieldsOnConflict.put(id, generateUpdatedDocument(doctor));
       }
     });
 
-    if (!newRecords.isEmpty()) {
-      repository.saveAll(newRecords);
+    if (!newRecords.isEmpty() || !updates.isEmpty()) {
+      syncMetrics.timeBulk(SyncPhase.GMC, () -> esDocUpdateHelper.bulkUpsert(MASTER_DOCTOR_INDEX,
+          updates, newRecords, fieldsOnConflict));
+      syncMetrics.recordInserted(SyncPhase.GMC, newRecords.size());
+      syncMetrics.recordUpdated(SyncPhase.GMC, updates.size());
     }
-    if (!updates.isEmpty()) {
-      esDocUpdateHelper.bulkPartialUpdate(MASTER_DOCTOR_INDEX, updates);
+  }
+
+  /**
+   * Populate the masterdoctorindex in bulk by upserting multiple MasterDoctorViews from TCS data.
+   * Every doctor is merged the same way as {@link #populateMasterIndex(MasterDoctorView)}, but the
+   * existing records are found with one lookup and written with one bulk request.
+   *
+   * @param docs MasterDoctorViews built from TCS data, in the order they were received
+   * @return the records whose documents could not be written, in the order they were received
+   */
+  public List<MasterDoctorView> populateMasterIndexByTcsRecords(List<MasterDoctorView> docs) {
+    if (docs.isEmpty()) {
+      return List.of();
+    }
+    if (stagedRebuildService.isActive()) {
+      stagedRebuildService.stageTcsRecords(docs);
+      return List.of();
+    }
+    Map<String, List<MasterDoctorView>> existingByKey;
+    try {
+      existingByKey = syncMetrics.timeLookup(SyncPhase.TCS,
+          () -> identityResolver.findExisting(docs));
+    } catch (Exception ex) {
+      log.warn("Batched lookup of {} TCS records failed, falling back to per-doctor upserts",
+          docs.size(), ex);
+      return populateMasterIndexOneByOne(docs);
     }
+
+    // A doctor repeated in the batch is merged onto the result of its earlier record, as it
+    // would be when written one at a time.
+    Map<String, List<MasterDoctorView>> viewsByKey = new LinkedHashMap<>();
+    Map<String, Map<String, Object>> tcsFieldsByKey = new HashMap<>();
+    Map<String, Map<String, Object>> newDocumentsById = new LinkedHashMap<>();
+    Map<String, List<MasterDoctorView>> recordsByKey = new HashMap<>();
+    Map<String, List<MasterDoctorView>> recordsById = new HashMap<>();
+    docs.forEach(doctor -> {
+      if (doctor.getGmcReferenceNumber() == null && doctor.getTcsPersonId() == null) {
+        String id = MasterDoctorDocumentIds.assignId(doctor);
+        newDocumentsById.put(id, toSource(doctor));
+        recordsById.put(id, List.of(doctor));
+        return;
+      }
+      String key = identityKey(doctor);
+      recordsByKey.computeIfAbsent(key, k -> new ArrayList<>()).add(doctor);
+      List<MasterDoctorView> currentViews = viewsByKey.containsKey(key) ? viewsByKey.get(key)
+          : existingByKey.getOrDefault(key, List.of());
+      viewsByKey.put(key, currentViews.isEmpty() ? List.of(doctor) : currentViews.stream()
+          .map(currentDoctorView -> mapper.updateMasterDoctorView(doctor, currentDoctorView))
+          .toList());
+      tcsFieldsByKey.merge(key, tcsUpdateDocument(doctor),
+          DoctorUpsertElasticSearchService::mergeFields);
+    });
+
+    // Documents found by the lookup are replaced by their merged view. New records are created
+    // with their derived id, and only get the TCS fields if the lookup missed an existing one.
+    Map<String, Map<String, Object>> documentsById = new LinkedHashMap<>();
+    Map<String, Map<String, Object>> fieldsOnConflictById = new HashMap<>();
+    viewsByKey.forEach((key, views) -> views.forEach(view -> {
+      String id = view.getId();
+      if (id != null) {
+        documentsById.put(id, toSource(view));
+      } else {
+        id = MasterDoctorDocumentIds.assignId(view);
+        newDocumentsById.put(id, toSource(view));
+        fieldsOnConflictById.put(id, tcsFieldsByKey.get(key));
+      }
+      recordsById.put(id, recordsByKey.get(key));
+    }));
+    BulkWriteResult result = syncMetrics.timeBulk(SyncPhase.TCS,
+        () -> esDocUpdateHelper.bulkReplace(MASTER_DOCTOR_INDEX, documentsById,
+            newDocumentsById, fieldsOnConflictById));
+    syncMetrics.recordInserted(SyncPhase.TCS, newDocumentsById.size());
+    syncMetrics.recordUpdated(SyncPhase.TCS, documentsById.size());
+
+    // A record is failed when any document it was merged into could not be written.
+    Set<MasterDoctorView> failed = Collections.newSetFromMap(new IdentityHashMap<>());
+    result.failedIds().forEach(id -> failed.addAll(recordsById.getOrDefault(id, List.of())));
+    return docs.stream().filter(failed::contains).collect(Collectors.toList());
+  }
+
+  private List<MasterDoctorView> populateMasterIndexOneByOne(List<MasterDoctorView> docs) {
+    List<MasterDoctorView> failed = new ArrayList<>();
+    docs.forEach(doctor -> {
+      try {
+        if (!upsertTcsRecord(doctor)) {
+          failed.add(doctor);
+        }
+      } catch (RuntimeException e) {
+        log.warn("Could not write TCS record of doctor gmcId: {}, personId: {}",
+            doctor.getGmcReferenceNumber(), doctor.getTcsPersonId(), e);
+        failed.add(doctor);
+      }
+    });
+    return failed;
   }
 
   /**
@@ -139,66 +307,111 @@ public class DoctorUpsertElasticSearchService {
    * @param connectionDtos ConnectionLogDtos to update
    */
   public void populateMasterIndexByConnectionLogs(List<ConnectionLogDto> connectionDtos) {
+    if (stagedRebuildService.isActive()) {
+      stagedRebuildService.stageConnectionLogs(connectionDtos);
+      return;
+    }
     Map<String, Map<String, Object>> updates = new HashMap<>();
+    Map<String, List<String>> existingIdsByGmc = syncMetrics.timeLookup(SyncPhase.CONNECTION_LOG,
+        () -> resolveExistingDocIdsByGmcNumber(
+            connectionDtos.stream().map(ConnectionLogDto::getGmcId).toList()));
     connectionDtos.forEach(connectionLogDto -> {
       String gmcId = connectionLogDto.getGmcId();
-      var existing = findMasterDoctorByGmcNumber(gmcId);
+      var existing = existingIdsByGmc.getOrDefault(gmcId, List.of());
       if (existing.size() > 1) {
         log.warn("Multiple doctors found for gmcID: {} while syncing ES connectionLog records",
             gmcId);
+        syncMetrics.recordSkipped(SyncPhase.CONNECTION_LOG, 1);
       } else if (existing.size() == 1) {
-        updates.put(existing.get(0).getId(), generatedUpdateDocForConnectionLog(connectionLogDto));
+        updates.put(existing.get(0), generatedUpdateDocForConnectionLog(connectionLogDto));
+      } else {
+        syncMetrics.recordSkipped(SyncPhase.CONNECTION_LOG, 1);
       }
     });
 
     if (!updates.isEmpty()) {
       log.info("Updating {} master doctor records with connection log data", updates.size());
-      esDocUpdateHelper.bulkPartialUpdate(MASTER_DOCTOR_INDEX, updates);
+      syncMetrics.timeBulk(SyncPhase.CONNECTION_LOG,
+          () -> esDocUpdateHelper.bulkPartialUpdate(MASTER_DOCTOR_INDEX, updates));
+      syncMetrics.recordUpdated(SyncPhase.CONNECTION_LOG, updates.size());
     }
   }
 
   /**
    * Populate the masterdoctorindex in bulk by updating multiple MasterDoctorViews from hidden
-   * discrepancy data.
+   * discrepancy data. The discrepancies of each doctor are appended by one scripted update, which
+   * skips designated bodies that are already hidden.
    *
    * @param hiddenDiscrepancies Hidden Discrepancies to update
    */
   public void populateMasterIndexByHiddenDiscrepancies(
       List<HiddenDiscrepancy> hiddenDiscrepancies) {
-    hiddenDiscrepancies.forEach(hiddenDiscrepancy -> {
-      List<HiddenDiscrepancy> hiddenDiscrepancyList = new ArrayList<>();
-      String gmcId = hiddenDiscrepancy.getGmcId();
-      var existing = repository.findByGmcReferenceNumber(gmcId);
+    if (stagedRebuildService.isActive()) {
+      stagedRebuildService.stageHiddenDiscrepancies(hiddenDiscrepancies);
+      return;
+    }
+    Map<String, List<HiddenDiscrepancy>> hiddenDiscrepanciesByGmc = hiddenDiscrepancies.stream()
+        .filter(hiddenDiscrepancy -> hiddenDiscrepancy.getGmcId() != null)
+        .collect(Collectors.groupingBy(HiddenDiscrepancy::getGmcId, LinkedHashMap::new,
+            Collectors.toList()));
+    Map<String, List<String>> existingIdsByGmc = syncMetrics.timeLookup(
+        SyncPhase.HIDDEN_DISCREPANCY,
+        () -> resolveExistingDocIdsByGmcNumber(List.copyOf(hiddenDiscrepanciesByGmc.keySet())));
+
+    Map<String, Script> updates = new HashMap<>();
+    hiddenDiscrepanciesByGmc.forEach((gmcId, doctorHiddenDiscrepancies) -> {
+      var existing = existingIdsByGmc.getOrDefault(gmcId, List.of());
       if (existing.size() > 1) {
         log.warn(
             "Multiple doctors found for gmcID: {} while syncing ES hidden discrepancy records,"
                 + " no hidden discrepancy records will be saved.",
             gmcId);
+        syncMetrics.recordSkipped(SyncPhase.HIDDEN_DISCREPANCY, doctorHiddenDiscrepancies.size());
       } else if (existing.size() == 1) {
-        var masterDoctorView = existing.get(0);
+        updates.put(existing.get(0),
+            HiddenDiscrepancyScripts.addHiddenDiscrepancies(doctorHiddenDiscrepancies));
+      } else {
+        syncMetrics.recordSkipped(SyncPhase.HIDDEN_DISCREPANCY, doctorHiddenDiscrepancies.size());
+      }
+    });
 
-        if (masterDoctorView.getHiddenDiscrepancies() != null) {
-          hiddenDiscrepancyList.addAll(masterDoctorView.getHiddenDiscrepancies());
-        }
+    if (!updates.isEmpty()) {
+      syncMetrics.timeBulk(SyncPhase.HIDDEN_DISCREPANCY,
+          () -> esDocUpdateHelper.bulkScriptedUpdate(MASTER_DOCTOR_INDEX, updates));
+      syncMetrics.recordUpdated(SyncPhase.HIDDEN_DISCREPANCY, updates.size());
+    }
+  }
 
-        boolean alreadyHidden = hiddenDiscrepancyList.stream().anyMatch(h ->
-            h.getHiddenForDesignatedBodyCode()
-                .equals(hiddenDiscrepancy.getHiddenForDesignatedBodyCode()));
-
-        if (alreadyHidden) {
-          log.info(
-              "gmcReferenceNumber: {} already has a hidden discrepancy for designated body: {}",
-              hiddenDiscrepancy.getGmcId(),
-              hiddenDiscrepancy.getHiddenForDesignatedBodyCode());
-          return;
-        } else {
-          hiddenDiscrepancyList.add(hiddenDiscrepancy);
-        }
+  /**
+   * Resolve the existing document ids for a batch of doctors with a single lookup, falling back to
+   * one lookup per doctor if the batched search fails.
+   */
+  private Map<String, List<String>> resolveExistingDocIds(List<MasterDoctorView> docs) {
+    try {
+      return identityResolver.resolve(docs);
+    } catch (Exception ex) {
+      log.warn("Batched lookup of {} doctors failed, falling back to per-doctor lookups",
+          docs.size(), ex);
+    }
+    Map<String, List<String>> existingIdsByKey = new HashMap<>();
+    docs.forEach(doctor -> existingIdsByKey.computeIfAbsent(identityKey(doctor),
+        key -> findMasterDoctorRecordByGmcNumberPersonId(doctor).stream()
+            .map(MasterDoctorView::getId).toList()));
+    return existingIdsByKey;
+  }
 
-        masterDoctorView.setHiddenDiscrepancies(hiddenDiscrepancyList);
-        repository.save(masterDoctorView);
-      }
-    });
+  private Map<String, List<String>> resolveExistingDocIdsByGmcNumber(List<String> gmcIds) {
+    try {
+      return identityResolver.resolveByGmcReferenceNumbers(gmcIds);
+    } catch (Exception ex) {
+      log.warn("Batched lookup of {} gmc numbers failed, falling back to per-doctor lookups",
+          gmcIds.size(), ex);
+    }
+    Map<String, List<String>> existingIdsByGmc = new HashMap<>();
+    gmcIds.stream().filter(Objects::nonNull).forEach(gmcId -> existingIdsByGmc.computeIfAbsent(
+        gmcId, key -> findMasterDoctorByGmcNumber(key).stream()
+            .map(MasterDoctorView::getId).toList()));
+    return existingIdsByGmc;
   }
 
   private List<MasterDoctorView> findMasterDoctorRecordByGmcNumberPersonId(
@@ -249,27 +462,64 @@ public class DoctorUpsertElasticSearchService {
     return result;
   }
 
-  private void updateMasterDoctorViews(Iterable<MasterDoctorView> existingRecords,
+  private boolean updateMasterDoctorViews(Iterable<MasterDoctorView> existingRecords,
       MasterDoctorView dataToSave) {
     try {
       existingRecords.forEach(currentDoctorView -> repository
           .save(mapper.updateMasterDoctorView(dataToSave, currentDoctorView)));
+      return true;
     } catch (Exception ex) {
       log.info("Exception in `updateMasterDoctorViews` (GmcId: {}; PersonId: {}): ",
           dataToSave.getGmcReferenceNumber(), dataToSave.getTcsPersonId(), ex);
+      return false;
     }
   }
 
-  private void addMasterDoctorViews(MasterDoctorView dataToSave) {
+  private boolean addMasterDoctorViews(MasterDoctorView dataToSave) {
     try {
-      repository.save(dataToSave);
+      String id = MasterDoctorDocumentIds.assignId(dataToSave);
+      BulkWriteResult result = esDocUpdateHelper.bulkUpsert(MASTER_DOCTOR_INDEX, Map.of(),
+          Map.of(id, toSource(dataToSave)), Map.of(id, tcsUpdateDocument(dataToSave)));
+      if (result.hasFailures()) {
+        log.info("Could not add doctor (GmcId: {}; PersonId: {})",
+            dataToSave.getGmcReferenceNumber(), dataToSave.getTcsPersonId());
+        return false;
+      }
+      return true;
     } catch (Exception ex) {
       log.info("Exception in `addMasterDoctorViews` (GmcId: {}; PersonId: {}): ",
           dataToSave.getGmcReferenceNumber(), dataToSave.getTcsPersonId(), ex);
+      return false;
     }
   }
 
-  private Map<String, Object> generateUpdatedDocument(MasterDoctorView doctorUpdate) {
+  private Map<String, Object> toSource(MasterDoctorView view) {
+    return elasticSearchOperations.getElasticsearchConverter().mapObject(view);
+  }
+
+  /**
+   * Build the fields a TCS record sets on an existing document, following the rules of
+   * {@link MasterDoctorViewMapper#updateMasterDoctorView(MasterDoctorView, MasterDoctorView)}:
+   * the fields the record holds are written, and the designated body, submission date and under
+   * notice are written even when they are null.
+   */
+  private Map<String, Object> tcsUpdateDocument(MasterDoctorView doctorUpdate) {
+    Map<String, Object> map = new HashMap<>(toSource(doctorUpdate));
+    map.remove("id");
+    map.putIfAbsent("designatedBody", null);
+    map.putIfAbsent("submissionDate", null);
+    map.putIfAbsent("underNotice", null);
+    return map;
+  }
+
+  private static Map<String, Object> mergeFields(Map<String, Object> earlier,
+      Map<String, Object> later) {
+    Map<String, Object> merged = new HashMap<>(earlier);
+    merged.putAll(later);
+    return merged;
+  }
+
+  static Map<String, Object> generateUpdatedDocument(MasterDoctorView doctorUpdate) {
     if (doctorUpdate == null) {
       return Map.of();
     }
@@ -290,7 +540,7 @@ public class DoctorUpsertElasticSearchService {
     return map;
   }
 
-  private Map<String, Object> generatedUpdateDocForConnectionLog(
+  static Map<String, Object> generatedUpdateDocForConnectionLog(
       ConnectionLogDto connectionLogDto) {
     if (connectionLogDto == null) {
       return Map.of();
@@ -306,40 +556,173 @@ public class DoctorUpsertElasticSearchService {
   }
 
   /**
-   * Clear all records in masterdoctorindex by deleting and recreating the index.
+   * Start rebuilding the masterdoctorindex into a fresh timestamped index. The sync phases write to
+   * the new index through the masterdoctorindex alias, while the read aliases keep serving the
+   * previous generation until {@link #promoteMasterDoctorIndex()} is called. The new index is
+   * loaded with the bulk load settings profile, which keeps refresh enabled as CDC writes and the
+   * identity lookups of the sync phases read it through the write alias. When staging is enabled
+   * the phases are joined locally and only written when the rebuild is promoted, so refresh is
+   * disabled until the settings are restored before promotion. CDC writes are repeated on the
+   * previous generation until then, so readers keep seeing them.
+   *
+   * @return the name of the index being rebuilt
    */
-  public void clearMasterDoctorIndex() {
-    deleteMasterDoctorIndex();
-    createMasterDoctorIndex();
-    addAliasToMasterDoctorIndex();
+  public String startMasterDoctorIndexRebuild() {
+    Map<String, Object> mapping =
+        elasticSearchOperations.indexOps(MasterDoctorView.class).createMapping();
+    try {
+      String indexName = elasticsearchIndexService.startNewGeneration(MASTER_DOCTOR_INDEX,
+          mapping, MASTER_DOCTOR_READ_ALIASES);
+      rebuildInProgress = true;
+      liveGenerationMirror.start();
+      if (bulkLoadProfileEnabled && stagingEnabled) {
+        elasticsearchIndexService.applyStagedLoadSettings(indexName);
+      } else if (bulkLoadProfileEnabled) {
+        elasticsearchIndexService.applyBulkLoadSettings(indexName);
+      }
+      if (stagingEnabled) {
+        stagedRebuildService.start();
+      }
+      log.info("Rebuilding masterdoctorindex into elastic search index: {}", indexName);
+      return indexName;
+    } catch (IOException e) {
+      restoreMasterDoctorIndexSettings();
+      throw new UncheckedIOException("Could not start rebuilding masterdoctorindex", e);
+    }
   }
 
-  private void deleteMasterDoctorIndex() {
-    log.info("deleting masterdoctorindex elastic search index");
+  /**
+   * Take over a masterdoctorindex rebuild that was interrupted by a restart, so its settings are
+   * restored when it is promoted and the bulk load settings removed at shutdown are applied again.
+   * The documents already written to the index are kept.
+   *
+   * @param indexName the name of the index being rebuilt
+   */
+  public void resumeMasterDoctorIndexRebuild(String indexName) {
+    rebuildInProgress = true;
+    liveGenerationMirror.start();
+    if (bulkLoadProfileEnabled) {
+      try {
+        elasticsearchIndexService.applyBulkLoadSettings(indexName);
+      } catch (Exception e) {
+        log.warn("Could not apply the bulk load settings to the resumed masterdoctorindex: {}",
+            indexName, e);
+      }
+    }
+    log.info("Resuming the masterdoctorindex rebuild into elastic search index: {}", indexName);
+  }
+
+  /**
+   * Refresh the masterdoctorindex so the next sync phase can find the documents written so far.
+   */
+  public void refreshMasterDoctorIndex() {
     try {
-      elasticSearchOperations.indexOps(IndexCoordinates.of(MASTER_DOCTOR_INDEX)).delete();
-    } catch (IndexNotFoundException e) {
-      log.info("Could not delete an index that does not exist, continuing");
+      elasticsearchIndexHelper.refresh(MASTER_DOCTOR_INDEX);
+    } catch (Exception e) {
+      log.warn("Could not refresh masterdoctorindex between sync phases.", e);
     }
   }
 
-  private void createMasterDoctorIndex() {
-    log.info("creating and updating mappings");
-    elasticSearchOperations.indexOps(IndexCoordinates.of(MASTER_DOCTOR_INDEX)).create();
-    elasticSearchOperations.indexOps(IndexCoordinates.of(MASTER_DOCTOR_INDEX))
-        .putMapping(MasterDoctorView.class);
+  /**
+   * Restore the normal settings of the masterdoctorindex being rebuilt, carry the notes flags over
+   * from the previous generation and force merge it if configured, then atomically point the read
+   * aliases at it, keeping the previous generation as a backup. The read aliases are not moved if
+   * the settings could not be restored, or if a staged rebuild could not be written. A rebuild
+   * which is not promoted is counted as a promotion failure, and CDC writes keep being repeated on
+   * the previous generation, as readers are still served by it.
+   *
+   * @return true if the read aliases were switched to the rebuilt index
+   */
+  public boolean promoteMasterDoctorIndex() {
+    if (stagingEnabled && !writeStagedMasterDoctorIndex()) {
+      restoreMasterDoctorIndexSettings();
+      syncMetrics.recordPromotionFailure();
+      return false;
+    }
+
+    try {
+      elasticsearchIndexService.restoreBulkLoadSettings(MASTER_DOCTOR_INDEX,
+          MASTER_DOCTOR_READ_ALIAS);
+      rebuildInProgress = false;
+    } catch (Exception e) {
+      log.error("Could not restore the settings of the rebuilt masterdoctorindex, "
+          + "readers are still served by the previous index.", e);
+      syncMetrics.recordPromotionFailure();
+      return false;
+    }
+
+    try {
+      refreshMasterDoctorIndex();
+      notesService.carryOverHasNotes();
+    } catch (Exception e) {
+      log.warn("Could not carry the notes flags over to the rebuilt masterdoctorindex, "
+          + "they are looked up again as the summary pages need them.", e);
+    }
+
+    if (forceMergeEnabled) {
+      try {
+        elasticsearchIndexHelper.forceMerge(MASTER_DOCTOR_INDEX, forceMergeMaxSegments);
+      } catch (Exception e) {
+        log.warn("Force merging the rebuilt masterdoctorindex did not complete.", e);
+      }
+    }
+
+    try {
+      String indexName = elasticsearchIndexService.promoteNewGeneration(MASTER_DOCTOR_INDEX,
+          MASTER_DOCTOR_READ_ALIASES);
+      liveGenerationMirror.stop();
+      log.info("Read aliases switched to rebuilt elastic search index: {}", indexName);
+      return true;
+    } catch (Exception e) {
+      log.error("Could not switch read aliases to the rebuilt masterdoctorindex, "
+          + "readers are still served by the previous index.", e);
+      syncMetrics.recordPromotionFailure();
+      return false;
+    }
   }
 
-  private void addAliasToMasterDoctorIndex() {
+  /**
+   * Restore the normal settings of a masterdoctorindex rebuild that did not complete, so the
+   * index is not left without refresh and replicas, and discard anything staged for it.
+   */
+  @PreDestroy
+  public void restoreMasterDoctorIndexSettings() {
+    stagedRebuildService.stop();
+    if (!rebuildInProgress) {
+      return;
+    }
     try {
-      elasticsearchIndexHelper.addAlias(MASTER_DOCTOR_INDEX, CURRENT_CONNECTIONS_ALIAS,
-          ES_CURRENT_CONNECTIONS_FILTER);
-      elasticsearchIndexHelper.addAlias(MASTER_DOCTOR_INDEX, DISCREPANCIES_ALIAS,
-          ES_DISCREPANCIES_FILTER);
-      elasticsearchIndexHelper.addAlias(MASTER_DOCTOR_INDEX, RECOMMENDATION_ALIAS);
-    } catch (IOException e) {
-      log.error("Could not add alias to masterDoctorIndex after create, please do it manually.",
+      elasticsearchIndexService.restoreBulkLoadSettings(MASTER_DOCTOR_INDEX,
+          MASTER_DOCTOR_READ_ALIAS);
+      rebuildInProgress = false;
+    } catch (Exception e) {
+      log.error("Could not restore the settings of the masterdoctorindex being rebuilt, "
+          + "please reset refresh_interval, number_of_replicas and translog durability manually.",
           e);
     }
   }
+
+  private boolean writeStagedMasterDoctorIndex() {
+    if (!stagedRebuildService.isActive()) {
+      log.error("No staged masterdoctorindex rebuild was started by this instance, "
+          + "readers are still served by the previous index.");
+      return false;
+    }
+    try {
+      BulkWriteResult result = stagedRebuildService.flush();
+      if (result.hasFailures()) {
+        log.error("{} staged masterdoctorindex records could not be written, "
+            + "readers are still served by the previous index.", result.failedIds().size());
+        return false;
+      }
+      log.info("Wrote {} staged masterdoctorindex records", result.succeeded());
+      return true;
+    } catch (Exception e) {
+      log.error("Could not write the staged masterdoctorindex rebuild, "
+          + "readers are still served by the previous index.", e);
+      return false;
+    } finally {
+      stagedRebuildService.stop();
+    }
+  }
 }
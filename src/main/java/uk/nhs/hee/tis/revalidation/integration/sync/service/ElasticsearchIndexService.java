@@ -25,17 +25,24 @@ import java.io.IOException;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.AbstractMap;
+import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
 import java.util.NoSuchElementException;
+import java.util.Set;
 import java.util.stream.Collectors;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 import org.elasticsearch.ElasticsearchException;
 import org.elasticsearch.ResourceAlreadyExistsException;
 import org.elasticsearch.ResourceNotFoundException;
+import org.elasticsearch.action.admin.indices.alias.IndicesAliasesRequest.AliasActions;
 import org.elasticsearch.client.indices.GetIndexResponse;
 import org.elasticsearch.cluster.metadata.MappingMetadata;
+import org.elasticsearch.common.settings.Settings;
 import org.springframework.stereotype.Service;
 import uk.nhs.hee.tis.revalidation.integration.sync.helper.ElasticsearchIndexHelper;
 
@@ -45,6 +52,22 @@ public class ElasticsearchIndexService {
 
   private static final String ALIAS_BACKUP_SUFFIX = "_backup";
   private static final String INDEX_DATETIME_PATTERN = "yyyyMMddHHmmss";
+  private static final String GENERATION_DATETIME_PATTERN = "yyyyMMddHHmmssSSS";
+  // Refresh stays enabled: CDC writes and the lookups of the sync phases read the index being
+  // loaded through its write alias.
+  protected static final Settings BULK_LOAD_SETTINGS = Settings.builder()
+      .put("index.number_of_replicas", 0)
+      .put("index.translog.durability", "async")
+      .build();
+  // A staged rebuild only writes its documents when it is promoted, so nothing needs to find them
+  // before the settings are restored and the index refreshed.
+  protected static final Settings STAGED_LOAD_SETTINGS = Settings.builder()
+      .put(BULK_LOAD_SETTINGS)
+      .put("index.refresh_interval", "-1")
+      .build();
+  // The refresh interval is restored too, for indices loaded with the staged load profile.
+  protected static final Set<String> RESTORED_SETTINGS = Set.of("index.refresh_interval",
+      "index.number_of_replicas", "index.translog.durability");
 
   ElasticsearchIndexHelper elasticsearchIndexHelper;
 
@@ -202,4 +225,195 @@ public class ElasticsearchIndexService {
     // Finally, remove the alias from the old index
     elasticsearchIndexHelper.deleteAlias(oldIndexName, targetAlias);
   }
+
+  /**
+   * Start building a new generation of an index behind its write alias.
+   *
+   * <p>The write alias is moved to a new timestamped index while the read aliases stay on the
+   * current generation, so readers keep seeing complete data until
+   * {@link #promoteNewGeneration(String, Map)} is called. If the write alias is still a concrete
+   * index, it is first copied to a timestamped index which takes over the read aliases. A
+   * generation left behind by an unfinished rebuild is deleted.
+   *
+   * @param writeAlias  the alias the application writes to
+   * @param mapping     the mapping source for the new index
+   * @param readAliases the read aliases mapped to their filter, empty for an unfiltered alias
+   * @return the name of the new index
+   * @throws IOException for any connection timeout, or socket timeout, or other IO exceptions
+   */
+  public String startNewGeneration(String writeAlias, Map<String, Object> mapping,
+      Map<String, String> readAliases) throws IOException {
+    List<AliasActions> actions = new ArrayList<>();
+    Set<String> abandonedIndices = new HashSet<>();
+
+    if (elasticsearchIndexHelper.aliasExists(writeAlias)) {
+      Set<String> liveIndices = getIndicesForAliases(readAliases.keySet());
+      for (String index : elasticsearchIndexHelper.getIndicesForAlias(writeAlias)) {
+        if (liveIndices.isEmpty()) {
+          // the read aliases have never been created, so the written index is the live one
+          actions.addAll(addAliasActions(index, readAliases));
+        } else if (!liveIndices.contains(index)) {
+          abandonedIndices.add(index);
+        }
+        actions.add(new AliasActions(AliasActions.Type.REMOVE).index(index).alias(writeAlias));
+      }
+    } else if (elasticsearchIndexHelper.indexExists(writeAlias)) {
+      // the old index is removed in the same request that hands its name over to the alias
+      String liveIndex = copyToNewGeneration(writeAlias);
+      actions.add(new AliasActions(AliasActions.Type.REMOVE_INDEX).index(writeAlias));
+      actions.addAll(addAliasActions(liveIndex, readAliases));
+    }
+
+    String newIndexName = getGenerationName(writeAlias);
+    elasticsearchIndexHelper.createIndex(newIndexName, mapping);
+    actions.add(new AliasActions(AliasActions.Type.ADD).index(newIndexName).alias(writeAlias));
+    elasticsearchIndexHelper.updateAliases(actions);
+
+    for (String index : abandonedIndices) {
+      try {
+        elasticsearchIndexHelper.deleteIndex(index);
+      } catch (Exception e) {
+        log.warn(String.format("Deleting abandoned index: %s skipped. "
+            + "Please delete it manually.", index), e);
+      }
+    }
+    return newIndexName;
+  }
+
+  /**
+   * Atomically move the read aliases to the index behind the write alias. The indices the read
+   * aliases pointed to before are marked as backup and older backups are deleted.
+   *
+   * @param writeAlias  the alias the new generation was built behind
+   * @param readAliases the read aliases mapped to their filter, empty for an unfiltered alias
+   * @return the name of the promoted index
+   * @throws IOException for any connection timeout, or socket timeout, or other IO exceptions
+   */
+  public String promoteNewGeneration(String writeAlias, Map<String, String> readAliases)
+      throws IOException {
+    String newIndexName = getSingleIndexForAlias(writeAlias);
+    String backupAlias = getBackupAlias(writeAlias);
+
+    List<AliasActions> actions = new ArrayList<>(addAliasActions(newIndexName, readAliases));
+    Set<String> previousIndices = new HashSet<>();
+    for (String alias : readAliases.keySet()) {
+      for (String index : elasticsearchIndexHelper.getIndicesForAlias(alias)) {
+        if (!index.equals(newIndexName)) {
+          actions.add(new AliasActions(AliasActions.Type.REMOVE).index(index).alias(alias));
+          previousIndices.add(index);
+        }
+      }
+    }
+    previousIndices.forEach(index -> actions.add(
+        new AliasActions(AliasActions.Type.ADD).index(index).alias(backupAlias)));
+    elasticsearchIndexHelper.updateAliases(actions);
+
+    try {
+      deleteBackupIndicesExceptLatest(backupAlias);
+    } catch (Exception e) {
+      log.warn(String.format("Deleting old backup indices for alias: %s skipped. "
+          + "Please delete unnecessary backups manually.", backupAlias), e);
+    }
+    return newIndexName;
+  }
+
+  /**
+   * Apply the bulk load profile to an index: no replicas and async translog durability. Refresh is
+   * left enabled, so documents written to the index can be found by the writes that follow.
+   *
+   * @param indexName the index to be bulk loaded
+   * @throws IOException for any connection timeout, or socket timeout, or other IO exceptions
+   */
+  public void applyBulkLoadSettings(String indexName) throws IOException {
+    elasticsearchIndexHelper.updateSettings(indexName, BULK_LOAD_SETTINGS);
+  }
+
+  /**
+   * Apply the staged load profile to an index: the bulk load profile with refresh disabled. This
+   * is meant for an index whose documents are written in one go before it is restored.
+   *
+   * @param indexName the index to be bulk loaded
+   * @throws IOException for any connection timeout, or socket timeout, or other IO exceptions
+   */
+  public void applyStagedLoadSettings(String indexName) throws IOException {
+    elasticsearchIndexHelper.updateSettings(indexName, STAGED_LOAD_SETTINGS);
+  }
+
+  /**
+   * Restore the settings changed by the bulk load profile on the index behind the write alias and
+   * refresh it. The values are copied from the index behind the read alias, or reset to their
+   * defaults when there is no such index or it does not set them.
+   *
+   * @param writeAlias the alias of the bulk loaded index
+   * @param readAlias  the alias of the index to copy the settings from
+   * @throws IOException for any connection timeout, or socket timeout, or other IO exceptions
+   */
+  public void restoreBulkLoadSettings(String writeAlias, String readAlias) throws IOException {
+    String indexName = getSingleIndexForAlias(writeAlias);
+    Settings template = Settings.EMPTY;
+    for (String index : elasticsearchIndexHelper.getIndicesForAlias(readAlias)) {
+      if (!index.equals(indexName)) {
+        template = elasticsearchIndexHelper.getSettings(index);
+        break;
+      }
+    }
+
+    Settings.Builder restored = Settings.builder();
+    for (String key : RESTORED_SETTINGS) {
+      String value = template.get(key);
+      if (value == null) {
+        restored.putNull(key);
+      } else {
+        restored.put(key, value);
+      }
+    }
+    elasticsearchIndexHelper.updateSettings(indexName, restored.build());
+    elasticsearchIndexHelper.refresh(indexName);
+  }
+
+  private String getSingleIndexForAlias(String alias) throws IOException {
+    Set<String> indices = elasticsearchIndexHelper.getIndicesForAlias(alias);
+    if (indices.size() != 1) {
+      throw new IllegalStateException(String.format(
+          "Expected one index for alias: %s but found: %s.", alias, indices));
+    }
+    return indices.iterator().next();
+  }
+
+  private String copyToNewGeneration(String sourceIndexName) throws IOException {
+    MappingMetadata mapping = elasticsearchIndexHelper.getMapping(sourceIndexName);
+    if (mapping == null) {
+      throw new ResourceNotFoundException(
+          String.format("ES mapping for old index \"%s\" is not found.", sourceIndexName));
+    }
+    String copyIndexName = getGenerationName(sourceIndexName);
+    elasticsearchIndexHelper.createIndex(copyIndexName, mapping);
+    elasticsearchIndexHelper.reindex(sourceIndexName, copyIndexName);
+    return copyIndexName;
+  }
+
+  private Set<String> getIndicesForAliases(Set<String> aliases) throws IOException {
+    Set<String> indices = new HashSet<>();
+    for (String alias : aliases) {
+      indices.addAll(elasticsearchIndexHelper.getIndicesForAlias(alias));
+    }
+    return indices;
+  }
+
+  private List<AliasActions> addAliasActions(String indexName, Map<String, String> aliases) {
+    List<AliasActions> actions = new ArrayList<>();
+    aliases.forEach((alias, filter) -> {
+      AliasActions action = new AliasActions(AliasActions.Type.ADD).index(indexName).alias(alias);
+      if (StringUtils.isNotEmpty(filter)) {
+        action.filter(filter);
+      }
+      actions.add(action);
+    });
+    return actions;
+  }
+
+  private String getGenerationName(String alias) {
+    return alias + "_"
+        + LocalDateTime.now().format(DateTimeFormatter.ofPattern(GENERATION_DATETIME_PATTERN));
+  }
 }
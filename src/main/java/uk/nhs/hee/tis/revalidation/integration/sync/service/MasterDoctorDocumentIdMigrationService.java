@@ -0,0 +1,322 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright 2026 Crown Copyright (NHS England)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package uk.nhs.hee.tis.revalidation.integration.sync.service;
+
+import static org.elasticsearch.index.query.QueryBuilders.matchAllQuery;
+import static uk.nhs.hee.tis.revalidation.integration.config.EsConstant.Indexes.MASTER_DOCTOR_INDEX;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.elasticsearch.action.delete.DeleteRequest;
+import org.elasticsearch.action.get.GetResponse;
+import org.elasticsearch.action.get.MultiGetItemResponse;
+import org.elasticsearch.action.get.MultiGetRequest;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.common.xcontent.XContentType;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.SearchHitsIterator;
+import org.springframework.data.elasticsearch.core.convert.ElasticsearchConverter;
+import org.springframework.data.elasticsearch.core.document.Document;
+import org.springframework.data.elasticsearch.core.query.NativeSearchQueryBuilder;
+import org.springframework.stereotype.Service;
+import uk.nhs.hee.tis.revalidation.integration.cdc.repository.custom.EsBulkWriteEngine;
+import uk.nhs.hee.tis.revalidation.integration.cdc.repository.custom.EsBulkWriteEngine.BulkWriteResult;
+import uk.nhs.hee.tis.revalidation.integration.enums.SyncStatus;
+import uk.nhs.hee.tis.revalidation.integration.sync.helper.MasterDoctorDocumentIds;
+import uk.nhs.hee.tis.revalidation.integration.sync.view.MasterDoctorView;
+
+/**
+ * Re-keys the existing masterdoctorindex documents to the ids derived by
+ * {@link MasterDoctorDocumentIds}.
+ *
+ * <p>Each document with a different id is read again and created under its derived id, and the
+ * original is then deleted only if it has not changed since it was read. An original changed by
+ * CDC in the meantime is copied again and its delete retried, so no update is lost with it. When
+ * several documents derive the same id, only the first is re-keyed and the others are left in
+ * place and reported as conflicts, to be resolved by hand or by the next rebuild. The migration
+ * runs in the background, can be run again safely, and must not run alongside a rebuild.
+ */
+@Slf4j
+@Service
+public class MasterDoctorDocumentIdMigrationService {
+
+  static final int MAX_DELETE_ATTEMPTS = 3;
+
+  private final ElasticsearchOperations elasticsearchOperations;
+  private final RestHighLevelClient highLevelClient;
+  private final EsBulkWriteEngine bulkWriteEngine;
+  private final SyncStateService syncStateService;
+  private final int chunkSize;
+  private final ExecutorService executor;
+  private final AtomicBoolean running = new AtomicBoolean();
+
+  /**
+   * Create the id migration service.
+   *
+   * @param elasticsearchOperations the operations used to read and convert the documents
+   * @param highLevelClient         the client the originals are read again with
+   * @param bulkWriteEngine         the engine the re-keyed documents are written with
+   * @param syncStateService        the service reporting whether a rebuild is running
+   * @param chunkSize               the number of documents re-keyed at a time
+   */
+  public MasterDoctorDocumentIdMigrationService(ElasticsearchOperations elasticsearchOperations,
+      RestHighLevelClient highLevelClient, EsBulkWriteEngine bulkWriteEngine,
+      SyncStateService syncStateService,
+      @Value("${app.es.document-id-migration.chunk-size:1000}") int chunkSize) {
+    this.elasticsearchOperations = elasticsearchOperations;
+    this.highLevelClient = highLevelClient;
+    this.bulkWriteEngine = bulkWriteEngine;
+    this.syncStateService = syncStateService;
+    this.chunkSize = chunkSize;
+    this.executor = Executors.newSingleThreadExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "masterdoctor-rekey");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  /**
+   * Start re-keying the masterdoctorindex in the background. The outcome is logged when the
+   * migration finishes.
+   *
+   * @throws IllegalStateException if a rebuild or another migration is running
+   */
+  public void start() {
+    checkNoRebuildInProgress();
+    if (!running.compareAndSet(false, true)) {
+      throw new IllegalStateException("The masterdoctorindex is already being re-keyed");
+    }
+    try {
+      executor.execute(() -> {
+        try {
+          migrate();
+        } catch (RuntimeException e) {
+          log.error("Failed to re-key the masterdoctorindex", e);
+        } finally {
+          running.set(false);
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      running.set(false);
+      throw e;
+    }
+  }
+
+  /**
+   * Re-key every masterdoctorindex document whose id is not derived from its doctor.
+   *
+   * @return the number of re-keyed, unchanged and conflicting documents
+   */
+  public MigrationResult migrate() {
+    checkNoRebuildInProgress();
+    var query = new NativeSearchQueryBuilder()
+        .withQuery(matchAllQuery())
+        .withPageable(PageRequest.of(0, chunkSize))
+        .build();
+    MigrationResult result = new MigrationResult(0, 0, 0);
+    List<MasterDoctorView> chunk = new ArrayList<>();
+    try (SearchHitsIterator<MasterDoctorView> hits =
+        elasticsearchOperations.searchForStream(query, MasterDoctorView.class)) {
+      while (hits.hasNext()) {
+        MasterDoctorView view = hits.next().getContent();
+        String documentId = MasterDoctorDocumentIds.documentId(view);
+        if (documentId == null || documentId.equals(view.getId())) {
+          result = result.plus(new MigrationResult(0, 1, 0));
+          continue;
+        }
+        chunk.add(view);
+        if (chunk.size() >= chunkSize) {
+          result = result.plus(rekey(chunk));
+          chunk.clear();
+        }
+      }
+    }
+    if (!chunk.isEmpty()) {
+      result = result.plus(rekey(chunk));
+    }
+    log.info("Re-keyed {} masterdoctorindex documents, {} unchanged, {} left in place as conflicts",
+        result.rekeyed(), result.unchanged(), result.conflicts());
+    return result;
+  }
+
+  /**
+   * Stop accepting migrations, letting a running one finish.
+   */
+  @PreDestroy
+  public void shutdown() {
+    executor.shutdown();
+  }
+
+  private void checkNoRebuildInProgress() {
+    var state = syncStateService.getState();
+    if (state != null && state.getStatus() == SyncStatus.IN_PROGRESS) {
+      throw new IllegalStateException(
+          "The masterdoctorindex cannot be re-keyed while it is being rebuilt");
+    }
+  }
+
+  private MigrationResult rekey(List<MasterDoctorView> views) {
+    Map<String, String> originalIdsByDocumentId = new LinkedHashMap<>();
+    int conflicts = 0;
+    for (MasterDoctorView view : views) {
+      String originalId = view.getId();
+      String documentId = MasterDoctorDocumentIds.documentId(view);
+      if (originalIdsByDocumentId.containsKey(documentId)) {
+        log.warn("masterdoctorindex document {} derives the same id {} as document {}, "
+                + "leaving it in place", originalId, documentId,
+            originalIdsByDocumentId.get(documentId));
+        conflicts++;
+        continue;
+      }
+      originalIdsByDocumentId.put(documentId, originalId);
+    }
+
+    // The originals are copied as they are now rather than as the scroll saw them, and their
+    // sequence numbers are kept so they are only deleted if nothing changed them since.
+    Map<String, GetResponse> originals = read(originalIdsByDocumentId.values());
+    Map<String, String> documentIdsByOriginalId = new LinkedHashMap<>();
+    List<IndexRequest> creates = new ArrayList<>();
+    originalIdsByDocumentId.forEach((documentId, originalId) -> {
+      if (originals.containsKey(originalId)) {
+        documentIdsByOriginalId.put(originalId, documentId);
+        creates.add(copy(originals.get(originalId), documentId).create(true));
+      }
+    });
+
+    // A failed create is usually a document which already has the derived id, so the original is
+    // kept rather than deleted.
+    Set<String> failedIds = new HashSet<>(bulkWriteEngine.write(creates).failedIds());
+    conflicts += failedIds.size();
+    documentIdsByOriginalId.values().removeIf(failedIds::contains);
+    originals.keySet().retainAll(documentIdsByOriginalId.keySet());
+    return new MigrationResult(deleteOriginals(originals, documentIdsByOriginalId), 0, conflicts);
+  }
+
+  private int deleteOriginals(Map<String, GetResponse> originals,
+      Map<String, String> documentIdsByOriginalId) {
+    int deleted = 0;
+    Map<String, GetResponse> pending = originals;
+    for (int attempt = 1; !pending.isEmpty(); attempt++) {
+      List<DeleteRequest> deletes = pending.values().stream()
+          .map(original -> new DeleteRequest(MASTER_DOCTOR_INDEX, original.getId())
+              .setIfSeqNo(original.getSeqNo())
+              .setIfPrimaryTerm(original.getPrimaryTerm()))
+          .toList();
+      BulkWriteResult result = bulkWriteEngine.write(deletes);
+      deleted += result.succeeded();
+      List<String> failedIds = new ArrayList<>(result.failedIds());
+      failedIds.removeAll(result.conflictIds());
+      if (!failedIds.isEmpty()) {
+        log.error("Failed to delete re-keyed masterdoctorindex documents, they are duplicated: {}",
+            failedIds);
+      }
+      if (result.conflictIds().isEmpty()) {
+        break;
+      }
+      if (attempt == MAX_DELETE_ATTEMPTS) {
+        log.error("Re-keyed masterdoctorindex documents kept changing and were not deleted, "
+            + "they are duplicated: {}", result.conflictIds());
+        break;
+      }
+
+      // Each changed original is copied again over its copy before its delete is retried.
+      Map<String, GetResponse> changed = read(result.conflictIds());
+      List<IndexRequest> copies = changed.values().stream()
+          .map(original -> copy(original, documentIdsByOriginalId.get(original.getId())))
+          .toList();
+      BulkWriteResult copied = bulkWriteEngine.write(copies);
+      if (copied.hasFailures()) {
+        log.error("Failed to copy changed masterdoctorindex documents again, their originals are "
+            + "kept: {}", copied.failedIds());
+        Set<String> failedCopies = new HashSet<>(copied.failedIds());
+        changed.keySet().removeIf(
+            originalId -> failedCopies.contains(documentIdsByOriginalId.get(originalId)));
+      }
+      pending = changed;
+    }
+    return deleted;
+  }
+
+  private Map<String, GetResponse> read(Collection<String> ids) {
+    Map<String, GetResponse> found = new LinkedHashMap<>();
+    if (ids.isEmpty()) {
+      return found;
+    }
+    MultiGetRequest request = new MultiGetRequest();
+    ids.forEach(id -> request.add(MASTER_DOCTOR_INDEX, id));
+    try {
+      for (MultiGetItemResponse item : highLevelClient.mget(request, RequestOptions.DEFAULT)) {
+        if (item.isFailed()) {
+          log.warn("Failed to read masterdoctorindex document {}, leaving it in place: {}",
+              item.getId(), item.getFailure().getMessage());
+        } else if (item.getResponse().isExists()) {
+          found.put(item.getId(), item.getResponse());
+        }
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to read masterdoctorindex documents", e);
+    }
+    return found;
+  }
+
+  private IndexRequest copy(GetResponse original, String documentId) {
+    ElasticsearchConverter converter = elasticsearchOperations.getElasticsearchConverter();
+    MasterDoctorView view = converter.read(MasterDoctorView.class,
+        Document.from(original.getSourceAsMap()));
+    view.setId(documentId);
+    return new IndexRequest(MASTER_DOCTOR_INDEX).id(documentId)
+        .source(converter.mapObject(view).toJson(), XContentType.JSON);
+  }
+
+  /**
+   * The outcome of a migration.
+   *
+   * @param rekeyed   the number of documents moved to their derived id
+   * @param unchanged the number of documents which already had their derived id
+   * @param conflicts the number of documents left in place as their derived id was taken
+   */
+  public record MigrationResult(int rekeyed, int unchanged, int conflicts) {
+
+    MigrationResult plus(MigrationResult other) {
+      return new MigrationResult(rekeyed + other.rekeyed, unchanged + other.unchanged,
+          conflicts + other.conflicts);
+    }
+  }
+}
@@ -0,0 +1,230 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright 2026 Crown Copyright (NHS England)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package uk.nhs.hee.tis.revalidation.integration.sync.service;
+
+import static org.elasticsearch.index.query.QueryBuilders.boolQuery;
+import static org.elasticsearch.index.query.QueryBuilders.existsQuery;
+import static org.elasticsearch.index.query.QueryBuilders.termsQuery;
+import static uk.nhs.hee.tis.revalidation.integration.config.EsConstant.Aliases.MASTER_DOCTOR_READ_ALIAS;
+import static uk.nhs.hee.tis.revalidation.integration.config.EsConstant.Indexes.MASTER_DOCTOR_INDEX;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import lombok.extern.slf4j.Slf4j;
+import org.elasticsearch.index.query.BoolQueryBuilder;
+import org.elasticsearch.index.query.QueryBuilder;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.SearchHit;
+import org.springframework.data.elasticsearch.core.SearchHitsIterator;
+import org.springframework.data.elasticsearch.core.mapping.IndexCoordinates;
+import org.springframework.data.elasticsearch.core.query.FetchSourceFilter;
+import org.springframework.data.elasticsearch.core.query.NativeSearchQuery;
+import org.springframework.data.elasticsearch.core.query.NativeSearchQueryBuilder;
+import org.springframework.stereotype.Service;
+import uk.nhs.hee.tis.revalidation.integration.cdc.repository.custom.EsBulkWriteEngine.BulkWriteResult;
+import uk.nhs.hee.tis.revalidation.integration.cdc.repository.custom.EsDocUpdateHelper;
+import uk.nhs.hee.tis.revalidation.integration.cdc.repository.custom.EsDocUpdateHelper.EsUpdateException;
+import uk.nhs.hee.tis.revalidation.integration.cdc.repository.custom.LiveGenerationMirror;
+import uk.nhs.hee.tis.revalidation.integration.sync.helper.MasterDoctorDocumentIds;
+import uk.nhs.hee.tis.revalidation.integration.sync.view.MasterDoctorView;
+
+/**
+ * Maintains the {@code hasNotes} flag of the masterdoctorindex documents, so summary pages can
+ * tell which doctors have notes without asking core for every row.
+ *
+ * <p>The flag is null until it is known. It is set from the notes events published by core and
+ * from the notes looked up for doctors whose flag was not known yet, and is carried over from the
+ * previous generation of the index when the index is rebuilt.
+ */
+@Slf4j
+@Service
+public class MasterDoctorNotesService {
+
+  static final int CHUNK_SIZE = 1000;
+  static final int MAX_HITS_PER_LOOKUP = 10000;
+  private static final String GMC_REFERENCE_NUMBER_FIELD = "gmcReferenceNumber";
+  private static final String HAS_NOTES_FIELD = "hasNotes";
+
+  private final ElasticsearchOperations elasticsearchOperations;
+  private final EsDocUpdateHelper esDocUpdateHelper;
+  private final LiveGenerationMirror liveGenerationMirror;
+
+  /**
+   * Create the notes service.
+   *
+   * @param elasticsearchOperations the operations used to read the notes flags
+   * @param esDocUpdateHelper       the helper the notes flags are written with
+   * @param liveGenerationMirror    tells whether the index is being rebuilt
+   */
+  public MasterDoctorNotesService(ElasticsearchOperations elasticsearchOperations,
+      EsDocUpdateHelper esDocUpdateHelper, LiveGenerationMirror liveGenerationMirror) {
+    this.elasticsearchOperations = elasticsearchOperations;
+    this.esDocUpdateHelper = esDocUpdateHelper;
+    this.liveGenerationMirror = liveGenerationMirror;
+  }
+
+  /**
+   * Find the known notes flags of a page of doctors with a single search of the index readers are
+   * served by.
+   *
+   * @param gmcReferenceNumbers the GMC numbers of the doctors
+   * @return the notes flags mapped by the GMC numbers as given, doctors whose flag is not known
+   *     are left out
+   */
+  public Map<String, Boolean> findHasNotes(Collection<String> gmcReferenceNumbers) {
+    // gmcReferenceNumber is an analysed text field, so search with the lowercase token.
+    Map<String, String> gmcReferenceNumbersByToken = gmcReferenceNumbers.stream()
+        .filter(gmcId -> normalise(gmcId) != null)
+        .distinct()
+        .collect(Collectors.toMap(MasterDoctorNotesService::normalise, gmcId -> gmcId,
+            (first, second) -> first));
+    if (gmcReferenceNumbersByToken.isEmpty()) {
+      return Map.of();
+    }
+    QueryBuilder query = boolQuery()
+        .filter(termsQuery(GMC_REFERENCE_NUMBER_FIELD, gmcReferenceNumbersByToken.keySet()))
+        .filter(existsQuery(HAS_NOTES_FIELD));
+    var hits = elasticsearchOperations.search(notesFlagQuery(query, MAX_HITS_PER_LOOKUP),
+        MasterDoctorView.class, IndexCoordinates.of(MASTER_DOCTOR_READ_ALIAS));
+
+    Map<String, Boolean> hasNotesByGmc = new HashMap<>();
+    hits.getSearchHits().stream().map(SearchHit::getContent).forEach(view -> {
+      String gmcId = gmcReferenceNumbersByToken.get(normalise(view.getGmcReferenceNumber()));
+      if (gmcId != null) {
+        // A doctor with several documents has notes if any of them says so.
+        hasNotesByGmc.merge(gmcId, view.getHasNotes(), Boolean::logicalOr);
+      }
+    });
+    return hasNotesByGmc;
+  }
+
+  /**
+   * Set the notes flag on every document of each doctor in the index readers are served by, so
+   * the next {@link #findHasNotes} reads it. While the index is being rebuilt the flag is also set
+   * on the rebuilt index, which keeps it over the carried over one when the rebuild is promoted.
+   *
+   * @param hasNotesByGmc the notes flags, mapped by GMC number
+   * @return the number of updated documents readers are served by
+   * @throws EsUpdateException if any of the documents could not be updated
+   */
+  public int updateHasNotes(Map<String, Boolean> hasNotesByGmc) {
+    Map<String, Boolean> hasNotesByToken = new HashMap<>();
+    hasNotesByGmc.forEach((gmcId, hasNotes) -> {
+      String gmcToken = normalise(gmcId);
+      if (gmcToken != null && hasNotes != null) {
+        hasNotesByToken.merge(gmcToken, hasNotes, Boolean::logicalOr);
+      }
+    });
+    if (hasNotesByToken.isEmpty()) {
+      return 0;
+    }
+    BulkWriteResult result = setHasNotes(MASTER_DOCTOR_READ_ALIAS, hasNotesByToken, false);
+    if (liveGenerationMirror.isMirroring()) {
+      BulkWriteResult rebuilt = setHasNotes(MASTER_DOCTOR_INDEX, hasNotesByToken, false);
+      throwOnFailures(rebuilt);
+    }
+    throwOnFailures(result);
+    return result.succeeded();
+  }
+
+  /**
+   * Copy the known notes flags from the index readers are served by onto the documents of the
+   * index being rebuilt which do not have one yet. Flags set on the rebuilt index by notes events
+   * received during the rebuild are kept.
+   *
+   * @return the number of updated documents
+   */
+  public long carryOverHasNotes() {
+    var query = notesFlagQuery(existsQuery(HAS_NOTES_FIELD), CHUNK_SIZE);
+    long updated = 0;
+    Map<String, Boolean> chunk = new HashMap<>();
+    try (SearchHitsIterator<MasterDoctorView> hits = elasticsearchOperations.searchForStream(
+        query, MasterDoctorView.class, IndexCoordinates.of(MASTER_DOCTOR_READ_ALIAS))) {
+      while (hits.hasNext()) {
+        MasterDoctorView view = hits.next().getContent();
+        String gmcToken = normalise(view.getGmcReferenceNumber());
+        if (gmcToken == null) {
+          continue;
+        }
+        chunk.merge(gmcToken, view.getHasNotes(), Boolean::logicalOr);
+        if (chunk.size() >= CHUNK_SIZE) {
+          updated += setHasNotes(MASTER_DOCTOR_INDEX, chunk, true).succeeded();
+          chunk.clear();
+        }
+      }
+    }
+    if (!chunk.isEmpty()) {
+      updated += setHasNotes(MASTER_DOCTOR_INDEX, chunk, true).succeeded();
+    }
+    log.info("Carried the notes flag over to {} rebuilt masterdoctorindex documents", updated);
+    return updated;
+  }
+
+  private BulkWriteResult setHasNotes(String index, Map<String, Boolean> hasNotesByToken,
+      boolean onlyUnknown) {
+    BoolQueryBuilder query = boolQuery()
+        .filter(termsQuery(GMC_REFERENCE_NUMBER_FIELD, hasNotesByToken.keySet()));
+    if (onlyUnknown) {
+      query.mustNot(existsQuery(HAS_NOTES_FIELD));
+    }
+    var hits = elasticsearchOperations.search(notesFlagQuery(query, MAX_HITS_PER_LOOKUP),
+        MasterDoctorView.class, IndexCoordinates.of(index));
+
+    Map<String, Map<String, Object>> fieldsById = new LinkedHashMap<>();
+    hits.getSearchHits().stream().map(SearchHit::getContent).forEach(view -> {
+      Boolean hasNotes = hasNotesByToken.get(normalise(view.getGmcReferenceNumber()));
+      if (hasNotes != null) {
+        fieldsById.put(view.getId(), Map.of(HAS_NOTES_FIELD, hasNotes));
+      }
+    });
+    if (fieldsById.isEmpty()) {
+      return new BulkWriteResult(0, List.of());
+    }
+    return esDocUpdateHelper.bulkPartialUpdate(index, fieldsById);
+  }
+
+  private static void throwOnFailures(BulkWriteResult result) {
+    if (result.hasFailures()) {
+      throw new EsUpdateException("Failed to update the notes flag of documents: "
+          + result.failedIds());
+    }
+  }
+
+  private static NativeSearchQuery notesFlagQuery(QueryBuilder query, int pageSize) {
+    return new NativeSearchQueryBuilder()
+        .withQuery(query)
+        .withPageable(PageRequest.of(0, pageSize))
+        .withSourceFilter(new FetchSourceFilter(
+            new String[]{GMC_REFERENCE_NUMBER_FIELD, HAS_NOTES_FIELD}, null))
+        .build();
+  }
+
+  private static String normalise(String gmcReferenceNumber) {
+    return MasterDoctorDocumentIds.normaliseGmcReferenceNumber(gmcReferenceNumber);
+  }
+}
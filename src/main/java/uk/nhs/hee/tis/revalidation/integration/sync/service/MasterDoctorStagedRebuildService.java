@@ -0,0 +1,285 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright 2026 Crown Copyright (NHS England)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package uk.nhs.hee.tis.revalidation.integration.sync.service;
+
+import static uk.nhs.hee.tis.revalidation.integration.config.EsConstant.Indexes.MASTER_DOCTOR_INDEX;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import lombok.extern.slf4j.Slf4j;
+import org.elasticsearch.action.update.UpdateRequest;
+import org.elasticsearch.script.Script;
+import org.elasticsearch.script.ScriptType;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.stereotype.Service;
+import uk.nhs.hee.tis.revalidation.integration.cdc.repository.custom.EsBulkWriteEngine;
+import uk.nhs.hee.tis.revalidation.integration.cdc.repository.custom.EsBulkWriteEngine.BulkWriteResult;
+import uk.nhs.hee.tis.revalidation.integration.entity.HiddenDiscrepancy;
+import uk.nhs.hee.tis.revalidation.integration.router.dto.ConnectionLogDto;
+import uk.nhs.hee.tis.revalidation.integration.router.mapper.MasterDoctorViewMapper;
+import uk.nhs.hee.tis.revalidation.integration.sync.helper.MasterDoctorDocumentIds;
+import uk.nhs.hee.tis.revalidation.integration.sync.helper.MasterDoctorStagingStore;
+import uk.nhs.hee.tis.revalidation.integration.sync.view.MasterDoctorView;
+
+/**
+ * Joins the phases of a masterdoctorindex rebuild in a local staging store instead of reading and
+ * rewriting the Elasticsearch documents in every phase.
+ *
+ * <p>Each phase is merged with the same rules as the Elasticsearch path in
+ * {@link DoctorUpsertElasticSearchService}, and the fully merged documents are written once when
+ * the last phase ends. CDC keeps writing to the new index while the phases are staged, so a
+ * document it has created there keeps the fields it wrote, and the staged record only fills in the
+ * fields it is missing or has no value for. The staged hidden discrepancies are merged by id with
+ * those CDC added.
+ *
+ * <p>The staging store is local to the instance, so staging assumes a single instance consumes
+ * the sync queues: all phases must be consumed by the instance that started the rebuild. Records
+ * consumed by another instance are written straight to the new index instead, and the rebuild is
+ * not promoted by an instance which did not start it. Only enable staging where the service runs
+ * as a single instance.
+ */
+@Slf4j
+@Service
+public class MasterDoctorStagedRebuildService {
+
+  static final String STAGED_PARAM = "staged";
+  static final String HIDDEN_DISCREPANCIES_PARAM = "hiddenDiscrepancies";
+  // Fields with a value in the document were written by CDC after the rebuild started, so they win.
+  static final String FILL_MISSING_FIELDS =
+      """
+          for (def entry : params.staged.entrySet()) {
+            if (ctx._source[entry.getKey()] == null) {
+              ctx._source[entry.getKey()] = entry.getValue();
+            }
+          }
+          if (!params.hiddenDiscrepancies.isEmpty()) {
+            if (ctx._source.hiddenDiscrepancies == null) {
+              ctx._source.hiddenDiscrepancies = [];
+            }
+            for (def staged : params.hiddenDiscrepancies) {
+              boolean added = false;
+              for (def existing : ctx._source.hiddenDiscrepancies) {
+                if (existing.id == staged.id) {
+                  added = true;
+                  break;
+                }
+              }
+              if (!added) {
+                ctx._source.hiddenDiscrepancies.add(staged);
+              }
+            }
+          }
+          """;
+  private static final int RETRY_ON_CONFLICT = 5;
+
+  private final MasterDoctorStagingStore store;
+  private final MasterDoctorViewMapper mapper;
+  private final ObjectMapper objectMapper;
+  private final ElasticsearchOperations elasticsearchOperations;
+  private final EsBulkWriteEngine bulkWriteEngine;
+  private final int flushChunkSize;
+
+  /**
+   * Create the staged rebuild service.
+   *
+   * @param store                   the store the phases are joined in
+   * @param mapper                  the mapper used to merge TCS records
+   * @param objectMapper            the mapper used to apply partial updates to staged records
+   * @param elasticsearchOperations the operations used to convert documents for indexing
+   * @param bulkWriteEngine         the engine the merged documents are written with
+   * @param flushChunkSize          the number of documents converted and written at a time
+   */
+  public MasterDoctorStagedRebuildService(MasterDoctorStagingStore store,
+      MasterDoctorViewMapper mapper, ObjectMapper objectMapper,
+      ElasticsearchOperations elasticsearchOperations, EsBulkWriteEngine bulkWriteEngine,
+      @Value("${app.es.rebuild.staging.flush-chunk-size:5000}") int flushChunkSize) {
+    this.store = store;
+    this.mapper = mapper;
+    this.objectMapper = objectMapper;
+    this.elasticsearchOperations = elasticsearchOperations;
+    this.bulkWriteEngine = bulkWriteEngine;
+    this.flushChunkSize = flushChunkSize;
+  }
+
+  /**
+   * Start staging a rebuild, discarding anything left from a previous one.
+   */
+  public void start() {
+    store.open();
+  }
+
+  /**
+   * Discard the staged rebuild.
+   */
+  public void stop() {
+    store.close();
+  }
+
+  public boolean isActive() {
+    return store.isOpen();
+  }
+
+  /**
+   * Stage TCS records, merging them onto the staged records of the same doctor.
+   *
+   * @param docs MasterDoctorViews built from TCS data, in the order they were received
+   */
+  public synchronized void stageTcsRecords(List<MasterDoctorView> docs) {
+    docs.forEach(doctor -> {
+      List<Integer> slots = store.find(doctor.getGmcReferenceNumber(), doctor.getTcsPersonId());
+      if (slots.isEmpty()) {
+        store.add(doctor);
+      } else {
+        slots.forEach(slot -> store.put(slot,
+            mapper.updateMasterDoctorView(doctor, store.get(slot))));
+      }
+    });
+  }
+
+  /**
+   * Stage GMC records, updating the first staged record of each doctor.
+   *
+   * @param docs MasterDoctorViews built from GMC data
+   */
+  public synchronized void stageGmcRecords(List<MasterDoctorView> docs) {
+    docs.forEach(doctor -> {
+      List<Integer> slots = store.find(doctor.getGmcReferenceNumber(), doctor.getTcsPersonId());
+      if (slots.isEmpty()) {
+        store.add(doctor);
+      } else {
+        if (slots.size() > 1) {
+          log.warn("Multiple doctors found for gmcID: {} while staging gmc records",
+              doctor.getGmcReferenceNumber());
+        }
+        applyPartialUpdate(slots.get(0),
+            DoctorUpsertElasticSearchService.generateUpdatedDocument(doctor));
+      }
+    });
+  }
+
+  /**
+   * Stage connection logs onto the staged record of each doctor.
+   *
+   * @param connectionDtos ConnectionLogDtos to stage
+   */
+  public synchronized void stageConnectionLogs(List<ConnectionLogDto> connectionDtos) {
+    connectionDtos.forEach(connectionLogDto -> {
+      List<Integer> slots = store.find(connectionLogDto.getGmcId(), null);
+      if (slots.size() > 1) {
+        log.warn("Multiple doctors found for gmcID: {} while staging connectionLog records",
+            connectionLogDto.getGmcId());
+      } else if (slots.size() == 1) {
+        applyPartialUpdate(slots.get(0),
+            DoctorUpsertElasticSearchService.generatedUpdateDocForConnectionLog(connectionLogDto));
+      }
+    });
+  }
+
+  /**
+   * Stage hidden discrepancies onto the staged record of each doctor, keeping one per designated
+   * body.
+   *
+   * @param hiddenDiscrepancies Hidden Discrepancies to stage
+   */
+  public synchronized void stageHiddenDiscrepancies(List<HiddenDiscrepancy> hiddenDiscrepancies) {
+    hiddenDiscrepancies.forEach(hiddenDiscrepancy -> {
+      List<Integer> slots = store.find(hiddenDiscrepancy.getGmcId(), null);
+      if (slots.size() > 1) {
+        log.warn("Multiple doctors found for gmcID: {} while staging hidden discrepancy records,"
+            + " no hidden discrepancy records will be saved.", hiddenDiscrepancy.getGmcId());
+        return;
+      } else if (slots.isEmpty()) {
+        return;
+      }
+      MasterDoctorView masterDoctorView = store.get(slots.get(0));
+      List<HiddenDiscrepancy> hiddenDiscrepancyList = new ArrayList<>();
+      if (masterDoctorView.getHiddenDiscrepancies() != null) {
+        hiddenDiscrepancyList.addAll(masterDoctorView.getHiddenDiscrepancies());
+      }
+      boolean alreadyHidden = hiddenDiscrepancyList.stream().anyMatch(h ->
+          h.getHiddenForDesignatedBodyCode()
+              .equals(hiddenDiscrepancy.getHiddenForDesignatedBodyCode()));
+      if (alreadyHidden) {
+        log.info("gmcReferenceNumber: {} already has a hidden discrepancy for designated body: {}",
+            hiddenDiscrepancy.getGmcId(), hiddenDiscrepancy.getHiddenForDesignatedBodyCode());
+        return;
+      }
+      hiddenDiscrepancyList.add(hiddenDiscrepancy);
+      masterDoctorView.setHiddenDiscrepancies(hiddenDiscrepancyList);
+      store.put(slots.get(0), masterDoctorView);
+    });
+  }
+
+  /**
+   * Write every staged record to the masterdoctorindex, a chunk at a time.
+   *
+   * @return the number of written documents and the ids of the documents that failed
+   */
+  public synchronized BulkWriteResult flush() {
+    int size = store.size();
+    log.info("Writing {} staged masterdoctorindex records, {} of them spilled to disk in {} bytes",
+        size, store.spilled(), store.spillSize());
+    int succeeded = 0;
+    List<String> failedIds = new ArrayList<>();
+    for (int from = 0; from < size; from += flushChunkSize) {
+      List<UpdateRequest> requests = new ArrayList<>();
+      for (int slot = from; slot < Math.min(from + flushChunkSize, size); slot++) {
+        requests.add(toUpsertRequest(store.get(slot)));
+      }
+      BulkWriteResult result = bulkWriteEngine.write(requests);
+      succeeded += result.succeeded();
+      failedIds.addAll(result.failedIds());
+    }
+    return new BulkWriteResult(succeeded, failedIds);
+  }
+
+  private void applyPartialUpdate(int slot, Map<String, Object> fields) {
+    MasterDoctorView masterDoctorView = store.get(slot);
+    try {
+      objectMapper.updateValue(masterDoctorView, fields);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Could not apply an update to a staged record", e);
+    }
+    store.put(slot, masterDoctorView);
+  }
+
+  private UpdateRequest toUpsertRequest(MasterDoctorView view) {
+    MasterDoctorDocumentIds.assignId(view);
+    Map<String, Object> source = elasticsearchOperations.getElasticsearchConverter()
+        .mapObject(view);
+    // Hidden discrepancies CDC added are kept, so the staged ones are merged with them by id.
+    Object hiddenDiscrepancies = source.remove(HIDDEN_DISCREPANCIES_PARAM);
+    // The script also builds a missing document from the empty upsert, so the record is sent once.
+    return new UpdateRequest(MASTER_DOCTOR_INDEX, view.getId())
+        .script(new Script(ScriptType.INLINE, "painless", FILL_MISSING_FIELDS,
+            Map.of(STAGED_PARAM, source, HIDDEN_DISCREPANCIES_PARAM,
+                hiddenDiscrepancies == null ? List.of() : hiddenDiscrepancies)))
+        .scriptedUpsert(true)
+        .upsert(Map.of())
+        .retryOnConflict(RETRY_ON_CONFLICT);
+  }
+}
@@ -0,0 +1,243 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright 2026 Crown Copyright (NHS England)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package uk.nhs.hee.tis.revalidation.integration.sync.service;
+
+import static uk.nhs.hee.tis.revalidation.integration.config.EsConstant.Indexes.MASTER_DOCTOR_INDEX;
+import static uk.nhs.hee.tis.revalidation.integration.config.EsConstant.Indexes.SYNC_STATE_INDEX;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import javax.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.document.Document;
+import org.springframework.data.elasticsearch.core.mapping.IndexCoordinates;
+import org.springframework.data.elasticsearch.core.query.UpdateQuery;
+import org.springframework.stereotype.Service;
+import uk.nhs.hee.tis.revalidation.integration.enums.SyncPhase;
+import uk.nhs.hee.tis.revalidation.integration.enums.SyncStatus;
+import uk.nhs.hee.tis.revalidation.integration.sync.helper.SyncMetrics;
+import uk.nhs.hee.tis.revalidation.integration.sync.view.SyncState;
+
+/**
+ * Checkpoints the progress of a masterdoctorindex rebuild to a control document, so a restarted
+ * instance knows which phase the rebuild is in.
+ *
+ * <p>Record counts are collected locally and added to the document by a script at most once per
+ * checkpoint interval and at every phase change, so several instances can report progress
+ * without overwriting each other. Failing to checkpoint never fails the sync itself. The phase
+ * changes and counts are also published as {@link SyncMetrics}, with the counts of the last
+ * completed rebuild as the expected counts of the next one.
+ */
+@Slf4j
+@Service
+public class SyncStateService {
+
+  static final String STATE_ID = MASTER_DOCTOR_INDEX;
+  static final String ADD_RECORD_COUNTS_SCRIPT =
+      """
+          if (ctx._source.recordCounts == null) {
+            ctx._source.recordCounts = [:];
+          }
+          for (entry in params.counts.entrySet()) {
+            def current = ctx._source.recordCounts[entry.getKey()];
+            ctx._source.recordCounts[entry.getKey()] =
+                (current == null ? 0 : current) + entry.getValue();
+          }
+          ctx._source.updatedAt = params.updatedAt;
+          """;
+  static final String INCREMENT_RESUME_COUNT_SCRIPT =
+      """
+          def current = ctx._source.resumeCount;
+          ctx._source.resumeCount = (current == null ? 0 : current) + 1;
+          ctx._source.updatedAt = params.updatedAt;
+          """;
+  private static final String LANG = "painless";
+  private static final DateTimeFormatter ES_DATETIME_FORMATTER =
+      DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSS");
+  private static final IndexCoordinates SYNC_STATE = IndexCoordinates.of(SYNC_STATE_INDEX);
+
+  private final ElasticsearchOperations elasticsearchOperations;
+  private final SyncMetrics syncMetrics;
+  private final long checkpointIntervalMs;
+  private final Map<SyncPhase, Long> pendingRecordCounts = new EnumMap<>(SyncPhase.class);
+  private long lastCheckpointMs;
+
+  public SyncStateService(ElasticsearchOperations elasticsearchOperations, SyncMetrics syncMetrics,
+      @Value("${app.es.rebuild.checkpoint-interval-ms:10000}") long checkpointIntervalMs) {
+    this.elasticsearchOperations = elasticsearchOperations;
+    this.syncMetrics = syncMetrics;
+    this.checkpointIntervalMs = checkpointIntervalMs;
+  }
+
+  /**
+   * Get the last checkpointed state of the masterdoctorindex rebuild.
+   *
+   * @return the state, or null if no rebuild has been recorded or it could not be read
+   */
+  public SyncState getState() {
+    try {
+      return elasticsearchOperations.get(STATE_ID, SyncState.class, SYNC_STATE);
+    } catch (Exception e) {
+      log.warn("Could not read the masterdoctorindex sync state.", e);
+      return null;
+    }
+  }
+
+  /**
+   * Record the start of a new rebuild, replacing the state of any previous one.
+   *
+   * @param indexName the index being rebuilt
+   */
+  public synchronized void startSync(String indexName) {
+    pendingRecordCounts.clear();
+    SyncState previous = getState();
+    if (previous != null && previous.getStatus() == SyncStatus.COMPLETED
+        && previous.getRecordCounts() != null) {
+      Map<SyncPhase, Long> expectedRecords = new EnumMap<>(SyncPhase.class);
+      previous.getRecordCounts().forEach((phase, count) -> expectedRecords.put(
+          SyncPhase.valueOf(phase), count));
+      syncMetrics.setExpectedRecords(expectedRecords);
+    }
+    syncMetrics.startPhase(SyncPhase.TCS);
+    LocalDateTime now = LocalDateTime.now();
+    SyncState state = SyncState.builder()
+        .id(STATE_ID)
+        .indexName(indexName)
+        .phase(SyncPhase.TCS)
+        .status(SyncStatus.IN_PROGRESS)
+        .startedAt(now)
+        .phaseStartedAt(now)
+        .updatedAt(now)
+        .resumeCount(0)
+        .recordCounts(new HashMap<>())
+        .build();
+    try {
+      elasticsearchOperations.save(state, SYNC_STATE);
+      lastCheckpointMs = System.currentTimeMillis();
+    } catch (Exception e) {
+      log.warn("Could not record the start of the masterdoctorindex sync.", e);
+    }
+  }
+
+  /**
+   * Count records received in a phase, checkpointing the counts if the interval has passed.
+   *
+   * @param phase   the phase the records belong to
+   * @param records the number of records
+   */
+  public synchronized void recordProgress(SyncPhase phase, int records) {
+    if (records <= 0) {
+      return;
+    }
+    syncMetrics.recordReceived(phase, records);
+    pendingRecordCounts.merge(phase, (long) records, Long::sum);
+    if (System.currentTimeMillis() - lastCheckpointMs >= checkpointIntervalMs) {
+      checkpoint();
+    }
+  }
+
+  /**
+   * Record that the rebuild moved on to a phase. This should be called before the phase is
+   * started, so a resumed rebuild never skips it.
+   *
+   * @param phase the phase being started
+   */
+  public synchronized void enterPhase(SyncPhase phase) {
+    syncMetrics.startPhase(phase);
+    checkpoint();
+    String now = LocalDateTime.now().format(ES_DATETIME_FORMATTER);
+    update(UpdateQuery.builder(STATE_ID)
+        .withDocument(Document.from(Map.of(
+            "phase", phase.name(),
+            "phaseStartedAt", now,
+            "updatedAt", now)))
+        .build(), "phase change");
+  }
+
+  /**
+   * Record the end of the rebuild.
+   *
+   * @param succeeded whether the rebuilt index was promoted
+   */
+  public synchronized void finish(boolean succeeded) {
+    syncMetrics.endPhase();
+    checkpoint();
+    String now = LocalDateTime.now().format(ES_DATETIME_FORMATTER);
+    SyncStatus status = succeeded ? SyncStatus.COMPLETED : SyncStatus.FAILED;
+    update(UpdateQuery.builder(STATE_ID)
+        .withDocument(Document.from(Map.of(
+            "status", status.name(),
+            "completedAt", now,
+            "updatedAt", now)))
+        .build(), "end");
+  }
+
+  /**
+   * Record that the current phase of the rebuild was resumed.
+   */
+  public synchronized void recordResume() {
+    checkpoint();
+    update(UpdateQuery.builder(STATE_ID)
+        .withScript(INCREMENT_RESUME_COUNT_SCRIPT)
+        .withLang(LANG)
+        .withParams(Map.of("updatedAt", LocalDateTime.now().format(ES_DATETIME_FORMATTER)))
+        .build(), "resume");
+  }
+
+  /**
+   * Add the record counts collected since the last checkpoint to the state.
+   */
+  @PreDestroy
+  public synchronized void checkpoint() {
+    lastCheckpointMs = System.currentTimeMillis();
+    if (pendingRecordCounts.isEmpty()) {
+      return;
+    }
+    Map<String, Object> counts = new HashMap<>();
+    pendingRecordCounts.forEach((phase, count) -> counts.put(phase.name(), count));
+    boolean updated = update(UpdateQuery.builder(STATE_ID)
+        .withScript(ADD_RECORD_COUNTS_SCRIPT)
+        .withLang(LANG)
+        .withParams(Map.of(
+            "counts", counts,
+            "updatedAt", LocalDateTime.now().format(ES_DATETIME_FORMATTER)))
+        .build(), "record counts");
+    if (updated) {
+      pendingRecordCounts.clear();
+    }
+  }
+
+  private boolean update(UpdateQuery updateQuery, String description) {
+    try {
+      elasticsearchOperations.update(updateQuery, SYNC_STATE);
+      return true;
+    } catch (Exception e) {
+      log.warn("Could not checkpoint the {} of the masterdoctorindex sync.", description, e);
+      return false;
+    }
+  }
+}
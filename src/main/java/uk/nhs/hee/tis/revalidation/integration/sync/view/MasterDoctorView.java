@@ -111,4 +111,18 @@ public class MasterDoctorView {
   private LocalDateTime lastConnectionDateTime;
   @Field(type = FieldType.Nested)
   private List<HiddenDiscrepancy> hiddenDiscrepancies;
+  // Whether the doctor has notes in core, null until known, see MasterDoctorNotesService.
+  @Nullable
+  @Field(type = FieldType.Boolean)
+  private Boolean hasNotes;
+  // The CDC versions of the field groups, see CdcFieldGroup.
+  @Nullable
+  @Field(type = FieldType.Long)
+  private Long doctorCdcVersion;
+  @Nullable
+  @Field(type = FieldType.Long)
+  private Long recommendationCdcVersion;
+  @Nullable
+  @Field(type = FieldType.Long)
+  private Long connectionCdcVersion;
 }
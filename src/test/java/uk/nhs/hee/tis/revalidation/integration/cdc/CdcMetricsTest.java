@@ -0,0 +1,118 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright 2026 Crown Copyright (NHS England)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package uk.nhs.hee.tis.revalidation.integration.cdc;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.mongodb.client.model.changestream.OperationType;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import uk.nhs.hee.tis.revalidation.integration.enums.CdcFieldGroup;
+import uk.nhs.hee.tis.revalidation.integration.enums.CdcSource;
+
+class CdcMetricsTest {
+
+  private MeterRegistry meterRegistry;
+  private CdcMetrics cdcMetrics;
+
+  @BeforeEach
+  void setUp() {
+    meterRegistry = new SimpleMeterRegistry();
+    cdcMetrics = new CdcMetrics(meterRegistry);
+  }
+
+  @Test
+  void shouldRecordLagFromClusterTimeByQueueAndOperation() {
+    long clusterTime = (Instant.now().getEpochSecond() - 5) << 32 | 1;
+
+    cdcMetrics.recordHandled(CdcSource.DOCTOR, OperationType.UPDATE,
+        TimeUnit.MILLISECONDS.toNanos(20), clusterTime);
+
+    var lag = meterRegistry.get("cdc.lag").tag("queue", "DOCTOR").tag("operation", "UPDATE")
+        .timer();
+    assertEquals(1, lag.count());
+    assertTrue(lag.totalTime(TimeUnit.SECONDS) >= 4, "lag should be about five seconds");
+    assertEquals(20, meterRegistry.get("cdc.handler").tag("queue", "DOCTOR")
+        .tag("operation", "UPDATE").timer().totalTime(TimeUnit.MILLISECONDS), 0.001);
+    assertTrue(meterRegistry.get("cdc.lag.current").tag("queue", "DOCTOR").gauge().value() >= 4);
+    assertEquals(0.0,
+        meterRegistry.get("cdc.lag.current").tag("queue", "RECOMMENDATION").gauge().value());
+  }
+
+  @Test
+  void shouldRecordHandlerDurationWithoutLagWhenClusterTimeUnknown() {
+    cdcMetrics.recordHandled(CdcSource.TRAINEE_UPDATE, OperationType.UPDATE, 1000, null);
+
+    assertEquals(1, meterRegistry.get("cdc.handler").tag("queue", "TRAINEE_UPDATE")
+        .tag("operation", "UPDATE").timer().count());
+    assertEquals(0, meterRegistry.get("cdc.lag").tag("queue", "TRAINEE_UPDATE")
+        .tag("operation", "UPDATE").timer().count());
+  }
+
+  @Test
+  void shouldIgnoreOperationsWithoutTimers() {
+    cdcMetrics.recordHandled(CdcSource.DOCTOR, OperationType.DROP, 1000, 1L);
+
+    assertEquals(0, meterRegistry.get("cdc.handler").tag("queue", "DOCTOR").timers().stream()
+        .mapToLong(t -> t.count()).sum());
+  }
+
+  @Test
+  void shouldCountEventsByQueueAndOutcome() {
+    cdcMetrics.recordNoop(CdcSource.RECOMMENDATION, 2);
+    cdcMetrics.recordDiscarded(CdcSource.CONNECTION_LOG, 1);
+    cdcMetrics.recordFailed(CdcSource.CONNECTION_LOG, 3);
+
+    assertEquals(2.0, meterRegistry.get("cdc.events").tag("queue", "RECOMMENDATION")
+        .tag("outcome", "noop").counter().count());
+    assertEquals(1.0, meterRegistry.get("cdc.events").tag("queue", "CONNECTION_LOG")
+        .tag("outcome", "discarded").counter().count());
+    assertEquals(3.0, meterRegistry.get("cdc.events").tag("queue", "CONNECTION_LOG")
+        .tag("outcome", "failed").counter().count());
+  }
+
+  @Test
+  void shouldCountStaleUpdatesAsNoopForTheirQueue() {
+    cdcMetrics.recordStale(CdcFieldGroup.CONNECTION, 2);
+
+    assertEquals(2.0, meterRegistry.get("cdc.events.stale").tag("group", "CONNECTION")
+        .counter().count());
+    assertEquals(2.0, meterRegistry.get("cdc.events").tag("queue", "CONNECTION_LOG")
+        .tag("outcome", "noop").counter().count());
+  }
+
+  @Test
+  void shouldTimeLookupsAndWritesByQueue() {
+    assertEquals("found", cdcMetrics.timeLookup(CdcSource.DOCTOR, () -> "found"));
+    cdcMetrics.timeWrite(CdcSource.DOCTOR, () -> { });
+
+    assertEquals(1, meterRegistry.get("cdc.handler.stage").tag("queue", "DOCTOR")
+        .tag("stage", "lookup").timer().count());
+    assertEquals(1, meterRegistry.get("cdc.handler.stage").tag("queue", "DOCTOR")
+        .tag("stage", "write").timer().count());
+  }
+}
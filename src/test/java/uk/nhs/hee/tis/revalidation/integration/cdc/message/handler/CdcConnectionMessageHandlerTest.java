@@ -29,6 +29,7 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import uk.nhs.hee.tis.revalidation.integration.cdc.CdcMetrics;
 import uk.nhs.hee.tis.revalidation.integration.cdc.message.testutil.CdcTestDataGenerator;
 import uk.nhs.hee.tis.revalidation.integration.cdc.service.CdcConnectionService;
 
@@ -41,11 +42,15 @@ class CdcConnectionMessageHandlerTest {
   @Mock
   CdcConnectionService cdcConnectionService;
 
+  @Mock
+  CdcMetrics cdcMetrics;
+
   @Test
   void shouldHandleInserts() throws OperationNotSupportedException {
     var testMessage = CdcTestDataGenerator.getCdcConnectionLogInsertCdcDocumentDto();
     cdcConnectionMessageHandler.handleMessage(testMessage);
 
-    verify(cdcConnectionService).upsertEntity(testMessage.getFullDocument());
+    verify(cdcConnectionService).upsertEntity(testMessage.getFullDocument(),
+        testMessage.getClusterTime());
   }
 }
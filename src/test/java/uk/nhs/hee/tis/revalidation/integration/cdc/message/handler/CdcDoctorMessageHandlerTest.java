@@ -21,8 +21,15 @@
 
 package uk.nhs.hee.tis.revalidation.integration.cdc.message.handler;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.mongodb.client.model.changestream.OperationType;
 
 import java.util.Arrays;
 import java.util.List;
@@ -34,10 +41,12 @@ import org.junit.jupiter.params.provider.MethodSource;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import uk.nhs.hee.tis.revalidation.integration.cdc.CdcMetrics;
 import uk.nhs.hee.tis.revalidation.integration.cdc.dto.CdcDocumentDto;
 import uk.nhs.hee.tis.revalidation.integration.cdc.message.testutil.CdcTestDataGenerator;
 import uk.nhs.hee.tis.revalidation.integration.cdc.service.CdcDoctorService;
 import uk.nhs.hee.tis.revalidation.integration.entity.DoctorsForDB;
+import uk.nhs.hee.tis.revalidation.integration.enums.CdcSource;
 
 @ExtendWith(MockitoExtension.class)
 class CdcDoctorMessageHandlerTest {
@@ -48,11 +57,15 @@ class CdcDoctorMessageHandlerTest {
   @Mock
   CdcDoctorService cdcDoctorService;
 
+  @Mock
+  CdcMetrics cdcMetrics;
+
   @Test
   void shouldRejectOtherDoctorOperationMessageFromSqsQueueToHandler() {
     var testMessage = CdcTestDataGenerator.getCdcDoctorUnsupportedCdcDocumentDto();
     assertThrows(OperationNotSupportedException.class,
         () -> cdcDoctorMessageHandler.handleMessage(testMessage));
+    verify(cdcMetrics).recordDiscarded(CdcSource.DOCTOR, 1);
   }
 
   private static List<CdcDocumentDto<DoctorsForDB>> cdcDtos() {
@@ -68,6 +81,40 @@ class CdcDoctorMessageHandlerTest {
     var testMessage = CdcTestDataGenerator.getCdcDoctorInsertCdcDocumentDto();
     cdcDoctorMessageHandler.handleMessage(testMessage);
 
-    verify(cdcDoctorService).upsertEntity(testMessage.getFullDocument());
+    verify(cdcDoctorService).upsertEntity(testMessage.getFullDocument(),
+        testMessage.getClusterTime());
+  }
+
+  @Test
+  void shouldRecordFailedMessage() {
+    var testMessage = CdcTestDataGenerator.getCdcDoctorInsertCdcDocumentDto();
+    doThrow(new IllegalStateException()).when(cdcDoctorService)
+        .upsertEntity(testMessage.getFullDocument(), testMessage.getClusterTime());
+
+    assertThrows(IllegalStateException.class,
+        () -> cdcDoctorMessageHandler.handleMessage(testMessage));
+    verify(cdcMetrics).recordFailed(CdcSource.DOCTOR, 1);
+  }
+
+  @Test
+  void shouldApplyUpsertsAroundOtherOperationsAndReturnFailedMessages() {
+    var update = CdcTestDataGenerator.getCdcDoctorUpdateCdcDocumentDto();
+    update.setClusterTime(1L);
+    var unsupported = CdcTestDataGenerator.getCdcDoctorUnsupportedCdcDocumentDto();
+    var otherDoctor = DoctorsForDB.builder().gmcReferenceNumber("other").build();
+    var insert = new CdcDocumentDto<>(OperationType.INSERT.getValue(), otherDoctor,
+        update.getDocumentKey(), 2L);
+    when(cdcDoctorService.upsertEntities(List.of(update.getFullDocument()), List.of(1L)))
+        .thenReturn(List.of());
+    when(cdcDoctorService.upsertEntities(List.of(otherDoctor), List.of(2L)))
+        .thenReturn(List.of(otherDoctor));
+
+    var failed = cdcDoctorMessageHandler.handleMessages(List.of(update, unsupported, insert));
+
+    assertEquals(List.of(insert), failed);
+    verify(cdcMetrics).recordHandled(eq(CdcSource.DOCTOR), eq(OperationType.UPDATE), anyLong(),
+        eq(1L));
+    verify(cdcMetrics).recordDiscarded(CdcSource.DOCTOR, 1);
+    verify(cdcMetrics).recordFailed(CdcSource.DOCTOR, 1);
   }
 }
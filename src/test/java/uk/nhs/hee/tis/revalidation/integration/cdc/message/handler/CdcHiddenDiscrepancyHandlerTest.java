@@ -21,15 +21,22 @@
 
 package uk.nhs.hee.tis.revalidation.integration.cdc.message.handler;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 import static uk.nhs.hee.tis.revalidation.integration.cdc.message.testutil.CdcTestDataGenerator.DOCUMENT_KEY;
 
+import java.util.List;
 import javax.naming.OperationNotSupportedException;
+import org.elasticsearch.ResourceNotFoundException;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import uk.nhs.hee.tis.revalidation.integration.cdc.CdcMetrics;
 import uk.nhs.hee.tis.revalidation.integration.cdc.message.testutil.CdcTestDataGenerator;
 import uk.nhs.hee.tis.revalidation.integration.cdc.service.CdcHiddenDiscrepancyService;
 
@@ -42,13 +49,17 @@ class CdcHiddenDiscrepancyHandlerTest {
   @Mock
   CdcHiddenDiscrepancyService cdcHiddenDiscrepancyService;
 
+  @Mock
+  CdcMetrics cdcMetrics;
+
   @Test
   void shouldHandleInserts() throws OperationNotSupportedException {
     var testMessage = CdcTestDataGenerator
         .getCdcHiddenDiscrepancyInsertCdcDocumentDto(DOCUMENT_KEY);
     cdcHiddenDiscrepancyMessageHandler.handleMessage(testMessage);
 
-    verify(cdcHiddenDiscrepancyService).upsertEntity(testMessage.getFullDocument());
+    verify(cdcHiddenDiscrepancyService).upsertEntity(testMessage.getFullDocument(),
+        testMessage.getClusterTime());
   }
 
   @Test
@@ -58,4 +69,18 @@ class CdcHiddenDiscrepancyHandlerTest {
 
     verify(cdcHiddenDiscrepancyService).deleteEntity(testMessage.getDocumentKey().getId());
   }
+
+  @Test
+  void shouldDropDeleteOfMissingHiddenDiscrepancyButReturnOtherFailures() {
+    var missing = CdcTestDataGenerator.getCdcHiddenDiscrepancyDeleteCdcDocumentDto();
+    var failing = CdcTestDataGenerator.getCdcHiddenDiscrepancyInsertCdcDocumentDto(DOCUMENT_KEY);
+    doThrow(new ResourceNotFoundException("expected")).when(cdcHiddenDiscrepancyService)
+        .deleteEntity(missing.getDocumentKey().getId());
+    when(cdcHiddenDiscrepancyService.upsertEntities(any(), any()))
+        .thenReturn(List.of(failing.getFullDocument()));
+
+    var failed = cdcHiddenDiscrepancyMessageHandler.handleMessages(List.of(missing, failing));
+
+    assertEquals(List.of(failing), failed);
+  }
 }
@@ -30,6 +30,7 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import uk.nhs.hee.tis.revalidation.integration.cdc.CdcMetrics;
 import uk.nhs.hee.tis.revalidation.integration.cdc.message.testutil.CdcTestDataGenerator;
 import uk.nhs.hee.tis.revalidation.integration.cdc.service.CdcRecommendationService;
 
@@ -42,6 +43,9 @@ class CdcRecommendationMessageHandlerTest {
   @Mock
   CdcRecommendationService cdcRecommendationService;
 
+  @Mock
+  CdcMetrics cdcMetrics;
+
   @Test
   void shouldRejectOtherRecommendationOperationMessageFromSqsQueueToHandler()
       throws OperationNotSupportedException {
@@ -56,7 +60,8 @@ class CdcRecommendationMessageHandlerTest {
     var testMessage = CdcTestDataGenerator.getCdcRecommendationInsertCdcDocumentDto();
     cdcRecommendationMessageHandler.handleMessage(testMessage);
 
-    verify(cdcRecommendationService).upsertEntity(testMessage.getFullDocument());
+    verify(cdcRecommendationService).upsertEntity(testMessage.getFullDocument(),
+        testMessage.getClusterTime());
   }
 
   @Test
@@ -64,6 +69,7 @@ class CdcRecommendationMessageHandlerTest {
     var testMessage = CdcTestDataGenerator.getCdcRecommendationReplaceCdcDocumentDto();
     cdcRecommendationMessageHandler.handleMessage(testMessage);
 
-    verify(cdcRecommendationService).upsertEntity(testMessage.getFullDocument());
+    verify(cdcRecommendationService).upsertEntity(testMessage.getFullDocument(),
+        testMessage.getClusterTime());
   }
 }
@@ -21,15 +21,25 @@
 
 package uk.nhs.hee.tis.revalidation.integration.cdc.message.handler;
 
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.verify;
 
+import com.mongodb.client.model.changestream.OperationType;
+
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import uk.nhs.hee.tis.revalidation.integration.cdc.CdcMetrics;
 import uk.nhs.hee.tis.revalidation.integration.cdc.dto.ConnectionInfoDto;
 import uk.nhs.hee.tis.revalidation.integration.cdc.service.CdcTraineeUpdateService;
+import uk.nhs.hee.tis.revalidation.integration.enums.CdcSource;
 
 @ExtendWith(MockitoExtension.class)
 class CdcTraineeUpdateMessageHandlerTest {
@@ -40,13 +50,26 @@ class CdcTraineeUpdateMessageHandlerTest {
   @Mock
   CdcTraineeUpdateService cdcTraineeUpdateService;
 
+  @Mock
+  CdcMetrics cdcMetrics;
+
   @Test
   void shouldUpdateTraineeInfo() {
     final var message = ConnectionInfoDto.builder().build();
 
     cdcTraineeUpdateMessageHandler.handleMessage(message);
     verify(cdcTraineeUpdateService).upsertEntity(message);
+    verify(cdcMetrics).recordHandled(eq(CdcSource.TRAINEE_UPDATE), eq(OperationType.UPDATE),
+        anyLong(), isNull());
   }
 
+  @Test
+  void shouldRecordFailedTraineeUpdate() {
+    final var message = ConnectionInfoDto.builder().build();
+    doThrow(new IllegalStateException()).when(cdcTraineeUpdateService).upsertEntity(any());
 
+    assertThrows(IllegalStateException.class,
+        () -> cdcTraineeUpdateMessageHandler.handleMessage(message));
+    verify(cdcMetrics).recordFailed(CdcSource.TRAINEE_UPDATE, 1);
+  }
 }
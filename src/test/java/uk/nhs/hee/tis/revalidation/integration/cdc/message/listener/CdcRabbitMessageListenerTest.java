@@ -1,18 +1,31 @@
 package uk.nhs.hee.tis.revalidation.integration.cdc.message.listener;
 
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.amqp.AmqpRejectAndDontRequeueException;
+import org.springframework.util.concurrent.ListenableFuture;
+import uk.nhs.hee.tis.revalidation.integration.cdc.CdcMetrics;
 import uk.nhs.hee.tis.revalidation.integration.cdc.dto.ConnectionInfoDto;
+import uk.nhs.hee.tis.revalidation.integration.cdc.dto.TraineeNotesUpdateDto;
 import uk.nhs.hee.tis.revalidation.integration.cdc.message.handler.CdcTraineeUpdateMessageHandler;
 import uk.nhs.hee.tis.revalidation.integration.cdc.message.testutil.CdcTestDataGenerator;
+import uk.nhs.hee.tis.revalidation.integration.enums.CdcSource;
+import uk.nhs.hee.tis.revalidation.integration.message.DoctorLaneExecutor;
+import uk.nhs.hee.tis.revalidation.integration.sync.service.MasterDoctorNotesService;
 
 @ExtendWith(MockitoExtension.class)
 class CdcRabbitMessageListenerTest {
@@ -23,22 +36,71 @@ class CdcRabbitMessageListenerTest {
   @Mock
   CdcTraineeUpdateMessageHandler cdcTraineeUpdateHandler;
 
+  @Spy
+  DoctorLaneExecutor doctorLaneExecutor = new DoctorLaneExecutor(1);
+
+  @Mock
+  CdcMetrics cdcMetrics;
+
+  @Mock
+  MasterDoctorNotesService notesService;
+
   private ConnectionInfoDto connectionInfoDto;
 
   @Test
-  void shouldReceiveTraineeUpdates() {
+  void shouldReceiveTraineeUpdates() throws Exception {
     connectionInfoDto = CdcTestDataGenerator.getConnectionInfo();
-    cdcRabbitMessageListener.getTraineeUpdateMessage(connectionInfoDto);
+    cdcRabbitMessageListener.getTraineeUpdateMessage(connectionInfoDto)
+        .get(5, TimeUnit.SECONDS);
     verify(cdcTraineeUpdateHandler).handleMessage(connectionInfoDto);
   }
 
+  @Test
+  void shouldFailFutureWhenTraineeUpdateFails() {
+    connectionInfoDto = CdcTestDataGenerator.getConnectionInfo();
+    IllegalStateException failure = new IllegalStateException("expected");
+    doThrow(failure).when(cdcTraineeUpdateHandler).handleMessage(connectionInfoDto);
+
+    ListenableFuture<Void> result =
+        cdcRabbitMessageListener.getTraineeUpdateMessage(connectionInfoDto);
+
+    ExecutionException exception = assertThrows(ExecutionException.class,
+        () -> result.get(5, TimeUnit.SECONDS));
+    assertSame(failure, exception.getCause());
+  }
+
   @Test
   void shouldExceptionWhenTisPersonIdIsNull() {
     connectionInfoDto = ConnectionInfoDto.builder().build();
-    Exception exception = assertThrows(AmqpRejectAndDontRequeueException.class, () ->
-        cdcRabbitMessageListener.getTraineeUpdateMessage(connectionInfoDto));
+    ListenableFuture<Void> result =
+        cdcRabbitMessageListener.getTraineeUpdateMessage(connectionInfoDto);
 
+    Throwable exception = assertThrows(ExecutionException.class, result::get).getCause();
+    assertTrue(exception instanceof AmqpRejectAndDontRequeueException);
     String expectedMessage = "Received update message from TIS with null tis personId";
     assertTrue(exception.getMessage().contains(expectedMessage));
+    verify(cdcMetrics).recordDiscarded(CdcSource.TRAINEE_UPDATE, 1);
+  }
+
+  @Test
+  void shouldUpdateNotesFlagFromNotesUpdates() throws Exception {
+    TraineeNotesUpdateDto message = TraineeNotesUpdateDto.builder()
+        .gmcReferenceNumber("1234567").hasNotes(true).build();
+
+    cdcRabbitMessageListener.getTraineeNotesUpdateMessage(message).get(5, TimeUnit.SECONDS);
+
+    verify(notesService).updateHasNotes(Map.of("1234567", true));
+  }
+
+  @Test
+  void shouldExceptionWhenNotesUpdateHasNoGmcId() {
+    TraineeNotesUpdateDto message = TraineeNotesUpdateDto.builder().hasNotes(true).build();
+
+    ListenableFuture<Void> result = cdcRabbitMessageListener.getTraineeNotesUpdateMessage(message);
+
+    assertTrue(assertThrows(ExecutionException.class, result::get).getCause()
+        instanceof AmqpRejectAndDontRequeueException);
+    verify(cdcMetrics).recordDiscarded(CdcSource.TRAINEE_NOTES, 1);
+    verifyNoInteractions(notesService);
   }
 }
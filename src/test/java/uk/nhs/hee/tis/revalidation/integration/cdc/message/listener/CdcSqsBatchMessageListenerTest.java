@@ -0,0 +1,120 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright 2026 Crown Copyright (NHS England)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package uk.nhs.hee.tis.revalidation.integration.cdc.message.listener;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static uk.nhs.hee.tis.revalidation.integration.cdc.message.testutil.CdcTestDataGenerator.CDC_CONNECTION_LOG_EVENT_JSON;
+
+import com.amazonaws.services.sqs.AmazonSQSAsync;
+import com.amazonaws.services.sqs.model.DeleteMessageBatchRequestEntry;
+import com.amazonaws.services.sqs.model.DeleteMessageBatchResult;
+import com.amazonaws.services.sqs.model.Message;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import uk.nhs.hee.tis.revalidation.integration.cdc.message.handler.CdcConnectionMessageHandler;
+import uk.nhs.hee.tis.revalidation.integration.cdc.message.handler.CdcDoctorMessageHandler;
+import uk.nhs.hee.tis.revalidation.integration.cdc.message.handler.CdcHiddenDiscrepancyMessageHandler;
+import uk.nhs.hee.tis.revalidation.integration.cdc.message.handler.CdcRecommendationMessageHandler;
+import uk.nhs.hee.tis.revalidation.integration.cdc.message.listener.CdcSqsBatchMessageListener.CdcQueue;
+import uk.nhs.hee.tis.revalidation.integration.cdc.message.util.CdcMessageReader;
+import uk.nhs.hee.tis.revalidation.integration.entity.ConnectionLog;
+import uk.nhs.hee.tis.revalidation.integration.message.DoctorLaneExecutor;
+
+@ExtendWith(MockitoExtension.class)
+class CdcSqsBatchMessageListenerTest {
+
+  private static final String QUEUE_URL = "http://localhost/connectionlog";
+
+  @Mock
+  AmazonSQSAsync amazonSqs;
+
+  @Mock
+  CdcRecommendationMessageHandler cdcRecommendationMessageHandler;
+
+  @Mock
+  CdcDoctorMessageHandler cdcDoctorMessageHandler;
+
+  @Mock
+  CdcConnectionMessageHandler cdcConnectionMessageHandler;
+
+  @Mock
+  CdcHiddenDiscrepancyMessageHandler cdcHiddenDiscrepancyMessageHandler;
+
+  @Captor
+  ArgumentCaptor<List<DeleteMessageBatchRequestEntry>> deleteEntriesCaptor;
+
+  private CdcSqsBatchMessageListener listener;
+  private CdcQueue<ConnectionLog> queue;
+
+  @BeforeEach
+  void setUp() {
+    listener = new CdcSqsBatchMessageListener(amazonSqs, new ObjectMapper(),
+        new DoctorLaneExecutor(1), cdcRecommendationMessageHandler, cdcDoctorMessageHandler,
+        cdcConnectionMessageHandler, cdcHiddenDiscrepancyMessageHandler,
+        "http://localhost/recommendation", "http://localhost/doctor", QUEUE_URL,
+        "http://localhost/hiddendiscrepancy", 1, 1);
+    queue = new CdcQueue<>(QUEUE_URL, CdcMessageReader.of(new ObjectMapper(), ConnectionLog.class),
+        cdcConnectionMessageHandler, ConnectionLog::getGmcId);
+  }
+
+  @Test
+  void shouldDeleteOnlyMessagesWhoseChangeWasWritten() {
+    Message written = new Message().withBody(CDC_CONNECTION_LOG_EVENT_JSON)
+        .withReceiptHandle("written");
+    Message failed = new Message().withBody(CDC_CONNECTION_LOG_EVENT_JSON)
+        .withReceiptHandle("failed");
+    when(cdcConnectionMessageHandler.handleMessages(anyList()))
+        .thenAnswer(invocation -> List.of(invocation.<List<?>>getArgument(0).get(1)));
+    when(amazonSqs.deleteMessageBatch(eq(QUEUE_URL), any()))
+        .thenReturn(new DeleteMessageBatchResult());
+
+    listener.handleBatch(queue, QUEUE_URL, List.of(written, failed));
+
+    verify(amazonSqs).deleteMessageBatch(eq(QUEUE_URL), deleteEntriesCaptor.capture());
+    List<DeleteMessageBatchRequestEntry> entries = deleteEntriesCaptor.getValue();
+    assertEquals(1, entries.size());
+    assertEquals("written", entries.get(0).getReceiptHandle());
+  }
+
+  @Test
+  void shouldNotDeleteUnreadableMessages() {
+    Message unreadable = new Message().withBody("not json").withReceiptHandle("unreadable");
+
+    listener.handleBatch(queue, QUEUE_URL, List.of(unreadable));
+
+    verify(amazonSqs, never()).deleteMessageBatch(any(), any());
+  }
+}
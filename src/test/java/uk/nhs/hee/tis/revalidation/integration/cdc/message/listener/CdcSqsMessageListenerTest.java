@@ -22,6 +22,13 @@
 package uk.nhs.hee.tis.revalidation.integration.cdc.message.listener;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.verify;
 import static uk.nhs.hee.tis.revalidation.integration.cdc.message.testutil.CdcTestDataGenerator.CDC_CONNECTION_LOG_EVENT_JSON;
 import static uk.nhs.hee.tis.revalidation.integration.cdc.message.testutil.CdcTestDataGenerator.CDC_DOCDB_EVENT_JSON;
@@ -32,7 +39,10 @@ import static uk.nhs.hee.tis.revalidation.integration.cdc.message.testutil.CdcTe
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.mongodb.client.model.changestream.OperationType;
+import io.awspring.cloud.messaging.listener.Acknowledgment;
 import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import javax.naming.OperationNotSupportedException;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -48,14 +58,17 @@ import uk.nhs.hee.tis.revalidation.integration.cdc.message.handler.CdcConnection
 import uk.nhs.hee.tis.revalidation.integration.cdc.message.handler.CdcDoctorMessageHandler;
 import uk.nhs.hee.tis.revalidation.integration.cdc.message.handler.CdcHiddenDiscrepancyMessageHandler;
 import uk.nhs.hee.tis.revalidation.integration.cdc.message.handler.CdcRecommendationMessageHandler;
+import uk.nhs.hee.tis.revalidation.integration.cdc.message.util.CdcMessageReader;
 import uk.nhs.hee.tis.revalidation.integration.entity.ConnectionLog;
 import uk.nhs.hee.tis.revalidation.integration.entity.DoctorsForDB;
 import uk.nhs.hee.tis.revalidation.integration.entity.Recommendation;
+import uk.nhs.hee.tis.revalidation.integration.message.DoctorLaneExecutor;
 
 @ExtendWith(MockitoExtension.class)
 class CdcSqsMessageListenerTest {
 
   private static final String GMC_ID = "1234567";
+  private static final long TIMEOUT_MS = 5000;
 
   @InjectMocks
   CdcSqsMessageListener cdcSqsMessageListener;
@@ -75,6 +88,12 @@ class CdcSqsMessageListenerTest {
   @Spy
   ObjectMapper objectMapper;
 
+  @Spy
+  DoctorLaneExecutor doctorLaneExecutor = new DoctorLaneExecutor(1);
+
+  @Mock
+  Acknowledgment acknowledgment;
+
   @Captor
   ArgumentCaptor<String> messageCaptor;
 
@@ -94,9 +113,10 @@ class CdcSqsMessageListenerTest {
   void shouldPassDoctorMessageFromSqsQueueToHandler()
       throws OperationNotSupportedException, IOException {
 
-    cdcSqsMessageListener.getDoctorMessage(CDC_DOCDB_EVENT_JSON);
+    cdcSqsMessageListener.getDoctorMessage(CDC_DOCDB_EVENT_JSON, acknowledgment);
 
-    verify(cdcDoctorMessageHandler).handleMessage(doctorMessageCaptor.capture());
+    verify(cdcDoctorMessageHandler, timeout(TIMEOUT_MS))
+        .handleMessage(doctorMessageCaptor.capture());
 
     var result = doctorMessageCaptor.getValue();
     assertEquals(GMC_ID, result.getFullDocument().getGmcReferenceNumber());
@@ -107,9 +127,10 @@ class CdcSqsMessageListenerTest {
   void shouldPassRecommendationInsertMessageFromSqsQueueToHandler()
       throws OperationNotSupportedException, IOException {
 
-    cdcSqsMessageListener.getRecommendationMessage(CDC_RECOMMENDATION_EVENT_JSON);
+    cdcSqsMessageListener.getRecommendationMessage(CDC_RECOMMENDATION_EVENT_JSON, acknowledgment);
 
-    verify(cdcRecommendationMessageHandler).handleMessage(recommendationMessageCaptor.capture());
+    verify(cdcRecommendationMessageHandler, timeout(TIMEOUT_MS))
+        .handleMessage(recommendationMessageCaptor.capture());
 
     var result = recommendationMessageCaptor.getValue();
     assertEquals(GMC_ID, result.getFullDocument().getGmcNumber());
@@ -120,9 +141,10 @@ class CdcSqsMessageListenerTest {
   void shouldPassConnectionLogMessagesFromSqsQueueToHandler()
       throws OperationNotSupportedException, IOException {
 
-    cdcSqsMessageListener.getConnectionMessage(CDC_CONNECTION_LOG_EVENT_JSON);
+    cdcSqsMessageListener.getConnectionMessage(CDC_CONNECTION_LOG_EVENT_JSON, acknowledgment);
 
-    verify(cdcConnectionMessageHandler).handleMessage(connectionMessageCaptor.capture());
+    verify(cdcConnectionMessageHandler, timeout(TIMEOUT_MS))
+        .handleMessage(connectionMessageCaptor.capture());
 
     var result = connectionMessageCaptor.getValue();
     assertEquals(GMC_ID, result.getFullDocument().getGmcId());
@@ -133,9 +155,10 @@ class CdcSqsMessageListenerTest {
   void shouldPassHiddenDiscrepancyInsertMessageFromSqsQueueToHandlerWithObjectId()
       throws OperationNotSupportedException, IOException {
 
-    cdcSqsMessageListener.getHiddenDiscrepancyMessage(CDC_HIDDEN_DISCREPANCY_INSERT_EVENT);
+    cdcSqsMessageListener.getHiddenDiscrepancyMessage(CDC_HIDDEN_DISCREPANCY_INSERT_EVENT,
+        acknowledgment);
 
-    verify(cdcHiddenDiscrepancyMessageHandler)
+    verify(cdcHiddenDiscrepancyMessageHandler, timeout(TIMEOUT_MS))
         .handleMessage(hiddenDiscrepancyMessageCaptor.capture());
 
     var result = hiddenDiscrepancyMessageCaptor.getValue();
@@ -147,13 +170,78 @@ class CdcSqsMessageListenerTest {
   @Test
   void shouldPassHiddenDiscrepancyDeleteMessageFromSqsQueueToHandlerWithObjectId()
       throws OperationNotSupportedException, IOException {
-    cdcSqsMessageListener.getHiddenDiscrepancyMessage(CDC_HIDDEN_DISCREPANCY_DELETE_EVENT);
+    cdcSqsMessageListener.getHiddenDiscrepancyMessage(CDC_HIDDEN_DISCREPANCY_DELETE_EVENT,
+        acknowledgment);
 
-    verify(cdcHiddenDiscrepancyMessageHandler)
+    verify(cdcHiddenDiscrepancyMessageHandler, timeout(TIMEOUT_MS))
         .handleMessage(hiddenDiscrepancyMessageCaptor.capture());
 
     var result = hiddenDiscrepancyMessageCaptor.getValue();
     assertEquals(DOCUMENT_KEY.getId(), result.getDocumentKey().getId());
     assertEquals(OperationType.DELETE.getValue(), result.getOperationType());
   }
+
+  @Test
+  void shouldDeleteMessageOnceItsChangeIsHandled() throws IOException {
+    cdcSqsMessageListener.getDoctorMessage(CDC_DOCDB_EVENT_JSON, acknowledgment);
+
+    verify(acknowledgment, timeout(TIMEOUT_MS)).acknowledge();
+  }
+
+  @Test
+  void shouldLeaveMessageWhoseChangeFailedToBeReceivedAgain()
+      throws OperationNotSupportedException, IOException {
+    CountDownLatch failed = new CountDownLatch(1);
+    doAnswer(invocation -> {
+      failed.countDown();
+      throw new IllegalStateException("expected");
+    }).when(cdcDoctorMessageHandler).handleMessage(any());
+
+    cdcSqsMessageListener.getDoctorMessage(CDC_DOCDB_EVENT_JSON, acknowledgment);
+
+    assertTrue(awaitQuietly(failed));
+    doctorLaneExecutor.awaitDrained();
+    verify(acknowledgment, never()).acknowledge();
+  }
+
+  @Test
+  void shouldDeleteMessageWhoseChangeIsNotSupported()
+      throws OperationNotSupportedException, IOException {
+    doThrow(new OperationNotSupportedException("unsupported"))
+        .when(cdcRecommendationMessageHandler).handleMessage(any());
+
+    cdcSqsMessageListener.getRecommendationMessage(CDC_RECOMMENDATION_EVENT_JSON, acknowledgment);
+
+    verify(acknowledgment, timeout(TIMEOUT_MS)).acknowledge();
+  }
+
+  @Test
+  void shouldDropHiddenDiscrepancyThatCannotBeApplied()
+      throws OperationNotSupportedException {
+    doThrow(new IllegalStateException("expected"))
+        .when(cdcHiddenDiscrepancyMessageHandler).handleMessage(any());
+
+    cdcSqsMessageListener.getHiddenDiscrepancyMessage(CDC_HIDDEN_DISCREPANCY_DELETE_EVENT,
+        acknowledgment);
+
+    verify(acknowledgment, timeout(TIMEOUT_MS)).acknowledge();
+  }
+
+  @Test
+  void shouldNotKeyDeletesByDocumentId() throws IOException {
+    CdcDocumentDto<CdcHiddenDiscrepancyDto> delete =
+        CdcMessageReader.of(objectMapper, CdcHiddenDiscrepancyDto.class)
+            .read(CDC_HIDDEN_DISCREPANCY_DELETE_EVENT);
+
+    assertNull(CdcSqsMessageListener.doctorKey(delete, CdcHiddenDiscrepancyDto::getGmcId));
+  }
+
+  private static boolean awaitQuietly(CountDownLatch latch) {
+    try {
+      return latch.await(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
+    }
+  }
 }
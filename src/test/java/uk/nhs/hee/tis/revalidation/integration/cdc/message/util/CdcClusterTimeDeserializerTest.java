@@ -0,0 +1,88 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright 2026 Crown Copyright (NHS England)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package uk.nhs.hee.tis.revalidation.integration.cdc.message.util;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.core.Is.is;
+import static uk.nhs.hee.tis.revalidation.integration.cdc.message.testutil.CdcTestDataGenerator.CDC_DOCDB_EVENT_JSON;
+import static uk.nhs.hee.tis.revalidation.integration.cdc.message.testutil.CdcTestDataGenerator.CDC_DOC_JSON;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import uk.nhs.hee.tis.revalidation.integration.RevalidationIntegrationApplication;
+import uk.nhs.hee.tis.revalidation.integration.cdc.dto.CdcDocumentDto;
+import uk.nhs.hee.tis.revalidation.integration.entity.DoctorsForDB;
+
+class CdcClusterTimeDeserializerTest {
+
+  private ObjectMapper mapper;
+
+  @BeforeEach
+  void setup() {
+    this.mapper = new RevalidationIntegrationApplication().mapper();
+  }
+
+  @Test
+  void shouldDeserializeTimestampString() throws JsonProcessingException {
+    CdcDocumentDto<DoctorsForDB> document = read(CDC_DOC_JSON);
+
+    assertThat(document.getClusterTime(), is(CdcClusterTimeDeserializer.toLong(1650067206, 448)));
+  }
+
+  @Test
+  void shouldDeserializeExtendedJsonTimestamp() throws JsonProcessingException {
+    CdcDocumentDto<DoctorsForDB> document = read(CDC_DOCDB_EVENT_JSON);
+
+    assertThat(document.getClusterTime(), is(CdcClusterTimeDeserializer.toLong(1746481690, 1)));
+  }
+
+  @Test
+  void shouldDeserializeNumber() throws JsonProcessingException {
+    CdcDocumentDto<DoctorsForDB> document = read("{\"clusterTime\": 42}");
+
+    assertThat(document.getClusterTime(), is(42L));
+  }
+
+  @Test
+  void shouldIgnoreUnrecognisedClusterTime() throws JsonProcessingException {
+    CdcDocumentDto<DoctorsForDB> document = read("{\"clusterTime\": \"yesterday\"}");
+
+    assertThat(document.getClusterTime(), nullValue());
+  }
+
+  @Test
+  void shouldOrderByTimeThenOrdinal() {
+    assertThat(CdcClusterTimeDeserializer.toLong(1, 2) < CdcClusterTimeDeserializer.toLong(1, 3),
+        is(true));
+    assertThat(CdcClusterTimeDeserializer.toLong(1, 0xFFFFFFFFL)
+        < CdcClusterTimeDeserializer.toLong(2, 0), is(true));
+  }
+
+  private CdcDocumentDto<DoctorsForDB> read(String json) throws JsonProcessingException {
+    return mapper.readValue(json, new TypeReference<CdcDocumentDto<DoctorsForDB>>() {
+    });
+  }
+}
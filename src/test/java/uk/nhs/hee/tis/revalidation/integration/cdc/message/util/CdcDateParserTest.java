@@ -0,0 +1,140 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright 2026 Crown Copyright (NHS England)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package uk.nhs.hee.tis.revalidation.integration.cdc.message.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+class CdcDateParserTest {
+
+  private final ObjectMapper mapper = new ObjectMapper();
+
+  @Test
+  void shouldParseDateAndDateOfDateTime() {
+    assertEquals(LocalDate.of(2015, 10, 7), parseDate("2015-10-07"));
+    assertEquals(LocalDate.of(2017, 10, 19), parseDate("2017-10-19 13:14:15"));
+    assertEquals(LocalDate.of(2024, 2, 29), parseDate("2024-02-29"));
+  }
+
+  @ParameterizedTest
+  @ValueSource(strings = {"2023-02-29", "2015-13-07", "2015-00-07", "2015-1-07", "0000-01-01",
+      "2017-10-19 24:00:00", "2017-10-19T00:00:00", "2017-10-19Z", "abcdefghij", ""})
+  void shouldLeaveOtherDatesToFormatter(String text) {
+    assertNull(parseDate(text));
+  }
+
+  @Test
+  void shouldParseMillisDateTime() {
+    assertEquals(LocalDateTime.of(2025, 10, 10, 1, 2, 3, 456_000_000),
+        parseMillisDateTime("2025-10-10T01:02:03.456"));
+  }
+
+  @ParameterizedTest
+  @ValueSource(strings = {"2025-10-10T00:00:00", "2025-10-10T00:00:00.00Z",
+      "2025-10-10T00:00:00.000Z", "2025-10-10 00:00:00.000", "2025-02-30T00:00:00.000"})
+  void shouldLeaveOtherMillisDateTimesToFormatter(String text) {
+    assertNull(parseMillisDateTime(text));
+  }
+
+  @Test
+  void shouldParseLocalPartOfIsoDateTime() {
+    assertEquals(LocalDateTime.of(2025, 4, 29, 0, 0, 54, 956_000_000),
+        parseIsoDateTime("2025-04-29T00:00:54.956Z"));
+    assertEquals(LocalDateTime.of(2025, 4, 29, 23, 59),
+        parseIsoDateTime("2025-04-29T23:59"));
+    assertEquals(LocalDateTime.of(2025, 4, 29, 23, 59, 59, 123_456_789),
+        parseIsoDateTime("2025-04-29T23:59:59.123456789+01:00"));
+  }
+
+  @ParameterizedTest
+  @ValueSource(strings = {"2025-04-29T23:59:60Z", "2025-04-29T24:00:00Z",
+      "2025-04-29T23:59:59.1234567891Z", "2024-02-29T00:00:00+0100",
+      "2024-02-29T00:00:00+01:00[Europe/London]", "2025-02-29T00:00:00Z"})
+  void shouldLeaveOtherIsoDateTimesToFormatter(String text) {
+    assertNull(parseIsoDateTime(text));
+  }
+
+  @Test
+  void shouldReadDateFieldAndConsumeObject() throws IOException {
+    JsonParser p = parser(
+        "[{\"x\": 1, \"$date\": \"2024-02-29T00:00:00Z\", \"y\": {\"z\": [1]}}, 2]");
+
+    assertEquals(LocalDateTime.of(2024, 2, 29, 0, 0), CdcDateParser.readDateField(p));
+    assertEquals(JsonToken.END_OBJECT, p.currentToken());
+    assertEquals(JsonToken.VALUE_NUMBER_INT, p.nextToken());
+  }
+
+  @Test
+  void shouldParseOtherLayoutOfDateFieldWithFormatter() throws IOException {
+    JsonParser p = parser("[{\"$date\": \"2024-02-29T00:00:00+01:00[Europe/London]\"}]");
+
+    assertEquals(LocalDateTime.of(2024, 2, 29, 0, 0), CdcDateParser.readDateField(p));
+    assertEquals(JsonToken.END_OBJECT, p.currentToken());
+  }
+
+  @Test
+  void shouldThrowWhenDateFieldIsNotIsoDateTime() throws IOException {
+    JsonParser p = parser("[{\"$date\": 1700000000000}]");
+
+    assertThrows(DateTimeParseException.class, () -> CdcDateParser.readDateField(p));
+    assertEquals(JsonToken.END_OBJECT, p.currentToken());
+  }
+
+  @Test
+  void shouldThrowWhenDateFieldIsMissing() throws IOException {
+    JsonParser p = parser("[{}]");
+
+    assertThrows(JsonMappingException.class, () -> CdcDateParser.readDateField(p));
+  }
+
+  private JsonParser parser(String json) throws IOException {
+    JsonParser p = mapper.createParser(json);
+    p.nextToken();
+    p.nextToken();
+    return p;
+  }
+
+  private static LocalDate parseDate(String text) {
+    return CdcDateParser.parseDate(text.toCharArray(), 0, text.length());
+  }
+
+  private static LocalDateTime parseMillisDateTime(String text) {
+    return CdcDateParser.parseMillisDateTime(text.toCharArray(), 0, text.length());
+  }
+
+  private static LocalDateTime parseIsoDateTime(String text) {
+    return CdcDateParser.parseIsoDateTime(text.toCharArray(), 0, text.length());
+  }
+}
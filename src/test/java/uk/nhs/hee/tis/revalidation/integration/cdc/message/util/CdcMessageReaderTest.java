@@ -0,0 +1,86 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright 2026 Crown Copyright (NHS England)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package uk.nhs.hee.tis.revalidation.integration.cdc.message.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static uk.nhs.hee.tis.revalidation.integration.cdc.message.testutil.CdcTestDataGenerator.CDC_CONNECTION_LOG_EVENT_JSON;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import uk.nhs.hee.tis.revalidation.integration.RevalidationIntegrationApplication;
+import uk.nhs.hee.tis.revalidation.integration.cdc.dto.CdcDocumentDto;
+import uk.nhs.hee.tis.revalidation.integration.entity.ConnectionLog;
+
+class CdcMessageReaderTest {
+
+  private static final String GMC_ID = "1234567";
+
+  private CdcMessageReader<ConnectionLog> reader;
+
+  @BeforeEach
+  void setup() {
+    reader = CdcMessageReader.of(new RevalidationIntegrationApplication().mapper(),
+        ConnectionLog.class);
+  }
+
+  @Test
+  void shouldReadMessageFromString() throws IOException {
+    CdcDocumentDto<ConnectionLog> document = reader.read(CDC_CONNECTION_LOG_EVENT_JSON);
+
+    assertEquals(GMC_ID, document.getFullDocument().getGmcId());
+    assertEquals("insert", document.getOperationType());
+  }
+
+  @Test
+  void shouldReadMessageFromBytes() throws IOException {
+    CdcDocumentDto<ConnectionLog> document =
+        reader.read(CDC_CONNECTION_LOG_EVENT_JSON.getBytes(StandardCharsets.UTF_8));
+
+    assertEquals(GMC_ID, document.getFullDocument().getGmcId());
+  }
+
+  @Test
+  void shouldReadRemainingBytesOfBufferWithoutMovingIt() throws IOException {
+    byte[] json = CDC_CONNECTION_LOG_EVENT_JSON.getBytes(StandardCharsets.UTF_8);
+    ByteBuffer buffer = ByteBuffer.allocate(json.length + 4);
+    buffer.put("junk".getBytes(StandardCharsets.UTF_8)).put(json).position(4);
+
+    CdcDocumentDto<ConnectionLog> document = reader.read(buffer.slice());
+
+    assertEquals(GMC_ID, document.getFullDocument().getGmcId());
+    assertEquals(4, buffer.position());
+  }
+
+  @Test
+  void shouldReadDirectBuffer() throws IOException {
+    byte[] json = CDC_CONNECTION_LOG_EVENT_JSON.getBytes(StandardCharsets.UTF_8);
+    ByteBuffer buffer = ByteBuffer.allocateDirect(json.length).put(json).flip();
+
+    CdcDocumentDto<ConnectionLog> document = reader.read(buffer);
+
+    assertEquals(GMC_ID, document.getFullDocument().getGmcId());
+    assertEquals(0, buffer.position());
+  }
+}
@@ -0,0 +1,100 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright 2026 Crown Copyright (NHS England)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package uk.nhs.hee.tis.revalidation.integration.cdc.repository.custom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.Map;
+import org.elasticsearch.script.Script;
+import org.elasticsearch.script.ScriptType;
+import org.junit.jupiter.api.Test;
+import uk.nhs.hee.tis.revalidation.integration.enums.CdcFieldGroup;
+
+class CdcVersionStampsTest {
+
+  private static final String CONNECTION_VERSION = CdcFieldGroup.CONNECTION.getVersionField();
+  private static final String DOCTOR_VERSION = CdcFieldGroup.DOCTOR.getVersionField();
+
+  @Test
+  void shouldAddVersionToFieldsOfGroup() {
+    Map<String, Object> fields = Map.of("designatedBody", "1-AIIDR8");
+
+    Map<String, Object> stamped = CdcVersionStamps.stamp(fields, CdcFieldGroup.CONNECTION, 5L);
+
+    assertEquals(Map.of("designatedBody", "1-AIIDR8", CONNECTION_VERSION, 5L), stamped);
+    assertEquals(CdcFieldGroup.CONNECTION, CdcVersionStamps.stampedGroup(stamped));
+  }
+
+  @Test
+  void shouldNotStampFieldsWithoutVersion() {
+    Map<String, Object> fields = Map.of("designatedBody", "1-AIIDR8");
+
+    Map<String, Object> stamped = CdcVersionStamps.stamp(fields, CdcFieldGroup.CONNECTION, null);
+
+    assertSame(fields, stamped);
+    assertNull(CdcVersionStamps.stampedGroup(stamped));
+  }
+
+  @Test
+  void shouldKeepEarlierUpdateWhenItHasNewerVersion() {
+    Map<String, Object> earlier = Map.of("designatedBody", "new", CONNECTION_VERSION, 6L);
+    Map<String, Object> later = Map.of("designatedBody", "old", CONNECTION_VERSION, 5L);
+
+    assertEquals(earlier, CdcVersionStamps.merge(earlier, later));
+  }
+
+  @Test
+  void shouldLetLaterUpdateWinWhenItHasNewerVersion() {
+    Map<String, Object> earlier = Map.of("designatedBody", "old", "programmeName", "programme",
+        CONNECTION_VERSION, 5L);
+    Map<String, Object> later = Map.of("designatedBody", "new", CONNECTION_VERSION, 6L);
+
+    assertEquals(Map.of("designatedBody", "new", "programmeName", "programme",
+        CONNECTION_VERSION, 6L), CdcVersionStamps.merge(earlier, later));
+  }
+
+  @Test
+  void shouldLetLaterUpdateWinWhenGroupsDiffer() {
+    Map<String, Object> earlier = Map.of("doctorFirstName", "first", DOCTOR_VERSION, 6L);
+    Map<String, Object> later = Map.of("designatedBody", "new", CONNECTION_VERSION, 5L);
+
+    assertEquals(Map.of("doctorFirstName", "first", DOCTOR_VERSION, 6L,
+        "designatedBody", "new", CONNECTION_VERSION, 5L), CdcVersionStamps.merge(earlier, later));
+  }
+
+  @Test
+  void shouldPassVersionAndFieldsToConditionalUpdate() {
+    Map<String, Object> fields = Map.of("designatedBody", "1-AIIDR8", CONNECTION_VERSION, 5L);
+
+    Script script = CdcVersionStamps.conditionalUpdate(CdcFieldGroup.CONNECTION, fields);
+
+    assertEquals(ScriptType.INLINE, script.getType());
+    assertEquals(CdcVersionStamps.LANG, script.getLang());
+    assertEquals(CdcVersionStamps.CONDITIONAL_UPDATE, script.getIdOrCode());
+    assertEquals(Map.of(
+        CdcVersionStamps.VERSION_FIELD_PARAM, CONNECTION_VERSION,
+        CdcVersionStamps.VERSION_PARAM, 5L,
+        CdcVersionStamps.FIELDS_PARAM, fields), script.getParams());
+  }
+}
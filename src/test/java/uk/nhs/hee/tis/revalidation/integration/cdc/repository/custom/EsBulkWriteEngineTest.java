@@ -0,0 +1,235 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright 2026 Crown Copyright (NHS England)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package uk.nhs.hee.tis.revalidation.integration.cdc.repository.custom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.IntStream;
+import org.elasticsearch.ElasticsearchStatusException;
+import org.elasticsearch.action.DocWriteRequest;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkItemResponse.Failure;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.update.UpdateRequest;
+import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.rest.RestStatus;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import uk.nhs.hee.tis.revalidation.integration.cdc.repository.custom.EsBulkWriteEngine.BulkWriteResult;
+
+@ExtendWith(MockitoExtension.class)
+class EsBulkWriteEngineTest {
+
+  private static final String INDEX = "index";
+  private static final int MAX_ACTIONS = 2;
+  private static final int MAX_RETRIES = 2;
+
+  @Mock
+  private RestHighLevelClient highLevelClient;
+  @Captor
+  private ArgumentCaptor<BulkRequest> bulkRequestCaptor;
+
+  private ExecutorService executor;
+  private MeterRegistry meterRegistry;
+  private EsBulkWriteEngine engine;
+
+  @BeforeEach
+  void setUp() {
+    executor = Executors.newFixedThreadPool(2);
+    meterRegistry = new SimpleMeterRegistry();
+    engine = new EsBulkWriteEngine(highLevelClient, executor, meterRegistry, MAX_ACTIONS, 1,
+        5242880L, MAX_RETRIES, 1L, 1L);
+  }
+
+  @AfterEach
+  void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  void shouldSplitRequestsByActionCount() {
+    List<BulkRequest> batches = engine.partition(requests(5));
+
+    assertEquals(3, batches.size());
+    assertEquals(2, batches.get(0).numberOfActions());
+    assertEquals(1, batches.get(2).numberOfActions());
+  }
+
+  @Test
+  void shouldSplitRequestsBySize() {
+    engine = new EsBulkWriteEngine(highLevelClient, executor, meterRegistry, 100, 1, 1L,
+        MAX_RETRIES, 1L, 1L);
+
+    List<BulkRequest> batches = engine.partition(requests(3));
+
+    assertEquals(3, batches.size());
+  }
+
+  @Test
+  void shouldStartNextRequestBeforeDocumentWouldExceedSize() {
+    List<DocWriteRequest<?>> requests = requests(5);
+    long requestBytes = new BulkRequest().add(requests.get(0)).estimatedSizeInBytes();
+    long maxBytes = requestBytes * 5 / 2;
+    engine = new EsBulkWriteEngine(highLevelClient, executor, meterRegistry, 100, 1, maxBytes,
+        MAX_RETRIES, 1L, 1L);
+
+    List<BulkRequest> batches = engine.partition(requests);
+
+    assertEquals(List.of(2, 2, 1),
+        batches.stream().map(BulkRequest::numberOfActions).toList());
+    batches.forEach(batch -> assertTrue(batch.estimatedSizeInBytes() <= maxBytes));
+  }
+
+  @Test
+  void shouldRetryOnlyRejectedItems() throws IOException {
+    BulkResponse firstResponse =
+        response(okItem(), failedItem(1, "1", RestStatus.TOO_MANY_REQUESTS));
+    BulkResponse secondResponse = response(okItem());
+    when(highLevelClient.bulk(any(BulkRequest.class), any(RequestOptions.class)))
+        .thenReturn(firstResponse, secondResponse);
+
+    BulkWriteResult result = engine.write(requests(2));
+
+    verify(highLevelClient, times(2)).bulk(bulkRequestCaptor.capture(),
+        any(RequestOptions.class));
+    BulkRequest retried = bulkRequestCaptor.getAllValues().get(1);
+    assertEquals(1, retried.numberOfActions());
+    assertEquals("1", retried.requests().get(0).id());
+    assertEquals(2, result.succeeded());
+    assertFalse(result.hasFailures());
+    assertEquals(1.0, meterRegistry.get("es.bulk.rejections").tag("status", "429").counter()
+        .count());
+  }
+
+  @Test
+  void shouldNotRetryPermanentFailures() throws IOException {
+    when(highLevelClient.bulk(any(BulkRequest.class), any(RequestOptions.class)))
+        .thenReturn(response(okItem(), failedItem(1, "1", RestStatus.NOT_FOUND)));
+
+    BulkWriteResult result = engine.write(requests(2));
+
+    verify(highLevelClient).bulk(any(BulkRequest.class), any(RequestOptions.class));
+    assertEquals(1, result.succeeded());
+    assertEquals(List.of("1"), result.failedIds());
+  }
+
+  @Test
+  void shouldReportCreatesOfExistingDocumentsAsConflicts() throws IOException {
+    BulkItemResponse conflict = failedItem(1, "1", RestStatus.CONFLICT);
+    when(conflict.getOpType()).thenReturn(DocWriteRequest.OpType.CREATE);
+    when(highLevelClient.bulk(any(BulkRequest.class), any(RequestOptions.class)))
+        .thenReturn(response(okItem(), conflict));
+
+    BulkWriteResult result = engine.write(requests(2));
+
+    assertEquals(1, result.succeeded());
+    assertEquals(List.of("1"), result.failedIds());
+    assertEquals(List.of("1"), result.conflictIds());
+  }
+
+  @Test
+  void shouldRetryWholeRequestRejectedAsTooLarge() throws IOException {
+    when(highLevelClient.bulk(any(BulkRequest.class), any(RequestOptions.class)))
+        .thenThrow(new ElasticsearchStatusException("too large",
+            RestStatus.REQUEST_ENTITY_TOO_LARGE))
+        .thenReturn(response(okItem()));
+
+    BulkWriteResult result = engine.write(requests(1));
+
+    verify(highLevelClient, times(2)).bulk(any(BulkRequest.class), any(RequestOptions.class));
+    assertEquals(1, result.succeeded());
+    assertEquals(1.0, meterRegistry.get("es.bulk.rejections").tag("status", "413").counter()
+        .count());
+  }
+
+  @Test
+  void shouldGiveUpAfterMaxRetries() throws IOException {
+    when(highLevelClient.bulk(any(BulkRequest.class), any(RequestOptions.class)))
+        .thenThrow(new ElasticsearchStatusException("busy", RestStatus.TOO_MANY_REQUESTS));
+
+    BulkWriteResult result = engine.write(requests(1));
+
+    verify(highLevelClient, times(MAX_RETRIES + 1)).bulk(any(BulkRequest.class),
+        any(RequestOptions.class));
+    assertTrue(result.hasFailures());
+    assertEquals(List.of("0"), result.failedIds());
+  }
+
+  @Test
+  void shouldNotCallElasticsearchForEmptyWork() {
+    BulkWriteResult result = engine.write(List.of());
+
+    assertEquals(0, result.succeeded());
+    assertFalse(result.hasFailures());
+  }
+
+  private List<DocWriteRequest<?>> requests(int count) {
+    return IntStream.range(0, count)
+        .<DocWriteRequest<?>>mapToObj(i -> new UpdateRequest(INDEX, String.valueOf(i))
+            .doc(Map.of("admin", "admin" + i)))
+        .toList();
+  }
+
+  private BulkResponse response(BulkItemResponse... items) {
+    return new BulkResponse(items, 1L);
+  }
+
+  private BulkItemResponse okItem() {
+    BulkItemResponse item = mock(BulkItemResponse.class);
+    when(item.isFailed()).thenReturn(false);
+    return item;
+  }
+
+  private BulkItemResponse failedItem(int itemId, String id, RestStatus status) {
+    Failure failure = mock(Failure.class);
+    when(failure.getStatus()).thenReturn(status);
+    BulkItemResponse item = mock(BulkItemResponse.class);
+    when(item.isFailed()).thenReturn(true);
+    when(item.getFailure()).thenReturn(failure);
+    lenient().when(item.getItemId()).thenReturn(itemId);
+    lenient().when(item.getId()).thenReturn(id);
+    return item;
+  }
+}
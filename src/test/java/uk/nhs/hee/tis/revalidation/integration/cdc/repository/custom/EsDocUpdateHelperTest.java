@@ -22,12 +22,17 @@
 package uk.nhs.hee.tis.revalidation.integration.cdc.repository.custom;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -37,11 +42,27 @@ import java.time.LocalDate;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import org.elasticsearch.ElasticsearchStatusException;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.DocWriteRequest;
+import org.elasticsearch.action.DocWriteResponse;
+import org.elasticsearch.action.DocWriteRequest.OpType;
+import org.elasticsearch.action.bulk.BulkItemResponse.Failure;
+import org.elasticsearch.action.get.GetRequest;
+import org.elasticsearch.action.index.IndexRequest;
 import org.elasticsearch.action.update.UpdateRequest;
 import org.elasticsearch.action.update.UpdateResponse;
 import org.elasticsearch.client.RequestOptions;
 import org.elasticsearch.client.RestHighLevelClient;
 import org.elasticsearch.index.get.GetResult;
+import org.elasticsearch.index.query.QueryBuilder;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.index.reindex.BulkByScrollResponse;
+import org.elasticsearch.index.reindex.UpdateByQueryRequest;
+import org.elasticsearch.rest.RestStatus;
+import org.elasticsearch.script.Script;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -49,9 +70,9 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.Captor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
-import org.springframework.data.elasticsearch.core.mapping.IndexCoordinates;
-import org.springframework.data.elasticsearch.core.query.UpdateQuery;
+import uk.nhs.hee.tis.revalidation.integration.cdc.CdcMetrics;
+import uk.nhs.hee.tis.revalidation.integration.cdc.repository.custom.EsBulkWriteEngine.BulkWriteResult;
+import uk.nhs.hee.tis.revalidation.integration.enums.CdcFieldGroup;
 import uk.nhs.hee.tis.revalidation.integration.entity.RecommendationStatus;
 import uk.nhs.hee.tis.revalidation.integration.entity.UnderNotice;
 import uk.nhs.hee.tis.revalidation.integration.enums.RecommendationGmcOutcome;
@@ -84,19 +105,31 @@ class EsDocUpdateHelperTest {
   private RestHighLevelClient highLevelClient;
 
   @Mock
-  private ElasticsearchOperations elasticsearchOperations;
+  private EsBulkWriteEngine bulkWriteEngine;
+
+  @Mock
+  private CdcMetrics cdcMetrics;
 
   private EsDocUpdateHelper esDocUpdateHelper;
 
   @Captor
-  ArgumentCaptor<List<UpdateQuery>> bulkUpdateCaptor;
+  ArgumentCaptor<UpdateRequest> updateRequestCaptor;
+
+  @Captor
+  ArgumentCaptor<List<UpdateRequest>> bulkUpdateCaptor;
+
+  @Captor
+  ArgumentCaptor<List<DocWriteRequest<?>>> bulkWriteCaptor;
+
+  @Captor
+  ArgumentCaptor<GetRequest> getRequestCaptor;
 
   @BeforeEach
   void setUp() {
     ObjectMapper objectMapper = new ObjectMapper();
     objectMapper.registerModule(new com.fasterxml.jackson.datatype.jsr310.JavaTimeModule());
-    esDocUpdateHelper = new EsDocUpdateHelper(highLevelClient, objectMapper,
-        elasticsearchOperations);
+    esDocUpdateHelper = new EsDocUpdateHelper(highLevelClient, objectMapper, bulkWriteEngine,
+        cdcMetrics);
   }
 
   @Test
@@ -186,6 +219,166 @@ class EsDocUpdateHelperTest {
     assertTrue(ex.getMessage().contains("Failed to update document"));
   }
 
+  @Test
+  void shouldUpdateWithoutFetchingSource() throws IOException {
+    esDocUpdateHelper.update(INDEX_NAME, DOC_ID, UPDATES);
+
+    verify(highLevelClient).update(updateRequestCaptor.capture(), any(RequestOptions.class));
+    UpdateRequest request = updateRequestCaptor.getValue();
+    assertEquals(DOC_ID, request.id());
+    assertEquals(UPDATES, request.doc().sourceAsMap());
+    assertNull(request.fetchSource());
+  }
+
+  @Test
+  void shouldWriteStampedUpdateConditionallyAndCountItWhenStale() throws IOException {
+    var stamped = CdcVersionStamps.stamp(UPDATES, CdcFieldGroup.DOCTOR, 5L);
+    var response = mock(UpdateResponse.class);
+    when(response.getResult()).thenReturn(DocWriteResponse.Result.NOOP);
+    when(highLevelClient.update(any(UpdateRequest.class), any(RequestOptions.class)))
+        .thenReturn(response);
+
+    esDocUpdateHelper.update(INDEX_NAME, DOC_ID, stamped);
+
+    verify(highLevelClient).update(updateRequestCaptor.capture(), any(RequestOptions.class));
+    UpdateRequest request = updateRequestCaptor.getValue();
+    assertNull(request.doc());
+    assertEquals(CdcVersionStamps.conditionalUpdate(CdcFieldGroup.DOCTOR, stamped),
+        request.script());
+    verify(cdcMetrics).recordStale(CdcFieldGroup.DOCTOR, 1);
+  }
+
+  @Test
+  void shouldNotCountAppliedStampedUpdate() throws IOException {
+    var response = mock(UpdateResponse.class);
+    when(response.getResult()).thenReturn(DocWriteResponse.Result.UPDATED);
+    when(highLevelClient.update(any(UpdateRequest.class), any(RequestOptions.class)))
+        .thenReturn(response);
+
+    esDocUpdateHelper.update(INDEX_NAME, DOC_ID,
+        CdcVersionStamps.stamp(UPDATES, CdcFieldGroup.DOCTOR, 5L));
+
+    verify(cdcMetrics, never()).recordStale(any(), anyLong());
+  }
+
+  @Test
+  void shouldThrowEsUpdateExceptionWhenUpdateFails() throws IOException {
+    when(highLevelClient.update(any(UpdateRequest.class), any(RequestOptions.class)))
+        .thenThrow(new IOException("Connection failed"));
+
+    assertThrows(EsDocUpdateHelper.EsUpdateException.class,
+        () -> esDocUpdateHelper.update(INDEX_NAME, DOC_ID, UPDATES));
+  }
+
+  @Test
+  void shouldReportMissingDocumentOnUpdateIfExists() throws IOException {
+    when(highLevelClient.update(any(UpdateRequest.class), any(RequestOptions.class)))
+        .thenThrow(new ElasticsearchStatusException("missing", RestStatus.NOT_FOUND));
+
+    assertFalse(esDocUpdateHelper.updateIfExists(INDEX_NAME, DOC_ID, UPDATES));
+  }
+
+  @Test
+  void shouldReportUpdatedDocumentOnUpdateIfExists() {
+    assertTrue(esDocUpdateHelper.updateIfExists(INDEX_NAME, DOC_ID, UPDATES));
+  }
+
+  @Test
+  void shouldCheckExistenceWithoutFetchingSource() throws IOException {
+    when(highLevelClient.exists(any(GetRequest.class), any(RequestOptions.class)))
+        .thenReturn(true);
+
+    assertTrue(esDocUpdateHelper.exists(INDEX_NAME, DOC_ID));
+
+    verify(highLevelClient).exists(getRequestCaptor.capture(), any(RequestOptions.class));
+    assertFalse(getRequestCaptor.getValue().fetchSourceContext().fetchSource());
+  }
+
+  @Test
+  void shouldRunScriptAgainstDocumentRetryingOnConflict() throws IOException {
+    Script script = new Script("ctx._source.doctorFirstName = 'Alice'");
+
+    esDocUpdateHelper.scriptedUpdate(INDEX_NAME, DOC_ID, script);
+
+    verify(highLevelClient).update(updateRequestCaptor.capture(), any(RequestOptions.class));
+    UpdateRequest request = updateRequestCaptor.getValue();
+    assertEquals(DOC_ID, request.id());
+    assertEquals(script, request.script());
+    assertTrue(request.retryOnConflict() > 0);
+  }
+
+  @Test
+  void shouldReportMissingDocumentOnScriptedUpdateIfExists() throws IOException {
+    when(highLevelClient.update(any(UpdateRequest.class), any(RequestOptions.class)))
+        .thenThrow(new ElasticsearchStatusException("missing", RestStatus.NOT_FOUND));
+
+    assertFalse(esDocUpdateHelper.scriptedUpdateIfExists(INDEX_NAME, DOC_ID,
+        new Script("ctx.op = 'noop'")));
+  }
+
+  @Test
+  void shouldRunUpdateByQueryAgainUntilThereAreNoVersionConflicts() throws IOException {
+    var conflicted = mock(BulkByScrollResponse.class);
+    when(conflicted.getUpdated()).thenReturn(1L);
+    when(conflicted.getVersionConflicts()).thenReturn(1L);
+    var completed = mock(BulkByScrollResponse.class);
+    when(completed.getUpdated()).thenReturn(1L);
+    when(highLevelClient.updateByQuery(any(UpdateByQueryRequest.class), any(RequestOptions.class)))
+        .thenReturn(conflicted, completed);
+    QueryBuilder query = QueryBuilders.matchAllQuery();
+    Script script = new Script("ctx.op = 'noop'");
+
+    assertEquals(2, esDocUpdateHelper.updateByQuery(INDEX_NAME, query, script));
+
+    var requestCaptor = ArgumentCaptor.forClass(UpdateByQueryRequest.class);
+    verify(highLevelClient, times(2)).updateByQuery(requestCaptor.capture(),
+        any(RequestOptions.class));
+    UpdateByQueryRequest request = requestCaptor.getValue();
+    assertEquals(query, request.getSearchRequest().source().query());
+    assertEquals(script, request.getScript());
+    assertFalse(request.isAbortOnVersionConflict());
+  }
+
+  @Test
+  void shouldThrowEsUpdateExceptionWhenUpdateByQueryHasFailures() throws IOException {
+    var response = mock(BulkByScrollResponse.class);
+    when(response.getBulkFailures()).thenReturn(List.of(mock(Failure.class)));
+    when(highLevelClient.updateByQuery(any(UpdateByQueryRequest.class), any(RequestOptions.class)))
+        .thenReturn(response);
+
+    assertThrows(EsDocUpdateHelper.EsUpdateException.class,
+        () -> esDocUpdateHelper.updateByQuery(INDEX_NAME, QueryBuilders.matchAllQuery(),
+            new Script("ctx.op = 'noop'")));
+  }
+
+  @Test
+  void shouldCompleteAsyncUpdate() {
+    doAnswer(invocation -> {
+      invocation.<ActionListener<UpdateResponse>>getArgument(2)
+          .onResponse(mock(UpdateResponse.class));
+      return null;
+    }).when(highLevelClient).updateAsync(any(), any(), any());
+
+    CompletableFuture<Void> future = esDocUpdateHelper.updateAsync(INDEX_NAME, DOC_ID, UPDATES);
+
+    assertTrue(future.isDone());
+    assertFalse(future.isCompletedExceptionally());
+  }
+
+  @Test
+  void shouldCompleteAsyncUpdateExceptionallyWhenItFails() {
+    doAnswer(invocation -> {
+      invocation.<ActionListener<UpdateResponse>>getArgument(2)
+          .onFailure(new IOException("Connection failed"));
+      return null;
+    }).when(highLevelClient).updateAsync(any(), any(), any());
+
+    CompletableFuture<Void> future = esDocUpdateHelper.updateAsync(INDEX_NAME, DOC_ID, UPDATES);
+
+    ExecutionException ex = assertThrows(ExecutionException.class, future::get);
+    assertTrue(ex.getCause() instanceof EsDocUpdateHelper.EsUpdateException);
+  }
+
   @Test
   void shouldBulkUpdate() {
     Map<String, Object> map = new HashMap<>();
@@ -204,27 +397,113 @@ class EsDocUpdateHelperTest {
 
     Map<String, Map<String, Object>> mapById = new HashMap<>();
     mapById.put("123", map);
+    when(bulkWriteEngine.write(any())).thenReturn(new BulkWriteResult(1, List.of()));
 
-    var indexCoords = IndexCoordinates.of("index");
+    var result = esDocUpdateHelper.bulkPartialUpdate("index", mapById);
 
-    esDocUpdateHelper.bulkPartialUpdate("index", mapById);
-
-    verify(elasticsearchOperations).bulkUpdate(bulkUpdateCaptor.capture(), eq(indexCoords));
+    verify(bulkWriteEngine).write(bulkUpdateCaptor.capture());
+    assertEquals(1, result.succeeded());
 
     var bulkUpdateRequests = bulkUpdateCaptor.getValue();
     assertEquals(1, bulkUpdateRequests.size());
 
-    var bulkUpdate = bulkUpdateRequests.get(0).getDocument();
-    assertEquals(FIRST_NAME, bulkUpdate.get("doctorFirstName"));
-    assertEquals(LAST_NAME, bulkUpdate.get("doctorLastName"));
-    assertEquals(GMC_NUMBER, bulkUpdate.get("gmcReferenceNumber"));
-    assertEquals(SUBMISSION_DATE, bulkUpdate.get("submissionDate"));
-    assertEquals(RECOMMENDATION_STATUS, bulkUpdate.get("tisStatus"));
-    assertEquals(DESIGNATED_BODY_CODE, bulkUpdate.get("designatedBody"));
-    assertEquals(ADMIN, bulkUpdate.get("admin"));
-    assertEquals(LAST_UPDATED, bulkUpdate.get("lastUpdatedDate"));
-    assertEquals(UNDER_NOTICE, bulkUpdate.get("underNotice"));
-    assertEquals(EXISTS_IN_GMC, bulkUpdate.get("existsInGmc"));
-    assertEquals(OUTCOME, bulkUpdate.get("gmcStatus"));
+    var bulkUpdate = bulkUpdateRequests.get(0);
+    assertEquals("index", bulkUpdate.index());
+    assertEquals("123", bulkUpdate.id());
+    var updatedFields = bulkUpdate.doc().sourceAsMap();
+    assertEquals(FIRST_NAME, updatedFields.get("doctorFirstName"));
+    assertEquals(LAST_NAME, updatedFields.get("doctorLastName"));
+    assertEquals(GMC_NUMBER, updatedFields.get("gmcReferenceNumber"));
+    assertEquals(SUBMISSION_DATE.toString(), updatedFields.get("submissionDate"));
+    assertEquals(RECOMMENDATION_STATUS.toString(), updatedFields.get("tisStatus"));
+    assertEquals(DESIGNATED_BODY_CODE, updatedFields.get("designatedBody"));
+    assertEquals(ADMIN, updatedFields.get("admin"));
+    assertEquals(LAST_UPDATED.toString(), updatedFields.get("lastUpdatedDate"));
+    assertEquals(UNDER_NOTICE.toString(), updatedFields.get("underNotice"));
+    assertEquals(EXISTS_IN_GMC, updatedFields.get("existsInGmc"));
+    assertEquals(OUTCOME.toString(), updatedFields.get("gmcStatus"));
+  }
+
+  @Test
+  void shouldReturnFailedDocumentsFromBulkUpdate() {
+    when(bulkWriteEngine.write(any())).thenReturn(new BulkWriteResult(0, List.of(DOC_ID)));
+
+    var result = esDocUpdateHelper.bulkPartialUpdate(INDEX_NAME, Map.of(DOC_ID, UPDATES));
+
+    assertTrue(result.hasFailures());
+    assertEquals(List.of(DOC_ID), result.failedIds());
+  }
+
+  @Test
+  void shouldBulkUpdateWithScripts() {
+    Script script = new Script("ctx._source.admin = params.admin");
+    when(bulkWriteEngine.write(any())).thenReturn(new BulkWriteResult(1, List.of()));
+
+    var result = esDocUpdateHelper.bulkScriptedUpdate(INDEX_NAME, Map.of(DOC_ID, script));
+
+    verify(bulkWriteEngine).write(bulkUpdateCaptor.capture());
+    assertEquals(1, result.succeeded());
+    var bulkUpdate = bulkUpdateCaptor.getValue().get(0);
+    assertEquals(INDEX_NAME, bulkUpdate.index());
+    assertEquals(DOC_ID, bulkUpdate.id());
+    assertEquals(script, bulkUpdate.script());
+    assertNull(bulkUpdate.doc());
+  }
+
+  @Test
+  void shouldUpdateExistingAndCreateNewDocumentsInOneBulkWrite() {
+    when(bulkWriteEngine.write(any())).thenReturn(new BulkWriteResult(2, List.of()));
+
+    var result = esDocUpdateHelper.bulkUpsert(INDEX_NAME, Map.of(DOC_ID, UPDATES),
+        Map.of("456", Map.of("gmcReferenceNumber", GMC_NUMBER)));
+
+    verify(bulkWriteEngine).write(bulkWriteCaptor.capture());
+    assertEquals(2, result.succeeded());
+    var requests = bulkWriteCaptor.getValue();
+    assertEquals(2, requests.size());
+    var update = (UpdateRequest) requests.get(0);
+    assertEquals(DOC_ID, update.id());
+    assertEquals("Alice", update.doc().sourceAsMap().get("doctorFirstName"));
+    var create = (IndexRequest) requests.get(1);
+    assertEquals(INDEX_NAME, create.index());
+    assertEquals("456", create.id());
+    assertEquals(OpType.CREATE, create.opType());
+    assertEquals(GMC_NUMBER, create.sourceAsMap().get("gmcReferenceNumber"));
+  }
+
+  @Test
+  void shouldUpdateOwnedFieldsOfNewDocumentWhichAlreadyExists() {
+    when(bulkWriteEngine.write(any())).thenReturn(
+        new BulkWriteResult(1, List.of("456"), List.of(), List.of("456")),
+        new BulkWriteResult(1, List.of()));
+
+    var result = esDocUpdateHelper.bulkReplace(INDEX_NAME,
+        Map.of(DOC_ID, Map.of("doctorFirstName", "Alice")),
+        Map.of("456", Map.of("gmcReferenceNumber", GMC_NUMBER, "doctorFirstName", "Bob")),
+        Map.of("456", Map.of("doctorFirstName", "Bob")));
+
+    verify(bulkWriteEngine, times(2)).write(bulkWriteCaptor.capture());
+    var replace = (IndexRequest) bulkWriteCaptor.getAllValues().get(0).get(0);
+    assertEquals(OpType.INDEX, replace.opType());
+    var update = (UpdateRequest) bulkWriteCaptor.getAllValues().get(1).get(0);
+    assertEquals("456", update.id());
+    assertEquals(Map.of("doctorFirstName", "Bob"), update.doc().sourceAsMap());
+    assertEquals(2, result.succeeded());
+    assertFalse(result.hasFailures());
+  }
+
+  @Test
+  void shouldCountStaleDocumentsOfStampedBulkUpdate() {
+    when(bulkWriteEngine.write(any())).thenReturn(
+        new BulkWriteResult(2, List.of(), List.of(DOC_ID, "456")));
+
+    esDocUpdateHelper.bulkPartialUpdate(INDEX_NAME, Map.of(
+        DOC_ID, CdcVersionStamps.stamp(UPDATES, CdcFieldGroup.RECOMMENDATION, 5L),
+        "456", UPDATES));
+
+    verify(bulkWriteEngine).write(bulkUpdateCaptor.capture());
+    var requests = bulkUpdateCaptor.getValue();
+    assertEquals(1, requests.stream().filter(r -> r.script() != null).count());
+    verify(cdcMetrics).recordStale(CdcFieldGroup.RECOMMENDATION, 1);
   }
 }
@@ -0,0 +1,183 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright 2026 Crown Copyright (NHS England)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package uk.nhs.hee.tis.revalidation.integration.cdc.repository.custom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import uk.nhs.hee.tis.revalidation.integration.cdc.repository.custom.EsBulkWriteEngine.BulkWriteResult;
+import uk.nhs.hee.tis.revalidation.integration.cdc.repository.custom.EsDocUpdateHelper.EsUpdateException;
+import uk.nhs.hee.tis.revalidation.integration.enums.CdcFieldGroup;
+
+@ExtendWith(MockitoExtension.class)
+class EsPartialUpdateCoalescerTest {
+
+  private static final String INDEX_NAME = "index";
+  private static final String DOC_ID = "123";
+  private static final String OTHER_DOC_ID = "456";
+  private static final long LONG_WINDOW_MS = 60_000;
+  private static final String CONNECTION_VERSION = CdcFieldGroup.CONNECTION.getVersionField();
+  private static final String DOCTOR_VERSION = CdcFieldGroup.DOCTOR.getVersionField();
+
+  @Mock
+  EsDocUpdateHelper esDocUpdateHelper;
+
+  @Captor
+  ArgumentCaptor<Map<String, Map<String, Object>>> fieldsByIdCaptor;
+
+  @Test
+  void shouldWriteImmediatelyWithoutWindow() {
+    var coalescer = new EsPartialUpdateCoalescer(esDocUpdateHelper, 0, 10);
+
+    coalescer.update(INDEX_NAME, DOC_ID, Map.of("admin", "admin1"));
+
+    verify(esDocUpdateHelper).update(INDEX_NAME, DOC_ID, Map.of("admin", "admin1"));
+    verify(esDocUpdateHelper, never()).bulkPartialUpdate(any(), any());
+  }
+
+  @Test
+  void shouldThrowFailedImmediateWrite() {
+    doThrow(new EsUpdateException("failed")).when(esDocUpdateHelper)
+        .update(any(), any(), any());
+    var coalescer = new EsPartialUpdateCoalescer(esDocUpdateHelper, 0, 10);
+
+    assertThrows(EsUpdateException.class,
+        () -> coalescer.update(INDEX_NAME, DOC_ID, Map.of("admin", "admin1")));
+  }
+
+  @Test
+  void shouldMergeUpdatesToTheSameDocumentWithLastValueWinning() {
+    when(esDocUpdateHelper.bulkPartialUpdate(any(), any())).thenReturn(
+        new BulkWriteResult(1, List.of()));
+    var coalescer = new EsPartialUpdateCoalescer(esDocUpdateHelper, LONG_WINDOW_MS, 10);
+
+    coalescer.update(INDEX_NAME, DOC_ID, Map.of("admin", "admin1", "gmcStatus", "Approved"));
+    coalescer.update(INDEX_NAME, DOC_ID, Map.of("admin", "admin2", "updatedBy", "admin2"));
+    verify(esDocUpdateHelper, never()).bulkPartialUpdate(any(), any());
+    coalescer.shutdown();
+
+    verify(esDocUpdateHelper).bulkPartialUpdate(eq(INDEX_NAME), fieldsByIdCaptor.capture());
+    assertEquals(Map.of(DOC_ID, Map.of("admin", "admin2", "gmcStatus", "Approved",
+        "updatedBy", "admin2")), fieldsByIdCaptor.getValue());
+  }
+
+  @Test
+  void shouldFlushWhenBufferIsFull() {
+    when(esDocUpdateHelper.bulkPartialUpdate(any(), any())).thenReturn(
+        new BulkWriteResult(2, List.of()));
+    var coalescer = new EsPartialUpdateCoalescer(esDocUpdateHelper, LONG_WINDOW_MS, 2);
+
+    coalescer.update(INDEX_NAME, DOC_ID, Map.of("admin", "admin1"));
+    coalescer.update(INDEX_NAME, OTHER_DOC_ID, Map.of("admin", "admin2"));
+
+    verify(esDocUpdateHelper).bulkPartialUpdate(eq(INDEX_NAME), fieldsByIdCaptor.capture());
+    assertEquals(2, fieldsByIdCaptor.getValue().size());
+    coalescer.shutdown();
+  }
+
+  @Test
+  void shouldKeepNewerBufferedUpdateOverOlderStampedUpdate() {
+    when(esDocUpdateHelper.bulkPartialUpdate(any(), any())).thenReturn(
+        new BulkWriteResult(1, List.of()));
+    var coalescer = new EsPartialUpdateCoalescer(esDocUpdateHelper, LONG_WINDOW_MS, 10);
+
+    coalescer.update(INDEX_NAME, DOC_ID, Map.of("designatedBody", "new", CONNECTION_VERSION, 6L));
+    coalescer.update(INDEX_NAME, DOC_ID, Map.of("designatedBody", "old", CONNECTION_VERSION, 5L));
+    coalescer.shutdown();
+
+    verify(esDocUpdateHelper).bulkPartialUpdate(eq(INDEX_NAME), fieldsByIdCaptor.capture());
+    assertEquals(Map.of(DOC_ID, Map.of("designatedBody", "new", CONNECTION_VERSION, 6L)),
+        fieldsByIdCaptor.getValue());
+  }
+
+  @Test
+  void shouldBufferUpdatesStampedForDifferentGroupsApart() {
+    when(esDocUpdateHelper.bulkPartialUpdate(any(), any())).thenReturn(
+        new BulkWriteResult(1, List.of()));
+    var coalescer = new EsPartialUpdateCoalescer(esDocUpdateHelper, LONG_WINDOW_MS, 10);
+
+    coalescer.update(INDEX_NAME, DOC_ID, Map.of("designatedBody", "dbc", CONNECTION_VERSION, 5L));
+    coalescer.update(INDEX_NAME, DOC_ID, Map.of("doctorFirstName", "first", DOCTOR_VERSION, 6L));
+    coalescer.shutdown();
+
+    verify(esDocUpdateHelper, times(2))
+        .bulkPartialUpdate(eq(INDEX_NAME), fieldsByIdCaptor.capture());
+    assertEquals(List.of(
+            Map.of(DOC_ID, Map.of("designatedBody", "dbc", CONNECTION_VERSION, 5L)),
+            Map.of(DOC_ID, Map.of("doctorFirstName", "first", DOCTOR_VERSION, 6L))),
+        fieldsByIdCaptor.getAllValues());
+  }
+
+  @Test
+  void shouldUpdateIfExistsImmediatelyWithoutWindow() {
+    when(esDocUpdateHelper.updateIfExists(INDEX_NAME, DOC_ID, Map.of("admin", "admin1")))
+        .thenReturn(false);
+    var coalescer = new EsPartialUpdateCoalescer(esDocUpdateHelper, 0, 10);
+
+    assertFalse(coalescer.updateIfExists(INDEX_NAME, DOC_ID, Map.of("admin", "admin1")));
+  }
+
+  @Test
+  void shouldNotBufferUpdateIfDocumentDoesNotExist() {
+    when(esDocUpdateHelper.exists(INDEX_NAME, DOC_ID)).thenReturn(false);
+    var coalescer = new EsPartialUpdateCoalescer(esDocUpdateHelper, LONG_WINDOW_MS, 10);
+
+    assertFalse(coalescer.updateIfExists(INDEX_NAME, DOC_ID, Map.of("admin", "admin1")));
+    coalescer.shutdown();
+
+    verify(esDocUpdateHelper, never()).bulkPartialUpdate(any(), any());
+  }
+
+  @Test
+  void shouldBufferUpdateIfExistsCheckingEachDocumentOnce() {
+    when(esDocUpdateHelper.exists(INDEX_NAME, DOC_ID)).thenReturn(true);
+    when(esDocUpdateHelper.bulkPartialUpdate(any(), any())).thenReturn(
+        new BulkWriteResult(1, List.of()));
+    var coalescer = new EsPartialUpdateCoalescer(esDocUpdateHelper, LONG_WINDOW_MS, 10);
+
+    assertTrue(coalescer.updateIfExists(INDEX_NAME, DOC_ID, Map.of("admin", "admin1")));
+    assertTrue(coalescer.updateIfExists(INDEX_NAME, DOC_ID, Map.of("admin", "admin2")));
+    coalescer.shutdown();
+
+    verify(esDocUpdateHelper, times(1)).exists(INDEX_NAME, DOC_ID);
+    verify(esDocUpdateHelper).bulkPartialUpdate(eq(INDEX_NAME), fieldsByIdCaptor.capture());
+    assertEquals(Map.of(DOC_ID, Map.of("admin", "admin2")), fieldsByIdCaptor.getValue());
+  }
+}
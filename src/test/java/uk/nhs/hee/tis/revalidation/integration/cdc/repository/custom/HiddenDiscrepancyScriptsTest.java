@@ -0,0 +1,69 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright 2026 Crown Copyright (NHS England)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package uk.nhs.hee.tis.revalidation.integration.cdc.repository.custom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import org.elasticsearch.script.Script;
+import org.elasticsearch.script.ScriptType;
+import org.junit.jupiter.api.Test;
+import uk.nhs.hee.tis.revalidation.integration.entity.HiddenDiscrepancy;
+
+class HiddenDiscrepancyScriptsTest {
+
+  @Test
+  void shouldPassHiddenDiscrepanciesAsIndexedSource() {
+    HiddenDiscrepancy hiddenDiscrepancy = HiddenDiscrepancy.builder()
+        .id("1")
+        .gmcId("1111111")
+        .hiddenForDesignatedBodyCode("1-AIIDR8")
+        .hiddenBy("admin")
+        .hiddenDateTime(LocalDateTime.of(2026, 1, 2, 3, 4, 5, 6_000_000))
+        .build();
+
+    Script script = HiddenDiscrepancyScripts.addHiddenDiscrepancies(List.of(hiddenDiscrepancy));
+
+    assertEquals(ScriptType.INLINE, script.getType());
+    assertEquals(HiddenDiscrepancyScripts.LANG, script.getLang());
+    assertEquals(HiddenDiscrepancyScripts.ADD_HIDDEN_DISCREPANCIES, script.getIdOrCode());
+    assertEquals(Map.of(HiddenDiscrepancyScripts.HIDDEN_DISCREPANCIES_PARAM, List.of(Map.of(
+        "id", "1",
+        "gmcId", "1111111",
+        "hiddenForDesignatedBodyCode", "1-AIIDR8",
+        "hiddenBy", "admin",
+        "hiddenDateTime", "2026-01-02T03:04:05.006"))), script.getParams());
+  }
+
+  @Test
+  void shouldPassIdOfHiddenDiscrepancyToRemove() {
+    Script script = HiddenDiscrepancyScripts.removeHiddenDiscrepancy("1");
+
+    assertEquals(ScriptType.INLINE, script.getType());
+    assertEquals(HiddenDiscrepancyScripts.LANG, script.getLang());
+    assertEquals(HiddenDiscrepancyScripts.REMOVE_HIDDEN_DISCREPANCY, script.getIdOrCode());
+    assertEquals(Map.of(HiddenDiscrepancyScripts.HIDDEN_DISCREPANCY_ID_PARAM, "1"),
+        script.getParams());
+  }
+}
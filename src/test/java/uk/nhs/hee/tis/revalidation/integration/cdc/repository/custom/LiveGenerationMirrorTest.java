@@ -0,0 +1,117 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright 2026 Crown Copyright (NHS England)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package uk.nhs.hee.tis.revalidation.integration.cdc.repository.custom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static uk.nhs.hee.tis.revalidation.integration.config.EsConstant.Aliases.MASTER_DOCTOR_READ_ALIAS;
+import static uk.nhs.hee.tis.revalidation.integration.config.EsConstant.Indexes.MASTER_DOCTOR_INDEX;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import uk.nhs.hee.tis.revalidation.integration.cdc.repository.custom.EsBulkWriteEngine.BulkWriteResult;
+
+class LiveGenerationMirrorTest {
+
+  private LiveGenerationMirror liveGenerationMirror;
+  private List<String> written;
+
+  @BeforeEach
+  void setUp() {
+    liveGenerationMirror = new LiveGenerationMirror();
+    written = new ArrayList<>();
+  }
+
+  @Test
+  void shouldOnlyWriteToMasterDoctorIndexWhenNotMirroring() {
+    String result = liveGenerationMirror.write(index -> {
+      written.add(index);
+      return index;
+    });
+
+    assertFalse(liveGenerationMirror.isMirroring());
+    assertEquals(MASTER_DOCTOR_INDEX, result);
+    assertEquals(List.of(MASTER_DOCTOR_INDEX), written);
+  }
+
+  @Test
+  void shouldRepeatWriteOnLiveIndexWhileMirroring() {
+    liveGenerationMirror.start();
+
+    String result = liveGenerationMirror.write(index -> {
+      written.add(index);
+      return index;
+    });
+
+    assertTrue(liveGenerationMirror.isMirroring());
+    assertEquals(MASTER_DOCTOR_INDEX, result);
+    assertEquals(List.of(MASTER_DOCTOR_INDEX, MASTER_DOCTOR_READ_ALIAS), written);
+  }
+
+  @Test
+  void shouldRepeatUpdateOnLiveIndexWhileMirroring() {
+    liveGenerationMirror.start();
+
+    liveGenerationMirror.update(written::add);
+
+    assertEquals(List.of(MASTER_DOCTOR_INDEX, MASTER_DOCTOR_READ_ALIAS), written);
+  }
+
+  @Test
+  void shouldStopRepeatingWritesOnceStopped() {
+    liveGenerationMirror.start();
+    liveGenerationMirror.stop();
+
+    liveGenerationMirror.update(written::add);
+
+    assertEquals(List.of(MASTER_DOCTOR_INDEX), written);
+  }
+
+  @Test
+  void shouldIgnoreFailedWriteOnLiveIndex() {
+    liveGenerationMirror.start();
+
+    BulkWriteResult result = liveGenerationMirror.write(index -> {
+      if (MASTER_DOCTOR_READ_ALIAS.equals(index)) {
+        throw new IllegalStateException("expected");
+      }
+      return new BulkWriteResult(1, List.of());
+    });
+
+    assertEquals(1, result.succeeded());
+  }
+
+  @Test
+  void shouldNotRepeatWriteThatFailedOnMasterDoctorIndex() {
+    liveGenerationMirror.start();
+
+    assertThrows(IllegalStateException.class, () -> liveGenerationMirror.update(index -> {
+      written.add(index);
+      throw new IllegalStateException("expected");
+    }));
+    assertEquals(List.of(MASTER_DOCTOR_INDEX), written);
+  }
+}
@@ -23,6 +23,7 @@ package uk.nhs.hee.tis.revalidation.integration.cdc.service;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyMap;
 import static org.mockito.ArgumentMatchers.eq;
@@ -32,6 +33,7 @@ import static org.mockito.Mockito.when;
 import static uk.nhs.hee.tis.revalidation.integration.cdc.service.CdcConnectionService.ES_DATETIME_FORMATTER;
 import static uk.nhs.hee.tis.revalidation.integration.config.EsConstant.Indexes.MASTER_DOCTOR_INDEX;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import java.util.Collections;
 import java.util.Map;
 import org.apache.commons.lang3.NotImplementedException;
@@ -44,10 +46,15 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import uk.nhs.hee.tis.revalidation.integration.cdc.CdcMetrics;
 import uk.nhs.hee.tis.revalidation.integration.cdc.message.publisher.CdcMessagePublisher;
 import uk.nhs.hee.tis.revalidation.integration.cdc.message.testutil.CdcTestDataGenerator;
+import uk.nhs.hee.tis.revalidation.integration.cdc.repository.custom.EsBulkWriteEngine.BulkWriteResult;
 import uk.nhs.hee.tis.revalidation.integration.cdc.repository.custom.EsDocUpdateHelper;
+import uk.nhs.hee.tis.revalidation.integration.cdc.repository.custom.EsPartialUpdateCoalescer;
+import uk.nhs.hee.tis.revalidation.integration.cdc.repository.custom.LiveGenerationMirror;
 import uk.nhs.hee.tis.revalidation.integration.entity.ConnectionLog;
+import uk.nhs.hee.tis.revalidation.integration.sync.helper.MasterDoctorIdentityResolver;
 import uk.nhs.hee.tis.revalidation.integration.sync.repository.MasterDoctorElasticSearchRepository;
 import uk.nhs.hee.tis.revalidation.integration.sync.view.MasterDoctorView;
 
@@ -63,9 +70,19 @@ class CdcConnectionServiceTest {
   @Mock
   EsDocUpdateHelper esUpdateHelper;
   @Mock
+  EsPartialUpdateCoalescer updateCoalescer;
+  @Mock
   CdcMessagePublisher publisher;
+  @Mock
+  MasterDoctorIdentityResolver identityResolver;
+  @Spy
+  CdcMetrics cdcMetrics = new CdcMetrics(new SimpleMeterRegistry());
+  @Spy
+  LiveGenerationMirror liveGenerationMirror = new LiveGenerationMirror();
   @Captor
   ArgumentCaptor<Map<String, Object>> esUpdateDocCaptor;
+  @Captor
+  ArgumentCaptor<Map<String, Map<String, Object>>> fieldsByIdCaptor;
 
   @Test
   void shouldAddNewFields() {
@@ -74,8 +91,8 @@ class CdcConnectionServiceTest {
     var newConnectionLog = CdcTestDataGenerator.getCdcConnectionLogInsertCdcDocumentDto();
     cdcConnectionService.upsertEntity(newConnectionLog.getFullDocument());
 
-    verify(esUpdateHelper).partialUpdate(eq(MASTER_DOCTOR_INDEX), eq(masterDoctorView.getId()),
-        anyMap(), eq(MasterDoctorView.class));
+    verify(updateCoalescer).update(eq(MASTER_DOCTOR_INDEX), eq(masterDoctorView.getId()),
+        anyMap());
   }
 
   @Test
@@ -85,21 +102,21 @@ class CdcConnectionServiceTest {
     var newConnectionLog = CdcTestDataGenerator.getCdcConnectionLogInsertCdcDocumentDto();
     cdcConnectionService.upsertEntity(newConnectionLog.getFullDocument());
 
-    verify(esUpdateHelper, never()).partialUpdate(eq(MASTER_DOCTOR_INDEX),
-        eq(masterDoctorView.getId()),
-        anyMap(), eq(MasterDoctorView.class));
+    verify(updateCoalescer, never()).update(eq(MASTER_DOCTOR_INDEX),
+        eq(masterDoctorView.getId()), anyMap());
   }
 
   @Test
   void shouldProvideCorrectConnectionLogValue() {
     when(repository.findByGmcReferenceNumber(any())).thenReturn(List.of(masterDoctorView));
-    when(esUpdateHelper.partialUpdate(eq(MASTER_DOCTOR_INDEX), eq(masterDoctorView.getId()),
-        esUpdateDocCaptor.capture(), eq(MasterDoctorView.class))).thenReturn(masterDoctorView);
 
     var newConnectionLog = CdcTestDataGenerator.getCdcConnectionLogInsertCdcDocumentDto()
         .getFullDocument();
     cdcConnectionService.upsertEntity(newConnectionLog);
 
+    verify(updateCoalescer).update(eq(MASTER_DOCTOR_INDEX), eq(masterDoctorView.getId()),
+        esUpdateDocCaptor.capture());
+
     final var partialUpdateDoc = esUpdateDocCaptor.getValue();
     assertEquals(newConnectionLog.getUpdatedBy(), partialUpdateDoc.get("updatedBy"));
     assertEquals(newConnectionLog.getRequestTime().format(ES_DATETIME_FORMATTER),
@@ -115,7 +132,7 @@ class CdcConnectionServiceTest {
     cdcConnectionService.upsertEntity(unsuccessfulConnection);
 
     verify(repository, never()).findByGmcReferenceNumber(any());
-    verify(esUpdateHelper, never()).partialUpdate(any(), any(), any(), any());
+    verify(updateCoalescer, never()).update(any(), any(), any());
     verify(publisher, never()).publishCdcUpdate(any());
   }
 
@@ -126,8 +143,8 @@ class CdcConnectionServiceTest {
     var newConnectionLog = CdcTestDataGenerator.getCdcGmcExternalConnectionCdcDocumentDto();
     cdcConnectionService.upsertEntity(newConnectionLog.getFullDocument());
 
-    verify(esUpdateHelper).partialUpdate(eq(MASTER_DOCTOR_INDEX), eq(masterDoctorView.getId()),
-        anyMap(), eq(MasterDoctorView.class));
+    verify(updateCoalescer).update(eq(MASTER_DOCTOR_INDEX), eq(masterDoctorView.getId()),
+        anyMap());
   }
 
   @Test
@@ -136,4 +153,27 @@ class CdcConnectionServiceTest {
         () -> cdcConnectionService.deleteEntity("foo")
     );
   }
+
+  @Test
+  void shouldBulkUpdateBatchOfConnectionLogsSkippingDiscarded() {
+    final ConnectionLog connection = CdcTestDataGenerator.getCdcConnectionLogInsertCdcDocumentDto()
+        .getFullDocument();
+    final ConnectionLog unsuccessfulConnection = CdcTestDataGenerator
+        .getCdcUnsuccessfulConnectionCdcDocumentDto()
+        .getFullDocument();
+    when(identityResolver.resolveByGmcReferenceNumbers(List.of(connection.getGmcId())))
+        .thenReturn(Map.of(connection.getGmcId(), List.of(masterDoctorView.getId())));
+    when(esUpdateHelper.bulkPartialUpdate(eq(MASTER_DOCTOR_INDEX), any()))
+        .thenReturn(new BulkWriteResult(1, List.of()));
+
+    var failed = cdcConnectionService.upsertEntities(
+        List.of(connection, unsuccessfulConnection));
+
+    assertTrue(failed.isEmpty());
+    verify(esUpdateHelper).bulkPartialUpdate(eq(MASTER_DOCTOR_INDEX), fieldsByIdCaptor.capture());
+    var doc = fieldsByIdCaptor.getValue().get(masterDoctorView.getId());
+    assertEquals(connection.getUpdatedBy(), doc.get("updatedBy"));
+    assertEquals(connection.getRequestTime().format(ES_DATETIME_FORMATTER),
+        doc.get("lastConnectionDateTime"));
+  }
 }
@@ -24,16 +24,21 @@ package uk.nhs.hee.tis.revalidation.integration.cdc.service;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.is;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static uk.nhs.hee.tis.revalidation.integration.config.EsConstant.Indexes.MASTER_DOCTOR_INDEX;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import java.util.Collections;
 import java.util.Map;
+import java.util.Set;
 import org.apache.commons.lang3.NotImplementedException;
 import org.elasticsearch.common.collect.List;
 import org.junit.jupiter.api.Test;
@@ -44,12 +49,18 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import uk.nhs.hee.tis.revalidation.integration.cdc.CdcMetrics;
 import uk.nhs.hee.tis.revalidation.integration.cdc.message.publisher.CdcMessagePublisher;
 import uk.nhs.hee.tis.revalidation.integration.cdc.message.testutil.CdcTestDataGenerator;
+import uk.nhs.hee.tis.revalidation.integration.cdc.repository.custom.EsBulkWriteEngine.BulkWriteResult;
 import uk.nhs.hee.tis.revalidation.integration.cdc.repository.custom.EsDocUpdateHelper;
+import uk.nhs.hee.tis.revalidation.integration.cdc.repository.custom.EsDocUpdateHelper.EsUpdateException;
+import uk.nhs.hee.tis.revalidation.integration.cdc.repository.custom.EsPartialUpdateCoalescer;
+import uk.nhs.hee.tis.revalidation.integration.cdc.repository.custom.LiveGenerationMirror;
 import uk.nhs.hee.tis.revalidation.integration.entity.DoctorsForDB;
 import uk.nhs.hee.tis.revalidation.integration.router.mapper.MasterDoctorViewMapper;
 import uk.nhs.hee.tis.revalidation.integration.router.mapper.MasterDoctorViewMapperImpl;
+import uk.nhs.hee.tis.revalidation.integration.sync.helper.MasterDoctorIdentityResolver;
 import uk.nhs.hee.tis.revalidation.integration.sync.repository.MasterDoctorElasticSearchRepository;
 import uk.nhs.hee.tis.revalidation.integration.sync.view.MasterDoctorView;
 
@@ -65,37 +76,70 @@ class CdcDoctorServiceTest {
   @Mock
   EsDocUpdateHelper esUpdateHelper;
 
+  @Mock
+  EsPartialUpdateCoalescer updateCoalescer;
+
   @Mock
   CdcMessagePublisher publisher;
 
+  @Mock
+  MasterDoctorIdentityResolver identityResolver;
+
+  @Spy
+  CdcMetrics cdcMetrics = new CdcMetrics(new SimpleMeterRegistry());
+
+  @Spy
+  LiveGenerationMirror liveGenerationMirror = new LiveGenerationMirror();
+
   @Spy
   MasterDoctorViewMapper mapper = (MasterDoctorViewMapper) new MasterDoctorViewMapperImpl();
 
   @Captor
-  ArgumentCaptor<MasterDoctorView> masterDoctorViewCaptor;
+  ArgumentCaptor<Map<String, Object>> esUpdateDocCaptor;
 
   @Captor
-  ArgumentCaptor<Map<String, Object>> esUpdateDocCaptor;
+  ArgumentCaptor<Map<String, Map<String, Object>>> fieldsByIdCaptor;
+
+  @Captor
+  ArgumentCaptor<Map<String, Map<String, Object>>> newDocumentsByIdCaptor;
 
   private MasterDoctorView masterDoctorView = CdcTestDataGenerator.getTestMasterDoctorView();
 
   @Test
   void shouldAddNewFieldsIfDoctorDoesNotExist() {
     when(repository.findByGmcReferenceNumber(any())).thenReturn(Collections.emptyList());
+    when(esUpdateHelper.bulkUpsert(eq(MASTER_DOCTOR_INDEX), any(), any()))
+        .thenReturn(new BulkWriteResult(1, List.of()));
 
     DoctorsForDB newDoctor = CdcTestDataGenerator.getCdcDoctor();
     cdcDoctorService.upsertEntity(newDoctor);
 
-    verify(repository).save(masterDoctorViewCaptor.capture());
-    final var savedView = masterDoctorViewCaptor.getValue();
-    assertThat(savedView.getGmcReferenceNumber(), is(newDoctor.getGmcReferenceNumber()));
-    assertThat(savedView.getDoctorFirstName(), is(newDoctor.getDoctorFirstName()));
-    assertThat(savedView.getDoctorLastName(), is(newDoctor.getDoctorLastName()));
-    assertThat(savedView.getDesignatedBody(), is(newDoctor.getDesignatedBodyCode()));
-    assertThat(savedView.getTisStatus(), is(newDoctor.getDoctorStatus()));
-    assertThat(savedView.getSubmissionDate(), is(newDoctor.getSubmissionDate()));
+    verify(esUpdateHelper).bulkUpsert(eq(MASTER_DOCTOR_INDEX), fieldsByIdCaptor.capture(),
+        newDocumentsByIdCaptor.capture());
+    assertTrue(fieldsByIdCaptor.getValue().isEmpty());
+    String id = "gmc-" + newDoctor.getGmcReferenceNumber().toLowerCase();
+    assertEquals(Set.of(id), newDocumentsByIdCaptor.getValue().keySet());
+    final var savedDoc = newDocumentsByIdCaptor.getValue().get(id);
+    assertThat(savedDoc.get("gmcReferenceNumber"), is(newDoctor.getGmcReferenceNumber()));
+    assertThat(savedDoc.get("doctorFirstName"), is(newDoctor.getDoctorFirstName()));
+    assertThat(savedDoc.get("doctorLastName"), is(newDoctor.getDoctorLastName()));
+    assertThat(savedDoc.get("designatedBody"), is(newDoctor.getDesignatedBodyCode()));
+    assertThat(savedDoc.get("tisStatus"), is(newDoctor.getDoctorStatus()));
+    assertThat(savedDoc.get("submissionDate"), is(newDoctor.getSubmissionDate()));
     //New doctor so no TIS fields
-    assertNull(savedView.getTcsPersonId());
+    assertFalse(savedDoc.containsKey("tcsPersonId"));
+    verify(repository, never()).save(any());
+  }
+
+  @Test
+  void shouldThrowWhenNewDoctorCannotBeWritten() {
+    when(repository.findByGmcReferenceNumber(any())).thenReturn(Collections.emptyList());
+    when(esUpdateHelper.bulkUpsert(eq(MASTER_DOCTOR_INDEX), any(), any()))
+        .thenReturn(new BulkWriteResult(0, List.of("gmc-1")));
+
+    DoctorsForDB newDoctor = CdcTestDataGenerator.getCdcDoctor();
+
+    assertThrows(EsUpdateException.class, () -> cdcDoctorService.upsertEntity(newDoctor));
   }
 
   @Test
@@ -105,8 +149,8 @@ class CdcDoctorServiceTest {
     DoctorsForDB newDoctor = CdcTestDataGenerator.getCdcDoctor();
     cdcDoctorService.upsertEntity(newDoctor);
 
-    verify(esUpdateHelper).partialUpdate(eq(MASTER_DOCTOR_INDEX), eq(masterDoctorView.getId()),
-        esUpdateDocCaptor.capture(), eq(MasterDoctorView.class));
+    verify(updateCoalescer).update(eq(MASTER_DOCTOR_INDEX), eq(masterDoctorView.getId()),
+        esUpdateDocCaptor.capture());
 
     final var partialUpdateDoc = esUpdateDocCaptor.getValue();
     assertEquals(newDoctor.getDoctorFirstName(), partialUpdateDoc.get("doctorFirstName"));
@@ -128,8 +172,8 @@ class CdcDoctorServiceTest {
     DoctorsForDB newDoctor = CdcTestDataGenerator.getCdcDoctorNullDbc();
     cdcDoctorService.upsertEntity(newDoctor);
 
-    verify(esUpdateHelper).partialUpdate(eq(MASTER_DOCTOR_INDEX), eq(masterDoctorView.getId()),
-        esUpdateDocCaptor.capture(), eq(MasterDoctorView.class));
+    verify(updateCoalescer).update(eq(MASTER_DOCTOR_INDEX), eq(masterDoctorView.getId()),
+        esUpdateDocCaptor.capture());
 
     assertNull(esUpdateDocCaptor.getValue().get("designatedBody"));
   }
@@ -139,4 +183,58 @@ class CdcDoctorServiceTest {
     assertThrows(NotImplementedException.class,
         () -> cdcDoctorService.deleteEntity("foo"));
   }
+
+  @Test
+  void shouldUpsertBatchOfDoctorsInOneBulkWrite() {
+    DoctorsForDB existingDoctor = CdcTestDataGenerator.getCdcDoctor();
+    DoctorsForDB newDoctor = DoctorsForDB.builder().gmcReferenceNumber("222")
+        .doctorFirstName("new").build();
+    when(identityResolver.resolveByGmcReferenceNumbers(any())).thenReturn(
+        Map.of(existingDoctor.getGmcReferenceNumber(), List.of(masterDoctorView.getId())));
+    when(esUpdateHelper.bulkUpsert(eq(MASTER_DOCTOR_INDEX), any(), any()))
+        .thenReturn(new BulkWriteResult(2, List.of()));
+
+    var failed = cdcDoctorService.upsertEntities(List.of(existingDoctor, newDoctor));
+
+    assertTrue(failed.isEmpty());
+    verify(esUpdateHelper).bulkUpsert(eq(MASTER_DOCTOR_INDEX), fieldsByIdCaptor.capture(),
+        newDocumentsByIdCaptor.capture());
+    assertEquals(existingDoctor.getDoctorFirstName(),
+        fieldsByIdCaptor.getValue().get(masterDoctorView.getId()).get("doctorFirstName"));
+    var newDocuments = newDocumentsByIdCaptor.getValue();
+    assertEquals(1, newDocuments.size());
+    assertEquals("new", newDocuments.get("gmc-222").get("doctorFirstName"));
+  }
+
+  @Test
+  void shouldMergeChangesToTheSameDoctorInBatch() {
+    DoctorsForDB firstChange = CdcTestDataGenerator.getCdcDoctor();
+    DoctorsForDB secondChange = DoctorsForDB.builder()
+        .gmcReferenceNumber(firstChange.getGmcReferenceNumber()).doctorFirstName("renamed").build();
+    when(identityResolver.resolveByGmcReferenceNumbers(any())).thenReturn(
+        Map.of(firstChange.getGmcReferenceNumber(), List.of(masterDoctorView.getId())));
+    when(esUpdateHelper.bulkUpsert(eq(MASTER_DOCTOR_INDEX), any(), any()))
+        .thenReturn(new BulkWriteResult(1, List.of()));
+
+    cdcDoctorService.upsertEntities(List.of(firstChange, secondChange));
+
+    verify(esUpdateHelper).bulkUpsert(eq(MASTER_DOCTOR_INDEX), fieldsByIdCaptor.capture(),
+        newDocumentsByIdCaptor.capture());
+    assertEquals(1, fieldsByIdCaptor.getValue().size());
+    assertEquals("renamed",
+        fieldsByIdCaptor.getValue().get(masterDoctorView.getId()).get("doctorFirstName"));
+  }
+
+  @Test
+  void shouldReturnDoctorsWhoseDocumentFailedInBulkWrite() {
+    DoctorsForDB doctor = CdcTestDataGenerator.getCdcDoctor();
+    when(identityResolver.resolveByGmcReferenceNumbers(any())).thenReturn(
+        Map.of(doctor.getGmcReferenceNumber(), List.of(masterDoctorView.getId())));
+    when(esUpdateHelper.bulkUpsert(eq(MASTER_DOCTOR_INDEX), any(), any()))
+        .thenReturn(new BulkWriteResult(0, List.of(masterDoctorView.getId())));
+
+    var failed = cdcDoctorService.upsertEntities(List.of(doctor));
+
+    assertEquals(List.of(doctor), failed);
+  }
 }
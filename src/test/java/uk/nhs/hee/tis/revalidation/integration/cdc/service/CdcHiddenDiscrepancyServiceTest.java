@@ -25,16 +25,22 @@ import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.is;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static uk.nhs.hee.tis.revalidation.integration.cdc.message.testutil.CdcTestDataGenerator.DOCUMENT_KEY;
-import static uk.nhs.hee.tis.revalidation.integration.cdc.message.testutil.CdcTestDataGenerator.DOCUMENT_KEY_2;
+import static uk.nhs.hee.tis.revalidation.integration.config.EsConstant.Aliases.MASTER_DOCTOR_READ_ALIAS;
+import static uk.nhs.hee.tis.revalidation.integration.config.EsConstant.Indexes.MASTER_DOCTOR_INDEX;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
 import org.elasticsearch.ResourceNotFoundException;
-import org.elasticsearch.common.collect.List;
+import org.elasticsearch.index.query.QueryBuilder;
+import org.elasticsearch.script.Script;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
@@ -43,14 +49,13 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
-import org.springframework.data.elasticsearch.core.SearchHit;
-import org.springframework.data.elasticsearch.core.SearchHits;
-import org.springframework.data.elasticsearch.core.query.Query;
+import uk.nhs.hee.tis.revalidation.integration.cdc.CdcMetrics;
+import uk.nhs.hee.tis.revalidation.integration.cdc.dto.CdcHiddenDiscrepancyDto;
 import uk.nhs.hee.tis.revalidation.integration.cdc.mapper.CdcHiddenDiscrepancyMapper;
-import uk.nhs.hee.tis.revalidation.integration.cdc.message.publisher.CdcMessagePublisher;
 import uk.nhs.hee.tis.revalidation.integration.cdc.message.testutil.CdcTestDataGenerator;
 import uk.nhs.hee.tis.revalidation.integration.cdc.repository.custom.EsDocUpdateHelper;
+import uk.nhs.hee.tis.revalidation.integration.cdc.repository.custom.HiddenDiscrepancyScripts;
+import uk.nhs.hee.tis.revalidation.integration.cdc.repository.custom.LiveGenerationMirror;
 import uk.nhs.hee.tis.revalidation.integration.entity.HiddenDiscrepancy;
 import uk.nhs.hee.tis.revalidation.integration.sync.repository.MasterDoctorElasticSearchRepository;
 import uk.nhs.hee.tis.revalidation.integration.sync.view.MasterDoctorView;
@@ -60,217 +65,158 @@ class CdcHiddenDiscrepancyServiceTest {
 
   private final MasterDoctorView masterDoctorView = CdcTestDataGenerator
       .getTestMasterDoctorView();
-  private final MasterDoctorView masterDoctorViewWithHidden = CdcTestDataGenerator
-      .getTestMasterDoctorViewWithHidden();
-  private final MasterDoctorView masterDoctorViewWithMultipleHidden = CdcTestDataGenerator
-      .getTestMasterDoctorViewWithMultipleHidden();
-
-  // Mock empty Elasticsearch search result
-  @Mock
-  SearchHits<MasterDoctorView> searchHitsResult;
-  @Mock
-  SearchHit<MasterDoctorView> searchHit;
 
   @InjectMocks
-  @Spy
   CdcHiddenDiscrepancyService cdcHiddenDiscrepancyService;
   @Mock
   MasterDoctorElasticSearchRepository repository;
   @Mock
-  ElasticsearchOperations elasticsearchOperations;
-  @Mock
   EsDocUpdateHelper esUpdateHelper;
   @Mock
-  CdcMessagePublisher publisher;
-  @Mock
   CdcHiddenDiscrepancyMapper cdcHiddenDiscrepancyMapper;
+  @Spy
+  CdcMetrics cdcMetrics = new CdcMetrics(new SimpleMeterRegistry());
+  @Spy
+  LiveGenerationMirror liveGenerationMirror = new LiveGenerationMirror();
   @Captor
-  ArgumentCaptor<MasterDoctorView> masterDoctorViewCaptor;
+  ArgumentCaptor<Script> scriptCaptor;
 
   @Test
-  void shouldAddNewField() {
+  void shouldAddHiddenDiscrepancyWithScriptedUpdate() {
     when(repository.findByGmcReferenceNumber(any())).thenReturn(List.of(masterDoctorView));
-
-    var newHiddenDiscrepancy = CdcTestDataGenerator
-        .getCdcHiddenDiscrepancyInsertCdcDocumentDto(DOCUMENT_KEY);
-    var dto = newHiddenDiscrepancy.getFullDocument();
-    var entity = HiddenDiscrepancy.builder()
-        .id(dto.getId())
-        .gmcId(dto.getGmcId())
-        .hiddenForDesignatedBodyCode(dto.getHiddenForDesignatedBodyCode())
-        .hiddenBy(dto.getHiddenBy())
-        .reason(dto.getReason())
-        .hiddenDateTime(dto.getHiddenDateTime())
-        .build();
+    var dto = CdcTestDataGenerator.getCdcHiddenDiscrepancyInsertCdcDocumentDto(DOCUMENT_KEY)
+        .getFullDocument();
+    var entity = toEntity(dto);
     when(cdcHiddenDiscrepancyMapper.toEntity(dto)).thenReturn(entity);
 
     cdcHiddenDiscrepancyService.upsertEntity(dto);
 
-    verify(repository).save(masterDoctorViewCaptor.capture());
-
-    assertThat(masterDoctorViewCaptor.getValue().getHiddenDiscrepancies(),
-        is(List.of(entity)));
+    verify(esUpdateHelper).scriptedUpdate(eq(MASTER_DOCTOR_INDEX), eq(masterDoctorView.getId()),
+        scriptCaptor.capture());
+    assertThat(scriptCaptor.getValue(),
+        is(HiddenDiscrepancyScripts.addHiddenDiscrepancies(List.of(entity))));
+    verify(repository, never()).save(any());
   }
 
   @Test
-  void shouldAddRecordToExistingField() {
-    when(repository.findByGmcReferenceNumber(any())).thenReturn(
-        List.of(masterDoctorViewWithHidden));
-
-    var newHiddenDiscrepancy = CdcTestDataGenerator
-        .getCdcHiddenDiscrepancyInsertCdcDocumentDto(DOCUMENT_KEY_2);
-    var dto = newHiddenDiscrepancy.getFullDocument();
-    var entity = HiddenDiscrepancy.builder()
-        .id(dto.getId())
-        .gmcId(dto.getGmcId())
-        .hiddenForDesignatedBodyCode(dto.getHiddenForDesignatedBodyCode())
-        .hiddenBy(dto.getHiddenBy())
-        .reason(dto.getReason())
-        .hiddenDateTime(dto.getHiddenDateTime())
-        .build();
-    when(cdcHiddenDiscrepancyMapper.toEntity(dto)).thenReturn(entity);
+  void shouldNotUpdateIfDoctorDoesNotExist() {
+    when(repository.findByGmcReferenceNumber(any())).thenReturn(Collections.emptyList());
+    var dto = CdcTestDataGenerator.getCdcHiddenDiscrepancyInsertCdcDocumentDto(DOCUMENT_KEY)
+        .getFullDocument();
+    when(cdcHiddenDiscrepancyMapper.toEntity(dto)).thenReturn(toEntity(dto));
 
     cdcHiddenDiscrepancyService.upsertEntity(dto);
 
-    verify(repository).save(masterDoctorViewCaptor.capture());
-
-    assertThat(masterDoctorViewCaptor.getValue().getHiddenDiscrepancies().size(), is(2));
+    verify(esUpdateHelper, never()).scriptedUpdate(any(), any(), any());
   }
 
   @Test
-  void shouldNotInsertRecordIfDoctorDoesNotExist() {
-    when(repository.findByGmcReferenceNumber(any())).thenReturn(Collections.emptyList());
+  void shouldUpdateFirstDoctorWhenMultipleDoctorsShareGmcNumber() {
+    MasterDoctorView duplicateDoctor = CdcTestDataGenerator.getTestMasterDoctorView();
+    duplicateDoctor.setId("duplicate");
+    when(repository.findByGmcReferenceNumber(any())).thenReturn(
+        List.of(masterDoctorView, duplicateDoctor));
+    var dto = CdcTestDataGenerator.getCdcHiddenDiscrepancyInsertCdcDocumentDto(DOCUMENT_KEY)
+        .getFullDocument();
+    when(cdcHiddenDiscrepancyMapper.toEntity(dto)).thenReturn(toEntity(dto));
 
-    var newConnectionLog = CdcTestDataGenerator
-        .getCdcHiddenDiscrepancyInsertCdcDocumentDto(DOCUMENT_KEY);
-    cdcHiddenDiscrepancyService.upsertEntity(newConnectionLog.getFullDocument());
+    cdcHiddenDiscrepancyService.upsertEntity(dto);
 
-    verify(repository, never()).save(any());
+    verify(esUpdateHelper).scriptedUpdate(eq(MASTER_DOCTOR_INDEX), eq(masterDoctorView.getId()),
+        any());
+    verify(esUpdateHelper, never()).scriptedUpdate(any(), eq("duplicate"), any());
   }
 
   @Test
-  void shouldRemoveRecordsFromOnDeleteOperation() {
-    var deletedHiddenDiscrepancy = CdcTestDataGenerator
-        .getCdcHiddenDiscrepancyDeleteCdcDocumentDto();
-
-    when(searchHit.getContent()).thenReturn(masterDoctorView);
-    when(searchHitsResult.getSearchHits()).thenReturn(List.of(searchHit));
-    when(elasticsearchOperations.search(any(Query.class), eq(MasterDoctorView.class)))
-        .thenReturn(searchHitsResult);
-
-    String hiddenDiscrepancyId = deletedHiddenDiscrepancy.getFullDocument().getId();
-    String gmcId = deletedHiddenDiscrepancy.getFullDocument().getGmcId();
-
-    when(repository.findByGmcReferenceNumber(gmcId)).thenReturn(List.of(masterDoctorView));
-
-    cdcHiddenDiscrepancyService.deleteEntity(hiddenDiscrepancyId);
-
-    verify(repository).save(masterDoctorViewCaptor.capture());
-
-    assertThat(masterDoctorViewCaptor.getValue().getHiddenDiscrepancies(),
-        is(Collections.emptyList()));
+  void shouldUpdateByDocumentIdWithoutSearching() {
+    var service = new CdcHiddenDiscrepancyService(repository, esUpdateHelper,
+        cdcHiddenDiscrepancyMapper, true, cdcMetrics, liveGenerationMirror);
+    var dto = CdcTestDataGenerator.getCdcHiddenDiscrepancyInsertCdcDocumentDto(DOCUMENT_KEY)
+        .getFullDocument();
+    when(cdcHiddenDiscrepancyMapper.toEntity(dto)).thenReturn(toEntity(dto));
+    String documentId = "gmc-" + dto.getGmcId().toLowerCase(Locale.ROOT);
+    when(esUpdateHelper.scriptedUpdateIfExists(eq(MASTER_DOCTOR_INDEX), eq(documentId), any()))
+        .thenReturn(true);
+
+    service.upsertEntity(dto);
+
+    verify(repository, never()).findByGmcReferenceNumber(any());
+    verify(esUpdateHelper, never()).scriptedUpdate(any(), any(), any());
   }
 
   @Test
-  void shouldRemoveIndividualRecordsFromFieldOnDeleteOperation() {
-    var deletedHiddenDiscrepancy = CdcTestDataGenerator
-        .getCdcHiddenDiscrepancyDeleteCdcDocumentDto();
-
-    when(searchHit.getContent()).thenReturn(masterDoctorViewWithMultipleHidden);
-    when(searchHitsResult.getSearchHits()).thenReturn(List.of(searchHit));
-    when(elasticsearchOperations.search(any(Query.class), eq(MasterDoctorView.class)))
-        .thenReturn(searchHitsResult);
-
-    String hiddenDiscrepancyId = deletedHiddenDiscrepancy.getFullDocument().getId();
-    String gmcId = deletedHiddenDiscrepancy.getFullDocument().getGmcId();
+  void shouldSearchWhenDocumentIsNotKeyedByGmcNumber() {
+    var service = new CdcHiddenDiscrepancyService(repository, esUpdateHelper,
+        cdcHiddenDiscrepancyMapper, true, cdcMetrics, liveGenerationMirror);
+    var dto = CdcTestDataGenerator.getCdcHiddenDiscrepancyInsertCdcDocumentDto(DOCUMENT_KEY)
+        .getFullDocument();
+    when(cdcHiddenDiscrepancyMapper.toEntity(dto)).thenReturn(toEntity(dto));
+    when(esUpdateHelper.scriptedUpdateIfExists(eq(MASTER_DOCTOR_INDEX), anyString(), any()))
+        .thenReturn(false);
+    when(repository.findByGmcReferenceNumber(dto.getGmcId())).thenReturn(
+        List.of(masterDoctorView));
+
+    service.upsertEntity(dto);
+
+    verify(esUpdateHelper).scriptedUpdate(eq(MASTER_DOCTOR_INDEX), eq(masterDoctorView.getId()),
+        any());
+  }
 
-    when(repository.findByGmcReferenceNumber(gmcId)).thenReturn(
-        List.of(masterDoctorViewWithMultipleHidden));
+  @Test
+  void shouldRemoveHiddenDiscrepancyByIdWithUpdateByQuery() {
+    String hiddenDiscrepancyId = CdcTestDataGenerator.getCdcHiddenDiscrepancyDeleteCdcDocumentDto()
+        .getFullDocument().getId();
+    when(esUpdateHelper.updateByQuery(eq(MASTER_DOCTOR_INDEX), any(QueryBuilder.class), any()))
+        .thenReturn(1L);
 
     cdcHiddenDiscrepancyService.deleteEntity(hiddenDiscrepancyId);
 
-    verify(repository).save(masterDoctorViewCaptor.capture());
-
-    assertThat(masterDoctorViewCaptor.getValue().getHiddenDiscrepancies().size(), is(1));
+    verify(esUpdateHelper).updateByQuery(eq(MASTER_DOCTOR_INDEX), any(QueryBuilder.class),
+        scriptCaptor.capture());
+    assertThat(scriptCaptor.getValue(),
+        is(HiddenDiscrepancyScripts.removeHiddenDiscrepancy(hiddenDiscrepancyId)));
+    verify(repository, never()).save(any());
   }
 
   @Test
-  void shouldNotAddSecondRecordIfAlreadyHiddenForDesignatedBodyAndGmcReferenceNumber() {
-    when(repository.findByGmcReferenceNumber(any())).thenReturn(
-        List.of(masterDoctorViewWithHidden));
+  void shouldRemoveHiddenDiscrepancyFromLiveIndexWhileRebuilding() {
+    String hiddenDiscrepancyId = CdcTestDataGenerator.getCdcHiddenDiscrepancyDeleteCdcDocumentDto()
+        .getFullDocument().getId();
+    when(esUpdateHelper.updateByQuery(eq(MASTER_DOCTOR_INDEX), any(QueryBuilder.class), any()))
+        .thenReturn(1L);
+    when(esUpdateHelper.updateByQuery(eq(MASTER_DOCTOR_READ_ALIAS), any(QueryBuilder.class),
+        any())).thenReturn(1L);
+    liveGenerationMirror.start();
 
-    var newConnectionLog = CdcTestDataGenerator
-        .getCdcHiddenDiscrepancyInsertCdcDocumentDto(DOCUMENT_KEY);
-    cdcHiddenDiscrepancyService.upsertEntity(newConnectionLog.getFullDocument());
+    cdcHiddenDiscrepancyService.deleteEntity(hiddenDiscrepancyId);
 
-    verify(repository, never()).save(any());
+    verify(esUpdateHelper).updateByQuery(eq(MASTER_DOCTOR_INDEX), any(QueryBuilder.class),
+        any());
+    verify(esUpdateHelper).updateByQuery(eq(MASTER_DOCTOR_READ_ALIAS), any(QueryBuilder.class),
+        any());
   }
 
   @Test
   void shouldThrowExceptionWhenNoHiddenDiscrepancyFoundToDelete() {
     String nonExistentId = "nonExistentId";
-
-    when(searchHitsResult.getSearchHits()).thenReturn(Collections.emptyList());
-    when(elasticsearchOperations.search(any(Query.class), eq(MasterDoctorView.class)))
-        .thenReturn(searchHitsResult);
+    when(esUpdateHelper.updateByQuery(eq(MASTER_DOCTOR_INDEX), any(QueryBuilder.class), any()))
+        .thenReturn(0L);
 
     RuntimeException exception = assertThrows(ResourceNotFoundException.class,
         () -> cdcHiddenDiscrepancyService.deleteEntity(nonExistentId));
 
     assertThat(exception.getMessage(),
         is("No elasticsearch record found to delete hidden discrepancy with id: " + nonExistentId));
-    verify(repository, never()).save(any());
-  }
-
-  @Test
-  void shouldDeleteCorrectHiddenDiscrepancyById() {
-    var deletedHiddenDiscrepancy = CdcTestDataGenerator
-        .getCdcHiddenDiscrepancyDeleteCdcDocumentDto();
-
-    when(searchHit.getContent()).thenReturn(masterDoctorViewWithMultipleHidden);
-    when(searchHitsResult.getSearchHits()).thenReturn(List.of(searchHit));
-    when(elasticsearchOperations.search(any(Query.class), eq(MasterDoctorView.class)))
-        .thenReturn(searchHitsResult);
-
-    String hiddenDiscrepancyId = deletedHiddenDiscrepancy.getFullDocument().getId();
-    String gmcId = deletedHiddenDiscrepancy.getFullDocument().getGmcId();
-
-    when(repository.findByGmcReferenceNumber(gmcId)).thenReturn(
-        List.of(masterDoctorViewWithMultipleHidden));
-
-    cdcHiddenDiscrepancyService.deleteEntity(hiddenDiscrepancyId);
-
-    verify(repository).save(masterDoctorViewCaptor.capture());
-
-    // Verify the correct hidden discrepancy was removed (by ID, not by designated body code)
-    var savedView = masterDoctorViewCaptor.getValue();
-    assertThat(savedView.getHiddenDiscrepancies().size(), is(1));
-    assertThat(savedView.getHiddenDiscrepancies().stream()
-        .noneMatch(h -> h.getId().equals(hiddenDiscrepancyId)), is(true));
   }
 
-  @Test
-  void shouldHandleMultipleDoctorsWithSameGmcNumberDuringDelete() {
-    var deletedHiddenDiscrepancy = CdcTestDataGenerator
-        .getCdcHiddenDiscrepancyDeleteCdcDocumentDto();
-
-    MasterDoctorView duplicateDoctor = CdcTestDataGenerator.getTestMasterDoctorView();
-
-    when(searchHit.getContent()).thenReturn(masterDoctorView);
-    when(searchHitsResult.getSearchHits()).thenReturn(List.of(searchHit));
-    when(elasticsearchOperations.search(any(Query.class), eq(MasterDoctorView.class)))
-        .thenReturn(searchHitsResult);
-
-    String hiddenDiscrepancyId = deletedHiddenDiscrepancy.getFullDocument().getId();
-    String gmcId = deletedHiddenDiscrepancy.getFullDocument().getGmcId();
-
-    // Multiple doctors with same GMC number
-    when(repository.findByGmcReferenceNumber(gmcId)).thenReturn(
-        List.of(masterDoctorView, duplicateDoctor));
-
-    cdcHiddenDiscrepancyService.deleteEntity(hiddenDiscrepancyId);
-
-    // Should still process the first doctor
-    verify(repository).save(any());
+  private static HiddenDiscrepancy toEntity(CdcHiddenDiscrepancyDto dto) {
+    return HiddenDiscrepancy.builder()
+        .id(dto.getId())
+        .gmcId(dto.getGmcId())
+        .hiddenForDesignatedBodyCode(dto.getHiddenForDesignatedBodyCode())
+        .hiddenBy(dto.getHiddenBy())
+        .reason(dto.getReason())
+        .hiddenDateTime(dto.getHiddenDateTime())
+        .build();
   }
 }
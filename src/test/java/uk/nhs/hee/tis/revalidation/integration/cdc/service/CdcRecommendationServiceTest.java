@@ -22,6 +22,7 @@
 package uk.nhs.hee.tis.revalidation.integration.cdc.service;
 
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyMap;
@@ -31,7 +32,9 @@ import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static uk.nhs.hee.tis.revalidation.integration.config.EsConstant.Indexes.MASTER_DOCTOR_INDEX;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import java.util.Collections;
+import java.util.Map;
 import org.apache.commons.lang3.NotImplementedException;
 import org.elasticsearch.common.collect.List;
 import org.junit.jupiter.api.Test;
@@ -42,9 +45,16 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import uk.nhs.hee.tis.revalidation.integration.cdc.CdcMetrics;
 import uk.nhs.hee.tis.revalidation.integration.cdc.message.publisher.CdcMessagePublisher;
 import uk.nhs.hee.tis.revalidation.integration.cdc.message.testutil.CdcTestDataGenerator;
+import uk.nhs.hee.tis.revalidation.integration.cdc.repository.custom.EsBulkWriteEngine.BulkWriteResult;
 import uk.nhs.hee.tis.revalidation.integration.cdc.repository.custom.EsDocUpdateHelper;
+import uk.nhs.hee.tis.revalidation.integration.cdc.repository.custom.EsPartialUpdateCoalescer;
+import uk.nhs.hee.tis.revalidation.integration.cdc.repository.custom.LiveGenerationMirror;
+import uk.nhs.hee.tis.revalidation.integration.entity.Recommendation;
+import uk.nhs.hee.tis.revalidation.integration.sync.helper.MasterDoctorDocumentIds;
+import uk.nhs.hee.tis.revalidation.integration.sync.helper.MasterDoctorIdentityResolver;
 import uk.nhs.hee.tis.revalidation.integration.sync.repository.MasterDoctorElasticSearchRepository;
 import uk.nhs.hee.tis.revalidation.integration.sync.view.MasterDoctorView;
 
@@ -61,12 +71,27 @@ class CdcRecommendationServiceTest {
   @Mock
   EsDocUpdateHelper esUpdateHelper;
 
+  @Mock
+  EsPartialUpdateCoalescer updateCoalescer;
+
   @Mock
   CdcMessagePublisher publisher;
 
+  @Mock
+  MasterDoctorIdentityResolver identityResolver;
+
+  @Spy
+  CdcMetrics cdcMetrics = new CdcMetrics(new SimpleMeterRegistry());
+
+  @Spy
+  LiveGenerationMirror liveGenerationMirror = new LiveGenerationMirror();
+
   @Captor
   ArgumentCaptor<MasterDoctorView> masterDoctorViewCaptor;
 
+  @Captor
+  ArgumentCaptor<Map<String, Map<String, Object>>> fieldsByIdCaptor;
+
   private final MasterDoctorView masterDoctorView = CdcTestDataGenerator.getTestMasterDoctorView();
 
   @Test
@@ -76,8 +101,8 @@ class CdcRecommendationServiceTest {
     var newRecommendation = CdcTestDataGenerator.getCdcRecommendationInsertCdcDocumentDto();
     cdcRecommendationService.upsertEntity(newRecommendation.getFullDocument());
 
-    verify(esUpdateHelper).partialUpdate(eq(MASTER_DOCTOR_INDEX), eq(masterDoctorView.getId()),
-        anyMap(), eq(MasterDoctorView.class));
+    verify(updateCoalescer).update(eq(MASTER_DOCTOR_INDEX), eq(masterDoctorView.getId()),
+        anyMap());
   }
 
   @Test
@@ -93,8 +118,6 @@ class CdcRecommendationServiceTest {
   @Test
   void shouldAllowNullOutcomes() {
     when(repository.findByGmcReferenceNumber(any())).thenReturn(List.of(masterDoctorView));
-    when(esUpdateHelper.partialUpdate(eq(MASTER_DOCTOR_INDEX), eq(masterDoctorView.getId()),
-        anyMap(), eq(MasterDoctorView.class))).thenReturn(masterDoctorView);
 
     var newRecommendation = CdcTestDataGenerator
         .getRecommendationInsertCdcDocumentDtoNullOutcome();
@@ -109,4 +132,55 @@ class CdcRecommendationServiceTest {
             "foo"
         ));
   }
+
+  @Test
+  void shouldBulkUpdateBatchOfRecommendationsForExistingDoctors() {
+    Recommendation recommendation = CdcTestDataGenerator.getCdcRecommendationInsertCdcDocumentDto()
+        .getFullDocument();
+    Recommendation unknownDoctor = Recommendation.builder().gmcNumber("unknown").build();
+    when(identityResolver.resolveByGmcReferenceNumbers(any())).thenReturn(
+        Map.of(recommendation.getGmcNumber(), List.of(masterDoctorView.getId())));
+    when(esUpdateHelper.bulkPartialUpdate(eq(MASTER_DOCTOR_INDEX), any()))
+        .thenReturn(new BulkWriteResult(0, List.of(masterDoctorView.getId())));
+
+    var failed = cdcRecommendationService.upsertEntities(List.of(recommendation, unknownDoctor));
+
+    verify(esUpdateHelper).bulkPartialUpdate(eq(MASTER_DOCTOR_INDEX), fieldsByIdCaptor.capture());
+    assertEquals(1, fieldsByIdCaptor.getValue().size());
+    assertEquals(recommendation.getAdmin(),
+        fieldsByIdCaptor.getValue().get(masterDoctorView.getId()).get("admin"));
+    assertEquals(List.of(recommendation), failed);
+  }
+
+  @Test
+  void shouldUpdateByDocumentIdWithoutSearching() {
+    var service = new CdcRecommendationService(repository, esUpdateHelper, updateCoalescer,
+        identityResolver, true, cdcMetrics, liveGenerationMirror);
+    Recommendation recommendation = CdcTestDataGenerator.getCdcRecommendationInsertCdcDocumentDto()
+        .getFullDocument();
+    when(updateCoalescer.updateIfExists(eq(MASTER_DOCTOR_INDEX),
+        eq(MasterDoctorDocumentIds.documentId(recommendation.getGmcNumber(), null)), anyMap()))
+        .thenReturn(true);
+
+    service.upsertEntity(recommendation);
+
+    verify(repository, never()).findByGmcReferenceNumber(any());
+    verify(updateCoalescer, never()).update(any(), any(), any());
+  }
+
+  @Test
+  void shouldSearchWhenDocumentIsNotKeyedByGmcNumber() {
+    var service = new CdcRecommendationService(repository, esUpdateHelper, updateCoalescer,
+        identityResolver, true, cdcMetrics, liveGenerationMirror);
+    Recommendation recommendation = CdcTestDataGenerator.getCdcRecommendationInsertCdcDocumentDto()
+        .getFullDocument();
+    when(updateCoalescer.updateIfExists(eq(MASTER_DOCTOR_INDEX), any(), anyMap()))
+        .thenReturn(false);
+    when(repository.findByGmcReferenceNumber(any())).thenReturn(List.of(masterDoctorView));
+
+    service.upsertEntity(recommendation);
+
+    verify(updateCoalescer).update(eq(MASTER_DOCTOR_INDEX), eq(masterDoctorView.getId()),
+        anyMap());
+  }
 }
@@ -23,18 +23,22 @@ package uk.nhs.hee.tis.revalidation.integration.cdc.service;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.is;
-import static org.hamcrest.Matchers.nullValue;
-import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
+import static uk.nhs.hee.tis.revalidation.integration.cdc.service.CdcTraineeUpdateService.DETACHED_TIS_FIELDS;
+import static uk.nhs.hee.tis.revalidation.integration.config.EsConstant.Indexes.MASTER_DOCTOR_INDEX;
 
-import com.github.javafaker.Faker;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import java.time.LocalDate;
-import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import org.apache.commons.lang3.NotImplementedException;
-import org.elasticsearch.common.collect.List;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -44,19 +48,22 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import uk.nhs.hee.tis.revalidation.integration.cdc.CdcMetrics;
 import uk.nhs.hee.tis.revalidation.integration.cdc.dto.ConnectionInfoDto;
 import uk.nhs.hee.tis.revalidation.integration.cdc.message.publisher.CdcMessagePublisher;
-import uk.nhs.hee.tis.revalidation.integration.cdc.message.testutil.CdcTestDataGenerator;
+import uk.nhs.hee.tis.revalidation.integration.cdc.repository.custom.EsBulkWriteEngine.BulkWriteResult;
+import uk.nhs.hee.tis.revalidation.integration.cdc.repository.custom.EsDocUpdateHelper;
+import uk.nhs.hee.tis.revalidation.integration.cdc.repository.custom.EsDocUpdateHelper.EsUpdateException;
+import uk.nhs.hee.tis.revalidation.integration.cdc.repository.custom.LiveGenerationMirror;
 import uk.nhs.hee.tis.revalidation.integration.router.mapper.MasterDoctorViewMapper;
 import uk.nhs.hee.tis.revalidation.integration.router.mapper.MasterDoctorViewMapperImpl;
+import uk.nhs.hee.tis.revalidation.integration.sync.helper.MasterDoctorIdentityResolver;
 import uk.nhs.hee.tis.revalidation.integration.sync.repository.MasterDoctorElasticSearchRepository;
 import uk.nhs.hee.tis.revalidation.integration.sync.view.MasterDoctorView;
 
 @ExtendWith(MockitoExtension.class)
 class CdcTraineeUpdateServiceTest {
 
-  private final Faker faker = new Faker();
-
   private final Long tcsPersonId = 1L;
   private final String gmcRefereneNumber = "1234567";
   private final String doctorFirstName = "doctorFirstName";
@@ -77,17 +84,25 @@ class CdcTraineeUpdateServiceTest {
   private MasterDoctorElasticSearchRepository repository;
   @Mock
   private CdcMessagePublisher publisher;
+  @Mock
+  private EsDocUpdateHelper esDocUpdateHelper;
+  @Mock
+  private MasterDoctorIdentityResolver identityResolver;
   @Spy
   private MasterDoctorViewMapper mapper = new MasterDoctorViewMapperImpl();
+  @Spy
+  private CdcMetrics cdcMetrics = new CdcMetrics(new SimpleMeterRegistry());
+  @Spy
+  private LiveGenerationMirror liveGenerationMirror = new LiveGenerationMirror();
+  @Captor
+  private ArgumentCaptor<Map<String, Map<String, Object>>> fieldsByIdCaptor;
   @Captor
-  private ArgumentCaptor<MasterDoctorView> masterDoctorViewCaptor;
+  private ArgumentCaptor<Map<String, Map<String, Object>>> newDocumentsByIdCaptor;
 
   private ConnectionInfoDto traineeUpdate;
-  private MasterDoctorView masterDoctorView;
 
   @BeforeEach
   void setupTestData() {
-    masterDoctorView = CdcTestDataGenerator.getTestMasterDoctorView();
     traineeUpdate =
         ConnectionInfoDto.builder()
             .tcsPersonId(tcsPersonId)
@@ -109,139 +124,105 @@ class CdcTraineeUpdateServiceTest {
 
   @Test
   void shouldUpsertNewFields() {
-    when(repository.findByGmcReferenceNumberAndTcsPersonId(gmcRefereneNumber, tcsPersonId))
-        .thenReturn(List.of(masterDoctorView));
     traineeUpdate.setGmcReferenceNumber(gmcRefereneNumber);
+    stubCandidates(gmcRefereneNumber, view("a", gmcRefereneNumber, tcsPersonId),
+        view("b", gmcRefereneNumber, null));
+    stubBulkUpsert(new BulkWriteResult(1, List.of()));
 
     cdcTraineeUpdateService.upsertEntity(traineeUpdate);
 
-    verify(repository).save(masterDoctorViewCaptor.capture());
-
+    verifyBulkUpsert();
+    var fieldsById = fieldsByIdCaptor.getValue();
+    assertEquals(List.of("a"), List.copyOf(fieldsById.keySet()));
     //new fields
-    final var savedEntity = masterDoctorViewCaptor.getValue();
-    assertThat(savedEntity.getDoctorFirstName(), is(doctorFirstName));
-    assertThat(savedEntity.getDoctorLastName(), is(doctorLastName));
-    assertThat(savedEntity.getTcsPersonId(), is(tcsPersonId));
-    //existing fields
-    assertThat(savedEntity.getGmcReferenceNumber(), is(masterDoctorView.getGmcReferenceNumber()));
-    assertThat(savedEntity.getTisStatus(), is(masterDoctorView.getTisStatus()));
-    assertThat(savedEntity.getAdmin(), is(masterDoctorView.getAdmin()));
-    assertThat(savedEntity.getDesignatedBody(), is(masterDoctorView.getDesignatedBody()));
+    var fields = fieldsById.get("a");
+    assertThat(fields.get("doctorFirstName"), is(doctorFirstName));
+    assertThat(fields.get("doctorLastName"), is(doctorLastName));
+    assertThat(fields.get("tcsPersonId"), is(tcsPersonId));
+    assertThat(fields.get("programmeName"), is(programmeName));
+    assertThat(fields.get("membershipType"), is(programmeMembershipType));
+    assertTrue(fields.containsKey("placementGrade"));
+    assertTrue(newDocumentsByIdCaptor.getValue().isEmpty());
   }
 
   @Test
   void shouldUpsertNewFieldsWhenTcsPersonIdNotAlreadyExists() {
-    masterDoctorView.setTcsPersonId(null);
-    when(repository.findByGmcReferenceNumber(gmcRefereneNumber))
-        .thenReturn(List.of(masterDoctorView));
     traineeUpdate.setGmcReferenceNumber(gmcRefereneNumber);
+    stubCandidates(gmcRefereneNumber, view("a", gmcRefereneNumber.toUpperCase(), null));
+    stubBulkUpsert(new BulkWriteResult(1, List.of()));
 
     cdcTraineeUpdateService.upsertEntity(traineeUpdate);
 
-    verify(repository).save(masterDoctorViewCaptor.capture());
-
-    //new fields
-    final var savedEntity = masterDoctorViewCaptor.getValue();
-    assertThat(savedEntity.getDoctorFirstName(), is(doctorFirstName));
-    assertThat(savedEntity.getDoctorLastName(), is(doctorLastName));
-    assertThat(savedEntity.getTcsPersonId(), is(tcsPersonId));
-    //existing fields
-    assertThat(savedEntity.getGmcReferenceNumber(), is(masterDoctorView.getGmcReferenceNumber()));
-    assertThat(savedEntity.getTisStatus(), is(masterDoctorView.getTisStatus()));
-    assertThat(savedEntity.getAdmin(), is(masterDoctorView.getAdmin()));
-    assertThat(savedEntity.getDesignatedBody(), is(masterDoctorView.getDesignatedBody()));
+    verifyBulkUpsert();
+    var fields = fieldsByIdCaptor.getValue().get("a");
+    assertThat(fields.get("tcsPersonId"), is(tcsPersonId));
+    assertThat(fields.get("doctorFirstName"), is(doctorFirstName));
   }
 
   @Test
   void shouldRemoveTisInfoIfGmcNumberIsNull() {
-    final String programmeOwner = faker.lorem().characters(20);
-    final String programmeName = faker.lorem().characters(20);
-    final String membershipType = faker.lorem().characters(20);
-    final String placementGrade = faker.lorem().characters(20);
-    final LocalDate programmeMembershipStartDate = LocalDate.now();
-    final LocalDate programmeMembershipEndDate = LocalDate.now();
-    final LocalDate curriculumEndDate = LocalDate.now();
-
-    final var masterDoctorViewNullGmc = CdcTestDataGenerator.getTestMasterDoctorView();
-    masterDoctorViewNullGmc.setGmcReferenceNumber(null);
-    masterDoctorViewNullGmc.setProgrammeOwner(programmeOwner);
-    masterDoctorViewNullGmc.setProgrammeName(programmeName);
-    masterDoctorViewNullGmc.setPlacementGrade(placementGrade);
-    masterDoctorViewNullGmc.setMembershipType(membershipType);
-    masterDoctorViewNullGmc.setMembershipStartDate(programmeMembershipStartDate);
-    masterDoctorViewNullGmc.setMembershipEndDate(programmeMembershipEndDate);
-    masterDoctorViewNullGmc.setCurriculumEndDate(curriculumEndDate);
-
-    when(repository.findByTcsPersonId(tcsPersonId)).thenReturn(List.of(masterDoctorViewNullGmc));
+    stubCandidates(null, view("a", null, tcsPersonId), view("b", gmcRefereneNumber, 2L));
+    stubBulkUpsert(new BulkWriteResult(1, List.of()));
+
     cdcTraineeUpdateService.upsertEntity(traineeUpdate);
 
-    verify(repository).save(masterDoctorViewCaptor.capture());
+    verifyBulkUpsert();
+    assertEquals(Map.of("a", DETACHED_TIS_FIELDS), fieldsByIdCaptor.getValue());
+    assertTrue(newDocumentsByIdCaptor.getValue().isEmpty());
+  }
 
-    //new fields
-    final var savedEntity = masterDoctorViewCaptor.getValue();
-    assertNull(savedEntity.getTcsPersonId());
-    assertNull(savedEntity.getProgrammeName());
-    assertNull(savedEntity.getProgrammeOwner());
-    assertNull(savedEntity.getCurriculumEndDate());
-    assertNull(savedEntity.getMembershipStartDate());
-    assertNull(savedEntity.getMembershipEndDate());
-    assertNull(savedEntity.getMembershipType());
-    assertNull(savedEntity.getPlacementGrade());
+  @Test
+  void shouldIgnoreFilteredOutRecordWithoutDocument() {
+    stubCandidates(null);
+
+    cdcTraineeUpdateService.upsertEntity(traineeUpdate);
+
+    verifyNoInteractions(esDocUpdateHelper);
   }
 
   @Test
   void shouldInsertTraineeInfoIfNoMatch() {
-    when(repository.findByGmcReferenceNumber(any())).thenReturn(Collections.emptyList());
+    traineeUpdate.setGmcReferenceNumber(gmcRefereneNumber);
+    stubCandidates(gmcRefereneNumber);
+    stubBulkUpsert(new BulkWriteResult(1, List.of()));
 
-    traineeUpdate.setGmcReferenceNumber(faker.number().digits(8));
     cdcTraineeUpdateService.upsertEntity(traineeUpdate);
 
-    verify(repository).save(masterDoctorViewCaptor.capture());
-
+    verifyBulkUpsert();
+    assertTrue(fieldsByIdCaptor.getValue().isEmpty());
     //new fields
-    final var savedMasterDoctorView = masterDoctorViewCaptor.getValue();
-    assertThat(savedMasterDoctorView.getDoctorFirstName(), is(doctorFirstName));
-    assertThat(savedMasterDoctorView.getDoctorLastName(), is(doctorLastName));
-    assertThat(savedMasterDoctorView.getTcsPersonId(), is(tcsPersonId));
+    var newDocument = newDocumentsByIdCaptor.getValue().get("gmc-" + gmcRefereneNumber);
+    assertThat(newDocument.get("gmcReferenceNumber"), is(gmcRefereneNumber));
+    assertThat(newDocument.get("doctorFirstName"), is(doctorFirstName));
+    assertThat(newDocument.get("doctorLastName"), is(doctorLastName));
+    assertThat(newDocument.get("tcsPersonId"), is(tcsPersonId));
   }
 
   @Test
   void shouldRemoveTisInfoFromRecordsIfGmcNumberNotMatch() {
-    masterDoctorView.setDesignatedBody(null);
-    when(repository.findByTcsPersonIdAndGmcReferenceNumberNot(tcsPersonId, gmcRefereneNumber))
-        .thenReturn(List.of(masterDoctorView));
     traineeUpdate.setGmcReferenceNumber(gmcRefereneNumber);
+    stubCandidates(gmcRefereneNumber, view("a", gmcRefereneNumber, tcsPersonId),
+        view("b", "7654321", tcsPersonId));
+    stubBulkUpsert(new BulkWriteResult(2, List.of()));
+
+    cdcTraineeUpdateService.upsertEntity(traineeUpdate);
 
-    cdcTraineeUpdateService.detachTisInfoIfGmcNumberNotMatch(traineeUpdate);
-    verify(repository).save(masterDoctorViewCaptor.capture());
-    final var savedEntity = masterDoctorViewCaptor.getValue();
-    assertThat(savedEntity.getTcsPersonId(), nullValue());
-    assertThat(savedEntity.getTcsDesignatedBody(), nullValue());
-    assertThat(savedEntity.getMembershipStartDate(), nullValue());
-    assertThat(savedEntity.getMembershipEndDate(), nullValue());
-    assertThat(savedEntity.getProgrammeName(), nullValue());
-    assertThat(savedEntity.getProgrammeOwner(), nullValue());
-    assertThat(savedEntity.getCurriculumEndDate(), nullValue());
-    assertThat(savedEntity.getMembershipType(), nullValue());
-    assertThat(savedEntity.getPlacementGrade(), nullValue());
+    verifyBulkUpsert();
+    var fieldsById = fieldsByIdCaptor.getValue();
+    assertEquals(List.of("a", "b"), List.copyOf(fieldsById.keySet()));
+    assertEquals(DETACHED_TIS_FIELDS, fieldsById.get("b"));
+    assertTrue(DETACHED_TIS_FIELDS.containsKey("tcsPersonId"));
+    assertTrue(DETACHED_TIS_FIELDS.values().stream().allMatch(value -> value == null));
   }
 
   @Test
-  void shouldDetachTisInfoIfGmcDbcPresent() {
-    cdcTraineeUpdateService.detachTisInfo(masterDoctorView);
-
-    verify(repository).save(masterDoctorViewCaptor.capture());
-
-    final var savedEntity = masterDoctorViewCaptor.getValue();
-    assertThat(savedEntity.getTcsPersonId(), nullValue());
-    assertThat(savedEntity.getTcsDesignatedBody(), nullValue());
-    assertThat(savedEntity.getMembershipStartDate(), nullValue());
-    assertThat(savedEntity.getMembershipEndDate(), nullValue());
-    assertThat(savedEntity.getProgrammeName(), nullValue());
-    assertThat(savedEntity.getProgrammeOwner(), nullValue());
-    assertThat(savedEntity.getCurriculumEndDate(), nullValue());
-    assertThat(savedEntity.getMembershipType(), nullValue());
-    assertThat(savedEntity.getPlacementGrade(), nullValue());
+  void shouldThrowWhenBulkWriteFails() {
+    traineeUpdate.setGmcReferenceNumber(gmcRefereneNumber);
+    stubCandidates(gmcRefereneNumber, view("a", gmcRefereneNumber, tcsPersonId));
+    stubBulkUpsert(new BulkWriteResult(0, List.of("a")));
+
+    assertThrows(EsUpdateException.class,
+        () -> cdcTraineeUpdateService.upsertEntity(traineeUpdate));
   }
 
   @Test
@@ -250,4 +231,23 @@ class CdcTraineeUpdateServiceTest {
         () -> cdcTraineeUpdateService
             .deleteEntity("foo"));
   }
+
+  private void stubCandidates(String gmcReferenceNumber, MasterDoctorView... candidates) {
+    when(identityResolver.findByGmcReferenceNumberOrTcsPersonId(gmcReferenceNumber, tcsPersonId))
+        .thenReturn(List.of(candidates));
+  }
+
+  private void stubBulkUpsert(BulkWriteResult result) {
+    when(esDocUpdateHelper.bulkUpsert(eq(MASTER_DOCTOR_INDEX), any(), any())).thenReturn(result);
+  }
+
+  private void verifyBulkUpsert() {
+    verify(esDocUpdateHelper).bulkUpsert(eq(MASTER_DOCTOR_INDEX), fieldsByIdCaptor.capture(),
+        newDocumentsByIdCaptor.capture());
+  }
+
+  private MasterDoctorView view(String id, String gmcReferenceNumber, Long tcsPersonId) {
+    return MasterDoctorView.builder()
+        .id(id).gmcReferenceNumber(gmcReferenceNumber).tcsPersonId(tcsPersonId).build();
+  }
 }
@@ -0,0 +1,137 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright 2026 Crown Copyright (NHS England)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package uk.nhs.hee.tis.revalidation.integration.config;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static uk.nhs.hee.tis.revalidation.integration.config.GmcIdBatchLookupConfig.LATEST_CONCERNS_CHUNK_ROUTE;
+import static uk.nhs.hee.tis.revalidation.integration.config.GmcIdBatchLookupConfig.TCS_TRAINEES_CHUNK_ROUTE;
+import static uk.nhs.hee.tis.revalidation.integration.router.helper.GmcIdBatchLookup.GMC_IDS_HEADER;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.apache.camel.CamelContext;
+import org.apache.camel.Exchange;
+import org.apache.camel.ProducerTemplate;
+import org.apache.camel.builder.RouteBuilder;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import uk.nhs.hee.tis.revalidation.integration.router.helper.GmcIdBatchLookup;
+
+class GmcIdBatchLookupConfigTest {
+
+  private static final String CONCERNS_ROUTE = "direct:test-latest-concern";
+  private static final String TRAINEES_ROUTE = "direct:test-tcs-trainees";
+
+  private final List<Map<String, Object>> chunkHeaders =
+      Collections.synchronizedList(new ArrayList<>());
+  private CamelContext camelContext;
+  private ProducerTemplate producerTemplate;
+  private ExecutorService executor;
+  private ExecutorService callers;
+  private GmcIdBatchLookup latestConcernsLookup;
+  private GmcIdBatchLookup tcsTraineesLookup;
+
+  @BeforeEach
+  void setUp() throws Exception {
+    camelContext = new DefaultCamelContext();
+    producerTemplate = camelContext.createProducerTemplate();
+    executor = Executors.newFixedThreadPool(2);
+    callers = Executors.newFixedThreadPool(2);
+    GmcIdBatchLookupConfig config =
+        new GmcIdBatchLookupConfig(producerTemplate, executor, 200, 1500);
+    latestConcernsLookup = config.latestConcernsLookup();
+    tcsTraineesLookup = config.tcsTraineesLookup();
+    camelContext.addRoutes(new RouteBuilder() {
+      @Override
+      public void configure() {
+        from(CONCERNS_ROUTE).process(latestConcernsLookup);
+        from(TRAINEES_ROUTE).process(tcsTraineesLookup);
+        // The chunk routes record the headers they would send downstream.
+        from(LATEST_CONCERNS_CHUNK_ROUTE).process(this::recordChunk);
+        from(TCS_TRAINEES_CHUNK_ROUTE).process(this::recordChunk);
+      }
+
+      private void recordChunk(Exchange exchange) {
+        chunkHeaders.add(new HashMap<>(exchange.getIn().getHeaders()));
+        Map<String, Object> values = new HashMap<>();
+        for (String gmcId : exchange.getIn().getHeader(GMC_IDS_HEADER, String.class).split(",")) {
+          values.put(gmcId, "value-" + gmcId);
+        }
+        exchange.getMessage().setBody(values);
+      }
+    });
+    camelContext.start();
+  }
+
+  @AfterEach
+  void tearDown() {
+    latestConcernsLookup.shutdown();
+    tcsTraineesLookup.shutdown();
+    camelContext.stop();
+    executor.shutdownNow();
+    callers.shutdownNow();
+  }
+
+  @Test
+  void shouldSendCallerAuthorizationWithConcernChunks() throws Exception {
+    Future<Exchange> first = request(CONCERNS_ROUTE, "111", "Bearer first");
+    Future<Exchange> second = request(CONCERNS_ROUTE, "222", "Bearer second");
+
+    assertEquals(Map.of("111", "value-111"), first.get().getMessage().getBody());
+    assertEquals(Map.of("222", "value-222"), second.get().getMessage().getBody());
+    assertEquals(2, chunkHeaders.size());
+    for (Map<String, Object> headers : chunkHeaders) {
+      String gmcIds = (String) headers.get(GMC_IDS_HEADER);
+      assertEquals(gmcIds.equals("111") ? "Bearer first" : "Bearer second",
+          headers.get(HttpHeaders.AUTHORIZATION));
+    }
+  }
+
+  @Test
+  void shouldCollapseTcsChunksOfDifferentCallers() throws Exception {
+    Future<Exchange> first = request(TRAINEES_ROUTE, "111", "Bearer first");
+    Future<Exchange> second = request(TRAINEES_ROUTE, "222", "Bearer second");
+
+    assertEquals(Map.of("111", "value-111"), first.get().getMessage().getBody());
+    assertEquals(Map.of("222", "value-222"), second.get().getMessage().getBody());
+    assertEquals(1, chunkHeaders.size());
+    assertNull(chunkHeaders.get(0).get(HttpHeaders.AUTHORIZATION));
+  }
+
+  private Future<Exchange> request(String route, String gmcIds, String authorization) {
+    return callers.submit(() -> producerTemplate.request(route,
+        exchange -> {
+          exchange.getIn().setHeader(GMC_IDS_HEADER, gmcIds);
+          exchange.getIn().setHeader(HttpHeaders.AUTHORIZATION, authorization);
+        }));
+  }
+}
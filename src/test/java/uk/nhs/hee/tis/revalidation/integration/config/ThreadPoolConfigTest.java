@@ -41,4 +41,16 @@ class ThreadPoolConfigTest {
     assertTrue(latch.await(2, TimeUnit.SECONDS));
     executorService.shutdownNow();
   }
+
+  @Test
+  void esBulkExecutorShouldExecuteTasks() throws Exception {
+    ThreadPoolConfig threadPoolConfig = new ThreadPoolConfig();
+    ExecutorService executorService = threadPoolConfig.esBulkExecutor(2);
+
+    CountDownLatch latch = new CountDownLatch(1);
+    executorService.submit(latch::countDown);
+
+    assertTrue(latch.await(2, TimeUnit.SECONDS));
+    executorService.shutdownNow();
+  }
 }
@@ -0,0 +1,262 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright 2026 Crown Copyright (NHS England)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package uk.nhs.hee.tis.revalidation.integration.message;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import javax.naming.OperationNotSupportedException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class DoctorLaneExecutorTest {
+
+  private DoctorLaneExecutor executor;
+
+  @BeforeEach
+  void setUp() {
+    executor = new DoctorLaneExecutor(4);
+  }
+
+  @AfterEach
+  void tearDown() {
+    executor.shutdown();
+  }
+
+  @Test
+  void shouldKeyDoctorsByGmcNumberThenPersonId() {
+    assertThat(DoctorLaneExecutor.doctorKey("ABC123", 1L), is("abc123"));
+    assertThat(DoctorLaneExecutor.doctorKey(" ABC123 ", 1L), is("abc123"));
+    assertThat(DoctorLaneExecutor.doctorKey(null, 1L), is("tis:1"));
+    assertThat(DoctorLaneExecutor.doctorKey(" ", 1L), is("tis:1"));
+    assertThat(DoctorLaneExecutor.doctorKey(null, null), nullValue());
+  }
+
+  @Test
+  void shouldMapTheSameDoctorToTheSameLane() {
+    assertThat(executor.laneOf(DoctorLaneExecutor.doctorKey("ABC123", null)),
+        is(executor.laneOf(DoctorLaneExecutor.doctorKey("abc123", 2L))));
+    assertThat(executor.laneOf(null), is(0));
+  }
+
+  @Test
+  void shouldRunTaskOnLaneWithoutWaitingForIt() throws Exception {
+    CountDownLatch release = new CountDownLatch(1);
+    List<String> threads = Collections.synchronizedList(new ArrayList<>());
+
+    CompletableFuture<Void> future = executor.submit("123", () -> {
+      release.await();
+      threads.add(Thread.currentThread().getName());
+    });
+
+    assertFalse(future.isDone());
+    release.countDown();
+    future.get(5, TimeUnit.SECONDS);
+    assertThat(threads, contains("doctor-lane-" + executor.laneOf("123")));
+  }
+
+  @Test
+  void shouldFailFutureWithCheckedExceptionOfTask() {
+    OperationNotSupportedException failure = new OperationNotSupportedException("unsupported");
+
+    CompletableFuture<Void> future = executor.submit("123", () -> {
+      throw failure;
+    });
+
+    ExecutionException thrown = assertThrows(ExecutionException.class,
+        () -> future.get(5, TimeUnit.SECONDS));
+    assertSame(failure, thrown.getCause());
+  }
+
+  @Test
+  void shouldKeepOrderOfTasksOfEachDoctor() throws Exception {
+    List<Integer> order = Collections.synchronizedList(new ArrayList<>());
+    List<CompletableFuture<Void>> futures = new ArrayList<>();
+
+    for (int i = 0; i < 20; i++) {
+      int update = i;
+      futures.add(executor.submit("123", () -> order.add(update)));
+    }
+
+    CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).get(5, TimeUnit.SECONDS);
+    assertThat(order, is(IntStream.range(0, 20).boxed().collect(Collectors.toList())));
+  }
+
+  @Test
+  void shouldRunNestedTaskInPlace() throws Exception {
+    DoctorLaneExecutor singleLane = new DoctorLaneExecutor(1);
+    AtomicBoolean ran = new AtomicBoolean();
+
+    singleLane.submit("123", () -> singleLane.submit("456", () -> ran.set(true)).get())
+        .get(5, TimeUnit.SECONDS);
+
+    assertTrue(ran.get());
+    singleLane.shutdown();
+  }
+
+  @Test
+  void shouldRunWholeBatchOnceOnCallingThread() {
+    List<String> items = List.of("a-1", "b-1", "a-2", "c-1", "b-2", "a-3");
+    List<List<String>> parts = new ArrayList<>();
+    List<String> threads = new ArrayList<>();
+
+    executor.executeAll(items, item -> item.substring(0, 1), part -> {
+      parts.add(part);
+      threads.add(Thread.currentThread().getName());
+    });
+
+    assertThat(parts, contains(items));
+    assertThat(threads, contains(Thread.currentThread().getName()));
+  }
+
+  @Test
+  void shouldRunBatchAfterEarlierTasksOfItsDoctorsAndBeforeLaterOnes() throws Exception {
+    CountDownLatch release = new CountDownLatch(1);
+    List<String> order = Collections.synchronizedList(new ArrayList<>());
+    CompletableFuture<Void> earlier = executor.submit("a", () -> {
+      release.await();
+      order.add("earlier");
+    });
+    Thread batch = new Thread(() -> executor.executeAll(List.of("a"), item -> item, part -> {
+      order.add("batch");
+      CompletableFuture<Void> nested = executor.submit("a", () -> order.add("nested"));
+      assertTrue(nested.isDone());
+    }));
+    batch.start();
+    batch.join(200);
+    CompletableFuture<Void> later = executor.submit("a", () -> order.add("later"));
+
+    assertTrue(batch.isAlive());
+    release.countDown();
+    batch.join(5000);
+    later.get(5, TimeUnit.SECONDS);
+    earlier.get(5, TimeUnit.SECONDS);
+    assertThat(order, contains("earlier", "batch", "nested", "later"));
+  }
+
+  @Test
+  void shouldHoldEveryLaneForItemsWithoutDoctorKey() throws Exception {
+    CountDownLatch release = new CountDownLatch(1);
+    List<String> order = Collections.synchronizedList(new ArrayList<>());
+    for (int lane = 0; lane < executor.getLaneCount(); lane++) {
+      int current = lane;
+      executor.submit(keyOnLane(lane), () -> {
+        release.await();
+        order.add("lane-" + current);
+      });
+    }
+    Thread batch = new Thread(() -> executor.executeAll(List.of("delete"), item -> null,
+        part -> order.add("delete")));
+    batch.start();
+    batch.join(200);
+
+    assertTrue(batch.isAlive());
+    release.countDown();
+    batch.join(5000);
+    assertFalse(batch.isAlive());
+    assertThat(order.get(order.size() - 1), is("delete"));
+    assertThat(order.size(), is(executor.getLaneCount() + 1));
+  }
+
+  @Test
+  void shouldRethrowFailureOfBatchAndReleaseItsLanes() throws Exception {
+    List<String> items = List.of("a", "b");
+
+    assertThrows(IllegalStateException.class, () -> executor.executeAll(items, item -> item,
+        part -> {
+          throw new IllegalStateException("failed");
+        }));
+
+    executor.submit("a", () -> {
+    }).get(5, TimeUnit.SECONDS);
+  }
+
+  @Test
+  void shouldNotDeadlockBatchesHoldingTheSameLanes() throws Exception {
+    List<Thread> batches = new ArrayList<>();
+    AtomicInteger ran = new AtomicInteger();
+    for (int i = 0; i < 8; i++) {
+      List<String> items = i % 2 == 0 ? List.of("a", "b", "c", "d") : List.of("d", "c", "b", "a");
+      Thread batch = new Thread(() -> executor.executeAll(items, item -> item,
+          part -> ran.incrementAndGet()));
+      batches.add(batch);
+      batch.start();
+    }
+
+    for (Thread batch : batches) {
+      batch.join(5000);
+      assertFalse(batch.isAlive());
+    }
+    assertThat(ran.get(), is(8));
+  }
+
+  @Test
+  void shouldWaitForInFlightLanesWhenDrained() throws InterruptedException {
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    AtomicBoolean finished = new AtomicBoolean();
+    executor.submit("123", () -> {
+      started.countDown();
+      release.await();
+      finished.set(true);
+    });
+    assertTrue(started.await(5, TimeUnit.SECONDS));
+
+    Thread drainer = new Thread(executor::awaitDrained);
+    drainer.start();
+    drainer.join(200);
+    assertTrue(drainer.isAlive());
+
+    release.countDown();
+    drainer.join(5000);
+    assertFalse(drainer.isAlive());
+    assertTrue(finished.get());
+  }
+
+  private String keyOnLane(int lane) {
+    for (int i = 0; ; i++) {
+      String key = String.valueOf(i);
+      if (executor.laneOf(key) == lane) {
+        return key;
+      }
+    }
+  }
+}
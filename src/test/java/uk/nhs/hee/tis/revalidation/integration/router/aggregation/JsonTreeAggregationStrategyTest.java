@@ -28,6 +28,10 @@ import static org.hamcrest.CoreMatchers.nullValue;
 import static org.hamcrest.MatcherAssert.assertThat;
 
 import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
 import org.apache.camel.Exchange;
 import org.apache.camel.Message;
 import org.apache.camel.impl.DefaultCamelContext;
@@ -36,30 +40,22 @@ import org.apache.camel.support.DefaultMessage;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
-class JsonStringAggregationStrategyTest {
+class JsonTreeAggregationStrategyTest {
 
-  private JsonStringAggregationStrategy aggregationStrategy;
+  private DefaultCamelContext camelContext;
+  private JsonTreeAggregationStrategy aggregationStrategy;
 
   @BeforeEach
   void setUp() {
-    aggregationStrategy = new JsonStringAggregationStrategy();
+    camelContext = new DefaultCamelContext();
+    aggregationStrategy = new JsonTreeAggregationStrategy(new ObjectMapper());
   }
 
   @Test
-  void shouldAggregateStringsToJsonWhenValidJson() {
-    var camelContext = new DefaultCamelContext();
-
-    var message1 = new DefaultMessage(camelContext);
-    message1.setHeader(AggregationKey.HEADER, "header1");
-    message1.setBody("{\"key1\":\"value1\"}");
-    var exchange1 = new DefaultExchange(camelContext);
-    exchange1.setMessage(message1);
-
-    var message2 = new DefaultMessage(camelContext);
-    message2.setHeader(AggregationKey.HEADER, "header2");
-    message2.setBody("{\"key2\":\"value2\"}");
-    var exchange2 = new DefaultExchange(camelContext);
-    exchange2.setMessage(message2);
+  void shouldAggregateBodiesToJsonWhenValidJson() {
+    Exchange exchange1 = branch("header1", "{\"key1\":\"value1\"}");
+    Exchange exchange2 = branch("header2",
+        new ByteArrayInputStream("{\"key2\":\"value2\"}".getBytes(StandardCharsets.UTF_8)));
 
     Exchange aggregatedExchange = aggregationStrategy.aggregate(null, exchange1);
     aggregatedExchange = aggregationStrategy.aggregate(aggregatedExchange, exchange2);
@@ -67,7 +63,7 @@ class JsonStringAggregationStrategyTest {
 
     Message aggregatedMessage = aggregatedExchange.getMessage();
     assertThat("Unexpected message body type.", aggregatedMessage.getBody(),
-        instanceOf(JsonNode.class));
+        instanceOf(ObjectNode.class));
 
     JsonNode aggregatedJson = aggregatedMessage.getBody(JsonNode.class);
     assertThat("Unexpected numbers of headers.", aggregatedJson.size(), is(2));
@@ -80,33 +76,33 @@ class JsonStringAggregationStrategyTest {
   }
 
   @Test
-  void shouldSetExceptionWhenInvalidJson() {
-    var camelContext = new DefaultCamelContext();
+  void shouldAggregateEmptyBodyAsEmptyObject() {
+    Exchange aggregatedExchange = aggregationStrategy.aggregate(null, branch("header1", ""));
+    aggregationStrategy.onCompletion(aggregatedExchange);
 
-    var message1 = new DefaultMessage(camelContext);
-    message1.setHeader(AggregationKey.HEADER, "header1");
-    message1.setBody("body1");
-    var exchange1 = new DefaultExchange(camelContext);
-    exchange1.setMessage(message1);
+    JsonNode aggregatedJson = aggregatedExchange.getMessage().getBody(JsonNode.class);
+    assertThat("Unexpected node string value.", aggregatedJson.get("header1").toString(),
+        is("{}"));
+  }
 
-    var message2 = new DefaultMessage(camelContext);
-    message2.setHeader(AggregationKey.HEADER, "header2");
-    message2.setBody("body2");
-    var exchange2 = new DefaultExchange(camelContext);
-    exchange2.setMessage(message2);
+  @Test
+  void shouldSetExceptionWhenInvalidJson() {
+    Exchange exchange1 = branch("header1", "body1");
+    Exchange exchange2 = branch("header2", "{\"key2\":\"value2\"}");
 
     Exchange aggregatedExchange = aggregationStrategy.aggregate(null, exchange1);
     aggregatedExchange = aggregationStrategy.aggregate(aggregatedExchange, exchange2);
     aggregationStrategy.onCompletion(aggregatedExchange);
 
-    Message aggregatedMessage = aggregatedExchange.getMessage();
-    assertThat("Unexpected message body type.", aggregatedMessage.getBody(),
-        instanceOf(String.class));
-
-    String aggregatedString = aggregatedMessage.getBody(String.class);
-    assertThat("Unexpected message body.", aggregatedString,
-        is("\"header1\": body1,\"header2\": body2"));
-
     assertThat("Unexpected exception.", aggregatedExchange.getException(), notNullValue());
   }
+
+  private Exchange branch(String aggregationKey, Object body) {
+    var message = new DefaultMessage(camelContext);
+    message.setHeader(AggregationKey.HEADER, aggregationKey);
+    message.setBody(body);
+    var exchange = new DefaultExchange(camelContext);
+    exchange.setMessage(message);
+    return exchange;
+  }
 }
@@ -0,0 +1,168 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright 2026 Crown Copyright (NHS England)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package uk.nhs.hee.tis.revalidation.integration.router.helper;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.apache.camel.Exchange;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.apache.camel.support.DefaultExchange;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class GmcIdBatchLookupTest {
+
+  private static final Map<String, String> DOCTORS = Map.of("111", "a", "222", "b", "333", "c");
+
+  private List<List<String>> calls;
+  private ExecutorService executor;
+
+  @BeforeEach
+  void setUp() {
+    calls = Collections.synchronizedList(new ArrayList<>());
+    executor = Executors.newFixedThreadPool(2);
+  }
+
+  @AfterEach
+  void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  void shouldLookUpEachGmcIdOnceAndLeaveOutMissingDoctors() throws Exception {
+    GmcIdBatchLookup lookup = new GmcIdBatchLookup("test", this::lookUp, Runnable::run, 0, 100);
+
+    Map<String, Object> values = lookup.lookup(List.of("111", "444", "111", "222"));
+
+    assertEquals(Map.of("111", "a", "222", "b"), values);
+    assertEquals(List.of(List.of("111", "444", "222")), calls);
+  }
+
+  @Test
+  void shouldSplitGmcIdsIntoChunksUnderMaxChars() throws Exception {
+    GmcIdBatchLookup lookup = new GmcIdBatchLookup("test", this::lookUp, Runnable::run, 0, 7);
+
+    Map<String, Object> values = lookup.lookup(List.of("111", "222", "333"));
+
+    assertEquals(DOCTORS, values);
+    assertEquals(List.of(List.of("111", "222"), List.of("333")), calls);
+  }
+
+  @Test
+  void shouldCollapseConcurrentLookupsWithinWindow() throws Exception {
+    GmcIdBatchLookup lookup = new GmcIdBatchLookup("test", this::lookUp, Runnable::run, 200, 100);
+
+    Future<Map<String, Object>> first = executor.submit(() -> lookup.lookup(List.of("111", "222")));
+    Future<Map<String, Object>> second = executor.submit(
+        () -> lookup.lookup(List.of("222", "333")));
+
+    assertEquals(Map.of("111", "a", "222", "b"), first.get());
+    assertEquals(Map.of("222", "b", "333", "c"), second.get());
+    assertEquals(1, calls.size());
+    assertEquals(Set.of("111", "222", "333"), new HashSet<>(calls.get(0)));
+    lookup.shutdown();
+  }
+
+  @Test
+  void shouldOnlyCollapseLookupsOfTheSameCaller() throws Exception {
+    List<String> chunkCallers = Collections.synchronizedList(new ArrayList<>());
+    GmcIdBatchLookup lookup = new GmcIdBatchLookup("test", (gmcIds, caller) -> {
+      chunkCallers.add(caller);
+      return lookUp(gmcIds, caller);
+    }, Runnable::run, 200, 100, "Authorization");
+
+    Future<Map<String, Object>> first = executor.submit(
+        () -> lookup.lookup(List.of("111"), "first"));
+    Future<Map<String, Object>> second = executor.submit(
+        () -> lookup.lookup(List.of("111"), "second"));
+
+    assertEquals(Map.of("111", "a"), first.get());
+    assertEquals(Map.of("111", "a"), second.get());
+    assertEquals(Set.of("first", "second"), new HashSet<>(chunkCallers));
+    assertEquals(2, calls.size());
+    lookup.shutdown();
+  }
+
+  @Test
+  void shouldReadCallerFromHeader() throws Exception {
+    List<String> chunkCallers = new ArrayList<>();
+    GmcIdBatchLookup lookup = new GmcIdBatchLookup("test", (gmcIds, caller) -> {
+      chunkCallers.add(caller);
+      return lookUp(gmcIds, caller);
+    }, Runnable::run, 0, 100, "Authorization");
+    Exchange exchange = new DefaultExchange(new DefaultCamelContext());
+    exchange.getIn().setHeader(GmcIdBatchLookup.GMC_IDS_HEADER, "111");
+    exchange.getIn().setHeader("Authorization", "Bearer token");
+
+    lookup.process(exchange);
+
+    assertEquals(List.of("Bearer token"), chunkCallers);
+  }
+
+  @Test
+  void shouldThrowFailureOfChunk() {
+    GmcIdBatchLookup lookup = new GmcIdBatchLookup("test", (gmcIds, caller) -> {
+      throw new IOException("down");
+    }, Runnable::run, 0, 100);
+
+    assertThrows(IOException.class, () -> lookup.lookup(List.of("111")));
+  }
+
+  @Test
+  void shouldReadGmcIdsFromHeaderAndSetBody() throws Exception {
+    GmcIdBatchLookup lookup = new GmcIdBatchLookup("test", this::lookUp, Runnable::run, 0, 100);
+    Exchange exchange = new DefaultExchange(new DefaultCamelContext());
+    exchange.getIn().setHeader(GmcIdBatchLookup.GMC_IDS_HEADER, "111, 333");
+
+    lookup.process(exchange);
+
+    assertEquals(Map.of("111", "a", "333", "c"), exchange.getIn().getBody());
+  }
+
+  @Test
+  void shouldReadGmcIdsFromListHeader() throws Exception {
+    GmcIdBatchLookup lookup = new GmcIdBatchLookup("test", this::lookUp, Runnable::run, 0, 100);
+    Exchange exchange = new DefaultExchange(new DefaultCamelContext());
+    exchange.getIn().setHeader(GmcIdBatchLookup.GMC_IDS_HEADER, List.of("222"));
+
+    lookup.process(exchange);
+
+    assertEquals(Map.of("222", "b"), exchange.getIn().getBody());
+  }
+
+  private Map<String, ?> lookUp(List<String> gmcIds, String caller) {
+    calls.add(gmcIds);
+    return DOCTORS;
+  }
+}
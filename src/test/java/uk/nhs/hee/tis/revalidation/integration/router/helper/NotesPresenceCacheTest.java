@@ -0,0 +1,116 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright 2026 Crown Copyright (NHS England)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package uk.nhs.hee.tis.revalidation.integration.router.helper;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class NotesPresenceCacheTest {
+
+  private MeterRegistry meterRegistry;
+  private AtomicLong nanoTime;
+  private NotesPresenceCache cache;
+
+  @BeforeEach
+  void setUp() {
+    meterRegistry = new SimpleMeterRegistry();
+    nanoTime = new AtomicLong();
+    cache = new NotesPresenceCache(meterRegistry, 2, 60, nanoTime::get);
+  }
+
+  @Test
+  void shouldCountHitsAndMisses() {
+    cache.put("111", true);
+
+    assertEquals(true, cache.get("111"));
+    assertNull(cache.get("222"));
+
+    assertEquals(1.0, meterRegistry.get("notes.cache.requests").tag("result", "hit")
+        .counter().count());
+    assertEquals(1.0, meterRegistry.get("notes.cache.requests").tag("result", "miss")
+        .counter().count());
+  }
+
+  @Test
+  void shouldEvictLeastRecentlyUsedWhenFull() {
+    cache.put("111", true);
+    cache.put("222", false);
+    cache.get("111");
+    cache.put("333", true);
+
+    assertEquals(true, cache.get("111"));
+    assertNull(cache.get("222"));
+    assertEquals(true, cache.get("333"));
+    assertEquals(1.0, meterRegistry.get("notes.cache.evictions").tag("cause", "size")
+        .counter().count());
+    assertEquals(2.0, meterRegistry.get("notes.cache.size").gauge().value());
+  }
+
+  @Test
+  void shouldExpireEntriesAfterTtl() {
+    cache.put("111", true);
+    nanoTime.addAndGet(TimeUnit.SECONDS.toNanos(60));
+
+    assertNull(cache.get("111"));
+    assertEquals(0, cache.size());
+    assertEquals(1.0, meterRegistry.get("notes.cache.evictions").tag("cause", "expired")
+        .counter().count());
+  }
+
+  @Test
+  void shouldNotLetLookupStartedBeforeNoteWasSavedHideTheNote() {
+    cache.put("111", false);
+
+    cache.putNoteSaved("111");
+    cache.put("111", false);
+
+    assertEquals(true, cache.get("111"));
+  }
+
+  @Test
+  void shouldAcceptLookupsAgainOnceSavedNoteHasExpired() {
+    cache.putNoteSaved("111");
+    nanoTime.addAndGet(TimeUnit.SECONDS.toNanos(60));
+
+    cache.put("111", false);
+
+    assertEquals(false, cache.get("111"));
+  }
+
+  @Test
+  void shouldIgnoreNullGmcIds() {
+    cache.put(null, true);
+    cache.putNoteSaved(null);
+
+    assertNull(cache.get(null));
+    assertEquals(0, cache.size());
+    assertEquals(0.0, meterRegistry.get("notes.cache.requests").tag("result", "miss")
+        .counter().count());
+  }
+}
@@ -0,0 +1,131 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright 2026 Crown Copyright (NHS England)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package uk.nhs.hee.tis.revalidation.integration.router.helper;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.camel.Exchange;
+import org.apache.camel.Processor;
+import org.apache.camel.ProducerTemplate;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.apache.camel.support.DefaultExchange;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import uk.nhs.hee.tis.revalidation.integration.enums.ReferenceData;
+
+@ExtendWith(MockitoExtension.class)
+class ReferenceDataCacheTest {
+
+  private static final String SITES_ROUTE = ReferenceData.SITES.getLoadRoute();
+
+  @Mock
+  private ProducerTemplate producerTemplate;
+
+  private MeterRegistry meterRegistry;
+  private AtomicLong nanoTime;
+  private ReferenceDataCache cache;
+
+  @BeforeEach
+  void setUp() {
+    meterRegistry = new SimpleMeterRegistry();
+    nanoTime = new AtomicLong();
+    cache = new ReferenceDataCache(producerTemplate, meterRegistry, 240, 300, nanoTime::get);
+  }
+
+  @Test
+  void shouldLoadListOnFirstGetAndServeItFromCache() throws Exception {
+    when(producerTemplate.request(eq(SITES_ROUTE), any(Processor.class)))
+        .thenReturn(response("[\"site\"]"));
+
+    assertEquals("[\"site\"]", cache.get(ReferenceData.SITES));
+    assertEquals("[\"site\"]", cache.get(ReferenceData.SITES));
+
+    verify(producerTemplate, times(1)).request(eq(SITES_ROUTE), any(Processor.class));
+    assertEquals(1, meterRegistry.get("reference.cache.refresh").tag("data", "SITES")
+        .timer().count());
+  }
+
+  @Test
+  void shouldKeepLastListWhenRefreshFails() throws Exception {
+    when(producerTemplate.request(eq(SITES_ROUTE), any(Processor.class)))
+        .thenReturn(response("[\"site\"]"));
+    cache.get(ReferenceData.SITES);
+    when(producerTemplate.request(anyString(), any(Processor.class)))
+        .thenReturn(failure(new IllegalStateException("down")));
+
+    cache.refreshAll();
+    nanoTime.addAndGet(TimeUnit.SECONDS.toNanos(600));
+
+    assertEquals("[\"site\"]", cache.get(ReferenceData.SITES));
+    assertEquals(1.0, meterRegistry.get("reference.cache.refresh.failures").tag("data", "SITES")
+        .counter().count());
+  }
+
+  @Test
+  void shouldThrowLoadFailureWhenListNeverLoaded() {
+    when(producerTemplate.request(eq(SITES_ROUTE), any(Processor.class)))
+        .thenReturn(failure(new IllegalStateException("down")));
+
+    assertThrows(IllegalStateException.class, () -> cache.get(ReferenceData.SITES));
+  }
+
+  @Test
+  void shouldPublishAgeOfLoadedList() throws Exception {
+    when(producerTemplate.request(eq(SITES_ROUTE), any(Processor.class)))
+        .thenReturn(response("[]"));
+
+    assertTrue(Double.isNaN(meterRegistry.get("reference.cache.age").tag("data", "SITES")
+        .gauge().value()));
+    cache.get(ReferenceData.SITES);
+    nanoTime.addAndGet(TimeUnit.SECONDS.toNanos(30));
+
+    assertEquals(30.0, meterRegistry.get("reference.cache.age").tag("data", "SITES")
+        .gauge().value());
+  }
+
+  private static Exchange response(String body) {
+    Exchange exchange = new DefaultExchange(new DefaultCamelContext());
+    exchange.getMessage().setBody(body);
+    return exchange;
+  }
+
+  private static Exchange failure(Exception e) {
+    Exchange exchange = new DefaultExchange(new DefaultCamelContext());
+    exchange.setException(e);
+    return exchange;
+  }
+}
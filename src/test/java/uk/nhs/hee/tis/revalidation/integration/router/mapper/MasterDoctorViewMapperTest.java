@@ -25,6 +25,7 @@ import static org.hamcrest.CoreMatchers.notNullValue;
 import static org.hamcrest.CoreMatchers.nullValue;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
@@ -244,4 +245,26 @@ class MasterDoctorViewMapperTest {
     assertEquals(UNDER_NOTICE, result.get("underNotice"));
     assertEquals(EXISTS_IN_GMC, result.get("existsInGmc"));
   }
+
+  @Test
+  void testTraineeToEsDoc_shouldKeepMissingIdentityAndClearMissingProgrammeFields() {
+    // given
+    ConnectionInfoDto trainee = ConnectionInfoDto.builder()
+        .tcsPersonId(1L)
+        .doctorFirstName(DOCTOR_FIRST_NAME)
+        .programmeName("programmeName")
+        .build();
+
+    // when
+    Map<String, Object> result = masterDoctorViewMapper.traineeToEsDoc(trainee);
+
+    // then
+    assertEquals(1L, result.get("tcsPersonId"));
+    assertEquals(DOCTOR_FIRST_NAME, result.get("doctorFirstName"));
+    assertEquals("programmeName", result.get("programmeName"));
+    assertFalse(result.containsKey("gmcReferenceNumber"));
+    assertFalse(result.containsKey("doctorLastName"));
+    assertTrue(result.containsKey("placementGrade"));
+    assertThat(result.get("placementGrade"), nullValue());
+  }
 }
@@ -0,0 +1,132 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright 2026 Crown Copyright (NHS England)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package uk.nhs.hee.tis.revalidation.integration.router.message;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.util.ReflectionTestUtils.setField;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import uk.nhs.hee.tis.revalidation.integration.enums.SyncPhase;
+import uk.nhs.hee.tis.revalidation.integration.enums.SyncStatus;
+import uk.nhs.hee.tis.revalidation.integration.sync.helper.SyncMetrics;
+import uk.nhs.hee.tis.revalidation.integration.sync.service.DoctorUpsertElasticSearchService;
+import uk.nhs.hee.tis.revalidation.integration.sync.service.SyncStateService;
+import uk.nhs.hee.tis.revalidation.integration.sync.view.SyncState;
+
+@ExtendWith(MockitoExtension.class)
+class SyncResumeHandlerTest {
+
+  private static final String INDEX_NAME = "masterdoctorindex-20260101000000";
+
+  @Mock
+  private RabbitTemplate rabbitTemplate;
+  @Mock
+  private DoctorUpsertElasticSearchService doctorUpsertElasticSearchService;
+  @Mock
+  private SyncStateService syncStateService;
+  @Mock
+  private SyncStartHandler syncStartHandler;
+  @Mock
+  private SyncMetrics syncMetrics;
+  @InjectMocks
+  private SyncResumeHandler handler;
+
+  @BeforeEach
+  void setUp() {
+    setField(handler, "revalExchange", "exchange");
+    setField(handler, "tcsSyncStartRoutingKey", "tcsRoutingKey");
+    setField(handler, "gmcSyncStartRoutingKey", "gmcRoutingKey");
+    setField(handler, "connectionLogSyncStartRoutingKey", "connectionLogRoutingKey");
+    setField(handler, "hiddenDiscrepancySyncStartRoutingKey", "hiddenDiscrepancyRoutingKey");
+  }
+
+  @Test
+  void shouldRequestCurrentPhaseAgainWhenResuming() {
+    SyncState state = state(SyncPhase.CONNECTION_LOG, SyncStatus.IN_PROGRESS);
+    when(syncStateService.getState()).thenReturn(state);
+
+    SyncState resumed = handler.resumeTraineeSync();
+
+    assertEquals(state, resumed);
+    verify(doctorUpsertElasticSearchService).resumeMasterDoctorIndexRebuild(INDEX_NAME);
+    verify(syncStateService).recordResume();
+    verify(rabbitTemplate).convertAndSend("exchange", "connectionLogRoutingKey",
+        "connectionLogSyncStart");
+    verifyNoInteractions(syncStartHandler);
+  }
+
+  @Test
+  void shouldNotResumeCompletedSync() {
+    when(syncStateService.getState()).thenReturn(
+        state(SyncPhase.HIDDEN_DISCREPANCY, SyncStatus.COMPLETED));
+
+    handler.resumeTraineeSync();
+
+    verifyNoInteractions(rabbitTemplate, doctorUpsertElasticSearchService, syncStartHandler);
+  }
+
+  @Test
+  void shouldStartStagedSyncAgainWhenResuming() {
+    setField(handler, "stagingEnabled", true);
+    when(syncStateService.getState()).thenReturn(state(SyncPhase.GMC, SyncStatus.IN_PROGRESS));
+
+    handler.resumeTraineeSync();
+
+    verify(syncStartHandler).startTraineeSync();
+    verifyNoInteractions(rabbitTemplate, doctorUpsertElasticSearchService);
+  }
+
+  @Test
+  void shouldTakeOverInterruptedSyncOnStartup() {
+    when(syncStateService.getState()).thenReturn(state(SyncPhase.GMC, SyncStatus.IN_PROGRESS));
+
+    handler.takeOverInterruptedSync();
+
+    verify(doctorUpsertElasticSearchService).resumeMasterDoctorIndexRebuild(INDEX_NAME);
+    verify(syncMetrics).startPhase(SyncPhase.GMC);
+    verifyNoInteractions(rabbitTemplate);
+  }
+
+  @Test
+  void shouldNotTakeOverWhenNoSyncRecorded() {
+    handler.takeOverInterruptedSync();
+
+    verifyNoInteractions(rabbitTemplate, doctorUpsertElasticSearchService);
+  }
+
+  private SyncState state(SyncPhase phase, SyncStatus status) {
+    return SyncState.builder()
+        .indexName(INDEX_NAME)
+        .phase(phase)
+        .status(status)
+        .build();
+  }
+}
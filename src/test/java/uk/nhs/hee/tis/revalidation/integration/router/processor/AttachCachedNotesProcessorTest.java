@@ -0,0 +1,74 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright 2026 Crown Copyright (NHS England)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package uk.nhs.hee.tis.revalidation.integration.router.processor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static uk.nhs.hee.tis.revalidation.integration.router.helper.Constants.NOTES_CACHED_PROPERTY;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.camel.Exchange;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.apache.camel.support.DefaultExchange;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import uk.nhs.hee.tis.revalidation.integration.router.dto.ConnectionInfoDto;
+import uk.nhs.hee.tis.revalidation.integration.router.helper.NotesPresenceCache;
+import uk.nhs.hee.tis.revalidation.integration.router.helper.NotesRows;
+
+class AttachCachedNotesProcessorTest {
+
+  private Exchange exchange;
+  private ConnectionInfoDto connection;
+  private NotesPresenceCache notesPresenceCache;
+  private AttachCachedNotesProcessor<ConnectionInfoDto> testObj;
+
+  @BeforeEach
+  void setup() {
+    connection = new ConnectionInfoDto();
+    connection.setGmcReferenceNumber("123");
+    exchange = new DefaultExchange(new DefaultCamelContext());
+    exchange.setProperty("connection", connection);
+    exchange.getMessage().setBody(connection);
+    notesPresenceCache = new NotesPresenceCache(new SimpleMeterRegistry(), 10, 60);
+    testObj = new AttachCachedNotesProcessor<>(notesPresenceCache, NotesRows.CONNECTIONS);
+  }
+
+  @Test
+  void shouldSetNotesFromCache() {
+    notesPresenceCache.put("123", true);
+
+    testObj.process(exchange);
+
+    assertEquals(true, connection.getNotes());
+    assertEquals(true, exchange.getProperty(NOTES_CACHED_PROPERTY));
+    assertEquals(connection, exchange.getMessage().getBody());
+  }
+
+  @Test
+  void shouldLeaveNotesUnsetWhenNotCached() {
+    testObj.process(exchange);
+
+    assertNull(connection.getNotes());
+    assertEquals(false, exchange.getProperty(NOTES_CACHED_PROPERTY));
+  }
+}
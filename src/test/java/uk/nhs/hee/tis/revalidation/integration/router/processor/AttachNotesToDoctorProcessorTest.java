@@ -21,10 +21,13 @@
 
 package uk.nhs.hee.tis.revalidation.integration.router.processor;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import java.util.List;
 import org.apache.camel.CamelContext;
 import org.apache.camel.Exchange;
@@ -35,11 +38,13 @@ import org.junit.jupiter.api.Test;
 import uk.nhs.hee.tis.revalidation.integration.router.dto.TraineeInfoDto;
 import uk.nhs.hee.tis.revalidation.integration.router.dto.TraineeNotesDto;
 import uk.nhs.hee.tis.revalidation.integration.router.dto.TraineeNotesInfoDto;
+import uk.nhs.hee.tis.revalidation.integration.router.helper.NotesPresenceCache;
 
 class AttachNotesToDoctorProcessorTest {
 
   private Exchange exchange;
   private TraineeInfoDto doctor;
+  private NotesPresenceCache notesPresenceCache;
 
   @BeforeEach
   void setup() {
@@ -48,6 +53,7 @@ class AttachNotesToDoctorProcessorTest {
     doctor.setGmcReferenceNumber("123");
     exchange = new DefaultExchange(context);
     exchange.setProperty("doctor", doctor);
+    notesPresenceCache = new NotesPresenceCache(new SimpleMeterRegistry(), 10, 60);
   }
 
   @Test
@@ -55,7 +61,7 @@ class AttachNotesToDoctorProcessorTest {
     exchange.getMessage().setHeader("gmcId", "123");
     exchange.getMessage().setBody(null);
 
-    AttachNotesToDoctorProcessor testObj = new AttachNotesToDoctorProcessor();
+    AttachNotesToDoctorProcessor testObj = new AttachNotesToDoctorProcessor(notesPresenceCache);
     testObj.process(exchange);
 
     TraineeInfoDto out = exchange.getMessage().getBody(TraineeInfoDto.class);
@@ -71,7 +77,7 @@ class AttachNotesToDoctorProcessorTest {
 
     exchange.getMessage().setBody(notesDto);
 
-    AttachNotesToDoctorProcessor testObj = new AttachNotesToDoctorProcessor();
+    AttachNotesToDoctorProcessor testObj = new AttachNotesToDoctorProcessor(notesPresenceCache);
     testObj.process(exchange);
 
     TraineeInfoDto out = exchange.getMessage().getBody(TraineeInfoDto.class);
@@ -86,7 +92,7 @@ class AttachNotesToDoctorProcessorTest {
 
     exchange.getMessage().setBody(notesDto);
 
-    AttachNotesToDoctorProcessor testObj = new AttachNotesToDoctorProcessor();
+    AttachNotesToDoctorProcessor testObj = new AttachNotesToDoctorProcessor(notesPresenceCache);
     testObj.process(exchange);
 
     TraineeInfoDto out = exchange.getMessage().getBody(TraineeInfoDto.class);
@@ -102,10 +108,42 @@ class AttachNotesToDoctorProcessorTest {
 
     exchange.getMessage().setBody(notesDto);
 
-    AttachNotesToDoctorProcessor testObj = new AttachNotesToDoctorProcessor();
+    AttachNotesToDoctorProcessor testObj = new AttachNotesToDoctorProcessor(notesPresenceCache);
     testObj.process(exchange);
 
     TraineeInfoDto out = exchange.getMessage().getBody(TraineeInfoDto.class);
     assertTrue(out.getNotes());
   }
+
+  @Test
+  void shouldCacheNotesWhenCoreAnswered() {
+    TraineeNotesDto notesDto = new TraineeNotesDto();
+    notesDto.setNotes(List.of(new TraineeNotesInfoDto()));
+    exchange.getMessage().setHeader(Exchange.HTTP_RESPONSE_CODE, 200);
+    exchange.getMessage().setBody(notesDto);
+
+    new AttachNotesToDoctorProcessor(notesPresenceCache).process(exchange);
+
+    assertEquals(true, notesPresenceCache.get("123"));
+  }
+
+  @Test
+  void shouldCacheNoNotesWhenCoreAnsweredNotFound() {
+    exchange.getMessage().setHeader(Exchange.HTTP_RESPONSE_CODE, 404);
+    exchange.getMessage().setBody(null);
+
+    new AttachNotesToDoctorProcessor(notesPresenceCache).process(exchange);
+
+    assertEquals(false, notesPresenceCache.get("123"));
+  }
+
+  @Test
+  void shouldNotCacheNotesWhenLookupFailed() {
+    exchange.getMessage().setHeader(Exchange.HTTP_RESPONSE_CODE, 500);
+    exchange.getMessage().setBody(null);
+
+    new AttachNotesToDoctorProcessor(notesPresenceCache).process(exchange);
+
+    assertNull(notesPresenceCache.get("123"));
+  }
 }
@@ -0,0 +1,204 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright 2026 Crown Copyright (NHS England)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package uk.nhs.hee.tis.revalidation.integration.router.processor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+import static uk.nhs.hee.tis.revalidation.integration.router.processor.AttachIndexedNotesProcessor.INDEXED_SUMMARY;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import org.apache.camel.Exchange;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.apache.camel.support.DefaultExchange;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import uk.nhs.hee.tis.revalidation.integration.router.dto.ConnectionInfoDto;
+import uk.nhs.hee.tis.revalidation.integration.router.dto.ConnectionSummaryDto;
+import uk.nhs.hee.tis.revalidation.integration.router.dto.TraineeInfoDto;
+import uk.nhs.hee.tis.revalidation.integration.router.dto.TraineeSummaryDto;
+import uk.nhs.hee.tis.revalidation.integration.router.helper.NotesRows;
+import uk.nhs.hee.tis.revalidation.integration.sync.service.MasterDoctorNotesService;
+
+@ExtendWith(MockitoExtension.class)
+class IndexedNotesProcessorsTest {
+
+  @Mock
+  private MasterDoctorNotesService notesService;
+
+  private Exchange exchange;
+
+  static Stream<Page<?, ?>> pages() {
+    return Stream.of(
+        new Page<>(NotesRows.CONNECTIONS, ConnectionSummaryDto::new,
+            ConnectionSummaryDto::setConnections, ConnectionInfoDto::new,
+            ConnectionInfoDto::setGmcReferenceNumber),
+        new Page<>(NotesRows.DOCTORS, TraineeSummaryDto::new, TraineeSummaryDto::setTraineeInfo,
+            TraineeInfoDto::new, TraineeInfoDto::setGmcReferenceNumber));
+  }
+
+  @BeforeEach
+  void setup() {
+    exchange = new DefaultExchange(new DefaultCamelContext());
+  }
+
+  @ParameterizedTest
+  @MethodSource("pages")
+  <S, R> void shouldSetKnownNotesFlagsAndLeaveTheOthersToBeLookedUp(Page<S, R> page) {
+    R known = page.row("111", null);
+    R unknown = page.row("222", null);
+    S summary = page.summary(new ArrayList<>(List.of(known, unknown)));
+    exchange.getMessage().setBody(summary);
+    when(notesService.findHasNotes(List.of("111", "222"))).thenReturn(Map.of("111", true));
+
+    new AttachIndexedNotesProcessor<>(notesService, page.notesRows()).process(exchange);
+
+    assertTrue(page.notesRows().notes().apply(known));
+    assertEquals(List.of(unknown), exchange.getMessage().getBody(List.class));
+    assertSame(summary, exchange.getProperty(INDEXED_SUMMARY));
+  }
+
+  @ParameterizedTest
+  @MethodSource("pages")
+  <S, R> void shouldLookUpAllRowsWhenTheIndexCannotBeRead(Page<S, R> page) {
+    R known = page.row("111", null);
+    R unknown = page.row("222", null);
+    exchange.getMessage().setBody(page.summary(new ArrayList<>(List.of(known, unknown))));
+    when(notesService.findHasNotes(any())).thenThrow(new IllegalStateException("expected"));
+
+    new AttachIndexedNotesProcessor<>(notesService, page.notesRows()).process(exchange);
+
+    assertEquals(List.of(known, unknown), exchange.getMessage().getBody(List.class));
+  }
+
+  @ParameterizedTest
+  @MethodSource("pages")
+  <S, R> void shouldHandleSummaryWithoutRows(Page<S, R> page) {
+    S summary = page.summary(null);
+    exchange.getMessage().setBody(summary);
+
+    new AttachIndexedNotesProcessor<>(notesService, page.notesRows()).process(exchange);
+
+    assertTrue(exchange.getMessage().getBody(List.class).isEmpty());
+    assertSame(summary, exchange.getProperty(INDEXED_SUMMARY));
+  }
+
+  @ParameterizedTest
+  @MethodSource("pages")
+  <S, R> void shouldRecordLookedUpNotesFlagsAndRestoreTheSummary(Page<S, R> page) {
+    S summary = page.summary(null);
+    exchange.setProperty(INDEXED_SUMMARY, summary);
+    exchange.getMessage().setBody(List.of(page.row("111", true), page.row("222", false)));
+
+    new MergeLookedUpNotesProcessor<>(notesService, page.notesRows(), Runnable::run)
+        .process(exchange);
+
+    verify(notesService).updateHasNotes(Map.of("111", true, "222", false));
+    assertSame(summary, exchange.getMessage().getBody());
+  }
+
+  @ParameterizedTest
+  @MethodSource("pages")
+  <S, R> void shouldShowRowsWithoutNotesWhenTheLookupFailed(Page<S, R> page) {
+    exchange.setProperty(INDEXED_SUMMARY, page.summary(null));
+    R failed = page.row("111", null);
+    exchange.getMessage().setBody(List.of(failed));
+
+    new MergeLookedUpNotesProcessor<>(notesService, page.notesRows(), Runnable::run)
+        .process(exchange);
+
+    assertFalse(page.notesRows().notes().apply(failed));
+    verifyNoInteractions(notesService);
+  }
+
+  @ParameterizedTest
+  @MethodSource("pages")
+  <S, R> void shouldRestoreTheSummaryWhenNotesFlagsCannotBeRecorded(Page<S, R> page) {
+    S summary = page.summary(null);
+    exchange.setProperty(INDEXED_SUMMARY, summary);
+    exchange.getMessage().setBody(List.of(page.row("111", true)));
+    doThrow(new IllegalStateException("expected")).when(notesService)
+        .updateHasNotes(Map.of("111", true));
+
+    new MergeLookedUpNotesProcessor<>(notesService, page.notesRows(), Runnable::run)
+        .process(exchange);
+
+    assertSame(summary, exchange.getMessage().getBody());
+  }
+
+  @ParameterizedTest
+  @MethodSource("pages")
+  <S, R> void shouldRestoreTheSummaryBeforeNotesFlagsAreRecorded(Page<S, R> page) {
+    S summary = page.summary(null);
+    exchange.setProperty(INDEXED_SUMMARY, summary);
+    exchange.getMessage().setBody(List.of(page.row("111", true)));
+    List<Runnable> writeBacks = new ArrayList<>();
+
+    new MergeLookedUpNotesProcessor<>(notesService, page.notesRows(), writeBacks::add)
+        .process(exchange);
+
+    assertSame(summary, exchange.getMessage().getBody());
+    verifyNoInteractions(notesService);
+    writeBacks.forEach(Runnable::run);
+    verify(notesService).updateHasNotes(Map.of("111", true));
+  }
+
+  /**
+   * A summary page type with the factories its test rows are built with.
+   */
+  record Page<S, R>(NotesRows<S, R> notesRows, Supplier<S> newSummary,
+      BiConsumer<S, List<R>> setRows, Supplier<R> newRow, BiConsumer<R, String> setGmcId) {
+
+    S summary(List<R> rows) {
+      S summary = newSummary.get();
+      setRows.accept(summary, rows);
+      return summary;
+    }
+
+    R row(String gmcReferenceNumber, Boolean notes) {
+      R row = newRow.get();
+      setGmcId.accept(row, gmcReferenceNumber);
+      notesRows.setNotes().accept(row, notes);
+      return row;
+    }
+
+    @Override
+    public String toString() {
+      return notesRows.name();
+    }
+  }
+}
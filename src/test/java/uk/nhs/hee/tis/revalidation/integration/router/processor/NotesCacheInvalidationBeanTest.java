@@ -0,0 +1,115 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright 2026 Crown Copyright (NHS England)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package uk.nhs.hee.tis.revalidation.integration.router.processor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import org.apache.camel.Exchange;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.apache.camel.support.DefaultExchange;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import uk.nhs.hee.tis.revalidation.integration.router.helper.NotesPresenceCache;
+import uk.nhs.hee.tis.revalidation.integration.sync.service.MasterDoctorNotesService;
+
+class NotesCacheInvalidationBeanTest {
+
+  private static final String NOTE = "{\"gmcId\":\"123\",\"text\":\"note\"}";
+
+  private Exchange exchange;
+  private NotesPresenceCache notesPresenceCache;
+  private MasterDoctorNotesService notesService;
+  private NotesCacheInvalidationBean testObj;
+
+  @BeforeEach
+  void setup() {
+    exchange = new DefaultExchange(new DefaultCamelContext());
+    notesPresenceCache = new NotesPresenceCache(new SimpleMeterRegistry(), 10, 60);
+    notesPresenceCache.put("123", false);
+    notesService = mock(MasterDoctorNotesService.class);
+    testObj = new NotesCacheInvalidationBean(new ObjectMapper(), notesPresenceCache,
+        notesService);
+  }
+
+  @Test
+  void shouldCacheTheDoctorOfTheNoteAsHavingNotes() {
+    exchange.getIn().setBody(new ByteArrayInputStream(NOTE.getBytes(StandardCharsets.UTF_8)));
+
+    testObj.captureGmcId(exchange);
+    testObj.cacheHasNotes(exchange);
+
+    assertEquals(true, notesPresenceCache.get("123"));
+    assertEquals(NOTE, exchange.getIn().getBody(String.class));
+  }
+
+  @Test
+  void shouldKeepCacheWhenNoteCannotBeRead() {
+    exchange.getIn().setBody("not json");
+
+    testObj.captureGmcId(exchange);
+    testObj.cacheHasNotes(exchange);
+
+    assertEquals(false, notesPresenceCache.get("123"));
+    assertEquals("not json", exchange.getIn().getBody(String.class));
+  }
+
+  @Test
+  void shouldSetIndexedNotesFlagOfTheDoctorOfTheNote() {
+    exchange.getIn().setBody(NOTE);
+
+    testObj.captureGmcId(exchange);
+    testObj.markHasNotes(exchange);
+
+    verify(notesService).updateHasNotes(Map.of("123", true));
+  }
+
+  @Test
+  void shouldNotFailNoteWhenIndexedNotesFlagCannotBeSet() {
+    exchange.getIn().setBody(NOTE);
+    when(notesService.updateHasNotes(Map.of("123", true)))
+        .thenThrow(new IllegalStateException("expected"));
+
+    testObj.captureGmcId(exchange);
+
+    assertDoesNotThrow(() -> testObj.markHasNotes(exchange));
+  }
+
+  @Test
+  void shouldNotSetIndexedNotesFlagWhenNoteCannotBeRead() {
+    exchange.getIn().setBody("not json");
+
+    testObj.captureGmcId(exchange);
+    testObj.markHasNotes(exchange);
+
+    verifyNoInteractions(notesService);
+  }
+}
@@ -124,6 +124,27 @@ class TraineeDetailProcessorTest {
     assertThat(dto.getNotes(), is(notes.getNotes()));
   }
 
+  @Test
+  void shouldReadAggregatedJsonTree() throws Exception {
+    Message message = new DefaultMessage(exchange);
+
+    Map<String, Object> bodyMap = Map.of(
+        TRAINEE_AGGREGATION_HEADER, tcsTraineeDetails,
+        GMC_AGGREGATION_HEADER, gmcDoctorDetails,
+        NOTES_AGGREGATION_HEADER, notes);
+    message.setBody(jsonMapper.valueToTree(bodyMap));
+    exchange.setIn(message);
+
+    traineeDetailProcessor.process(exchange);
+
+    TraineeDetailsDto dto = exchange.getIn().getBody(TraineeDetailsDto.class);
+    assertThat(dto.getGmcNumber(), is(gmcNumber));
+    assertThat(dto.getForenames(), is(firstName2));
+    assertThat(dto.getSurname(), is(lastName2));
+    assertThat(dto.getCurriculumEndDate(), is(curriculumEndDate));
+    assertThat(dto.getNotes(), is(notes.getNotes()));
+  }
+
   @Test
   void shouldUseGmcDoctorDetailsToOverwriteTraineeNames() throws Exception {
     Message message = new DefaultMessage(exchange);
@@ -31,13 +31,22 @@ import static org.mockito.Mockito.when;
 import java.io.IOException;
 import java.net.SocketTimeoutException;
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import org.apache.http.client.config.RequestConfig;
 import org.elasticsearch.ResourceAlreadyExistsException;
 import org.elasticsearch.ResourceNotFoundException;
 import org.elasticsearch.action.admin.indices.alias.IndicesAliasesRequest;
+import org.elasticsearch.action.admin.indices.alias.IndicesAliasesRequest.AliasActions;
 import org.elasticsearch.action.admin.indices.alias.get.GetAliasesRequest;
 import org.elasticsearch.action.admin.indices.delete.DeleteIndexRequest;
+import org.elasticsearch.action.admin.indices.forcemerge.ForceMergeRequest;
+import org.elasticsearch.action.admin.indices.refresh.RefreshRequest;
+import org.elasticsearch.action.admin.indices.settings.get.GetSettingsRequest;
+import org.elasticsearch.action.admin.indices.settings.get.GetSettingsResponse;
+import org.elasticsearch.action.admin.indices.settings.put.UpdateSettingsRequest;
+import org.elasticsearch.client.GetAliasesResponse;
 import org.elasticsearch.client.IndicesClient;
 import org.elasticsearch.client.RequestOptions;
 import org.elasticsearch.client.RestHighLevelClient;
@@ -46,9 +55,13 @@ import org.elasticsearch.client.indices.DeleteAliasRequest;
 import org.elasticsearch.client.indices.GetIndexRequest;
 import org.elasticsearch.client.indices.GetMappingsRequest;
 import org.elasticsearch.cluster.metadata.MappingMetadata;
+import org.elasticsearch.common.collect.ImmutableOpenMap;
+import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.index.reindex.ReindexRequest;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
@@ -69,6 +82,12 @@ class ElasticsearchIndexHelperTest {
   @Mock
   private MappingMetadata mappingMock;
 
+  @Mock
+  private GetAliasesResponse getAliasesResponseMock;
+
+  @Captor
+  private ArgumentCaptor<IndicesAliasesRequest> aliasesRequestCaptor;
+
   @InjectMocks
   private ElasticsearchIndexHelper helper;
 
@@ -301,4 +320,82 @@ class ElasticsearchIndexHelperTest {
     verify(indicesClientMock)
         .deleteAlias(any(DeleteAliasRequest.class), eq(RequestOptions.DEFAULT));
   }
+
+  @Test
+  void shouldMakeRequestToCreateIndexWithMappingSource() throws IOException {
+    when(highLevelClientMock.indices()).thenReturn(indicesClientMock);
+    helper.createIndex("index", Map.<String, Object>of("properties", Map.of()));
+
+    verify(indicesClientMock).create(any(CreateIndexRequest.class), eq(RequestOptions.DEFAULT));
+  }
+
+  @Test
+  void shouldMakeRequestToCheckIndexExists() throws IOException {
+    when(highLevelClientMock.indices()).thenReturn(indicesClientMock);
+    helper.indexExists("index");
+
+    verify(indicesClientMock).exists(any(GetIndexRequest.class), eq(RequestOptions.DEFAULT));
+  }
+
+  @Test
+  void shouldGetIndicesForAlias() throws IOException {
+    when(highLevelClientMock.indices()).thenReturn(indicesClientMock);
+    when(indicesClientMock.getAlias(any(GetAliasesRequest.class), eq(RequestOptions.DEFAULT)))
+        .thenReturn(getAliasesResponseMock);
+    when(getAliasesResponseMock.getAliases())
+        .thenReturn(Map.of("index_1", Set.of(), "index_2", Set.of()));
+
+    assertEquals(Set.of("index_1", "index_2"), helper.getIndicesForAlias("alias"));
+  }
+
+  @Test
+  void shouldUpdateAliasesInOneRequest() throws IOException {
+    when(highLevelClientMock.indices()).thenReturn(indicesClientMock);
+    helper.updateAliases(List.of(
+        new AliasActions(AliasActions.Type.REMOVE).index("index_1").alias("alias"),
+        new AliasActions(AliasActions.Type.ADD).index("index_2").alias("alias")));
+
+    verify(indicesClientMock)
+        .updateAliases(aliasesRequestCaptor.capture(), eq(RequestOptions.DEFAULT));
+    assertEquals(2, aliasesRequestCaptor.getValue().getAliasActions().size());
+  }
+
+  @Test
+  void shouldGetSettingsOfIndex() throws IOException {
+    Settings settings = Settings.builder().put("index.number_of_replicas", 1).build();
+    GetSettingsResponse response = new GetSettingsResponse(
+        ImmutableOpenMap.<String, Settings>builder().fPut("index", settings).build(),
+        ImmutableOpenMap.of());
+    when(highLevelClientMock.indices()).thenReturn(indicesClientMock);
+    when(indicesClientMock.getSettings(any(GetSettingsRequest.class), eq(RequestOptions.DEFAULT)))
+        .thenReturn(response);
+
+    assertEquals(settings, helper.getSettings("index"));
+    assertEquals(Settings.EMPTY, helper.getSettings("missing"));
+  }
+
+  @Test
+  void shouldMakeRequestToUpdateSettings() throws IOException {
+    when(highLevelClientMock.indices()).thenReturn(indicesClientMock);
+    helper.updateSettings("index", Settings.builder().put("index.refresh_interval", "-1").build());
+
+    verify(indicesClientMock)
+        .putSettings(any(UpdateSettingsRequest.class), eq(RequestOptions.DEFAULT));
+  }
+
+  @Test
+  void shouldMakeRequestToRefresh() throws IOException {
+    when(highLevelClientMock.indices()).thenReturn(indicesClientMock);
+    helper.refresh("index");
+
+    verify(indicesClientMock).refresh(any(RefreshRequest.class), eq(RequestOptions.DEFAULT));
+  }
+
+  @Test
+  void shouldMakeRequestToForceMerge() throws IOException {
+    when(highLevelClientMock.indices()).thenReturn(indicesClientMock);
+    helper.forceMerge("index", 1);
+
+    verify(indicesClientMock).forcemerge(any(ForceMergeRequest.class), any(RequestOptions.class));
+  }
 }
@@ -0,0 +1,69 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright 2026 Crown Copyright (NHS England)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package uk.nhs.hee.tis.revalidation.integration.sync.helper;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import org.junit.jupiter.api.Test;
+import uk.nhs.hee.tis.revalidation.integration.sync.view.MasterDoctorView;
+
+class MasterDoctorDocumentIdsTest {
+
+  @Test
+  void shouldKeyDoctorsWithGmcNumberByNormalisedGmcNumber() {
+    assertEquals("gmc-abc123", MasterDoctorDocumentIds.documentId(" ABC123 ", 1L));
+    assertEquals("gmc-abc123", MasterDoctorDocumentIds.documentId("abc123", null));
+  }
+
+  @Test
+  void shouldKeyTisOnlyRecordsByPersonId() {
+    assertEquals("tis-42", MasterDoctorDocumentIds.documentId(null, 42L));
+    assertEquals("tis-42", MasterDoctorDocumentIds.documentId(" ", 42L));
+  }
+
+  @Test
+  void shouldNormaliseGmcNumbersToTrimmedLowercase() {
+    assertEquals("abc123", MasterDoctorDocumentIds.normaliseGmcReferenceNumber(" ABC123 "));
+    assertNull(MasterDoctorDocumentIds.normaliseGmcReferenceNumber(" "));
+    assertNull(MasterDoctorDocumentIds.normaliseGmcReferenceNumber(null));
+  }
+
+  @Test
+  void shouldNotDeriveIdWithoutIdentity() {
+    assertNull(MasterDoctorDocumentIds.documentId(null, null));
+  }
+
+  @Test
+  void shouldAssignDerivedIdToNewDocumentsOnly() {
+    var newDoctor = MasterDoctorView.builder().gmcReferenceNumber("1234567").build();
+    var existingDoctor = MasterDoctorView.builder().id("existing").gmcReferenceNumber("1234567")
+        .build();
+    var unidentifiedDoctor = new MasterDoctorView();
+
+    assertEquals("gmc-1234567", MasterDoctorDocumentIds.assignId(newDoctor));
+    assertEquals("existing", MasterDoctorDocumentIds.assignId(existingDoctor));
+    assertNotNull(MasterDoctorDocumentIds.assignId(unidentifiedDoctor));
+  }
+}
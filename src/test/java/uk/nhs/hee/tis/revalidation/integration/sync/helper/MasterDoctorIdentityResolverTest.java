@@ -0,0 +1,194 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright 2026 Crown Copyright (NHS England)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package uk.nhs.hee.tis.revalidation.integration.sync.helper;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+import static uk.nhs.hee.tis.revalidation.integration.sync.helper.MasterDoctorIdentityResolver.identityKey;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.LongStream;
+import org.elasticsearch.index.query.BoolQueryBuilder;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.SearchHit;
+import org.springframework.data.elasticsearch.core.SearchHits;
+import org.springframework.data.elasticsearch.core.query.NativeSearchQuery;
+import org.springframework.data.elasticsearch.core.query.Query;
+import uk.nhs.hee.tis.revalidation.integration.sync.view.MasterDoctorView;
+
+@ExtendWith(MockitoExtension.class)
+class MasterDoctorIdentityResolverTest {
+
+  private static final String GMC_NUMBER_1 = "1111111";
+  private static final String GMC_NUMBER_2 = "2222222";
+  private static final Long PERSON_ID_1 = 1L;
+  private static final Long PERSON_ID_2 = 2L;
+  private static final Long PERSON_ID_3 = 3L;
+
+  @Mock
+  private ElasticsearchOperations elasticsearchOperations;
+  @Mock
+  private SearchHits<MasterDoctorView> searchHits;
+  @Captor
+  private ArgumentCaptor<Query> queryCaptor;
+
+  private MasterDoctorIdentityResolver resolver;
+
+  @BeforeEach
+  void setUp() {
+    resolver = new MasterDoctorIdentityResolver(elasticsearchOperations);
+  }
+
+  @Test
+  void shouldResolveAllDoctorsWithOneSearch() {
+    var gmcAndPerson = MasterDoctorView.builder()
+        .gmcReferenceNumber(GMC_NUMBER_1).tcsPersonId(PERSON_ID_1).build();
+    var gmcOnly = MasterDoctorView.builder().gmcReferenceNumber(GMC_NUMBER_2).build();
+    var personOnly = MasterDoctorView.builder().tcsPersonId(PERSON_ID_3).build();
+    stubHits(
+        hit("a", GMC_NUMBER_1, PERSON_ID_1),
+        hit("b", GMC_NUMBER_1, PERSON_ID_2),
+        hit("c", GMC_NUMBER_2, PERSON_ID_2),
+        hit("d", null, PERSON_ID_3));
+
+    Map<String, List<String>> result =
+        resolver.resolve(List.of(gmcAndPerson, gmcOnly, personOnly));
+
+    verify(elasticsearchOperations).search(queryCaptor.capture(), eq(MasterDoctorView.class));
+    assertTrue(queryCaptor.getValue() instanceof NativeSearchQuery);
+    assertEquals(List.of("a"), result.get(identityKey(gmcAndPerson)));
+    assertEquals(List.of("c"), result.get(identityKey(gmcOnly)));
+    assertEquals(List.of("d"), result.get(identityKey(personOnly)));
+  }
+
+  @Test
+  void shouldFindFullExistingDocuments() {
+    var gmcAndPerson = MasterDoctorView.builder()
+        .gmcReferenceNumber(GMC_NUMBER_1).tcsPersonId(PERSON_ID_1).build();
+    SearchHit<MasterDoctorView> existing = hit("a", GMC_NUMBER_1, PERSON_ID_1);
+    stubHits(existing);
+
+    Map<String, List<MasterDoctorView>> result = resolver.findExisting(List.of(gmcAndPerson));
+
+    verify(elasticsearchOperations).search(queryCaptor.capture(), eq(MasterDoctorView.class));
+    assertNull(queryCaptor.getValue().getSourceFilter());
+    assertEquals(List.of(existing.getContent()), result.get(identityKey(gmcAndPerson)));
+  }
+
+  @Test
+  void shouldNotFallBackToGmcNumberWhenPersonIdDoesNotMatch() {
+    var gmcAndPerson = MasterDoctorView.builder()
+        .gmcReferenceNumber(GMC_NUMBER_1).tcsPersonId(PERSON_ID_3).build();
+    stubHits(hit("a", GMC_NUMBER_1, PERSON_ID_1));
+
+    Map<String, List<String>> result = resolver.resolve(List.of(gmcAndPerson));
+
+    assertEquals(List.of(), result.get(identityKey(gmcAndPerson)));
+  }
+
+  @Test
+  void shouldReturnAllMatchesForDuplicateGmcNumbers() {
+    stubHits(hit("a", GMC_NUMBER_1, PERSON_ID_1), hit("b", GMC_NUMBER_1, PERSON_ID_2));
+
+    Map<String, List<String>> result =
+        resolver.resolveByGmcReferenceNumbers(List.of(GMC_NUMBER_1, GMC_NUMBER_2));
+
+    assertEquals(List.of("a", "b"), result.get(GMC_NUMBER_1));
+    assertEquals(List.of(), result.get(GMC_NUMBER_2));
+  }
+
+  @Test
+  void shouldSplitLargeBatchesIntoSeveralSearches() {
+    stubHits();
+    List<MasterDoctorView> doctors = new ArrayList<>();
+    LongStream.range(0, MasterDoctorIdentityResolver.MAX_IDENTITIES_PER_LOOKUP + 1L)
+        .forEach(i -> doctors.add(MasterDoctorView.builder().tcsPersonId(i).build()));
+
+    resolver.resolve(doctors);
+
+    verify(elasticsearchOperations, times(2)).search(any(Query.class),
+        eq(MasterDoctorView.class));
+  }
+
+  @Test
+  void shouldFindDocumentsSharingEitherIdentifierWithOneSearch() {
+    SearchHit<MasterDoctorView> sameGmc = hit("a", GMC_NUMBER_1, PERSON_ID_2);
+    SearchHit<MasterDoctorView> samePerson = hit("b", GMC_NUMBER_2, PERSON_ID_1);
+    stubHits(sameGmc, samePerson);
+
+    List<MasterDoctorView> result =
+        resolver.findByGmcReferenceNumberOrTcsPersonId(GMC_NUMBER_1, PERSON_ID_1);
+
+    verify(elasticsearchOperations).search(queryCaptor.capture(), eq(MasterDoctorView.class));
+    var query = (NativeSearchQuery) queryCaptor.getValue();
+    assertEquals(2, ((BoolQueryBuilder) query.getQuery()).should().size());
+    assertEquals(List.of("gmcReferenceNumber", "tcsPersonId"),
+        List.of(query.getSourceFilter().getIncludes()));
+    assertEquals(List.of(sameGmc.getContent(), samePerson.getContent()), result);
+  }
+
+  @Test
+  void shouldNotSearchWithoutAnyIdentifier() {
+    assertTrue(resolver.findByGmcReferenceNumberOrTcsPersonId(null, null).isEmpty());
+    verifyNoInteractions(elasticsearchOperations);
+  }
+
+  @Test
+  void shouldNotSearchWhenNoDoctorIsIdentifiable() {
+    Map<String, List<String>> result = resolver.resolve(List.of(new MasterDoctorView()));
+
+    assertTrue(result.isEmpty());
+    verifyNoInteractions(elasticsearchOperations);
+  }
+
+  @SafeVarargs
+  private void stubHits(SearchHit<MasterDoctorView>... hits) {
+    when(elasticsearchOperations.search(any(Query.class), eq(MasterDoctorView.class)))
+        .thenReturn(searchHits);
+    when(searchHits.getSearchHits()).thenReturn(List.of(hits));
+  }
+
+  @SuppressWarnings("unchecked")
+  private SearchHit<MasterDoctorView> hit(String id, String gmcNumber, Long personId) {
+    SearchHit<MasterDoctorView> hit = mock(SearchHit.class);
+    when(hit.getContent()).thenReturn(MasterDoctorView.builder()
+        .id(id).gmcReferenceNumber(gmcNumber).tcsPersonId(personId).build());
+    return hit;
+  }
+}
@@ -0,0 +1,166 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright 2026 Crown Copyright (NHS England)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package uk.nhs.hee.tis.revalidation.integration.sync.helper;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import uk.nhs.hee.tis.revalidation.integration.entity.HiddenDiscrepancy;
+import uk.nhs.hee.tis.revalidation.integration.sync.view.MasterDoctorView;
+
+class MasterDoctorStagingStoreTest {
+
+  private static final String GMC_NUMBER_1 = "1111111";
+  private static final String GMC_NUMBER_2 = "2222222";
+  private static final Long PERSON_ID_1 = 1L;
+  private static final Long PERSON_ID_2 = 2L;
+
+  @TempDir
+  Path spillDirectory;
+
+  private MasterDoctorStagingStore store;
+
+  @BeforeEach
+  void setUp() {
+    ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule())
+        .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+    store = new MasterDoctorStagingStore(objectMapper, 1, spillDirectory);
+    store.open();
+  }
+
+  @AfterEach
+  void tearDown() {
+    store.close();
+  }
+
+  @Test
+  void shouldFindRecordsWithIdentityResolverRules() {
+    int both = store.add(doctor(GMC_NUMBER_1, PERSON_ID_1));
+    int gmcOnly = store.add(doctor(GMC_NUMBER_2, null));
+    int personOnly = store.add(doctor(null, PERSON_ID_2));
+
+    assertEquals(List.of(both), store.find(GMC_NUMBER_1, PERSON_ID_1));
+    assertEquals(List.of(), store.find(GMC_NUMBER_1, PERSON_ID_2));
+    assertEquals(List.of(both), store.find(GMC_NUMBER_1, null));
+    assertEquals(List.of(gmcOnly), store.find(GMC_NUMBER_2, null));
+    assertEquals(List.of(personOnly), store.find(null, PERSON_ID_2));
+    assertEquals(List.of(), store.find(null, null));
+  }
+
+  @Test
+  void shouldReadBackSpilledRecords() {
+    MasterDoctorView spilled = doctor(GMC_NUMBER_2, PERSON_ID_2);
+    spilled.setSubmissionDate(LocalDate.of(2026, 1, 2));
+    spilled.setHiddenDiscrepancies(List.of(HiddenDiscrepancy.builder()
+        .hiddenForDesignatedBodyCode("1-AIIDR8").build()));
+
+    store.add(doctor(GMC_NUMBER_1, PERSON_ID_1));
+    int slot = store.add(spilled);
+
+    assertEquals(1, store.spilled());
+    assertEquals(spilled, store.get(slot));
+  }
+
+  @Test
+  void shouldUpdateSpilledRecordInPlaceWhileItFits() {
+    store.add(doctor(GMC_NUMBER_1, PERSON_ID_1));
+    int slot = store.add(doctor(GMC_NUMBER_2, PERSON_ID_2));
+    long spillSize = store.spillSize();
+
+    for (int i = 0; i < 10; i++) {
+      MasterDoctorView update = store.get(slot);
+      update.setDoctorFirstName("updated" + i);
+      store.put(slot, update);
+    }
+
+    assertEquals("updated9", store.get(slot).getDoctorFirstName());
+    assertEquals(spillSize, store.spillSize());
+  }
+
+  @Test
+  void shouldMoveSpilledRecordWhichOutgrowsItsRoom() {
+    store.add(doctor(GMC_NUMBER_1, PERSON_ID_1));
+    int slot = store.add(doctor(GMC_NUMBER_2, PERSON_ID_2));
+    long spillSize = store.spillSize();
+
+    MasterDoctorView update = store.get(slot);
+    update.setDoctorFirstName("x".repeat(MasterDoctorStagingStore.MIN_SPILL_SLACK * 2));
+    store.put(slot, update);
+
+    assertEquals(update, store.get(slot));
+    assertTrue(store.spillSize() > spillSize);
+  }
+
+  @Test
+  void shouldReindexRecordWhenIdentityChanges() {
+    int slot = store.add(doctor(null, PERSON_ID_1));
+
+    store.put(slot, doctor(GMC_NUMBER_1, PERSON_ID_1));
+
+    assertEquals(List.of(slot), store.find(GMC_NUMBER_1, null));
+    assertEquals(List.of(slot), store.find(null, PERSON_ID_1));
+  }
+
+  @Test
+  void shouldDiscardRecordsAndSpillFileOnClose() throws IOException {
+    store.add(doctor(GMC_NUMBER_1, PERSON_ID_1));
+    store.add(doctor(GMC_NUMBER_2, PERSON_ID_2));
+
+    store.close();
+
+    assertFalse(store.isOpen());
+    assertEquals(0, store.size());
+    try (Stream<Path> files = Files.list(spillDirectory)) {
+      assertTrue(files.findAny().isEmpty());
+    }
+  }
+
+  @Test
+  void shouldNotAcceptRecordsWhenClosed() {
+    store.close();
+    MasterDoctorView doctor = doctor(GMC_NUMBER_1, PERSON_ID_1);
+
+    assertThrows(IllegalStateException.class, () -> store.add(doctor));
+  }
+
+  private MasterDoctorView doctor(String gmcReferenceNumber, Long tcsPersonId) {
+    return MasterDoctorView.builder()
+        .gmcReferenceNumber(gmcReferenceNumber)
+        .tcsPersonId(tcsPersonId)
+        .build();
+  }
+}
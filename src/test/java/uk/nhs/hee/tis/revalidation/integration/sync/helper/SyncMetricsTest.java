@@ -0,0 +1,103 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright 2026 Crown Copyright (NHS England)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package uk.nhs.hee.tis.revalidation.integration.sync.helper;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.Map;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import uk.nhs.hee.tis.revalidation.integration.enums.SyncPhase;
+
+class SyncMetricsTest {
+
+  private MeterRegistry meterRegistry;
+  private SyncMetrics syncMetrics;
+
+  @BeforeEach
+  void setUp() {
+    meterRegistry = new SimpleMeterRegistry();
+    syncMetrics = new SyncMetrics(meterRegistry);
+  }
+
+  @Test
+  void shouldCountDocumentsByPhaseAndOutcome() {
+    syncMetrics.recordReceived(SyncPhase.GMC, 3);
+    syncMetrics.recordSkipped(SyncPhase.GMC, 1);
+
+    assertEquals(3.0, meterRegistry.get("sync.documents").tag("phase", "GMC")
+        .tag("outcome", "received").counter().count());
+    assertEquals(1.0, meterRegistry.get("sync.documents").tag("phase", "GMC")
+        .tag("outcome", "skipped").counter().count());
+    assertEquals(0.0, meterRegistry.get("sync.documents").tag("phase", "TCS")
+        .tag("outcome", "received").counter().count());
+  }
+
+  @Test
+  void shouldCountPromotionFailures() {
+    syncMetrics.recordPromotionFailure();
+
+    assertEquals(1.0, meterRegistry.get("sync.promotion.failures").counter().count());
+  }
+
+  @Test
+  void shouldRecordPhaseDurationWhenNextPhaseStarts() {
+    syncMetrics.startPhase(SyncPhase.TCS);
+    syncMetrics.startPhase(SyncPhase.GMC);
+    syncMetrics.endPhase();
+
+    assertEquals(1, meterRegistry.get("sync.phase.duration").tag("phase", "TCS").timer().count());
+    assertEquals(1, meterRegistry.get("sync.phase.duration").tag("phase", "GMC").timer().count());
+  }
+
+  @Test
+  void shouldPublishRateOfRunningPhase() throws InterruptedException {
+    syncMetrics.startPhase(SyncPhase.TCS);
+    syncMetrics.recordReceived(SyncPhase.TCS, 100);
+    Thread.sleep(10);
+
+    assertTrue(meterRegistry.get("sync.phase.rate").gauge().value() > 0);
+  }
+
+  @Test
+  void shouldEstimateRemainingTimeFromExpectedRecords() throws InterruptedException {
+    syncMetrics.setExpectedRecords(Map.of(SyncPhase.TCS, 200L));
+    syncMetrics.startPhase(SyncPhase.TCS);
+    syncMetrics.recordReceived(SyncPhase.TCS, 100);
+    Thread.sleep(10);
+
+    double eta = meterRegistry.get("sync.phase.eta").gauge().value();
+    double elapsed = 100 / syncMetrics.getRate();
+    assertTrue(eta > 0 && eta <= elapsed * 1.5, "eta should be about the elapsed time");
+  }
+
+  @Test
+  void shouldNotEstimateRemainingTimeWithoutExpectedRecords() {
+    syncMetrics.startPhase(SyncPhase.GMC);
+    syncMetrics.recordReceived(SyncPhase.GMC, 100);
+
+    assertTrue(Double.isNaN(syncMetrics.getEtaSeconds()));
+  }
+}
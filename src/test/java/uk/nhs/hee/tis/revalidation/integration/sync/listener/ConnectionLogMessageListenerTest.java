@@ -34,12 +34,16 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.Captor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import uk.nhs.hee.tis.revalidation.integration.enums.SyncPhase;
+import uk.nhs.hee.tis.revalidation.integration.message.DoctorLaneExecutor;
 import uk.nhs.hee.tis.revalidation.integration.router.dto.ConnectionLogDto;
 import uk.nhs.hee.tis.revalidation.integration.router.message.payload.IndexSyncMessage;
 import uk.nhs.hee.tis.revalidation.integration.sync.service.DoctorUpsertElasticSearchService;
 import uk.nhs.hee.tis.revalidation.integration.sync.service.ElasticsearchIndexService;
+import uk.nhs.hee.tis.revalidation.integration.sync.service.SyncStateService;
 
 @ExtendWith(MockitoExtension.class)
 class ConnectionLogMessageListenerTest {
@@ -52,6 +56,10 @@ class ConnectionLogMessageListenerTest {
   private ElasticsearchIndexService elasticsearchIndexService;
   @Mock
   private RabbitTemplate rabbitTemplate;
+  @Mock
+  private SyncStateService syncStateService;
+  @Spy
+  private DoctorLaneExecutor doctorLaneExecutor = new DoctorLaneExecutor(1);
   @InjectMocks
   private ConnectionLogMessageListener listener;
 
@@ -75,6 +83,9 @@ class ConnectionLogMessageListenerTest {
         .convertAndSend(
             "exchange", "routingKey", "hiddenDiscrepancySyncStart"
         );
+    verify(doctorLaneExecutor).awaitDrained();
+    verify(doctorUpsertElasticSearchService).refreshMasterDoctorIndex();
+    verify(syncStateService).enterPhase(SyncPhase.HIDDEN_DISCREPANCY);
   }
 
   @Test
@@ -93,5 +104,6 @@ class ConnectionLogMessageListenerTest {
         payloadArgCaptor.capture());
     verifyNoInteractions(elasticsearchIndexService);
     assertEquals(payload, payloadArgCaptor.getValue());
+    verify(syncStateService).recordProgress(SyncPhase.CONNECTION_LOG, 1);
   }
 }
@@ -25,6 +25,7 @@ import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.springframework.test.util.ReflectionTestUtils.setField;
 
 import java.time.LocalDate;
@@ -41,11 +42,14 @@ import uk.nhs.hee.tis.revalidation.integration.entity.DoctorsForDB;
 import uk.nhs.hee.tis.revalidation.integration.entity.RecommendationStatus;
 import uk.nhs.hee.tis.revalidation.integration.entity.UnderNotice;
 import uk.nhs.hee.tis.revalidation.integration.enums.RecommendationGmcOutcome;
+import uk.nhs.hee.tis.revalidation.integration.enums.SyncPhase;
+import uk.nhs.hee.tis.revalidation.integration.message.DoctorLaneExecutor;
 import uk.nhs.hee.tis.revalidation.integration.router.dto.RevalidationSummaryDto;
 import uk.nhs.hee.tis.revalidation.integration.router.mapper.MasterDoctorViewMapper;
 import uk.nhs.hee.tis.revalidation.integration.router.mapper.MasterDoctorViewMapperImpl;
 import uk.nhs.hee.tis.revalidation.integration.router.message.payload.IndexSyncMessage;
 import uk.nhs.hee.tis.revalidation.integration.sync.service.DoctorUpsertElasticSearchService;
+import uk.nhs.hee.tis.revalidation.integration.sync.service.SyncStateService;
 import uk.nhs.hee.tis.revalidation.integration.sync.view.MasterDoctorView;
 
 @ExtendWith(MockitoExtension.class)
@@ -72,7 +76,10 @@ class GmcDoctorMessageListenerTest {
   private DoctorUpsertElasticSearchService doctorUpsertElasticSearchService;
   @Mock
   private RabbitTemplate rabbitTemplate;
+  @Mock
+  private SyncStateService syncStateService;
   private final MasterDoctorViewMapper mapper = new MasterDoctorViewMapperImpl();
+  private final DoctorLaneExecutor doctorLaneExecutor = new DoctorLaneExecutor(1);
   private GmcDoctorMessageListener gmcDoctorMessageListener;
 
   @Captor
@@ -81,7 +88,7 @@ class GmcDoctorMessageListenerTest {
   @BeforeEach
   void setUp() {
     gmcDoctorMessageListener = new GmcDoctorMessageListener(doctorUpsertElasticSearchService,
-        mapper, rabbitTemplate);
+        mapper, rabbitTemplate, syncStateService, doctorLaneExecutor);
 
     setField(gmcDoctorMessageListener, "revalExchange", "exchange");
     setField(gmcDoctorMessageListener, "connectionLogSyncRoutingKey", "routingKey");
@@ -125,6 +132,7 @@ class GmcDoctorMessageListenerTest {
     assertThat(masterDoctorView.getExistsInGmc(), is(EXISTS_IN_GMC));
     assertThat(masterDoctorView.getGmcStatus(), is(OUTCOME));
 
+    verify(syncStateService).recordProgress(SyncPhase.GMC, 1);
     verifyNoInteractions(rabbitTemplate);
   }
 
@@ -139,6 +147,8 @@ class GmcDoctorMessageListenerTest {
 
     // then
     verify(rabbitTemplate).convertAndSend("exchange", "routingKey", CONNECTION_LOG_SYNC_START);
-    verifyNoInteractions(doctorUpsertElasticSearchService);
+    verify(doctorUpsertElasticSearchService).refreshMasterDoctorIndex();
+    verify(syncStateService).enterPhase(SyncPhase.CONNECTION_LOG);
+    verifyNoMoreInteractions(doctorUpsertElasticSearchService);
   }
 }
@@ -22,8 +22,10 @@
 package uk.nhs.hee.tis.revalidation.integration.sync.listener;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
 
 import java.util.List;
 import org.junit.jupiter.api.Test;
@@ -32,11 +34,15 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.Captor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import uk.nhs.hee.tis.revalidation.integration.entity.HiddenDiscrepancy;
+import uk.nhs.hee.tis.revalidation.integration.enums.SyncPhase;
+import uk.nhs.hee.tis.revalidation.integration.message.DoctorLaneExecutor;
 import uk.nhs.hee.tis.revalidation.integration.router.message.payload.IndexSyncMessage;
 import uk.nhs.hee.tis.revalidation.integration.sync.service.DoctorUpsertElasticSearchService;
 import uk.nhs.hee.tis.revalidation.integration.sync.service.ElasticsearchIndexService;
+import uk.nhs.hee.tis.revalidation.integration.sync.service.SyncStateService;
 
 @ExtendWith(MockitoExtension.class)
 class HiddenDiscrepancyMessageListenerTest {
@@ -47,6 +53,10 @@ class HiddenDiscrepancyMessageListenerTest {
   private DoctorUpsertElasticSearchService doctorUpsertElasticSearchService;
   @Mock
   private ElasticsearchIndexService elasticsearchIndexService;
+  @Mock
+  private SyncStateService syncStateService;
+  @Spy
+  private DoctorLaneExecutor doctorLaneExecutor = new DoctorLaneExecutor(1);
   @InjectMocks
   private HiddenDiscrepancyMessageListener listener;
 
@@ -64,7 +74,35 @@ class HiddenDiscrepancyMessageListenerTest {
     // then
     verify(doctorUpsertElasticSearchService).populateMasterIndexByHiddenDiscrepancies(
         payloadArgCaptor.capture());
+    verify(doctorUpsertElasticSearchService, never()).promoteMasterDoctorIndex();
     verifyNoInteractions(elasticsearchIndexService);
     assertEquals(payload, payloadArgCaptor.getValue());
+    verify(syncStateService).recordProgress(SyncPhase.HIDDEN_DISCREPANCY, 1);
+  }
+
+  @Test
+  void shouldPromoteRebuiltIndexWhenSyncEndIsTrue() {
+    IndexSyncMessage<List<HiddenDiscrepancy>> msg = new IndexSyncMessage<>();
+    msg.setSyncEnd(true);
+    when(doctorUpsertElasticSearchService.promoteMasterDoctorIndex()).thenReturn(true);
+
+    listener.receiveConnectionLogMessage(msg);
+
+    verify(doctorLaneExecutor).awaitDrained();
+    verify(doctorUpsertElasticSearchService).promoteMasterDoctorIndex();
+    verify(doctorUpsertElasticSearchService, never())
+        .populateMasterIndexByHiddenDiscrepancies(payloadArgCaptor.capture());
+    verify(syncStateService).finish(true);
+  }
+
+  @Test
+  void shouldRecordFailedSyncWhenRebuiltIndexNotPromoted() {
+    IndexSyncMessage<List<HiddenDiscrepancy>> msg = new IndexSyncMessage<>();
+    msg.setSyncEnd(true);
+    when(doctorUpsertElasticSearchService.promoteMasterDoctorIndex()).thenReturn(false);
+
+    listener.receiveConnectionLogMessage(msg);
+
+    verify(syncStateService).finish(false);
   }
 }
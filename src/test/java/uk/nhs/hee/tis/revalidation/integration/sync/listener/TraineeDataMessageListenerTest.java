@@ -22,21 +22,46 @@ package uk.nhs.hee.tis.revalidation.integration.sync.listener;
 
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 import static org.springframework.test.util.ReflectionTestUtils.setField;
 
 import com.github.javafaker.Faker;
+import com.rabbitmq.client.Channel;
+import java.io.IOException;
 import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.amqp.core.MessagePostProcessor;
+import org.springframework.amqp.core.MessageProperties;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.support.AmqpHeaders;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.MessageBuilder;
+import uk.nhs.hee.tis.revalidation.integration.enums.SyncPhase;
+import uk.nhs.hee.tis.revalidation.integration.message.DoctorLaneExecutor;
 import uk.nhs.hee.tis.revalidation.integration.router.dto.ConnectionInfoDto;
 import uk.nhs.hee.tis.revalidation.integration.sync.service.DoctorUpsertElasticSearchService;
+import uk.nhs.hee.tis.revalidation.integration.sync.service.SyncStateService;
 import uk.nhs.hee.tis.revalidation.integration.sync.view.MasterDoctorView;
 
 
@@ -44,12 +69,20 @@ import uk.nhs.hee.tis.revalidation.integration.sync.view.MasterDoctorView;
 class TraineeDataMessageListenerTest {
 
   private static final String GMC_SYNC_START = "gmcSyncStart";
+  private static final String SYNC_DATA_QUEUE = "syncDataQueue";
+  private static final int MAX_ATTEMPTS = 3;
   @InjectMocks
   private TraineeDataMessageListener traineeDataMessageListener;
   @Mock
   private DoctorUpsertElasticSearchService doctorUpsertElasticSearchService;
   @Mock
   private RabbitTemplate rabbitTemplate;
+  @Mock
+  private SyncStateService syncStateService;
+  @Mock
+  private Channel channel;
+  @Spy
+  private DoctorLaneExecutor doctorLaneExecutor = new DoctorLaneExecutor(1);
   private ConnectionInfoDto connectionInfo;
   private MasterDoctorView masterDoctorView;
   private final Faker faker = new Faker();
@@ -67,6 +100,10 @@ class TraineeDataMessageListenerTest {
   private LocalDate programmeMembershipEndDate;
   private LocalDate curriculumEndDate;
   private Boolean syncEnd;
+  @Captor
+  private ArgumentCaptor<List<MasterDoctorView>> batchCaptor;
+  @Captor
+  private ArgumentCaptor<MessagePostProcessor> retryHeaderCaptor;
 
   @BeforeEach
   void setUp() {
@@ -117,13 +154,15 @@ class TraineeDataMessageListenerTest {
 
     setField(traineeDataMessageListener, "exchange", "exchange");
     setField(traineeDataMessageListener, "routingKey", "routingKey");
+    setField(traineeDataMessageListener, "syncDataQueue", SYNC_DATA_QUEUE);
+    setField(traineeDataMessageListener, "maxAttempts", MAX_ATTEMPTS);
   }
 
   @Test
-  void shouldPopulateMasterIndexWhenNotSyncEnd() {
+  void shouldPopulateMasterIndexWhenNotSyncEnd() throws Exception {
     connectionInfo.setSyncEnd(null);
 
-    traineeDataMessageListener.receiveMessage(connectionInfo);
+    traineeDataMessageListener.receiveMessage(connectionInfo).get(5, TimeUnit.SECONDS);
 
     ArgumentCaptor<MasterDoctorView> masterDoctorViewCaptor = ArgumentCaptor
         .forClass(MasterDoctorView.class);
@@ -141,13 +180,136 @@ class TraineeDataMessageListenerTest {
     assertThat(masterDoctorView.getMembershipStartDate(), is(programmeMembershipStartDate));
     assertThat(masterDoctorView.getMembershipEndDate(), is(programmeMembershipEndDate));
     assertThat(masterDoctorView.getCurriculumEndDate(), is(curriculumEndDate));
+    verify(syncStateService).recordProgress(SyncPhase.TCS, 1);
   }
 
   @Test
-  void shouldSendSyncStartMessageWhenSyncEnd() {
+  void shouldSendSyncStartMessageWhenSyncEnd() throws Exception {
     connectionInfo.setSyncEnd(true);
 
-    traineeDataMessageListener.receiveMessage(connectionInfo);
+    traineeDataMessageListener.receiveMessage(connectionInfo).get();
+    verify(rabbitTemplate).convertAndSend("exchange", "routingKey", GMC_SYNC_START);
+    verify(doctorLaneExecutor).awaitDrained();
+    verify(doctorUpsertElasticSearchService).refreshMasterDoctorIndex();
+  }
+
+  @Test
+  void shouldPopulateMasterIndexInBulkForBatch() throws IOException {
+    ConnectionInfoDto otherConnectionInfo = ConnectionInfoDto.builder().tcsPersonId(2L).build();
+
+    traineeDataMessageListener.receiveMessages(
+        List.of(message(connectionInfo, 1L), message(otherConnectionInfo, 2L)), channel);
+
+    verify(doctorUpsertElasticSearchService).populateMasterIndexByTcsRecords(
+        batchCaptor.capture());
+    List<MasterDoctorView> batch = batchCaptor.getValue();
+    assertThat(batch.size(), is(2));
+    assertThat(batch.get(0).getGmcReferenceNumber(), is(gmcReferenceNumber));
+    assertThat(batch.get(0).getProgrammeName(), is(programmeName));
+    assertThat(batch.get(1).getTcsPersonId(), is(2L));
+    verify(channel).basicAck(1L, false);
+    verify(channel).basicAck(2L, false);
+    verify(syncStateService).recordProgress(SyncPhase.TCS, 2);
+  }
+
+  @Test
+  void shouldEndSyncOnlyAfterPrecedingDataInBatchIsAcknowledged() throws IOException {
+    ConnectionInfoDto syncEndMessage = ConnectionInfoDto.builder().syncEnd(true).build();
+
+    traineeDataMessageListener.receiveMessages(
+        List.of(message(connectionInfo, 1L), message(syncEndMessage, 2L)), channel);
+
+    InOrder inOrder = inOrder(doctorUpsertElasticSearchService, doctorLaneExecutor,
+        syncStateService, rabbitTemplate, channel);
+    inOrder.verify(doctorUpsertElasticSearchService).populateMasterIndexByTcsRecords(
+        batchCaptor.capture());
+    inOrder.verify(channel).basicAck(1L, false);
+    inOrder.verify(doctorLaneExecutor).awaitDrained();
+    inOrder.verify(doctorUpsertElasticSearchService).refreshMasterDoctorIndex();
+    inOrder.verify(syncStateService).enterPhase(SyncPhase.GMC);
+    inOrder.verify(rabbitTemplate).convertAndSend("exchange", "routingKey", GMC_SYNC_START);
+    inOrder.verify(channel).basicAck(2L, false);
+    assertThat(batchCaptor.getAllValues().get(0).size(), is(1));
+  }
+
+  @Test
+  void shouldRetryFailedRecordsAndSyncEndBehindThem() throws IOException {
+    ConnectionInfoDto otherConnectionInfo = ConnectionInfoDto.builder().tcsPersonId(2L).build();
+    ConnectionInfoDto syncEndMessage = ConnectionInfoDto.builder().syncEnd(true).build();
+    failRecordsOfPerson(2L);
+
+    traineeDataMessageListener.receiveMessages(List.of(message(connectionInfo, 1L),
+        message(otherConnectionInfo, 2L), message(syncEndMessage, 3L)), channel);
+
+    InOrder inOrder = inOrder(channel, rabbitTemplate);
+    inOrder.verify(channel).basicAck(1L, false);
+    inOrder.verify(rabbitTemplate).convertAndSend(eq(""), eq(SYNC_DATA_QUEUE),
+        eq(otherConnectionInfo), retryHeaderCaptor.capture());
+    inOrder.verify(channel).basicAck(2L, false);
+    inOrder.verify(rabbitTemplate).convertAndSend(eq(""), eq(SYNC_DATA_QUEUE),
+        eq(syncEndMessage), retryHeaderCaptor.capture());
+    inOrder.verify(channel).basicAck(3L, false);
+    assertThat(attemptsSet(retryHeaderCaptor.getAllValues().get(0)), is(1));
+    assertThat(attemptsSet(retryHeaderCaptor.getAllValues().get(1)), is(0));
+    verify(channel, never()).basicNack(anyLong(), anyBoolean(), anyBoolean());
+    verify(syncStateService).recordProgress(SyncPhase.TCS, 1);
+    verify(syncStateService, never()).enterPhase(any());
+  }
+
+  @Test
+  void shouldDropRecordOutOfAttemptsAndEndSync() throws IOException {
+    ConnectionInfoDto otherConnectionInfo = ConnectionInfoDto.builder().tcsPersonId(2L).build();
+    ConnectionInfoDto syncEndMessage = ConnectionInfoDto.builder().syncEnd(true).build();
+    failRecordsOfPerson(2L);
+    Message<ConnectionInfoDto> lastAttempt = MessageBuilder.fromMessage(
+        message(otherConnectionInfo, 2L))
+        .setHeader(TraineeDataMessageListener.ATTEMPTS_HEADER, MAX_ATTEMPTS - 1)
+        .build();
+
+    traineeDataMessageListener.receiveMessages(List.of(message(connectionInfo, 1L),
+        lastAttempt, message(syncEndMessage, 3L)), channel);
+
+    verify(channel).basicAck(1L, false);
+    verify(channel).basicAck(2L, false);
+    verify(channel).basicAck(3L, false);
+    verify(rabbitTemplate, never()).convertAndSend(eq(""), anyString(), any(Object.class),
+        any(MessagePostProcessor.class));
+    verify(syncStateService).enterPhase(SyncPhase.GMC);
     verify(rabbitTemplate).convertAndSend("exchange", "routingKey", GMC_SYNC_START);
   }
+
+  @Test
+  void shouldRequeueUnacknowledgedMessagesWhenBatchFails() throws IOException {
+    when(doctorUpsertElasticSearchService.populateMasterIndexByTcsRecords(any()))
+        .thenThrow(new IllegalStateException("expected"));
+    List<Message<ConnectionInfoDto>> messages = List.of(message(connectionInfo, 1L));
+
+    assertThrows(IllegalStateException.class,
+        () -> traineeDataMessageListener.receiveMessages(messages, channel));
+
+    verify(channel).basicNack(1L, true, true);
+    verify(channel, never()).basicAck(anyLong(), anyBoolean());
+  }
+
+  private void failRecordsOfPerson(long tcsPersonId) {
+    when(doctorUpsertElasticSearchService.populateMasterIndexByTcsRecords(any()))
+        .thenAnswer(invocation -> {
+          List<MasterDoctorView> records = invocation.getArgument(0);
+          return records.stream().filter(view -> view.getTcsPersonId() == tcsPersonId)
+              .collect(Collectors.toList());
+        });
+  }
+
+  private static Integer attemptsSet(MessagePostProcessor postProcessor) {
+    org.springframework.amqp.core.Message retry = postProcessor.postProcessMessage(
+        new org.springframework.amqp.core.Message(new byte[0], new MessageProperties()));
+    return (Integer) retry.getMessageProperties().getHeaders()
+        .get(TraineeDataMessageListener.ATTEMPTS_HEADER);
+  }
+
+  private static Message<ConnectionInfoDto> message(ConnectionInfoDto payload, long deliveryTag) {
+    return MessageBuilder.withPayload(payload)
+        .setHeader(AmqpHeaders.DELIVERY_TAG, deliveryTag)
+        .build();
+  }
 }
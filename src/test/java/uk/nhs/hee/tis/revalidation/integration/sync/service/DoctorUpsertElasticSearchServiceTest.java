@@ -21,45 +21,69 @@
 
 package uk.nhs.hee.tis.revalidation.integration.sync.service;
 
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.util.ReflectionTestUtils.setField;
 import static uk.nhs.hee.tis.revalidation.integration.config.EsConstant.Aliases.CURRENT_CONNECTIONS_ALIAS;
 import static uk.nhs.hee.tis.revalidation.integration.config.EsConstant.Aliases.DISCREPANCIES_ALIAS;
+import static uk.nhs.hee.tis.revalidation.integration.config.EsConstant.Aliases.MASTER_DOCTOR_READ_ALIAS;
 import static uk.nhs.hee.tis.revalidation.integration.config.EsConstant.Aliases.RECOMMENDATION_ALIAS;
 import static uk.nhs.hee.tis.revalidation.integration.config.EsConstant.Indexes.MASTER_DOCTOR_INDEX;
 import static uk.nhs.hee.tis.revalidation.integration.sync.service.DoctorUpsertElasticSearchService.ES_DATETIME_FORMATTER;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
-import org.elasticsearch.index.IndexNotFoundException;
+import java.util.Set;
+import org.elasticsearch.script.Script;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Captor;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
 import org.springframework.data.elasticsearch.core.IndexOperations;
-import org.springframework.data.elasticsearch.core.mapping.IndexCoordinates;
+import org.springframework.data.elasticsearch.core.convert.MappingElasticsearchConverter;
+import org.springframework.data.elasticsearch.core.document.Document;
+import org.springframework.data.elasticsearch.core.mapping.SimpleElasticsearchMappingContext;
+import uk.nhs.hee.tis.revalidation.integration.cdc.repository.custom.EsBulkWriteEngine.BulkWriteResult;
 import uk.nhs.hee.tis.revalidation.integration.cdc.repository.custom.EsDocUpdateHelper;
+import uk.nhs.hee.tis.revalidation.integration.cdc.repository.custom.HiddenDiscrepancyScripts;
+import uk.nhs.hee.tis.revalidation.integration.cdc.repository.custom.LiveGenerationMirror;
 import uk.nhs.hee.tis.revalidation.integration.entity.HiddenDiscrepancy;
+import uk.nhs.hee.tis.revalidation.integration.enums.SyncPhase;
 import uk.nhs.hee.tis.revalidation.integration.router.dto.ConnectionLogDto;
 import uk.nhs.hee.tis.revalidation.integration.router.mapper.MasterDoctorViewMapper;
 import uk.nhs.hee.tis.revalidation.integration.sync.helper.ElasticsearchIndexHelper;
+import uk.nhs.hee.tis.revalidation.integration.sync.helper.MasterDoctorIdentityResolver;
+import uk.nhs.hee.tis.revalidation.integration.sync.helper.SyncMetrics;
 import uk.nhs.hee.tis.revalidation.integration.sync.repository.MasterDoctorElasticSearchRepository;
 import uk.nhs.hee.tis.revalidation.integration.sync.view.MasterDoctorView;
 
@@ -76,23 +100,38 @@ class DoctorUpsertElasticSearchServiceTest {
   @Mock
   private IndexOperations indexOperations;
   @Mock
+  private ElasticsearchIndexService elasticsearchIndexService;
+  @Mock
   private ElasticsearchIndexHelper elasticsearchIndexHelper;
   @Mock
   private EsDocUpdateHelper esDocUpdateHelper;
   @Mock
   private RabbitTemplate rabbitTemplate;
+  @Mock
+  private MasterDoctorIdentityResolver identityResolver;
+  @Mock
+  private MasterDoctorStagedRebuildService stagedRebuildService;
+  @Mock
+  private MasterDoctorNotesService notesService;
+  @Mock
+  private LiveGenerationMirror liveGenerationMirror;
+  private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+  @Spy
+  private SyncMetrics syncMetrics = new SyncMetrics(meterRegistry);
+  @Captor
+  private ArgumentCaptor<Map<String, String>> readAliasesCaptor;
   @Captor
-  private ArgumentCaptor<IndexCoordinates> indexCaptor;
+  private ArgumentCaptor<Map<String, Map<String, Object>>> newDocumentsCaptor;
   @Captor
-  private ArgumentCaptor<List<MasterDoctorView>> bulkSaveCaptor;
+  private ArgumentCaptor<Map<String, Map<String, Object>>> fieldsOnConflictCaptor;
   @Captor
   private ArgumentCaptor<Map<String, Map<String, Object>>> bulkUpdateCaptor;
   @Captor
+  private ArgumentCaptor<Map<String, Script>> scriptUpdateCaptor;
+  @Captor
   private ArgumentCaptor<String> routingKeyCaptor;
   @Captor
   private ArgumentCaptor<List<MasterDoctorView>> updateListCaptor;
-  @Captor
-  private ArgumentCaptor<MasterDoctorView> masterDoctorViewCaptor;
   @InjectMocks
   private DoctorUpsertElasticSearchService service;
   private MasterDoctorView currentDoctorView;
@@ -101,6 +140,7 @@ class DoctorUpsertElasticSearchServiceTest {
   private MasterDoctorView mappedNewViewGmcOnly;
   private MasterDoctorView mappedExistingViewGmcOnly;
   private static final String UPDATED_BY = "User";
+  private static final String NEW_INDEX = "masterdoctorindex_20260101000000000";
 
   private static final String GMC_NUMBER = "1111111";
   private static final String GMC_NUMBER_KEY = "gmcReferenceNumber";
@@ -182,27 +222,327 @@ class DoctorUpsertElasticSearchServiceTest {
   }
 
   @Test
-  void shouldIgnoreNotFoundOnDeleteButThrowIndexNotFoundAfterCreate() {
-    IndexNotFoundException expectedException = new IndexNotFoundException("expected");
-    when(elasticsearchOperations.indexOps((IndexCoordinates) any()))
-        .thenThrow(new IndexNotFoundException("Index"))
-        .thenReturn(indexOperations)
-        .thenThrow(expectedException);
+  void shouldStartRebuildWithMasterDoctorMappingAndBulkLoadSettings() throws IOException {
+    setField(service, "bulkLoadProfileEnabled", true);
+    Document mapping = Document.create();
+    when(elasticsearchOperations.indexOps(MasterDoctorView.class)).thenReturn(indexOperations);
+    when(indexOperations.createMapping()).thenReturn(mapping);
+    when(elasticsearchIndexService.startNewGeneration(MASTER_DOCTOR_INDEX, mapping,
+        DoctorUpsertElasticSearchService.MASTER_DOCTOR_READ_ALIASES)).thenReturn(NEW_INDEX);
+
+    String indexName = service.startMasterDoctorIndexRebuild();
+
+    assertEquals(NEW_INDEX, indexName);
+    verify(elasticsearchIndexService).applyBulkLoadSettings(NEW_INDEX);
+  }
+
+  @Test
+  void shouldDisableRefreshWhenStartingStagedRebuild() throws IOException {
+    setField(service, "bulkLoadProfileEnabled", true);
+    setField(service, "stagingEnabled", true);
+    when(elasticsearchOperations.indexOps(MasterDoctorView.class)).thenReturn(indexOperations);
+    when(indexOperations.createMapping()).thenReturn(Document.create());
+    when(elasticsearchIndexService.startNewGeneration(eq(MASTER_DOCTOR_INDEX), any(), any()))
+        .thenReturn(NEW_INDEX);
+
+    service.startMasterDoctorIndexRebuild();
+
+    verify(elasticsearchIndexService).applyStagedLoadSettings(NEW_INDEX);
+    verify(elasticsearchIndexService, never()).applyBulkLoadSettings(any());
+    verify(stagedRebuildService).start();
+  }
+
+  @Test
+  void shouldNotApplyBulkLoadSettingsWhenProfileDisabled() throws IOException {
+    setField(service, "bulkLoadProfileEnabled", false);
+    when(elasticsearchOperations.indexOps(MasterDoctorView.class)).thenReturn(indexOperations);
+    when(indexOperations.createMapping()).thenReturn(Document.create());
+    when(elasticsearchIndexService.startNewGeneration(eq(MASTER_DOCTOR_INDEX), any(), any()))
+        .thenReturn(NEW_INDEX);
+
+    service.startMasterDoctorIndexRebuild();
+
+    verify(elasticsearchIndexService, never()).applyBulkLoadSettings(any());
+  }
+
+  @Test
+  void shouldFailRebuildStartWhenNewIndexCannotBeCreated() throws IOException {
+    when(elasticsearchOperations.indexOps(MasterDoctorView.class)).thenReturn(indexOperations);
+    when(indexOperations.createMapping()).thenReturn(Document.create());
+    when(elasticsearchIndexService.startNewGeneration(eq(MASTER_DOCTOR_INDEX), any(), any()))
+        .thenThrow(new IOException("expected"));
+
+    assertThrows(UncheckedIOException.class, () -> service.startMasterDoctorIndexRebuild());
+    verify(elasticsearchIndexService, never()).restoreBulkLoadSettings(any(), any());
+  }
+
+  @Test
+  void shouldRestoreSettingsWhenBulkLoadSettingsCannotBeApplied() throws IOException {
+    setField(service, "bulkLoadProfileEnabled", true);
+    when(elasticsearchOperations.indexOps(MasterDoctorView.class)).thenReturn(indexOperations);
+    when(indexOperations.createMapping()).thenReturn(Document.create());
+    when(elasticsearchIndexService.startNewGeneration(eq(MASTER_DOCTOR_INDEX), any(), any()))
+        .thenReturn(NEW_INDEX);
+    doThrow(new IOException("expected")).when(elasticsearchIndexService)
+        .applyBulkLoadSettings(NEW_INDEX);
+
+    assertThrows(UncheckedIOException.class, () -> service.startMasterDoctorIndexRebuild());
+    verify(elasticsearchIndexService).restoreBulkLoadSettings(MASTER_DOCTOR_INDEX,
+        MASTER_DOCTOR_READ_ALIAS);
+  }
+
+  @Test
+  void shouldRestoreSettingsOfUnfinishedRebuildOnlyOnce() throws IOException {
+    when(elasticsearchOperations.indexOps(MasterDoctorView.class)).thenReturn(indexOperations);
+    when(indexOperations.createMapping()).thenReturn(Document.create());
+    service.startMasterDoctorIndexRebuild();
+
+    service.restoreMasterDoctorIndexSettings();
+    service.restoreMasterDoctorIndexSettings();
+
+    verify(elasticsearchIndexService).restoreBulkLoadSettings(MASTER_DOCTOR_INDEX,
+        MASTER_DOCTOR_READ_ALIAS);
+  }
+
+  @Test
+  void shouldNotRestoreSettingsWhenNoRebuildInProgress() throws IOException {
+    service.restoreMasterDoctorIndexSettings();
+
+    verify(elasticsearchIndexService, never()).restoreBulkLoadSettings(any(), any());
+  }
+
+  @Test
+  void shouldRefreshMasterDoctorIndex() throws IOException {
+    service.refreshMasterDoctorIndex();
+
+    verify(elasticsearchIndexHelper).refresh(MASTER_DOCTOR_INDEX);
+  }
+
+  @Test
+  void shouldNotThrowWhenRefreshFails() throws IOException {
+    doThrow(new IOException("expected")).when(elasticsearchIndexHelper)
+        .refresh(MASTER_DOCTOR_INDEX);
+
+    assertDoesNotThrow(() -> service.refreshMasterDoctorIndex());
+  }
+
+  @Test
+  void shouldRestoreSettingsAndForceMergeBeforePromotingRebuiltIndex() throws IOException {
+    setField(service, "forceMergeEnabled", true);
+    setField(service, "forceMergeMaxSegments", 1);
+
+    boolean promoted = service.promoteMasterDoctorIndex();
+
+    assertTrue(promoted);
+    InOrder inOrder = inOrder(elasticsearchIndexService, elasticsearchIndexHelper);
+    inOrder.verify(elasticsearchIndexService).restoreBulkLoadSettings(MASTER_DOCTOR_INDEX,
+        MASTER_DOCTOR_READ_ALIAS);
+    inOrder.verify(elasticsearchIndexHelper).forceMerge(MASTER_DOCTOR_INDEX, 1);
+    inOrder.verify(elasticsearchIndexService).promoteNewGeneration(eq(MASTER_DOCTOR_INDEX),
+        any());
+  }
+
+  @Test
+  void shouldNotPromoteRebuiltIndexWhenSettingsCannotBeRestored() throws IOException {
+    doThrow(new IOException("expected")).when(elasticsearchIndexService)
+        .restoreBulkLoadSettings(MASTER_DOCTOR_INDEX, MASTER_DOCTOR_READ_ALIAS);
+
+    boolean promoted = service.promoteMasterDoctorIndex();
+
+    assertFalse(promoted);
+    verify(elasticsearchIndexService, never()).promoteNewGeneration(any(), any());
+  }
+
+  @Test
+  void shouldPromoteRebuiltIndexEvenIfForceMergeFails() throws IOException {
+    setField(service, "forceMergeEnabled", true);
+    setField(service, "forceMergeMaxSegments", 1);
+    doThrow(new IOException("expected")).when(elasticsearchIndexHelper)
+        .forceMerge(MASTER_DOCTOR_INDEX, 1);
+
+    service.promoteMasterDoctorIndex();
+
+    verify(elasticsearchIndexService).promoteNewGeneration(eq(MASTER_DOCTOR_INDEX), any());
+  }
+
+  @Test
+  void shouldCarryNotesFlagsOverBeforePromotingRebuiltIndex() throws IOException {
+    boolean promoted = service.promoteMasterDoctorIndex();
+
+    assertTrue(promoted);
+    InOrder inOrder = inOrder(elasticsearchIndexHelper, notesService, elasticsearchIndexService);
+    inOrder.verify(elasticsearchIndexHelper).refresh(MASTER_DOCTOR_INDEX);
+    inOrder.verify(notesService).carryOverHasNotes();
+    inOrder.verify(elasticsearchIndexService).promoteNewGeneration(eq(MASTER_DOCTOR_INDEX),
+        any());
+  }
+
+  @Test
+  void shouldPromoteRebuiltIndexEvenIfNotesFlagsCannotBeCarriedOver() throws IOException {
+    when(notesService.carryOverHasNotes()).thenThrow(new IllegalStateException("expected"));
+
+    boolean promoted = service.promoteMasterDoctorIndex();
+
+    assertTrue(promoted);
+    verify(elasticsearchIndexService).promoteNewGeneration(eq(MASTER_DOCTOR_INDEX), any());
+  }
+
+  @Test
+  void shouldMoveAllReadAliasesWhenPromotingRebuiltIndex() throws IOException {
+    service.promoteMasterDoctorIndex();
+
+    verify(elasticsearchIndexService).promoteNewGeneration(eq(MASTER_DOCTOR_INDEX),
+        readAliasesCaptor.capture());
+    Map<String, String> readAliases = readAliasesCaptor.getValue();
+    assertEquals(Set.of(MASTER_DOCTOR_READ_ALIAS, CURRENT_CONNECTIONS_ALIAS, DISCREPANCIES_ALIAS,
+        RECOMMENDATION_ALIAS), readAliases.keySet());
+    assertEquals(DoctorUpsertElasticSearchService.ES_CURRENT_CONNECTIONS_FILTER,
+        readAliases.get(CURRENT_CONNECTIONS_ALIAS));
+    assertEquals(DoctorUpsertElasticSearchService.ES_DISCREPANCIES_FILTER,
+        readAliases.get(DISCREPANCIES_ALIAS));
+  }
+
+  @Test
+  void shouldNotThrowWhenPromotingRebuiltIndexFails() throws IOException {
+    when(elasticsearchIndexService.promoteNewGeneration(eq(MASTER_DOCTOR_INDEX), any()))
+        .thenThrow(new IllegalStateException("expected"));
+
+    assertFalse(assertDoesNotThrow(() -> service.promoteMasterDoctorIndex()));
+  }
+
+  @Test
+  void shouldCountPromotionFailureAndKeepMirroringWhenReadAliasesCannotBeSwitched()
+      throws IOException {
+    when(elasticsearchIndexService.promoteNewGeneration(eq(MASTER_DOCTOR_INDEX), any()))
+        .thenThrow(new IllegalStateException("expected"));
+
+    service.promoteMasterDoctorIndex();
+
+    assertEquals(1.0, meterRegistry.get("sync.promotion.failures").counter().count());
+    verify(liveGenerationMirror, never()).stop();
+  }
+
+  @Test
+  void shouldCountPromotionFailureWhenSettingsCannotBeRestored() throws IOException {
+    doThrow(new IOException("expected")).when(elasticsearchIndexService)
+        .restoreBulkLoadSettings(MASTER_DOCTOR_INDEX, MASTER_DOCTOR_READ_ALIAS);
+
+    service.promoteMasterDoctorIndex();
+
+    assertEquals(1.0, meterRegistry.get("sync.promotion.failures").counter().count());
+  }
+
+  @Test
+  void shouldStopMirroringCdcWritesOncePromoted() throws IOException {
+    assertTrue(service.promoteMasterDoctorIndex());
+
+    verify(liveGenerationMirror).stop();
+    assertEquals(0.0, meterRegistry.get("sync.promotion.failures").counter().count());
+  }
+
+  @Test
+  void shouldMirrorCdcWritesToLiveIndexWhileRebuilding() throws IOException {
+    when(elasticsearchOperations.indexOps(MasterDoctorView.class)).thenReturn(indexOperations);
+    when(indexOperations.createMapping()).thenReturn(Document.create());
+
+    service.startMasterDoctorIndexRebuild();
+
+    verify(liveGenerationMirror).start();
+  }
 
-    var actual = assertThrows(IndexNotFoundException.class, () -> service.clearMasterDoctorIndex());
+  @Test
+  void shouldMirrorCdcWritesToLiveIndexWhenResumingRebuild() {
+    service.resumeMasterDoctorIndexRebuild(NEW_INDEX);
+
+    verify(liveGenerationMirror).start();
+  }
+
+  @Test
+  void shouldReapplyBulkLoadSettingsWhenResumingRebuild() throws IOException {
+    setField(service, "bulkLoadProfileEnabled", true);
+
+    service.resumeMasterDoctorIndexRebuild(NEW_INDEX);
 
-    assertEquals(expectedException, actual);
-    verify(elasticsearchOperations, times(3)).indexOps((IndexCoordinates) any());
-    verify(indexOperations).create();
+    verify(elasticsearchIndexService).applyBulkLoadSettings(NEW_INDEX);
+    verify(elasticsearchIndexService, never()).startNewGeneration(any(), any(), any());
   }
 
   @Test
-  void shouldDeleteAndAddIndexWithMappings() {
-    when(elasticsearchOperations.indexOps(indexCaptor.capture())).thenReturn(indexOperations);
-    service.clearMasterDoctorIndex();
+  void shouldRestoreSettingsOfResumedRebuildAtShutdown() throws IOException {
+    service.resumeMasterDoctorIndexRebuild(NEW_INDEX);
 
-    verify(elasticsearchOperations, times(3)).indexOps((IndexCoordinates) any());
-    indexCaptor.getAllValues().forEach(i -> assertEquals(MASTER_DOCTOR_INDEX, i.getIndexName()));
+    service.restoreMasterDoctorIndexSettings();
+
+    verify(elasticsearchIndexService).restoreBulkLoadSettings(MASTER_DOCTOR_INDEX,
+        MASTER_DOCTOR_READ_ALIAS);
+  }
+
+  @Test
+  void shouldStartStagingWhenStagedRebuildEnabled() throws IOException {
+    setField(service, "stagingEnabled", true);
+    when(elasticsearchOperations.indexOps(MasterDoctorView.class)).thenReturn(indexOperations);
+    when(indexOperations.createMapping()).thenReturn(Document.create());
+
+    service.startMasterDoctorIndexRebuild();
+
+    verify(stagedRebuildService).start();
+  }
+
+  @Test
+  void shouldStageEveryPhaseWhileStagedRebuildIsActive() {
+    when(stagedRebuildService.isActive()).thenReturn(true);
+    List<ConnectionLogDto> connectionLogs = List.of(connectionLogDto);
+    List<HiddenDiscrepancy> hiddenDiscrepancies = List.of(hiddenDiscrepancy1);
+
+    service.populateMasterIndex(dataToSave);
+    service.populateMasterIndexByTcsRecords(List.of(dataToSave));
+    service.populateMasterIndex(List.of(mappedNewViewGmcOnly));
+    service.populateMasterIndexByConnectionLogs(connectionLogs);
+    service.populateMasterIndexByHiddenDiscrepancies(hiddenDiscrepancies);
+
+    verify(stagedRebuildService, times(2)).stageTcsRecords(List.of(dataToSave));
+    verify(stagedRebuildService).stageGmcRecords(List.of(mappedNewViewGmcOnly));
+    verify(stagedRebuildService).stageConnectionLogs(connectionLogs);
+    verify(stagedRebuildService).stageHiddenDiscrepancies(hiddenDiscrepancies);
+    verifyNoInteractions(repository, identityResolver, esDocUpdateHelper);
+  }
+
+  @Test
+  void shouldWriteStagedRebuildBeforePromotingIt() throws IOException {
+    setField(service, "stagingEnabled", true);
+    when(stagedRebuildService.isActive()).thenReturn(true);
+    when(stagedRebuildService.flush()).thenReturn(new BulkWriteResult(1, List.of()));
+
+    service.promoteMasterDoctorIndex();
+
+    InOrder inOrder = inOrder(stagedRebuildService, elasticsearchIndexService);
+    inOrder.verify(stagedRebuildService).flush();
+    inOrder.verify(stagedRebuildService).stop();
+    inOrder.verify(elasticsearchIndexService).restoreBulkLoadSettings(MASTER_DOCTOR_INDEX,
+        MASTER_DOCTOR_READ_ALIAS);
+    inOrder.verify(elasticsearchIndexService).promoteNewGeneration(eq(MASTER_DOCTOR_INDEX),
+        any());
+  }
+
+  @Test
+  void shouldNotPromoteStagedRebuildWhenRecordsCannotBeWritten() throws IOException {
+    setField(service, "stagingEnabled", true);
+    when(stagedRebuildService.isActive()).thenReturn(true);
+    when(stagedRebuildService.flush()).thenReturn(new BulkWriteResult(1, List.of(DOCUMENT_ID)));
+
+    service.promoteMasterDoctorIndex();
+
+    verify(elasticsearchIndexService, never()).promoteNewGeneration(any(), any());
+  }
+
+  @Test
+  void shouldNotPromoteStagedRebuildNotStartedByThisInstance() throws IOException {
+    setField(service, "stagingEnabled", true);
+
+    service.promoteMasterDoctorIndex();
+
+    verify(stagedRebuildService, never()).flush();
+    verify(elasticsearchIndexService, never()).promoteNewGeneration(any(), any());
   }
 
   @Test
@@ -261,62 +601,53 @@ class DoctorUpsertElasticSearchServiceTest {
     // find es index by GmcReferenceNumber don't return any existing record
     when(repository.findByGmcReferenceNumber(dataToSave.getGmcReferenceNumber()))
         .thenReturn(Collections.emptyList());
+    when(elasticsearchOperations.getElasticsearchConverter()).thenReturn(converter());
 
     service.populateMasterIndex(dataToSave);
 
-    // should save index with dataToSave
-    verify(repository).save(dataToSave);
-  }
-
-  @Test
-  void shouldAddCurrentConnectionsAliasToMasterDoctorIndex() throws IOException {
-    when(elasticsearchOperations.indexOps((IndexCoordinates) any())).thenReturn(indexOperations);
-    service.clearMasterDoctorIndex();
-    verify(elasticsearchIndexHelper).addAlias(MASTER_DOCTOR_INDEX, CURRENT_CONNECTIONS_ALIAS,
-        DoctorUpsertElasticSearchService.ES_CURRENT_CONNECTIONS_FILTER);
-  }
-
-  @Test
-  void shouldAddDiscrepanciesAliasToMasterDoctorIndex() throws IOException {
-    when(elasticsearchOperations.indexOps((IndexCoordinates) any())).thenReturn(indexOperations);
-    service.clearMasterDoctorIndex();
-    verify(elasticsearchIndexHelper).addAlias(MASTER_DOCTOR_INDEX, DISCREPANCIES_ALIAS,
-        DoctorUpsertElasticSearchService.ES_DISCREPANCIES_FILTER);
-  }
-
-  @Test
-  void shouldAddRecommendationsAliasToMasterDoctorIndex() throws IOException {
-    when(elasticsearchOperations.indexOps((IndexCoordinates) any())).thenReturn(indexOperations);
-    service.clearMasterDoctorIndex();
-    verify(elasticsearchIndexHelper).addAlias(MASTER_DOCTOR_INDEX, RECOMMENDATION_ALIAS);
+    // should create the document, updating only the TCS fields if it already exists
+    verify(esDocUpdateHelper).bulkUpsert(eq(MASTER_DOCTOR_INDEX), eq(Map.of()),
+        newDocumentsCaptor.capture(), fieldsOnConflictCaptor.capture());
+    String id = "gmc-" + GMC_NUMBER;
+    assertEquals(Set.of(id), newDocumentsCaptor.getValue().keySet());
+    assertEquals(DOCTOR_LAST_NAME_NEW,
+        newDocumentsCaptor.getValue().get(id).get(DOCTOR_LAST_NAME_KEY));
+    Map<String, Object> fieldsOnConflict = fieldsOnConflictCaptor.getValue().get(id);
+    assertEquals(DOCTOR_LAST_NAME_NEW, fieldsOnConflict.get(DOCTOR_LAST_NAME_KEY));
+    assertTrue(fieldsOnConflict.containsKey("designatedBody"));
+    assertFalse(fieldsOnConflict.containsKey("id"));
+    verify(repository, never()).save(any());
   }
 
   @Test
   void shouldBulkSaveNewDoctors() {
-    when(repository.findByGmcReferenceNumber(
-        mappedNewViewGmcOnly.getGmcReferenceNumber())).thenReturn(
-        List.of());
+    when(elasticsearchOperations.getElasticsearchConverter()).thenReturn(converter());
 
     service.populateMasterIndex(List.of(mappedNewViewGmcOnly));
 
-    verify(repository).saveAll(bulkSaveCaptor.capture());
-    var savedDoctor = bulkSaveCaptor.getValue().get(0);
-    assertEquals(savedDoctor.getDoctorFirstName(), mappedNewViewGmcOnly.getDoctorFirstName());
-    assertEquals(savedDoctor.getDoctorLastName(), mappedNewViewGmcOnly.getDoctorLastName());
-    assertEquals(savedDoctor.getGmcReferenceNumber(), mappedNewViewGmcOnly.getGmcReferenceNumber());
-    assertEquals(savedDoctor.getDoctorFirstName(), mappedNewViewGmcOnly.getDoctorFirstName());
+    verify(esDocUpdateHelper).bulkUpsert(eq(MASTER_DOCTOR_INDEX), eq(Map.of()),
+        newDocumentsCaptor.capture(), fieldsOnConflictCaptor.capture());
+    String id = "gmc-" + GMC_NUMBER;
+    var savedDoctor = newDocumentsCaptor.getValue().get(id);
+    assertEquals(mappedNewViewGmcOnly.getDoctorFirstName(), savedDoctor.get(DOCTOR_FIRST_NAME_KEY));
+    assertEquals(mappedNewViewGmcOnly.getDoctorLastName(), savedDoctor.get(DOCTOR_LAST_NAME_KEY));
+    assertEquals(mappedNewViewGmcOnly.getGmcReferenceNumber(), savedDoctor.get(GMC_NUMBER_KEY));
+    // A document the lookup missed only gets the GMC fields
+    Map<String, Object> fieldsOnConflict = fieldsOnConflictCaptor.getValue().get(id);
+    assertEquals(GMC_NUMBER, fieldsOnConflict.get(GMC_NUMBER_KEY));
+    assertFalse(fieldsOnConflict.containsKey(TIS_ID_KEY));
   }
 
   @Test
   void shouldBulkUpdateExistingDoctors() {
-    when(repository.findByGmcReferenceNumber(
-        mappedExistingViewGmcOnly.getGmcReferenceNumber())).thenReturn(
-        recordsAlreadyInEs);
+    when(identityResolver.resolve(List.of(mappedExistingViewGmcOnly))).thenReturn(
+        Map.of(MasterDoctorIdentityResolver.identityKey(mappedExistingViewGmcOnly),
+            List.of(DOCUMENT_ID)));
 
     service.populateMasterIndex(List.of(mappedExistingViewGmcOnly));
 
-    verify(esDocUpdateHelper).bulkPartialUpdate(eq(MASTER_DOCTOR_INDEX),
-        bulkUpdateCaptor.capture());
+    verify(esDocUpdateHelper).bulkUpsert(eq(MASTER_DOCTOR_INDEX), bulkUpdateCaptor.capture(),
+        eq(Map.of()), eq(Map.of()));
 
     Map<String, Object> savedFields = Map.of();
     String updatedId = "";
@@ -337,32 +668,227 @@ class DoctorUpsertElasticSearchServiceTest {
 
   @Test
   void shouldNotBulkSaveNewDoctorsIfNoNewDoctors() {
-    when(repository.findByGmcReferenceNumber(
-        mappedExistingViewGmcOnly.getGmcReferenceNumber())).thenReturn(
-        recordsAlreadyInEs);
+    when(identityResolver.resolve(List.of(mappedExistingViewGmcOnly))).thenReturn(
+        Map.of(MasterDoctorIdentityResolver.identityKey(mappedExistingViewGmcOnly),
+            List.of(DOCUMENT_ID)));
 
     service.populateMasterIndex(List.of(mappedExistingViewGmcOnly));
 
-    verify(repository, never()).saveAll(any());
+    verify(esDocUpdateHelper).bulkUpsert(eq(MASTER_DOCTOR_INDEX), any(), eq(Map.of()),
+        eq(Map.of()));
   }
 
   @Test
   void shouldNotBulkUpdateNewDoctorsIfNoNewDoctors() {
-    when(repository.findByGmcReferenceNumber(
-        mappedNewViewGmcOnly.getGmcReferenceNumber())).thenReturn(
-        List.of());
+    when(elasticsearchOperations.getElasticsearchConverter()).thenReturn(converter());
 
     service.populateMasterIndex(List.of(mappedNewViewGmcOnly));
 
-    verify(esDocUpdateHelper, never()).bulkPartialUpdate(any(), any());
+    verify(esDocUpdateHelper).bulkUpsert(eq(MASTER_DOCTOR_INDEX), eq(Map.of()), any(), any());
   }
 
   @Test
-  void shouldBulkUpdateExistingDoctorsWithConnectionLogs() {
+  void shouldNotWriteGmcBatchWithoutDoctors() {
+    service.populateMasterIndex(List.<MasterDoctorView>of());
+
+    verifyNoInteractions(esDocUpdateHelper);
+  }
+
+  @Test
+  void shouldFallBackToPerDoctorLookupWhenBatchedLookupFails() {
+    when(identityResolver.resolve(any())).thenThrow(new RuntimeException("expected"));
     when(repository.findByGmcReferenceNumber(
         mappedExistingViewGmcOnly.getGmcReferenceNumber())).thenReturn(
         recordsAlreadyInEs);
 
+    service.populateMasterIndex(List.of(mappedExistingViewGmcOnly));
+
+    verify(esDocUpdateHelper).bulkUpsert(eq(MASTER_DOCTOR_INDEX), bulkUpdateCaptor.capture(),
+        eq(Map.of()), eq(Map.of()));
+    assertEquals(List.of(DOCUMENT_ID), List.copyOf(bulkUpdateCaptor.getValue().keySet()));
+  }
+
+  @Test
+  void shouldMergeTcsRecordsOntoExistingDoctorsWithOneBulkSave() {
+    dataToSave.setGmcReferenceNumber(GMC_NUMBER);
+    dataToSave.setTcsPersonId(TIS_ID);
+    MasterDoctorView newDoctor = MasterDoctorView.builder().tcsPersonId(2L).build();
+    when(identityResolver.findExisting(List.of(dataToSave, newDoctor))).thenReturn(Map.of(
+        MasterDoctorIdentityResolver.identityKey(dataToSave), recordsAlreadyInEs,
+        MasterDoctorIdentityResolver.identityKey(newDoctor), List.of()));
+    when(mapper.updateMasterDoctorView(dataToSave, currentDoctorView)).thenReturn(mappedView);
+    when(elasticsearchOperations.getElasticsearchConverter()).thenReturn(converter());
+
+    when(esDocUpdateHelper.bulkReplace(any(), any(), any(), any()))
+        .thenReturn(new BulkWriteResult(1, List.of()));
+
+    service.populateMasterIndexByTcsRecords(List.of(dataToSave, newDoctor));
+
+    verify(esDocUpdateHelper).bulkReplace(eq(MASTER_DOCTOR_INDEX), bulkUpdateCaptor.capture(),
+        newDocumentsCaptor.capture(), fieldsOnConflictCaptor.capture());
+    assertEquals(Set.of(DOCUMENT_ID), bulkUpdateCaptor.getValue().keySet());
+    assertEquals(DOCTOR_FIRST_NAME_NEW,
+        bulkUpdateCaptor.getValue().get(DOCUMENT_ID).get(DOCTOR_FIRST_NAME_KEY));
+    assertEquals("tis-2", newDoctor.getId());
+    assertEquals(Set.of("tis-2"), newDocumentsCaptor.getValue().keySet());
+    assertEquals(2L, fieldsOnConflictCaptor.getValue().get("tis-2").get("tcsPersonId"));
+    verify(repository, never()).save(any());
+    assertEquals(1.0, documentCount(SyncPhase.TCS, "inserted"));
+    assertEquals(1.0, documentCount(SyncPhase.TCS, "updated"));
+    assertEquals(1, meterRegistry.get("sync.lookup").tag("phase", "TCS").timer().count());
+    assertEquals(1, meterRegistry.get("sync.bulk").tag("phase", "TCS").timer().count());
+  }
+
+  @Test
+  void shouldMergeRepeatedTcsRecordOntoEarlierResult() {
+    dataToSave.setGmcReferenceNumber(GMC_NUMBER);
+    dataToSave.setTcsPersonId(TIS_ID);
+    MasterDoctorView laterUpdate = MasterDoctorView.builder()
+        .gmcReferenceNumber(GMC_NUMBER)
+        .tcsPersonId(TIS_ID)
+        .doctorFirstName(DOCTOR_FIRST_NAME_NEW)
+        .build();
+    MasterDoctorView finalView = MasterDoctorView.builder().id(DOCUMENT_ID).build();
+    when(identityResolver.findExisting(List.of(dataToSave, laterUpdate))).thenReturn(
+        Map.of(MasterDoctorIdentityResolver.identityKey(dataToSave), recordsAlreadyInEs));
+    when(mapper.updateMasterDoctorView(dataToSave, currentDoctorView)).thenReturn(mappedView);
+    when(mapper.updateMasterDoctorView(laterUpdate, mappedView)).thenReturn(finalView);
+    when(elasticsearchOperations.getElasticsearchConverter()).thenReturn(converter());
+
+    when(esDocUpdateHelper.bulkReplace(any(), any(), any(), any()))
+        .thenReturn(new BulkWriteResult(1, List.of()));
+
+    service.populateMasterIndexByTcsRecords(List.of(dataToSave, laterUpdate));
+
+    verify(esDocUpdateHelper).bulkReplace(eq(MASTER_DOCTOR_INDEX), bulkUpdateCaptor.capture(),
+        eq(Map.of()), eq(Map.of()));
+    assertEquals(Set.of(DOCUMENT_ID), bulkUpdateCaptor.getValue().keySet());
+  }
+
+  @Test
+  void shouldUpdateOnlyMergedTcsFieldsIfRepeatedNewDoctorAlreadyExists() {
+    MasterDoctorView firstRecord = MasterDoctorView.builder().tcsPersonId(2L)
+        .doctorFirstName(DOCTOR_FIRST_NAME).designatedBody(DESIGNATED_BODY_CODE_1).build();
+    MasterDoctorView laterRecord = MasterDoctorView.builder().tcsPersonId(2L)
+        .doctorLastName(DOCTOR_LAST_NAME).build();
+    MasterDoctorView merged = MasterDoctorView.builder().tcsPersonId(2L)
+        .doctorFirstName(DOCTOR_FIRST_NAME).doctorLastName(DOCTOR_LAST_NAME).build();
+    when(identityResolver.findExisting(List.of(firstRecord, laterRecord))).thenReturn(Map.of());
+    when(mapper.updateMasterDoctorView(laterRecord, firstRecord)).thenReturn(merged);
+    when(elasticsearchOperations.getElasticsearchConverter()).thenReturn(converter());
+
+    when(esDocUpdateHelper.bulkReplace(any(), any(), any(), any()))
+        .thenReturn(new BulkWriteResult(1, List.of()));
+
+    service.populateMasterIndexByTcsRecords(List.of(firstRecord, laterRecord));
+
+    verify(esDocUpdateHelper).bulkReplace(eq(MASTER_DOCTOR_INDEX), eq(Map.of()),
+        newDocumentsCaptor.capture(), fieldsOnConflictCaptor.capture());
+    assertEquals(Set.of("tis-2"), newDocumentsCaptor.getValue().keySet());
+    Map<String, Object> fieldsOnConflict = fieldsOnConflictCaptor.getValue().get("tis-2");
+    assertEquals(DOCTOR_FIRST_NAME, fieldsOnConflict.get(DOCTOR_FIRST_NAME_KEY));
+    assertEquals(DOCTOR_LAST_NAME, fieldsOnConflict.get(DOCTOR_LAST_NAME_KEY));
+    // The later record clears the designated body, as the mapper does
+    assertTrue(fieldsOnConflict.containsKey("designatedBody"));
+    assertNull(fieldsOnConflict.get("designatedBody"));
+  }
+
+  @Test
+  void shouldReturnTcsRecordsWhoseDocumentsFailed() {
+    dataToSave.setGmcReferenceNumber(GMC_NUMBER);
+    dataToSave.setTcsPersonId(TIS_ID);
+    MasterDoctorView laterUpdate = MasterDoctorView.builder()
+        .gmcReferenceNumber(GMC_NUMBER)
+        .tcsPersonId(TIS_ID)
+        .doctorFirstName(DOCTOR_FIRST_NAME_NEW)
+        .build();
+    MasterDoctorView newDoctor = MasterDoctorView.builder().tcsPersonId(2L).build();
+    MasterDoctorView finalView = MasterDoctorView.builder().id(DOCUMENT_ID).build();
+    List<MasterDoctorView> records = List.of(dataToSave, newDoctor, laterUpdate);
+    when(identityResolver.findExisting(records)).thenReturn(Map.of(
+        MasterDoctorIdentityResolver.identityKey(dataToSave), recordsAlreadyInEs));
+    when(mapper.updateMasterDoctorView(dataToSave, currentDoctorView)).thenReturn(mappedView);
+    when(mapper.updateMasterDoctorView(laterUpdate, mappedView)).thenReturn(finalView);
+    when(elasticsearchOperations.getElasticsearchConverter()).thenReturn(converter());
+    when(esDocUpdateHelper.bulkReplace(any(), any(), any(), any()))
+        .thenReturn(new BulkWriteResult(1, List.of(DOCUMENT_ID)));
+
+    List<MasterDoctorView> failed = service.populateMasterIndexByTcsRecords(records);
+
+    assertEquals(2, failed.size());
+    assertSame(dataToSave, failed.get(0));
+    assertSame(laterUpdate, failed.get(1));
+  }
+
+  @Test
+  void shouldReturnTcsRecordsThatFailedPerDoctorUpsertWhenTcsBatchLookupFails() {
+    dataToSave.setGmcReferenceNumber(GMC_NUMBER);
+    when(identityResolver.findExisting(any())).thenThrow(new RuntimeException("expected"));
+    when(repository.findByGmcReferenceNumber(GMC_NUMBER)).thenReturn(recordsAlreadyInEs);
+    when(mapper.updateMasterDoctorView(dataToSave, currentDoctorView)).thenReturn(mappedView);
+    when(repository.save(mappedView)).thenThrow(new RuntimeException("expected"));
+
+    List<MasterDoctorView> failed = service.populateMasterIndexByTcsRecords(List.of(dataToSave));
+
+    assertEquals(List.of(dataToSave), failed);
+  }
+
+  @Test
+  void shouldReturnNewTcsRecordThatFailedPerDoctorUpsertWhenTcsBatchLookupFails() {
+    MasterDoctorView newDoctor = MasterDoctorView.builder().tcsPersonId(2L).build();
+    when(identityResolver.findExisting(any())).thenThrow(new RuntimeException("expected"));
+    when(elasticsearchOperations.getElasticsearchConverter()).thenReturn(converter());
+    when(esDocUpdateHelper.bulkUpsert(any(), any(), any(), any()))
+        .thenReturn(new BulkWriteResult(0, List.of("tis-2")));
+
+    List<MasterDoctorView> failed = service.populateMasterIndexByTcsRecords(List.of(newDoctor));
+
+    assertEquals(List.of(newDoctor), failed);
+  }
+
+  @Test
+  void shouldFallBackToPerDoctorUpsertWhenTcsBatchLookupFails() {
+    dataToSave.setGmcReferenceNumber(GMC_NUMBER);
+    when(identityResolver.findExisting(any())).thenThrow(new RuntimeException("expected"));
+    when(repository.findByGmcReferenceNumber(GMC_NUMBER)).thenReturn(recordsAlreadyInEs);
+    when(mapper.updateMasterDoctorView(dataToSave, currentDoctorView)).thenReturn(mappedView);
+
+    service.populateMasterIndexByTcsRecords(List.of(dataToSave));
+
+    verify(repository).save(mappedView);
+    verify(esDocUpdateHelper, never()).bulkReplace(any(), any(), any(), any());
+  }
+
+  @Test
+  void shouldCreateUnidentifiedTcsRecordWithRandomId() {
+    MasterDoctorView unidentified = MasterDoctorView.builder()
+        .doctorFirstName(DOCTOR_FIRST_NAME).build();
+    when(identityResolver.findExisting(List.of(unidentified))).thenReturn(Map.of());
+    when(elasticsearchOperations.getElasticsearchConverter()).thenReturn(converter());
+
+    when(esDocUpdateHelper.bulkReplace(any(), any(), any(), any()))
+        .thenReturn(new BulkWriteResult(1, List.of()));
+
+    service.populateMasterIndexByTcsRecords(List.of(unidentified));
+
+    verify(esDocUpdateHelper).bulkReplace(eq(MASTER_DOCTOR_INDEX), eq(Map.of()),
+        newDocumentsCaptor.capture(), eq(Map.of()));
+    assertNotNull(unidentified.getId());
+    assertEquals(Set.of(unidentified.getId()), newDocumentsCaptor.getValue().keySet());
+  }
+
+  @Test
+  void shouldNotLookUpOrSaveEmptyTcsBatch() {
+    service.populateMasterIndexByTcsRecords(List.of());
+
+    verifyNoInteractions(identityResolver, repository);
+  }
+
+  @Test
+  void shouldBulkUpdateExistingDoctorsWithConnectionLogs() {
+    when(identityResolver.resolveByGmcReferenceNumbers(List.of(GMC_NUMBER))).thenReturn(
+        Map.of(GMC_NUMBER, List.of(DOCUMENT_ID)));
+
     service.populateMasterIndexByConnectionLogs(List.of(connectionLogDto));
 
     verify(esDocUpdateHelper).bulkPartialUpdate(eq(MASTER_DOCTOR_INDEX),
@@ -386,13 +912,20 @@ class DoctorUpsertElasticSearchServiceTest {
 
   @Test
   void shouldNotBulkUpdateNewDoctorsWithConnectionLogsIfNoExistingDoctors() {
-    when(repository.findByGmcReferenceNumber(
-        mappedNewViewGmcOnly.getGmcReferenceNumber())).thenReturn(
-        List.of());
+    service.populateMasterIndexByConnectionLogs(List.of(connectionLogDto));
+
+    verify(esDocUpdateHelper, never()).bulkPartialUpdate(any(), any());
+  }
+
+  @Test
+  void shouldNotBulkUpdateConnectionLogsIfMultipleDoctorsFound() {
+    when(identityResolver.resolveByGmcReferenceNumbers(List.of(GMC_NUMBER))).thenReturn(
+        Map.of(GMC_NUMBER, List.of(DOCUMENT_ID, "2")));
 
     service.populateMasterIndexByConnectionLogs(List.of(connectionLogDto));
 
     verify(esDocUpdateHelper, never()).bulkPartialUpdate(any(), any());
+    assertEquals(1.0, documentCount(SyncPhase.CONNECTION_LOG, "skipped"));
   }
 
   @Test
@@ -403,52 +936,59 @@ class DoctorUpsertElasticSearchServiceTest {
 
   @Test
   void shouldUpdateExistingDoctorsWithHiddenDiscrepancies() {
-    MasterDoctorView masterDoctorViewInitial = MasterDoctorView.builder()
-        .id(DOCUMENT_ID)
-        .tcsPersonId(TIS_ID)
-        .gmcReferenceNumber(GMC_NUMBER)
-        .doctorFirstName(DOCTOR_FIRST_NAME)
-        .doctorLastName(DOCTOR_LAST_NAME)
-        .build();
-
-    MasterDoctorView masterDoctorViewUpdated = MasterDoctorView.builder()
-        .id(DOCUMENT_ID)
-        .tcsPersonId(TIS_ID)
-        .gmcReferenceNumber(GMC_NUMBER)
-        .doctorFirstName(DOCTOR_FIRST_NAME)
-        .doctorLastName(DOCTOR_LAST_NAME)
-        .hiddenDiscrepancies(List.of(hiddenDiscrepancy1))
-        .build();
-
-    when(repository.findByGmcReferenceNumber(GMC_NUMBER)).thenReturn(
-        List.of(masterDoctorViewInitial), List.of(masterDoctorViewUpdated));
+    when(identityResolver.resolveByGmcReferenceNumbers(List.of(GMC_NUMBER))).thenReturn(
+        Map.of(GMC_NUMBER, List.of(DOCUMENT_ID)));
 
     service.populateMasterIndexByHiddenDiscrepancies(
         List.of(hiddenDiscrepancy1, hiddenDiscrepancy2));
 
-    verify(repository, times(2)).save(masterDoctorViewCaptor.capture());
-    var savedDoctor1 = masterDoctorViewCaptor.getAllValues().get(0);
-    var savedDoctor2 = masterDoctorViewCaptor.getAllValues().get(1);
-    assertEquals(List.of(hiddenDiscrepancy1), savedDoctor1.getHiddenDiscrepancies());
-    assertEquals(List.of(hiddenDiscrepancy1, hiddenDiscrepancy2),
-        savedDoctor2.getHiddenDiscrepancies());
+    verify(esDocUpdateHelper).bulkScriptedUpdate(eq(MASTER_DOCTOR_INDEX),
+        scriptUpdateCaptor.capture());
+    Map<String, Script> updates = scriptUpdateCaptor.getValue();
+    assertEquals(Set.of(DOCUMENT_ID), updates.keySet());
+    assertEquals(HiddenDiscrepancyScripts.addHiddenDiscrepancies(
+        List.of(hiddenDiscrepancy1, hiddenDiscrepancy2)), updates.get(DOCUMENT_ID));
+    verify(repository, never()).save(any());
+  }
+
+  @Test
+  void shouldNotUpdateHiddenDiscrepanciesIfMultipleDoctorsFound() {
+    when(identityResolver.resolveByGmcReferenceNumbers(List.of(GMC_NUMBER))).thenReturn(
+        Map.of(GMC_NUMBER, List.of(DOCUMENT_ID, "2")));
+
+    service.populateMasterIndexByHiddenDiscrepancies(List.of(hiddenDiscrepancy1));
+
+    verify(esDocUpdateHelper, never()).bulkScriptedUpdate(any(), any());
   }
 
   @Test
   void shouldNotBulkUpdateNewDoctorsWithHiddenDiscrepanciesIfNoExistingDoctors() {
-    when(repository.findByGmcReferenceNumber(
-        mappedNewViewGmcOnly.getGmcReferenceNumber())).thenReturn(
-        List.of());
+    when(identityResolver.resolveByGmcReferenceNumbers(List.of(GMC_NUMBER))).thenReturn(
+        Map.of(GMC_NUMBER, List.of()));
 
     service.populateMasterIndexByHiddenDiscrepancies(
         List.of(hiddenDiscrepancy1, hiddenDiscrepancy2));
 
+    verify(esDocUpdateHelper, never()).bulkScriptedUpdate(any(), any());
     verify(repository, never()).save(any());
   }
 
   @Test
   void shouldHandleEmptyHiddenDiscrepanciesList() {
     service.populateMasterIndexByHiddenDiscrepancies(Collections.emptyList());
+    verify(esDocUpdateHelper, never()).bulkScriptedUpdate(any(), any());
     verify(repository, never()).save(any());
   }
+
+  private double documentCount(SyncPhase phase, String outcome) {
+    return meterRegistry.get("sync.documents").tag("phase", phase.name())
+        .tag("outcome", outcome).counter().count();
+  }
+
+  private MappingElasticsearchConverter converter() {
+    MappingElasticsearchConverter converter =
+        new MappingElasticsearchConverter(new SimpleElasticsearchMappingContext());
+    converter.afterPropertiesSet();
+    return converter;
+  }
 }
@@ -25,10 +25,13 @@ import static org.hamcrest.CoreMatchers.hasItems;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.doThrow;
@@ -41,9 +44,11 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.Set;
 import org.assertj.core.util.Lists;
 import org.elasticsearch.ResourceAlreadyExistsException;
 import org.elasticsearch.ResourceNotFoundException;
+import org.elasticsearch.action.admin.indices.alias.IndicesAliasesRequest.AliasActions;
 import org.elasticsearch.client.indices.GetIndexResponse;
 import org.elasticsearch.cluster.metadata.AliasMetadata;
 import org.elasticsearch.cluster.metadata.MappingMetadata;
@@ -72,8 +77,19 @@ class ElasticsearchIndexServiceTest {
   private static final String ALIAS = "alias";
   private static final String BACKUP_ALIAS = "backupAlias";
 
+  private static final String WRITE_ALIAS = "writeAlias";
+  private static final String FILTER = "{\"term\":{\"existsInGmc\":true}}";
+  private static final Map<String, String> READ_ALIASES = Map.of(ALIAS, FILTER);
+  private static final Map<String, Object> NEW_MAPPING = Map.of("properties", Map.of());
+  private static final String LIVE_INDEX = "writeAlias_1";
+  private static final String NEW_INDEX = "writeAlias_2";
+
   @Captor
   ArgumentCaptor<String> stringArgCaptor;
+  @Captor
+  ArgumentCaptor<List<AliasActions>> aliasActionsCaptor;
+  @Captor
+  ArgumentCaptor<Settings> settingsCaptor;
   @Mock
   private ElasticsearchIndexHelper elasticsearchIndexHelperMock;
   @Mock
@@ -276,4 +292,195 @@ class ElasticsearchIndexServiceTest {
     String backupAlias = elasticsearchIndexService.getBackupAlias("index");
     assertEquals("index_backup", backupAlias);
   }
+
+  @Test
+  void shouldMoveOnlyWriteAliasWhenStartingNewGeneration() throws Exception {
+    when(elasticsearchIndexHelperMock.aliasExists(WRITE_ALIAS)).thenReturn(true);
+    when(elasticsearchIndexHelperMock.getIndicesForAlias(ALIAS)).thenReturn(Set.of(LIVE_INDEX));
+    when(elasticsearchIndexHelperMock.getIndicesForAlias(WRITE_ALIAS))
+        .thenReturn(Set.of(LIVE_INDEX));
+
+    String newIndex = elasticsearchIndexService.startNewGeneration(WRITE_ALIAS, NEW_MAPPING,
+        READ_ALIASES);
+
+    verify(elasticsearchIndexHelperMock).createIndex(newIndex, NEW_MAPPING);
+    verify(elasticsearchIndexHelperMock).updateAliases(aliasActionsCaptor.capture());
+    List<AliasActions> actions = aliasActionsCaptor.getValue();
+    assertEquals(2, actions.size());
+    assertAliasAction(actions.get(0), AliasActions.Type.REMOVE, LIVE_INDEX, WRITE_ALIAS);
+    assertAliasAction(actions.get(1), AliasActions.Type.ADD, newIndex, WRITE_ALIAS);
+    verify(elasticsearchIndexHelperMock, never()).deleteIndex(anyString());
+  }
+
+  @Test
+  void shouldDeleteAbandonedGenerationWhenStartingNewGeneration() throws Exception {
+    when(elasticsearchIndexHelperMock.aliasExists(WRITE_ALIAS)).thenReturn(true);
+    when(elasticsearchIndexHelperMock.getIndicesForAlias(ALIAS)).thenReturn(Set.of(LIVE_INDEX));
+    when(elasticsearchIndexHelperMock.getIndicesForAlias(WRITE_ALIAS))
+        .thenReturn(Set.of(NEW_INDEX));
+
+    elasticsearchIndexService.startNewGeneration(WRITE_ALIAS, NEW_MAPPING, READ_ALIASES);
+
+    verify(elasticsearchIndexHelperMock).deleteIndex(NEW_INDEX);
+    verify(elasticsearchIndexHelperMock, never()).deleteIndex(LIVE_INDEX);
+  }
+
+  @Test
+  void shouldAddReadAliasesToLiveIndexWhenTheyDoNotExist() throws Exception {
+    when(elasticsearchIndexHelperMock.aliasExists(WRITE_ALIAS)).thenReturn(true);
+    when(elasticsearchIndexHelperMock.getIndicesForAlias(ALIAS)).thenReturn(Set.of());
+    when(elasticsearchIndexHelperMock.getIndicesForAlias(WRITE_ALIAS))
+        .thenReturn(Set.of(LIVE_INDEX));
+
+    elasticsearchIndexService.startNewGeneration(WRITE_ALIAS, NEW_MAPPING, READ_ALIASES);
+
+    verify(elasticsearchIndexHelperMock).updateAliases(aliasActionsCaptor.capture());
+    AliasActions readAliasAction = aliasActionsCaptor.getValue().get(0);
+    assertAliasAction(readAliasAction, AliasActions.Type.ADD, LIVE_INDEX, ALIAS);
+    assertEquals(FILTER, readAliasAction.filter());
+  }
+
+  @Test
+  void shouldCopyConcreteIndexWhenStartingFirstGeneration() throws Exception {
+    when(elasticsearchIndexHelperMock.aliasExists(WRITE_ALIAS)).thenReturn(false);
+    when(elasticsearchIndexHelperMock.indexExists(WRITE_ALIAS)).thenReturn(true);
+    when(elasticsearchIndexHelperMock.getMapping(WRITE_ALIAS)).thenReturn(mappingMock);
+
+    String newIndex = elasticsearchIndexService.startNewGeneration(WRITE_ALIAS, NEW_MAPPING,
+        READ_ALIASES);
+
+    verify(elasticsearchIndexHelperMock).createIndex(stringArgCaptor.capture(), eq(mappingMock));
+    String copyIndex = stringArgCaptor.getValue();
+    verify(elasticsearchIndexHelperMock).reindex(WRITE_ALIAS, copyIndex);
+    verify(elasticsearchIndexHelperMock).updateAliases(aliasActionsCaptor.capture());
+    List<AliasActions> actions = aliasActionsCaptor.getValue();
+    assertEquals(3, actions.size());
+    assertEquals(AliasActions.Type.REMOVE_INDEX, actions.get(0).actionType());
+    assertAliasAction(actions.get(1), AliasActions.Type.ADD, copyIndex, ALIAS);
+    assertAliasAction(actions.get(2), AliasActions.Type.ADD, newIndex, WRITE_ALIAS);
+  }
+
+  @Test
+  void shouldCreateFirstGenerationWhenNothingExists() throws Exception {
+    when(elasticsearchIndexHelperMock.aliasExists(WRITE_ALIAS)).thenReturn(false);
+    when(elasticsearchIndexHelperMock.indexExists(WRITE_ALIAS)).thenReturn(false);
+
+    String newIndex = elasticsearchIndexService.startNewGeneration(WRITE_ALIAS, NEW_MAPPING,
+        READ_ALIASES);
+
+    verify(elasticsearchIndexHelperMock).createIndex(startsWith(WRITE_ALIAS + "_"),
+        eq(NEW_MAPPING));
+    verify(elasticsearchIndexHelperMock).updateAliases(aliasActionsCaptor.capture());
+    List<AliasActions> actions = aliasActionsCaptor.getValue();
+    assertEquals(1, actions.size());
+    assertAliasAction(actions.get(0), AliasActions.Type.ADD, newIndex, WRITE_ALIAS);
+    verify(elasticsearchIndexHelperMock, never()).reindex(anyString(), anyString());
+  }
+
+  @Test
+  void shouldSwapReadAliasesAtomicallyWhenPromotingNewGeneration() throws Exception {
+    when(elasticsearchIndexHelperMock.getIndicesForAlias(WRITE_ALIAS))
+        .thenReturn(Set.of(NEW_INDEX));
+    when(elasticsearchIndexHelperMock.getIndicesForAlias(ALIAS)).thenReturn(Set.of(LIVE_INDEX));
+    doNothing().when(elasticsearchIndexService)
+        .deleteBackupIndicesExceptLatest(WRITE_ALIAS + "_backup");
+
+    String promoted = elasticsearchIndexService.promoteNewGeneration(WRITE_ALIAS, READ_ALIASES);
+
+    assertEquals(NEW_INDEX, promoted);
+    verify(elasticsearchIndexHelperMock).updateAliases(aliasActionsCaptor.capture());
+    List<AliasActions> actions = aliasActionsCaptor.getValue();
+    assertEquals(3, actions.size());
+    assertAliasAction(actions.get(0), AliasActions.Type.ADD, NEW_INDEX, ALIAS);
+    assertEquals(FILTER, actions.get(0).filter());
+    assertAliasAction(actions.get(1), AliasActions.Type.REMOVE, LIVE_INDEX, ALIAS);
+    assertAliasAction(actions.get(2), AliasActions.Type.ADD, LIVE_INDEX, WRITE_ALIAS + "_backup");
+    verify(elasticsearchIndexService).deleteBackupIndicesExceptLatest(WRITE_ALIAS + "_backup");
+  }
+
+  @Test
+  void shouldPromoteEvenIfDeletingOldBackupsFails() throws Exception {
+    when(elasticsearchIndexHelperMock.getIndicesForAlias(WRITE_ALIAS))
+        .thenReturn(Set.of(NEW_INDEX));
+    when(elasticsearchIndexHelperMock.getIndicesForAlias(ALIAS)).thenReturn(Set.of(LIVE_INDEX));
+    doThrow(new NoSuchElementException("expected")).when(elasticsearchIndexService)
+        .deleteBackupIndicesExceptLatest(WRITE_ALIAS + "_backup");
+
+    assertDoesNotThrow(
+        () -> elasticsearchIndexService.promoteNewGeneration(WRITE_ALIAS, READ_ALIASES));
+    verify(elasticsearchIndexHelperMock).updateAliases(any());
+  }
+
+  @Test
+  void shouldNotPromoteWhenWriteAliasDoesNotPointToOneIndex() throws Exception {
+    when(elasticsearchIndexHelperMock.getIndicesForAlias(WRITE_ALIAS)).thenReturn(Set.of());
+
+    assertThrows(IllegalStateException.class,
+        () -> elasticsearchIndexService.promoteNewGeneration(WRITE_ALIAS, READ_ALIASES));
+    verify(elasticsearchIndexHelperMock, never()).updateAliases(any());
+  }
+
+  @Test
+  void shouldApplyBulkLoadSettings() throws Exception {
+    elasticsearchIndexService.applyBulkLoadSettings(NEW_INDEX);
+
+    verify(elasticsearchIndexHelperMock).updateSettings(NEW_INDEX,
+        ElasticsearchIndexService.BULK_LOAD_SETTINGS);
+    assertNull(ElasticsearchIndexService.BULK_LOAD_SETTINGS.get("index.refresh_interval"));
+  }
+
+  @Test
+  void shouldApplyStagedLoadSettingsWithRefreshDisabled() throws Exception {
+    elasticsearchIndexService.applyStagedLoadSettings(NEW_INDEX);
+
+    verify(elasticsearchIndexHelperMock).updateSettings(NEW_INDEX,
+        ElasticsearchIndexService.STAGED_LOAD_SETTINGS);
+    assertEquals("-1",
+        ElasticsearchIndexService.STAGED_LOAD_SETTINGS.get("index.refresh_interval"));
+    assertTrue(ElasticsearchIndexService.RESTORED_SETTINGS.containsAll(
+        ElasticsearchIndexService.STAGED_LOAD_SETTINGS.keySet()));
+  }
+
+  @Test
+  void shouldRestoreBulkLoadSettingsFromLiveIndex() throws Exception {
+    when(elasticsearchIndexHelperMock.getIndicesForAlias(WRITE_ALIAS))
+        .thenReturn(Set.of(NEW_INDEX));
+    when(elasticsearchIndexHelperMock.getIndicesForAlias(ALIAS)).thenReturn(Set.of(LIVE_INDEX));
+    when(elasticsearchIndexHelperMock.getSettings(LIVE_INDEX)).thenReturn(Settings.builder()
+        .put("index.number_of_replicas", 2)
+        .put("index.refresh_interval", "5s")
+        .build());
+
+    elasticsearchIndexService.restoreBulkLoadSettings(WRITE_ALIAS, ALIAS);
+
+    verify(elasticsearchIndexHelperMock).updateSettings(eq(NEW_INDEX), settingsCaptor.capture());
+    Settings restored = settingsCaptor.getValue();
+    assertEquals("2", restored.get("index.number_of_replicas"));
+    assertEquals("5s", restored.get("index.refresh_interval"));
+    assertTrue(restored.keySet().contains("index.translog.durability"));
+    assertNull(restored.get("index.translog.durability"));
+    verify(elasticsearchIndexHelperMock).refresh(NEW_INDEX);
+  }
+
+  @Test
+  void shouldResetBulkLoadSettingsToDefaultsWithoutLiveIndex() throws Exception {
+    when(elasticsearchIndexHelperMock.getIndicesForAlias(WRITE_ALIAS))
+        .thenReturn(Set.of(NEW_INDEX));
+    when(elasticsearchIndexHelperMock.getIndicesForAlias(ALIAS)).thenReturn(Set.of());
+
+    elasticsearchIndexService.restoreBulkLoadSettings(WRITE_ALIAS, ALIAS);
+
+    verify(elasticsearchIndexHelperMock).updateSettings(eq(NEW_INDEX), settingsCaptor.capture());
+    Settings restored = settingsCaptor.getValue();
+    assertEquals(ElasticsearchIndexService.RESTORED_SETTINGS, restored.keySet());
+    restored.keySet().forEach(key -> assertNull(restored.get(key)));
+    verify(elasticsearchIndexHelperMock, never()).getSettings(anyString());
+  }
+
+  private void assertAliasAction(AliasActions action, AliasActions.Type type, String index,
+      String alias) {
+    assertEquals(type, action.actionType());
+    assertEquals(List.of(index), List.of(action.indices()));
+    assertEquals(List.of(alias), List.of(action.aliases()));
+  }
 }
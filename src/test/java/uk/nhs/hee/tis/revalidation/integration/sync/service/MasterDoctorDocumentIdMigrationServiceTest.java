@@ -0,0 +1,252 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright 2026 Crown Copyright (NHS England)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package uk.nhs.hee.tis.revalidation.integration.sync.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import org.elasticsearch.action.DocWriteRequest;
+import org.elasticsearch.action.delete.DeleteRequest;
+import org.elasticsearch.action.get.GetResponse;
+import org.elasticsearch.action.get.MultiGetItemResponse;
+import org.elasticsearch.action.get.MultiGetRequest;
+import org.elasticsearch.action.get.MultiGetResponse;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.SearchHit;
+import org.springframework.data.elasticsearch.core.SearchHitsIterator;
+import org.springframework.data.elasticsearch.core.convert.MappingElasticsearchConverter;
+import org.springframework.data.elasticsearch.core.mapping.SimpleElasticsearchMappingContext;
+import uk.nhs.hee.tis.revalidation.integration.cdc.repository.custom.EsBulkWriteEngine;
+import uk.nhs.hee.tis.revalidation.integration.cdc.repository.custom.EsBulkWriteEngine.BulkWriteResult;
+import uk.nhs.hee.tis.revalidation.integration.enums.SyncStatus;
+import uk.nhs.hee.tis.revalidation.integration.sync.service.MasterDoctorDocumentIdMigrationService.MigrationResult;
+import uk.nhs.hee.tis.revalidation.integration.sync.view.MasterDoctorView;
+import uk.nhs.hee.tis.revalidation.integration.sync.view.SyncState;
+
+@ExtendWith(MockitoExtension.class)
+class MasterDoctorDocumentIdMigrationServiceTest {
+
+  @Mock
+  private ElasticsearchOperations elasticsearchOperations;
+  @Mock
+  private RestHighLevelClient highLevelClient;
+  @Mock
+  private EsBulkWriteEngine bulkWriteEngine;
+  @Mock
+  private SyncStateService syncStateService;
+  @Mock
+  private SearchHitsIterator<MasterDoctorView> hits;
+  @Captor
+  private ArgumentCaptor<List<DocWriteRequest<?>>> requestsCaptor;
+  @Captor
+  private ArgumentCaptor<MultiGetRequest> readCaptor;
+
+  private MasterDoctorDocumentIdMigrationService service;
+
+  @BeforeEach
+  void setUp() {
+    service = new MasterDoctorDocumentIdMigrationService(elasticsearchOperations, highLevelClient,
+        bulkWriteEngine, syncStateService, 10);
+  }
+
+  @AfterEach
+  void tearDown() {
+    service.shutdown();
+  }
+
+  @Test
+  void shouldMoveDocumentsToTheirDerivedIdAndDeleteTheOriginals() throws IOException {
+    stubHits(
+        MasterDoctorView.builder().id("uuid-1").gmcReferenceNumber("1111111").build(),
+        MasterDoctorView.builder().id("gmc-2222222").gmcReferenceNumber("2222222").build(),
+        MasterDoctorView.builder().id("uuid-3").tcsPersonId(3L).build(),
+        MasterDoctorView.builder().id("uuid-4").gmcReferenceNumber("1111111").build());
+    when(highLevelClient.mget(any(MultiGetRequest.class), any(RequestOptions.class))).thenReturn(
+        response(original("uuid-1", 4L, Map.of("gmcReferenceNumber", "1111111")),
+            original("uuid-3", 7L, Map.of("tcsPersonId", 3))));
+    when(elasticsearchOperations.getElasticsearchConverter()).thenReturn(converter());
+    when(bulkWriteEngine.write(any())).thenReturn(new BulkWriteResult(2, List.of()));
+
+    MigrationResult result = service.migrate();
+
+    assertEquals(new MigrationResult(2, 1, 1), result);
+    verify(highLevelClient).mget(readCaptor.capture(), any(RequestOptions.class));
+    assertEquals(List.of("uuid-1", "uuid-3"), readCaptor.getValue().getItems().stream()
+        .map(MultiGetRequest.Item::id).toList());
+    verify(bulkWriteEngine, times(2)).write(requestsCaptor.capture());
+    List<DocWriteRequest<?>> creates = requestsCaptor.getAllValues().get(0);
+    assertEquals(List.of("gmc-1111111", "tis-3"),
+        creates.stream().map(DocWriteRequest::id).toList());
+    assertTrue(creates.stream().allMatch(r -> r instanceof IndexRequest
+        && r.opType() == DocWriteRequest.OpType.CREATE));
+    List<DocWriteRequest<?>> deletes = requestsCaptor.getAllValues().get(1);
+    assertEquals(List.of("uuid-1", "uuid-3"), deletes.stream().map(DocWriteRequest::id).toList());
+    assertTrue(deletes.stream().allMatch(r -> r instanceof DeleteRequest));
+    assertEquals(List.of(4L, 7L), deletes.stream().map(DocWriteRequest::ifSeqNo).toList());
+  }
+
+  @Test
+  void shouldKeepOriginalWhenDerivedIdIsTaken() throws IOException {
+    stubHits(MasterDoctorView.builder().id("uuid-1").gmcReferenceNumber("1111111").build());
+    when(highLevelClient.mget(any(MultiGetRequest.class), any(RequestOptions.class))).thenReturn(
+        response(original("uuid-1", 4L, Map.of("gmcReferenceNumber", "1111111"))));
+    when(elasticsearchOperations.getElasticsearchConverter()).thenReturn(converter());
+    when(bulkWriteEngine.write(any())).thenReturn(new BulkWriteResult(0, List.of("gmc-1111111")));
+
+    MigrationResult result = service.migrate();
+
+    assertEquals(new MigrationResult(0, 0, 1), result);
+    verify(bulkWriteEngine).write(any());
+  }
+
+  @Test
+  void shouldCopyOriginalAgainWhenItChangesBeforeItIsDeleted() throws IOException {
+    stubHits(MasterDoctorView.builder().id("uuid-1").gmcReferenceNumber("1111111").build());
+    when(highLevelClient.mget(any(MultiGetRequest.class), any(RequestOptions.class))).thenReturn(
+        response(original("uuid-1", 4L, Map.of("gmcReferenceNumber", "1111111"))),
+        response(original("uuid-1", 5L,
+            Map.of("gmcReferenceNumber", "1111111", "doctorFirstName", "changed"))));
+    when(elasticsearchOperations.getElasticsearchConverter()).thenReturn(converter());
+    when(bulkWriteEngine.write(any())).thenReturn(
+        new BulkWriteResult(1, List.of()),
+        new BulkWriteResult(0, List.of("uuid-1"), List.of(), List.of("uuid-1")),
+        new BulkWriteResult(1, List.of()),
+        new BulkWriteResult(1, List.of()));
+
+    MigrationResult result = service.migrate();
+
+    assertEquals(new MigrationResult(1, 0, 0), result);
+    verify(bulkWriteEngine, times(4)).write(requestsCaptor.capture());
+    var copy = (IndexRequest) requestsCaptor.getAllValues().get(2).get(0);
+    assertEquals("gmc-1111111", copy.id());
+    assertEquals(DocWriteRequest.OpType.INDEX, copy.opType());
+    assertEquals("changed", copy.sourceAsMap().get("doctorFirstName"));
+    var delete = requestsCaptor.getAllValues().get(3).get(0);
+    assertEquals("uuid-1", delete.id());
+    assertEquals(5L, delete.ifSeqNo());
+  }
+
+  @Test
+  void shouldStopRetryingDeleteOfOriginalWhichKeepsChanging() throws IOException {
+    stubHits(MasterDoctorView.builder().id("uuid-1").gmcReferenceNumber("1111111").build());
+    when(highLevelClient.mget(any(MultiGetRequest.class), any(RequestOptions.class))).thenReturn(
+        response(original("uuid-1", 4L, Map.of("gmcReferenceNumber", "1111111"))));
+    when(elasticsearchOperations.getElasticsearchConverter()).thenReturn(converter());
+    var changed = new BulkWriteResult(0, List.of("uuid-1"), List.of(), List.of("uuid-1"));
+    var written = new BulkWriteResult(1, List.of());
+    when(bulkWriteEngine.write(any())).thenReturn(written, changed, written, changed, written,
+        changed);
+
+    MigrationResult result = service.migrate();
+
+    assertEquals(new MigrationResult(0, 0, 0), result);
+    verify(bulkWriteEngine, times(2 * MasterDoctorDocumentIdMigrationService.MAX_DELETE_ATTEMPTS))
+        .write(any());
+  }
+
+  @Test
+  void shouldNotMigrateDuringRebuild() {
+    when(syncStateService.getState()).thenReturn(
+        SyncState.builder().status(SyncStatus.IN_PROGRESS).build());
+
+    assertThrows(IllegalStateException.class, () -> service.migrate());
+    assertThrows(IllegalStateException.class, () -> service.start());
+
+    verify(elasticsearchOperations, never()).searchForStream(any(), eq(MasterDoctorView.class));
+  }
+
+  @Test
+  void shouldRunMigrationInTheBackground() {
+    when(elasticsearchOperations.searchForStream(any(), eq(MasterDoctorView.class)))
+        .thenReturn(hits);
+
+    service.start();
+
+    verify(hits, timeout(1000)).close();
+  }
+
+  private void stubHits(MasterDoctorView... views) {
+    when(elasticsearchOperations.searchForStream(any(), eq(MasterDoctorView.class)))
+        .thenReturn(hits);
+    Boolean[] more = new Boolean[views.length];
+    Arrays.fill(more, 0, views.length - 1, true);
+    more[views.length - 1] = false;
+    when(hits.hasNext()).thenReturn(true, more);
+    @SuppressWarnings("unchecked")
+    SearchHit<MasterDoctorView>[] searchHits = new SearchHit[views.length];
+    for (int i = 0; i < views.length; i++) {
+      searchHits[i] = mock(SearchHit.class);
+      when(searchHits[i].getContent()).thenReturn(views[i]);
+    }
+    when(hits.next()).thenReturn(searchHits[0],
+        Arrays.copyOfRange(searchHits, 1, searchHits.length));
+  }
+
+  private GetResponse original(String id, long seqNo, Map<String, Object> source) {
+    GetResponse original = mock(GetResponse.class);
+    when(original.isExists()).thenReturn(true);
+    lenient().when(original.getId()).thenReturn(id);
+    lenient().when(original.getSeqNo()).thenReturn(seqNo);
+    lenient().when(original.getPrimaryTerm()).thenReturn(1L);
+    lenient().when(original.getSourceAsMap()).thenReturn(source);
+    return original;
+  }
+
+  private MultiGetResponse response(GetResponse... originals) {
+    return new MultiGetResponse(Arrays.stream(originals)
+        .map(original -> new MultiGetItemResponse(original, null))
+        .toArray(MultiGetItemResponse[]::new));
+  }
+
+  private MappingElasticsearchConverter converter() {
+    MappingElasticsearchConverter converter =
+        new MappingElasticsearchConverter(new SimpleElasticsearchMappingContext());
+    converter.afterPropertiesSet();
+    return converter;
+  }
+}
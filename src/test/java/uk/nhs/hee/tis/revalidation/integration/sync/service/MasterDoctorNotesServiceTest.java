@@ -0,0 +1,202 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright 2026 Crown Copyright (NHS England)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package uk.nhs.hee.tis.revalidation.integration.sync.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+import static uk.nhs.hee.tis.revalidation.integration.config.EsConstant.Aliases.MASTER_DOCTOR_READ_ALIAS;
+import static uk.nhs.hee.tis.revalidation.integration.config.EsConstant.Indexes.MASTER_DOCTOR_INDEX;
+
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.SearchHit;
+import org.springframework.data.elasticsearch.core.SearchHits;
+import org.springframework.data.elasticsearch.core.SearchHitsIterator;
+import org.springframework.data.elasticsearch.core.mapping.IndexCoordinates;
+import org.springframework.data.elasticsearch.core.query.Query;
+import uk.nhs.hee.tis.revalidation.integration.cdc.repository.custom.EsBulkWriteEngine.BulkWriteResult;
+import uk.nhs.hee.tis.revalidation.integration.cdc.repository.custom.EsDocUpdateHelper;
+import uk.nhs.hee.tis.revalidation.integration.cdc.repository.custom.EsDocUpdateHelper.EsUpdateException;
+import uk.nhs.hee.tis.revalidation.integration.cdc.repository.custom.LiveGenerationMirror;
+import uk.nhs.hee.tis.revalidation.integration.sync.view.MasterDoctorView;
+
+@ExtendWith(MockitoExtension.class)
+class MasterDoctorNotesServiceTest {
+
+  private static final String GMC_NUMBER_1 = "1111111";
+  private static final String GMC_NUMBER_2 = "2222222";
+
+  @Mock
+  private ElasticsearchOperations elasticsearchOperations;
+  @Mock
+  private EsDocUpdateHelper esDocUpdateHelper;
+  @Spy
+  private LiveGenerationMirror liveGenerationMirror = new LiveGenerationMirror();
+  @Mock
+  private SearchHits<MasterDoctorView> searchHits;
+  @Mock
+  private SearchHitsIterator<MasterDoctorView> hitsIterator;
+  @Captor
+  private ArgumentCaptor<IndexCoordinates> indexCaptor;
+  @Captor
+  private ArgumentCaptor<Map<String, Map<String, Object>>> fieldsCaptor;
+
+  private MasterDoctorNotesService service;
+
+  @BeforeEach
+  void setUp() {
+    service = new MasterDoctorNotesService(elasticsearchOperations, esDocUpdateHelper,
+        liveGenerationMirror);
+  }
+
+  @Test
+  void shouldFindKnownNotesFlagsWithOneSearchOfTheReadAlias() {
+    when(elasticsearchOperations.search(any(Query.class), eq(MasterDoctorView.class),
+        indexCaptor.capture())).thenReturn(searchHits);
+    when(searchHits.getSearchHits()).thenReturn(List.of(
+        hit("a", "ab1111", false), hit("b", "AB1111", true), hit("c", GMC_NUMBER_2, false)));
+
+    Map<String, Boolean> result = service.findHasNotes(List.of("Ab1111", GMC_NUMBER_2,
+        GMC_NUMBER_1));
+
+    assertEquals(MASTER_DOCTOR_READ_ALIAS, indexCaptor.getValue().getIndexName());
+    assertEquals(Map.of("Ab1111", true, GMC_NUMBER_2, false), result);
+  }
+
+  @Test
+  void shouldNotSearchWithoutGmcNumbers() {
+    Map<String, Boolean> result = service.findHasNotes(List.of());
+
+    assertTrue(result.isEmpty());
+    verifyNoInteractions(elasticsearchOperations);
+  }
+
+  @Test
+  void shouldUpdateNotesFlagOfEveryDocumentOfADoctorInTheReadAlias() {
+    when(elasticsearchOperations.search(any(Query.class), eq(MasterDoctorView.class),
+        indexCaptor.capture())).thenReturn(searchHits);
+    when(searchHits.getSearchHits()).thenReturn(List.of(
+        hit("a", GMC_NUMBER_1, null), hit("b", GMC_NUMBER_1, false)));
+    when(esDocUpdateHelper.bulkPartialUpdate(eq(MASTER_DOCTOR_READ_ALIAS),
+        fieldsCaptor.capture())).thenReturn(new BulkWriteResult(2, List.of()));
+
+    int updated = service.updateHasNotes(Map.of(GMC_NUMBER_1, true));
+
+    assertEquals(2, updated);
+    assertEquals(MASTER_DOCTOR_READ_ALIAS, indexCaptor.getValue().getIndexName());
+    assertEquals(Map.of("a", Map.of("hasNotes", true), "b", Map.of("hasNotes", true)),
+        fieldsCaptor.getValue());
+    verify(esDocUpdateHelper, never()).bulkPartialUpdate(eq(MASTER_DOCTOR_INDEX), any());
+  }
+
+  @Test
+  void shouldAlsoUpdateNotesFlagOfTheRebuiltIndexWhileRebuilding() {
+    liveGenerationMirror.start();
+    when(elasticsearchOperations.search(any(Query.class), eq(MasterDoctorView.class),
+        indexCaptor.capture())).thenReturn(searchHits);
+    when(searchHits.getSearchHits()).thenReturn(List.of(hit("a", "AB1111", null)));
+    when(esDocUpdateHelper.bulkPartialUpdate(any(), any()))
+        .thenReturn(new BulkWriteResult(1, List.of()));
+
+    int updated = service.updateHasNotes(Map.of("ab1111", true));
+
+    assertEquals(1, updated);
+    assertEquals(List.of(MASTER_DOCTOR_READ_ALIAS, MASTER_DOCTOR_INDEX),
+        indexCaptor.getAllValues().stream().map(IndexCoordinates::getIndexName).toList());
+    verify(esDocUpdateHelper).bulkPartialUpdate(MASTER_DOCTOR_READ_ALIAS,
+        Map.of("a", Map.of("hasNotes", true)));
+    verify(esDocUpdateHelper).bulkPartialUpdate(MASTER_DOCTOR_INDEX,
+        Map.of("a", Map.of("hasNotes", true)));
+  }
+
+  @Test
+  void shouldNotWriteWhenDoctorHasNoDocuments() {
+    when(elasticsearchOperations.search(any(Query.class), eq(MasterDoctorView.class),
+        any(IndexCoordinates.class))).thenReturn(searchHits);
+    when(searchHits.getSearchHits()).thenReturn(List.of());
+
+    int updated = service.updateHasNotes(Map.of(GMC_NUMBER_1, false));
+
+    assertEquals(0, updated);
+    verifyNoInteractions(esDocUpdateHelper);
+  }
+
+  @Test
+  void shouldThrowWhenNotesFlagCannotBeWritten() {
+    when(elasticsearchOperations.search(any(Query.class), eq(MasterDoctorView.class),
+        any(IndexCoordinates.class))).thenReturn(searchHits);
+    when(searchHits.getSearchHits()).thenReturn(List.of(hit("a", GMC_NUMBER_1, null)));
+    when(esDocUpdateHelper.bulkPartialUpdate(eq(MASTER_DOCTOR_READ_ALIAS), any()))
+        .thenReturn(new BulkWriteResult(0, List.of("a")));
+
+    Map<String, Boolean> hasNotesByGmc = Map.of(GMC_NUMBER_1, true);
+    assertThrows(EsUpdateException.class, () -> service.updateHasNotes(hasNotesByGmc));
+  }
+
+  @Test
+  void shouldCarryNotesFlagsOverToRebuiltDocumentsWithoutOne() {
+    when(elasticsearchOperations.searchForStream(any(Query.class), eq(MasterDoctorView.class),
+        any(IndexCoordinates.class))).thenReturn(hitsIterator);
+    when(hitsIterator.hasNext()).thenReturn(true, true, false);
+    SearchHit<MasterDoctorView> previous1 = hit("old-a", GMC_NUMBER_1, true);
+    SearchHit<MasterDoctorView> previous2 = hit("old-b", GMC_NUMBER_2, false);
+    when(hitsIterator.next()).thenReturn(previous1, previous2);
+    when(elasticsearchOperations.search(any(Query.class), eq(MasterDoctorView.class),
+        indexCaptor.capture())).thenReturn(searchHits);
+    when(searchHits.getSearchHits()).thenReturn(List.of(hit("new-a", GMC_NUMBER_1, null)));
+    when(esDocUpdateHelper.bulkPartialUpdate(eq(MASTER_DOCTOR_INDEX), fieldsCaptor.capture()))
+        .thenReturn(new BulkWriteResult(1, List.of()));
+
+    long updated = service.carryOverHasNotes();
+
+    assertEquals(1, updated);
+    assertEquals(MASTER_DOCTOR_INDEX, indexCaptor.getValue().getIndexName());
+    assertEquals(Map.of("new-a", Map.of("hasNotes", true)), fieldsCaptor.getValue());
+    verify(hitsIterator).close();
+  }
+
+  @SuppressWarnings("unchecked")
+  private SearchHit<MasterDoctorView> hit(String id, String gmcNumber, Boolean hasNotes) {
+    SearchHit<MasterDoctorView> hit = mock(SearchHit.class);
+    when(hit.getContent()).thenReturn(MasterDoctorView.builder()
+        .id(id).gmcReferenceNumber(gmcNumber).hasNotes(hasNotes).build());
+    return hit;
+  }
+}
@@ -0,0 +1,246 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright 2026 Crown Copyright (NHS England)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package uk.nhs.hee.tis.revalidation.integration.sync.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import org.elasticsearch.action.update.UpdateRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.convert.MappingElasticsearchConverter;
+import org.springframework.data.elasticsearch.core.mapping.SimpleElasticsearchMappingContext;
+import uk.nhs.hee.tis.revalidation.integration.cdc.repository.custom.EsBulkWriteEngine;
+import uk.nhs.hee.tis.revalidation.integration.cdc.repository.custom.EsBulkWriteEngine.BulkWriteResult;
+import uk.nhs.hee.tis.revalidation.integration.entity.HiddenDiscrepancy;
+import uk.nhs.hee.tis.revalidation.integration.entity.RecommendationStatus;
+import uk.nhs.hee.tis.revalidation.integration.router.dto.ConnectionLogDto;
+import uk.nhs.hee.tis.revalidation.integration.router.mapper.MasterDoctorViewMapperImpl;
+import uk.nhs.hee.tis.revalidation.integration.sync.helper.MasterDoctorStagingStore;
+import uk.nhs.hee.tis.revalidation.integration.sync.view.MasterDoctorView;
+
+@ExtendWith(MockitoExtension.class)
+class MasterDoctorStagedRebuildServiceTest {
+
+  private static final String GMC_NUMBER = "1111111";
+  private static final Long PERSON_ID = 1L;
+  private static final String DESIGNATED_BODY_CODE = "1-AIIDR8";
+
+  @TempDir
+  Path spillDirectory;
+  @Mock
+  private ElasticsearchOperations elasticsearchOperations;
+  @Mock
+  private EsBulkWriteEngine bulkWriteEngine;
+  @Captor
+  private ArgumentCaptor<List<UpdateRequest>> requestsCaptor;
+
+  private MasterDoctorStagingStore store;
+  private MasterDoctorStagedRebuildService service;
+
+  @BeforeEach
+  void setUp() {
+    ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule())
+        .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+    // Keep one record on the heap so the merges are also exercised on spilled records.
+    store = new MasterDoctorStagingStore(objectMapper, 1, spillDirectory);
+    service = new MasterDoctorStagedRebuildService(store, new MasterDoctorViewMapperImpl(),
+        objectMapper, elasticsearchOperations, bulkWriteEngine, 1);
+    service.start();
+  }
+
+  @AfterEach
+  void tearDown() {
+    service.stop();
+  }
+
+  @Test
+  void shouldMergeTcsRecordsOfTheSameDoctor() {
+    service.stageTcsRecords(List.of(
+        MasterDoctorView.builder().tcsPersonId(2L).build(),
+        MasterDoctorView.builder().gmcReferenceNumber(GMC_NUMBER).tcsPersonId(PERSON_ID)
+            .programmeName("first").build(),
+        MasterDoctorView.builder().gmcReferenceNumber(GMC_NUMBER).tcsPersonId(PERSON_ID)
+            .programmeName("second").build()));
+
+    assertEquals(2, store.size());
+    assertEquals("second", staged(GMC_NUMBER, PERSON_ID).getProgrammeName());
+  }
+
+  @Test
+  void shouldApplyGmcFieldsToStagedRecordIncludingNulls() {
+    stageTcsDoctor();
+    service.stageGmcRecords(List.of(MasterDoctorView.builder()
+        .gmcReferenceNumber(GMC_NUMBER)
+        .doctorFirstName("first")
+        .submissionDate(LocalDate.of(2026, 1, 2))
+        .tisStatus(RecommendationStatus.NOT_STARTED)
+        .existsInGmc(true)
+        .build()));
+
+    MasterDoctorView staged = staged(GMC_NUMBER, PERSON_ID);
+    assertEquals("first", staged.getDoctorFirstName());
+    assertEquals(LocalDate.of(2026, 1, 2), staged.getSubmissionDate());
+    assertEquals(RecommendationStatus.NOT_STARTED, staged.getTisStatus());
+    assertNull(staged.getDesignatedBody());
+    assertEquals("programme", staged.getProgrammeName());
+  }
+
+  @Test
+  void shouldStageGmcRecordsWithoutTcsRecordAsNewRecords() {
+    stageTcsDoctor();
+    service.stageGmcRecords(List.of(MasterDoctorView.builder().gmcReferenceNumber("2").build()));
+
+    assertEquals(2, store.size());
+  }
+
+  @Test
+  void shouldApplyConnectionLogToStagedRecord() {
+    stageTcsDoctor();
+    LocalDateTime eventDateTime = LocalDateTime.of(2026, 1, 2, 3, 4, 5, 6_000_000);
+
+    service.stageConnectionLogs(List.of(ConnectionLogDto.builder()
+        .gmcId(GMC_NUMBER).updatedBy("admin").eventDateTime(eventDateTime).build()));
+
+    MasterDoctorView staged = staged(GMC_NUMBER, PERSON_ID);
+    assertEquals("admin", staged.getUpdatedBy());
+    assertEquals(eventDateTime, staged.getLastConnectionDateTime());
+  }
+
+  @Test
+  void shouldKeepOneHiddenDiscrepancyPerDesignatedBody() {
+    stageTcsDoctor();
+    HiddenDiscrepancy hiddenDiscrepancy = HiddenDiscrepancy.builder()
+        .gmcId(GMC_NUMBER).hiddenForDesignatedBodyCode(DESIGNATED_BODY_CODE).build();
+
+    service.stageHiddenDiscrepancies(List.of(hiddenDiscrepancy, hiddenDiscrepancy));
+
+    assertEquals(List.of(hiddenDiscrepancy),
+        staged(GMC_NUMBER, PERSON_ID).getHiddenDiscrepancies());
+  }
+
+  @Test
+  void shouldWriteStagedRecordsInChunks() {
+    when(elasticsearchOperations.getElasticsearchConverter()).thenReturn(converter());
+    when(bulkWriteEngine.write(any())).thenReturn(new BulkWriteResult(1, List.of()),
+        new BulkWriteResult(0, List.of("failed")));
+    stageTcsDoctor();
+    service.stageTcsRecords(List.of(MasterDoctorView.builder().tcsPersonId(2L).build()));
+
+    BulkWriteResult result = service.flush();
+
+    verify(bulkWriteEngine, times(2)).write(requestsCaptor.capture());
+    UpdateRequest request = requestsCaptor.getAllValues().get(0).get(0);
+    assertNotNull(request.id());
+    assertEquals("masterdoctorindex", request.index());
+    // Documents CDC created in the new index keep their values, the staged record fills the rest
+    assertTrue(request.scriptedUpsert());
+    assertEquals(MasterDoctorStagedRebuildService.FILL_MISSING_FIELDS,
+        request.script().getIdOrCode());
+    var staged = (Map<?, ?>) request.script().getParams()
+        .get(MasterDoctorStagedRebuildService.STAGED_PARAM);
+    assertEquals(GMC_NUMBER, staged.get("gmcReferenceNumber"));
+    assertEquals(1, result.succeeded());
+    assertEquals(List.of("failed"), result.failedIds());
+  }
+
+  @Test
+  void shouldMergeStagedHiddenDiscrepanciesWithThoseAddedByCdc() {
+    when(elasticsearchOperations.getElasticsearchConverter()).thenReturn(converter());
+    when(bulkWriteEngine.write(any())).thenReturn(new BulkWriteResult(1, List.of()));
+    stageTcsDoctor();
+    service.stageHiddenDiscrepancies(List.of(HiddenDiscrepancy.builder().id("staged")
+        .gmcId(GMC_NUMBER).hiddenForDesignatedBodyCode(DESIGNATED_BODY_CODE).build()));
+
+    service.flush();
+
+    verify(bulkWriteEngine).write(requestsCaptor.capture());
+    Map<String, Object> params = requestsCaptor.getValue().get(0).script().getParams();
+    // A hidden discrepancy CDC added to the new index must not be replaced by the staged ones
+    var staged = (Map<?, ?>) params.get(MasterDoctorStagedRebuildService.STAGED_PARAM);
+    assertFalse(staged.containsKey(MasterDoctorStagedRebuildService.HIDDEN_DISCREPANCIES_PARAM));
+    var hiddenDiscrepancies = (List<?>) params.get(
+        MasterDoctorStagedRebuildService.HIDDEN_DISCREPANCIES_PARAM);
+    assertEquals(1, hiddenDiscrepancies.size());
+    assertEquals("staged", ((Map<?, ?>) hiddenDiscrepancies.get(0)).get("id"));
+    String script = requestsCaptor.getValue().get(0).script().getIdOrCode();
+    assertTrue(script.contains("existing.id == staged.id"));
+    // A field without a value in the document is treated as missing and filled in
+    assertTrue(script.contains("ctx._source[entry.getKey()] == null"));
+  }
+
+  @Test
+  void shouldSendNoHiddenDiscrepanciesWhenNoneAreStaged() {
+    when(elasticsearchOperations.getElasticsearchConverter()).thenReturn(converter());
+    when(bulkWriteEngine.write(any())).thenReturn(new BulkWriteResult(1, List.of()));
+    stageTcsDoctor();
+
+    service.flush();
+
+    verify(bulkWriteEngine).write(requestsCaptor.capture());
+    assertEquals(List.of(), requestsCaptor.getValue().get(0).script().getParams()
+        .get(MasterDoctorStagedRebuildService.HIDDEN_DISCREPANCIES_PARAM));
+  }
+
+  private void stageTcsDoctor() {
+    service.stageTcsRecords(List.of(MasterDoctorView.builder()
+        .gmcReferenceNumber(GMC_NUMBER)
+        .tcsPersonId(PERSON_ID)
+        .programmeName("programme")
+        .designatedBody("designatedBody")
+        .build()));
+  }
+
+  private MasterDoctorView staged(String gmcReferenceNumber, Long tcsPersonId) {
+    return store.get(store.find(gmcReferenceNumber, tcsPersonId).get(0));
+  }
+
+  private MappingElasticsearchConverter converter() {
+    MappingElasticsearchConverter converter =
+        new MappingElasticsearchConverter(new SimpleElasticsearchMappingContext());
+    converter.afterPropertiesSet();
+    return converter;
+  }
+}
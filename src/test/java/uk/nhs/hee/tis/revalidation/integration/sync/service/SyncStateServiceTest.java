@@ -0,0 +1,178 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright 2026 Crown Copyright (NHS England)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package uk.nhs.hee.tis.revalidation.integration.sync.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static uk.nhs.hee.tis.revalidation.integration.config.EsConstant.Indexes.SYNC_STATE_INDEX;
+
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.mapping.IndexCoordinates;
+import org.springframework.data.elasticsearch.core.query.UpdateQuery;
+import uk.nhs.hee.tis.revalidation.integration.enums.SyncPhase;
+import uk.nhs.hee.tis.revalidation.integration.enums.SyncStatus;
+import uk.nhs.hee.tis.revalidation.integration.sync.helper.SyncMetrics;
+import uk.nhs.hee.tis.revalidation.integration.sync.view.SyncState;
+
+@ExtendWith(MockitoExtension.class)
+class SyncStateServiceTest {
+
+  private static final String INDEX_NAME = "masterdoctorindex-20260101000000";
+
+  @Mock
+  private ElasticsearchOperations elasticsearchOperations;
+  @Mock
+  private SyncMetrics syncMetrics;
+  @Captor
+  private ArgumentCaptor<SyncState> stateCaptor;
+  @Captor
+  private ArgumentCaptor<UpdateQuery> updateQueryCaptor;
+  @Captor
+  private ArgumentCaptor<IndexCoordinates> indexCaptor;
+
+  private SyncStateService service;
+
+  @BeforeEach
+  void setUp() {
+    service = new SyncStateService(elasticsearchOperations, syncMetrics, Long.MAX_VALUE);
+  }
+
+  @Test
+  void shouldSaveNewStateWhenSyncStarts() {
+    service.startSync(INDEX_NAME);
+
+    verify(elasticsearchOperations).save(stateCaptor.capture(), indexCaptor.capture());
+    assertEquals(SYNC_STATE_INDEX, indexCaptor.getValue().getIndexName());
+    SyncState state = stateCaptor.getValue();
+    assertEquals(SyncStateService.STATE_ID, state.getId());
+    assertEquals(INDEX_NAME, state.getIndexName());
+    assertEquals(SyncPhase.TCS, state.getPhase());
+    assertEquals(SyncStatus.IN_PROGRESS, state.getStatus());
+    assertEquals(0, state.getResumeCount());
+  }
+
+  @Test
+  void shouldExpectCountsOfLastCompletedSync() {
+    when(elasticsearchOperations.get(eq(SyncStateService.STATE_ID), eq(SyncState.class),
+        any(IndexCoordinates.class))).thenReturn(SyncState.builder()
+        .status(SyncStatus.COMPLETED)
+        .recordCounts(Map.of("TCS", 10L, "GMC", 20L))
+        .build());
+
+    service.startSync(INDEX_NAME);
+
+    verify(syncMetrics).setExpectedRecords(Map.of(SyncPhase.TCS, 10L, SyncPhase.GMC, 20L));
+    verify(syncMetrics).startPhase(SyncPhase.TCS);
+  }
+
+  @Test
+  void shouldCheckpointRecordCountsWhenIntervalPassed() {
+    service = new SyncStateService(elasticsearchOperations, syncMetrics, 0L);
+
+    service.recordProgress(SyncPhase.TCS, 3);
+
+    verify(elasticsearchOperations).update(updateQueryCaptor.capture(),
+        any(IndexCoordinates.class));
+    UpdateQuery updateQuery = updateQueryCaptor.getValue();
+    assertEquals(SyncStateService.ADD_RECORD_COUNTS_SCRIPT, updateQuery.getScript());
+    assertEquals(Map.of("TCS", 3L), updateQuery.getParams().get("counts"));
+  }
+
+  @Test
+  void shouldCollectRecordCountsUntilPhaseChanges() {
+    service.recordProgress(SyncPhase.GMC, 2);
+    service.recordProgress(SyncPhase.GMC, 5);
+    verify(elasticsearchOperations, never()).update(any(UpdateQuery.class),
+        any(IndexCoordinates.class));
+
+    service.enterPhase(SyncPhase.CONNECTION_LOG);
+
+    verify(elasticsearchOperations, times(2)).update(updateQueryCaptor.capture(),
+        any(IndexCoordinates.class));
+    List<UpdateQuery> updateQueries = updateQueryCaptor.getAllValues();
+    assertEquals(Map.of("GMC", 7L), updateQueries.get(0).getParams().get("counts"));
+    assertEquals("CONNECTION_LOG", updateQueries.get(1).getDocument().get("phase"));
+    verify(syncMetrics).recordReceived(SyncPhase.GMC, 2);
+    verify(syncMetrics).recordReceived(SyncPhase.GMC, 5);
+    verify(syncMetrics).startPhase(SyncPhase.CONNECTION_LOG);
+  }
+
+  @Test
+  void shouldKeepRecordCountsWhenCheckpointFails() {
+    when(elasticsearchOperations.update(any(UpdateQuery.class), any(IndexCoordinates.class)))
+        .thenThrow(new IllegalStateException("expected"))
+        .thenReturn(null);
+    service.recordProgress(SyncPhase.HIDDEN_DISCREPANCY, 1);
+    service.checkpoint();
+
+    service.recordProgress(SyncPhase.HIDDEN_DISCREPANCY, 1);
+    service.checkpoint();
+
+    verify(elasticsearchOperations, times(2)).update(updateQueryCaptor.capture(),
+        any(IndexCoordinates.class));
+    assertEquals(Map.of("HIDDEN_DISCREPANCY", 2L),
+        updateQueryCaptor.getAllValues().get(1).getParams().get("counts"));
+  }
+
+  @Test
+  void shouldRecordFailedSync() {
+    service.finish(false);
+
+    verify(elasticsearchOperations).update(updateQueryCaptor.capture(),
+        any(IndexCoordinates.class));
+    assertEquals("FAILED", updateQueryCaptor.getValue().getDocument().get("status"));
+  }
+
+  @Test
+  void shouldIncrementResumeCountWithScript() {
+    service.recordResume();
+
+    verify(elasticsearchOperations).update(updateQueryCaptor.capture(),
+        any(IndexCoordinates.class));
+    assertEquals(SyncStateService.INCREMENT_RESUME_COUNT_SCRIPT,
+        updateQueryCaptor.getValue().getScript());
+  }
+
+  @Test
+  void shouldReturnNullWhenStateCannotBeRead() {
+    when(elasticsearchOperations.get(eq(SyncStateService.STATE_ID), eq(SyncState.class),
+        any(IndexCoordinates.class)))
+        .thenThrow(new IllegalStateException("expected"));
+
+    assertNull(service.getState());
+  }
+}